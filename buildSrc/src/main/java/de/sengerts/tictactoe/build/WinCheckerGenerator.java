@@ -0,0 +1,331 @@
+package de.sengerts.tictactoe.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Class generating the size specialized win checkers of the classic rules.
+ *
+ * For every size from the given minimum to the given maximum a class
+ * {@code WinChecker<size>} is generated into the package
+ * {@code de.sengerts.tictactoe.engine.generated}, which checks all rows,
+ * columns and both main diags of a square board with fully unrolled constant
+ * masks in the padded bit layout of {@code Board}. A registry class
+ * {@code GeneratedWinCheckers} maps a size to its checker with a switch, so no
+ * reflection is needed at runtime.
+ *
+ * Usage: WinCheckerGenerator &lt;output directory&gt; [min size] [max size]
+ *
+ * @author Tobias Senger
+ */
+public final class WinCheckerGenerator {
+
+	/**
+	 * Class variable that stores the package of the generated classes.
+	 */
+	public static final String PACKAGE = "de.sengerts.tictactoe.engine.generated";
+
+	/**
+	 * Class variable that stores the default smallest generated size.
+	 */
+	public static final int DEFAULT_MIN_SIZE = 3;
+
+	/**
+	 * Class variable that stores the default biggest generated size.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 21;
+
+	/**
+	 * Private constructor for class WinCheckerGenerator, as it only has static
+	 * methods.
+	 */
+	private WinCheckerGenerator() {
+	}
+
+	/**
+	 * Runs the generator.
+	 *
+	 * @param args the output directory and optionally the smallest and biggest
+	 *             size to generate
+	 * @throws IOException if a class can not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			throw new IllegalArgumentException("Usage: WinCheckerGenerator <output directory> [min size] [max size]");
+		}
+		int minSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MIN_SIZE;
+		int maxSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_SIZE;
+		generate(new File(args[0]), minSize, maxSize);
+	}
+
+	/**
+	 * Generates the win checkers of all sizes and their registry.
+	 *
+	 * @param outputDirectory the source root to write the classes to
+	 * @param minSize         the smallest size to generate
+	 * @param maxSize         the biggest size to generate
+	 * @throws IOException              if a class can not be written
+	 * @throws IllegalArgumentException if given sizes are not positive or the
+	 *                                  smallest is bigger than the biggest
+	 */
+	public static void generate(final File outputDirectory, final int minSize, final int maxSize)
+			throws IOException {
+		if (outputDirectory == null) {
+			throw new IllegalArgumentException("Given output directory can not be null!");
+		}
+		if (minSize <= 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("Given sizes must be positive and ordered!");
+		}
+		File packageDirectory = new File(outputDirectory, PACKAGE.replace('.', File.separatorChar));
+		if (!packageDirectory.isDirectory() && !packageDirectory.mkdirs()) {
+			throw new IOException("Could not create directory " + packageDirectory);
+		}
+		for (int size = minSize; size <= maxSize; size++) {
+			write(new File(packageDirectory, getClassName(size) + ".java"), generateChecker(size));
+		}
+		write(new File(packageDirectory, "GeneratedWinCheckers.java"), generateRegistry(minSize, maxSize));
+	}
+
+	/**
+	 * Gets the name of the checker class of a size.
+	 *
+	 * @param size the amount of rows and columns of the board
+	 * @return the simple name of the generated class
+	 */
+	private static String getClassName(final int size) {
+		return "WinChecker" + size;
+	}
+
+	/**
+	 * Creates the masks of all classic lines of a size.
+	 *
+	 * The lines are ordered like the lines of {@code Lines.classic(size)}: rows,
+	 * columns, the diag running down to the right and the one running down to
+	 * the left.
+	 *
+	 * @param size the amount of rows and columns of the board
+	 * @return the mask words of every line
+	 */
+	private static List<long[]> createLineMasks(final int size) {
+		List<long[]> masks = new ArrayList<long[]>();
+		for (int row = 0; row < size; row++) {
+			masks.add(createLineMask(size, row, 0, 0, 1));
+		}
+		for (int column = 0; column < size; column++) {
+			masks.add(createLineMask(size, 0, column, 1, 0));
+		}
+		masks.add(createLineMask(size, 0, 0, 1, 1));
+		masks.add(createLineMask(size, 0, size - 1, 1, -1));
+		return masks;
+	}
+
+	/**
+	 * Creates the mask of one line in the padded bit layout.
+	 *
+	 * @param size       the amount of rows and columns of the board
+	 * @param row        the row of the first cell
+	 * @param column     the column of the first cell
+	 * @param rowStep    the row difference between two cells of the line
+	 * @param columnStep the column difference between two cells of the line
+	 * @return the mask words of the line
+	 */
+	private static long[] createLineMask(final int size, final int row, final int column, final int rowStep,
+			final int columnStep) {
+		int stride = size + 1;
+		long[] mask = new long[getWordsCount(size)];
+		for (int i = 0; i < size; i++) {
+			int bit = (row + i * rowStep) * stride + column + i * columnStep;
+			mask[bit >>> 6] |= 1L << (bit & 63);
+		}
+		return mask;
+	}
+
+	/**
+	 * Gets the amount of words of a padded bitboard.
+	 *
+	 * @param size the amount of rows and columns of the board
+	 * @return the amount of 64 bit words per side
+	 */
+	private static int getWordsCount(final int size) {
+		return (size * (size + 1) + 63) >>> 6;
+	}
+
+	/**
+	 * Generates the source of the checker of one size.
+	 *
+	 * @param size the amount of rows and columns of the board
+	 * @return the java source of the checker
+	 */
+	private static String generateChecker(final int size) {
+		List<long[]> masks = createLineMasks(size);
+		int wordsCount = getWordsCount(size);
+		boolean[] usedWords = new boolean[wordsCount];
+		for (long[] mask : masks) {
+			for (int word = 0; word < wordsCount; word++) {
+				usedWords[word] |= mask[word] != 0;
+			}
+		}
+
+		StringBuilder source = new StringBuilder();
+		appendHeader(source);
+		source.append("import de.sengerts.tictactoe.engine.Board;\n");
+		source.append("import de.sengerts.tictactoe.engine.WinChecker;\n\n");
+		source.append("/**\n");
+		source.append(" * Win checker of the classic rules for boards with ").append(size).append(" rows and columns.\n");
+		source.append(" *\n");
+		source.append(" * Generated by WinCheckerGenerator, do not edit.\n");
+		source.append(" */\n");
+		source.append("public final class ").append(getClassName(size)).append(" implements WinChecker {\n\n");
+
+		source.append("\tprivate static final long[][] LINE_MASKS = {\n");
+		for (long[] mask : masks) {
+			source.append("\t\t{ ");
+			for (int word = 0; word < wordsCount; word++) {
+				source.append(word == 0 ? "" : ", ").append(toLiteral(mask[word]));
+			}
+			source.append(" },\n");
+		}
+		source.append("\t};\n\n");
+
+		source.append("\t@Override\n");
+		source.append("\tpublic boolean hasWinningLine(final Board board, final int side) {\n");
+		for (int word = 0; word < wordsCount; word++) {
+			if (usedWords[word]) {
+				source.append("\t\tfinal long w").append(word).append(" = board.getWord(side, ").append(word)
+						.append(");\n");
+			}
+		}
+		source.append("\t\treturn ");
+		for (int line = 0; line < masks.size(); line++) {
+			if (line > 0) {
+				source.append("\n\t\t\t\t|| ");
+			}
+			appendLineCheck(source, masks.get(line));
+		}
+		source.append(";\n");
+		source.append("\t}\n\n");
+
+		source.append("\t@Override\n");
+		source.append("\tpublic int getLinesCount() {\n");
+		source.append("\t\treturn ").append(masks.size()).append(";\n");
+		source.append("\t}\n\n");
+
+		source.append("\t@Override\n");
+		source.append("\tpublic int getWordsCount() {\n");
+		source.append("\t\treturn ").append(wordsCount).append(";\n");
+		source.append("\t}\n\n");
+
+		source.append("\t@Override\n");
+		source.append("\tpublic long getLineMask(final int line, final int word) {\n");
+		source.append("\t\treturn LINE_MASKS[line][word];\n");
+		source.append("\t}\n\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/**
+	 * Appends the unrolled check of one line.
+	 *
+	 * @param source the source to append to
+	 * @param mask   the mask words of the line
+	 */
+	private static void appendLineCheck(final StringBuilder source, final long[] mask) {
+		List<String> checks = new ArrayList<String>();
+		for (int word = 0; word < mask.length; word++) {
+			if (mask[word] != 0) {
+				String literal = toLiteral(mask[word]);
+				checks.add("(w" + word + " & " + literal + ") == " + literal);
+			}
+		}
+		if (checks.size() == 1) {
+			source.append(checks.get(0));
+			return;
+		}
+		source.append('(').append(String.join(" && ", checks)).append(')');
+	}
+
+	/**
+	 * Generates the source of the registry of all checkers.
+	 *
+	 * @param minSize the smallest generated size
+	 * @param maxSize the biggest generated size
+	 * @return the java source of the registry
+	 */
+	private static String generateRegistry(final int minSize, final int maxSize) {
+		StringBuilder source = new StringBuilder();
+		appendHeader(source);
+		source.append("import de.sengerts.tictactoe.engine.WinChecker;\n\n");
+		source.append("/**\n");
+		source.append(" * Registry of the generated win checkers of the classic rules.\n");
+		source.append(" *\n");
+		source.append(" * Generated by WinCheckerGenerator, do not edit.\n");
+		source.append(" */\n");
+		source.append("public final class GeneratedWinCheckers {\n\n");
+		source.append("\tpublic static final int MIN_SIZE = ").append(minSize).append(";\n\n");
+		source.append("\tpublic static final int MAX_SIZE = ").append(maxSize).append(";\n\n");
+		for (int size = minSize; size <= maxSize; size++) {
+			source.append("\tprivate static final WinChecker CHECKER_").append(size).append(" = new ")
+					.append(getClassName(size)).append("();\n");
+		}
+		source.append("\n\tprivate GeneratedWinCheckers() {\n\t}\n\n");
+		source.append("\t/**\n");
+		source.append("\t * Gets the generated win checker of a size.\n");
+		source.append("\t *\n");
+		source.append("\t * @param size the amount of rows and columns of the board\n");
+		source.append("\t * @return the checker of the given size or null if none was generated\n");
+		source.append("\t */\n");
+		source.append("\tpublic static WinChecker get(final int size) {\n");
+		source.append("\t\tswitch (size) {\n");
+		for (int size = minSize; size <= maxSize; size++) {
+			source.append("\t\tcase ").append(size).append(":\n");
+			source.append("\t\t\treturn CHECKER_").append(size).append(";\n");
+		}
+		source.append("\t\tdefault:\n");
+		source.append("\t\t\treturn null;\n");
+		source.append("\t\t}\n");
+		source.append("\t}\n\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	/**
+	 * Appends the package declaration of a generated class.
+	 *
+	 * @param source the source to append to
+	 */
+	private static void appendHeader(final StringBuilder source) {
+		source.append("package ").append(PACKAGE).append(";\n\n");
+	}
+
+	/**
+	 * Formats a mask word as a java long literal.
+	 *
+	 * @param value the mask word
+	 * @return the hexadecimal literal of the word
+	 */
+	private static String toLiteral(final long value) {
+		return String.format(Locale.ROOT, "0x%XL", value);
+	}
+
+	/**
+	 * Writes a generated source file if its content changed.
+	 *
+	 * @param file   the file to write
+	 * @param source the java source to write
+	 * @throws IOException if the file can not be written
+	 */
+	private static void write(final File file, final String source) throws IOException {
+		byte[] content = source.getBytes(StandardCharsets.UTF_8);
+		if (file.isFile() && Arrays.equals(Files.readAllBytes(file.toPath()), content)) {
+			return;
+		}
+		Files.write(file.toPath(), content);
+	}
+
+}
@@ -0,0 +1,436 @@
+package de.sengerts.tictactoe.engine;
+
+/**
+ * Class representing a tic tac toe position as one bitboard per side.
+ *
+ * Cells are indexed row by row, so the cell at a given row and column has the
+ * index row * columnsCount + column, which is the same index a territory uses
+ * for its tiles. Inside the bitboards every row is followed by one bit that is
+ * never set, so shifting a bitboard by one row, one column or one diagonal step
+ * never carries a run of marks over into the next row. Sides are identified by the ordinal of their player sign (X is
+ * 0, O is 1). Besides the bitboards, a board keeps track of how many cells each
+ * side has marked in every winning line, of how many lines are already blocked
+ * by both sides and of the Zobrist hash of the position, so wins, dead
+ * positions, evaluations and hashes need no scanning of the cells.
+ *
+ * @author Tobias Senger
+ */
+public final class Board {
+
+	/**
+	 * Class variable that stores the amount of sides of a tic tac toe game.
+	 */
+	public static final int SIDES = 2;
+
+	/**
+	 * Class variable that stores the value returned for cells marked by no side.
+	 */
+	public static final int NO_SIDE = -1;
+
+	/**
+	 * Instance variable that stores the winning lines of this board.
+	 */
+	private final Lines lines;
+
+	/**
+	 * Instance variable that stores the bitboard of every side.
+	 */
+	private final long[][] bits;
+
+	/**
+	 * Instance variable that stores the distance between two rows in the
+	 * bitboards, which is the amount of columns plus one padding bit.
+	 */
+	private final int stride;
+
+	/**
+	 * Instance variable that stores a scratch bitboard for run detection.
+	 */
+	private final long[] runs;
+
+	/**
+	 * Instance variable that stores a second scratch bitboard for run detection.
+	 */
+	private final long[] shifted;
+
+	/**
+	 * Instance variable that stores the amount of marked cells of every side in
+	 * every line.
+	 */
+	private final int[][] lineCounts;
+
+	/**
+	 * Instance variable that stores the amount of marked cells.
+	 */
+	private int markedCount;
+
+	/**
+	 * Instance variable that stores the amount of lines marked by both sides,
+	 * which can not be won anymore.
+	 */
+	private int deadLinesCount;
+
+	/**
+	 * Instance variable that stores the Zobrist hash of this position.
+	 */
+	private long hash;
+
+	/**
+	 * Another constructor for class Board.
+	 *
+	 * Creates a new empty board with the given winning lines.
+	 *
+	 * @param lines the winning lines of the board
+	 * @throws IllegalArgumentException if given lines are null
+	 */
+	public Board(final Lines lines) {
+		if (lines == null) {
+			throw new IllegalArgumentException("Given lines can not be null!");
+		}
+		this.lines = lines;
+		this.stride = lines.getColumnsCount() + 1;
+		int wordsCount = (lines.getRowsCount() * stride + 63) >>> 6;
+		this.bits = new long[SIDES][wordsCount];
+		this.runs = new long[wordsCount];
+		this.shifted = new long[wordsCount];
+		this.lineCounts = new int[SIDES][lines.getLinesCount()];
+		this.hash = Zobrist.getSizeKey(lines.getRowsCount(), lines.getColumnsCount());
+	}
+
+	/**
+	 * Another constructor for class Board.
+	 *
+	 * Creates a new board as an independent copy of the given board.
+	 *
+	 * @param board the board to copy
+	 */
+	private Board(final Board board) {
+		this.lines = board.lines;
+		this.stride = board.stride;
+		this.runs = new long[board.runs.length];
+		this.shifted = new long[board.shifted.length];
+		this.bits = new long[SIDES][];
+		this.lineCounts = new int[SIDES][];
+		for (int side = 0; side < SIDES; side++) {
+			this.bits[side] = board.bits[side].clone();
+			this.lineCounts[side] = board.lineCounts[side].clone();
+		}
+		this.markedCount = board.markedCount;
+		this.deadLinesCount = board.deadLinesCount;
+		this.hash = board.hash;
+	}
+
+	/**
+	 * Gets the opponent of a side.
+	 *
+	 * @param side the side
+	 * @return the opponent of the given side
+	 */
+	public static int getOpponent(final int side) {
+		return side ^ 1;
+	}
+
+	/**
+	 * Marks a cell.
+	 *
+	 * Marks the given empty cell for the given side and updates the line counts,
+	 * the amount of dead lines and the hash of this board.
+	 *
+	 * @param cell the cell index to mark
+	 * @param side the side to mark the cell for
+	 * @throws IllegalArgumentException if given cell is already marked
+	 */
+	public void mark(final int cell, final int side) {
+		int index = getBitIndex(cell);
+		int word = index >>> 6;
+		long bit = 1L << index;
+		if (((bits[0][word] | bits[1][word]) & bit) != 0) {
+			throw new IllegalArgumentException("Given cell is already marked!");
+		}
+		bits[side][word] |= bit;
+		int[] counts = lineCounts[side];
+		int[] opponentCounts = lineCounts[getOpponent(side)];
+		for (int line : lines.getCellLines(cell)) {
+			if (counts[line]++ == 0 && opponentCounts[line] != 0) {
+				deadLinesCount++;
+			}
+		}
+		markedCount++;
+		hash ^= Zobrist.getCellKey(cell, side);
+	}
+
+	/**
+	 * Unmarks a cell.
+	 *
+	 * Removes the mark of the given side from the given cell, undoing a previous
+	 * call of {@link #mark(int, int)}.
+	 *
+	 * @param cell the cell index to unmark
+	 * @param side the side that marked the cell
+	 * @throws IllegalArgumentException if given cell is not marked by given side
+	 */
+	public void unmark(final int cell, final int side) {
+		int index = getBitIndex(cell);
+		int word = index >>> 6;
+		long bit = 1L << index;
+		if ((bits[side][word] & bit) == 0) {
+			throw new IllegalArgumentException("Given cell is not marked by given side!");
+		}
+		bits[side][word] &= ~bit;
+		int[] counts = lineCounts[side];
+		int[] opponentCounts = lineCounts[getOpponent(side)];
+		for (int line : lines.getCellLines(cell)) {
+			if (--counts[line] == 0 && opponentCounts[line] != 0) {
+				deadLinesCount--;
+			}
+		}
+		markedCount--;
+		hash ^= Zobrist.getCellKey(cell, side);
+	}
+
+	/**
+	 * Gets whether marking a cell has completed a line.
+	 *
+	 * Gets whether one of the lines running through the given cell is completely
+	 * marked by the given side, which is the case right after the side won with a
+	 * mark on this cell.
+	 *
+	 * @param cell the cell index that has been marked last
+	 * @param side the side that marked the cell
+	 * @return true if the given side completed a line through the cell, otherwise
+	 *         false
+	 */
+	public boolean isWinningCell(final int cell, final int side) {
+		int[] counts = lineCounts[side];
+		for (int line : lines.getCellLines(cell)) {
+			if (counts[line] == lines.getLineLength(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets whether a side has marked enough cells in a row to win.
+	 *
+	 * Gets whether the given side has marked at least the win length of the lines
+	 * of this board in a row horizontally, vertically or diagonally anywhere on
+	 * the board. Instead of looking at single cells, the side's bitboard is
+	 * and-ed with copies of itself shifted by one step in the checked direction,
+	 * doubling the length of the detected runs with every shift, so only about
+	 * log2(k) shifts of the whole bitboard are needed per direction.
+	 *
+	 * @param side the side to check
+	 * @return true if the side has a run of at least the win length, otherwise
+	 *         false
+	 */
+	public boolean hasWinningRun(final int side) {
+		return hasRun(side, 1) || hasRun(side, stride) || hasRun(side, stride + 1) || hasRun(side, stride - 1);
+	}
+
+	/**
+	 * Gets whether a side has a run of the win length in one direction.
+	 *
+	 * @param side the side to check
+	 * @param step the bit distance between two neighbouring cells of the run
+	 * @return true if the side has a run in the given direction, otherwise false
+	 */
+	private boolean hasRun(final int side, final int step) {
+		int winLength = lines.getWinLength();
+		System.arraycopy(bits[side], 0, runs, 0, runs.length);
+		// Every set bit in runs marks the start of a run of at least length cells
+		int length = 1;
+		while (length < winLength) {
+			int extension = Math.min(length, winLength - length);
+			shiftRight(runs, extension * step, shifted);
+			boolean any = false;
+			for (int word = 0; word < runs.length; word++) {
+				runs[word] &= shifted[word];
+				any |= runs[word] != 0;
+			}
+			if (!any) {
+				return false;
+			}
+			length += extension;
+		}
+		for (long word : runs) {
+			if (word != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Shifts a bitboard towards lower bit indices.
+	 *
+	 * @param source      the bitboard to shift
+	 * @param distance    the amount of bits to shift by
+	 * @param destination the bitboard to write the shifted bits to
+	 */
+	private static void shiftRight(final long[] source, final int distance, final long[] destination) {
+		int wordShift = distance >>> 6;
+		int bitShift = distance & 63;
+		for (int word = 0; word < destination.length; word++) {
+			int low = word + wordShift;
+			long value = 0;
+			if (low < source.length) {
+				value = source[low] >>> bitShift;
+				if (bitShift != 0 && low + 1 < source.length) {
+					value |= source[low + 1] << (64 - bitShift);
+				}
+			}
+			destination[word] = value;
+		}
+	}
+
+	/**
+	 * Gets the index of the bit of a cell in the padded bitboards.
+	 *
+	 * @param cell the cell index
+	 * @return the bit index of the cell
+	 */
+	private int getBitIndex(final int cell) {
+		return cell + cell / lines.getColumnsCount();
+	}
+
+	/**
+	 * Gets whether a cell is empty.
+	 *
+	 * @param cell the cell index
+	 * @return true if no side marked the cell, otherwise false
+	 */
+	public boolean isEmpty(final int cell) {
+		int index = getBitIndex(cell);
+		return ((bits[0][index >>> 6] | bits[1][index >>> 6]) & (1L << index)) == 0;
+	}
+
+	/**
+	 * Gets the side that marked a cell.
+	 *
+	 * @param cell the cell index
+	 * @return the side that marked the cell or {@link #NO_SIDE} if it is empty
+	 */
+	public int getSide(final int cell) {
+		int index = getBitIndex(cell);
+		long bit = 1L << index;
+		if ((bits[0][index >>> 6] & bit) != 0) {
+			return 0;
+		}
+		if ((bits[1][index >>> 6] & bit) != 0) {
+			return 1;
+		}
+		return NO_SIDE;
+	}
+
+	/**
+	 * Gets whether every cell is marked.
+	 *
+	 * @return true if every cell of this board is marked, otherwise false
+	 */
+	public boolean isFull() {
+		return markedCount == lines.getCellsCount();
+	}
+
+	/**
+	 * Gets whether any side can still win.
+	 *
+	 * Gets whether at least one line is not yet marked by both sides. If every
+	 * line is blocked, the game can only end in a draw, no matter how the
+	 * remaining cells are marked.
+	 *
+	 * @return true if at least one line can still be completed, otherwise false
+	 */
+	public boolean hasWinnableLine() {
+		return deadLinesCount < lines.getLinesCount();
+	}
+
+	/**
+	 * Gets the amount of cells a side marked in a line.
+	 *
+	 * @param side the side
+	 * @param line the line index
+	 * @return the amount of cells in the line marked by the side
+	 */
+	public int getLineCount(final int side, final int line) {
+		return lineCounts[side][line];
+	}
+
+	/**
+	 * Gets a word of the bitboard of a side.
+	 *
+	 * The bitboards are padded with one unused bit after every row, see
+	 * {@link #getStride()}.
+	 *
+	 * @param side the side
+	 * @param word the index of the 64 bit word
+	 * @return the bits of the given side in the given word
+	 */
+	public long getWord(final int side, final int word) {
+		return bits[side][word];
+	}
+
+	/**
+	 * Gets the amount of words of each bitboard.
+	 *
+	 * @return the amount of 64 bit words per side
+	 */
+	public int getWordsCount() {
+		return bits[0].length;
+	}
+
+	/**
+	 * Gets the distance between two rows in the bitboards.
+	 *
+	 * @return the amount of columns plus one padding bit
+	 */
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * Creates a copy of this board.
+	 *
+	 * @return an independent copy of this board
+	 */
+	public Board copy() {
+		return new Board(this);
+	}
+
+	/**
+	 * Gets the winning lines.
+	 *
+	 * @return the winning lines of this board
+	 */
+	public /* @ pure @ */ Lines getLines() {
+		return lines;
+	}
+
+	/**
+	 * Gets the amount of cells.
+	 *
+	 * @return the amount of cells of this board
+	 */
+	public /* @ pure @ */ int getCellsCount() {
+		return lines.getCellsCount();
+	}
+
+	/**
+	 * Gets the amount of marked cells.
+	 *
+	 * @return the amount of cells marked by any side
+	 */
+	public /* @ pure @ */ int getMarkedCount() {
+		return markedCount;
+	}
+
+	/**
+	 * Gets the Zobrist hash.
+	 *
+	 * @return the Zobrist hash of this position
+	 */
+	public /* @ pure @ */ long getHash() {
+		return hash;
+	}
+
+}
@@ -0,0 +1,328 @@
+package de.sengerts.tictactoe.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable class representing all winning lines of a tic tac toe territory.
+ *
+ * A line is a list of cell indices that one side has to mark completely to win
+ * the game. With the m,n,k rules these are all horizontal, vertical and
+ * diagonal runs of k cells of a territory with m rows and n columns. The classic
+ * rules are the special case of a square territory with k equal to its size,
+ * whose lines are all rows, all columns and both main diagonals.
+ *
+ * @author Tobias Senger
+ */
+public final class Lines {
+
+	/**
+	 * Class variable that caches the lines by territory size and win length, so
+	 * all boards with the same rules share one lines object.
+	 */
+	private static final Map<Long, Lines> LINES = new ConcurrentHashMap<Long, Lines>();
+
+	/**
+	 * Instance variable that stores the amount of rows of the territory.
+	 */
+	private final int rowsCount;
+
+	/**
+	 * Instance variable that stores the amount of columns of the territory.
+	 */
+	private final int columnsCount;
+
+	/**
+	 * Instance variable that stores the amount of cells in a row needed to win.
+	 */
+	private final int winLength;
+
+	/**
+	 * Instance variable that stores the cell indices of every line.
+	 */
+	private final int[][] lineCells;
+
+	/**
+	 * Instance variable that stores the indices of all lines running through a
+	 * cell, indexed by the cell index.
+	 */
+	private final int[][] cellLines;
+
+	/**
+	 * Instance variable that stores all cell indices ordered by how promising a
+	 * move on them usually is (most lines through the cell first, then closest to
+	 * the center).
+	 */
+	private final int[] cellOrder;
+
+	/**
+	 * Another constructor for class Lines.
+	 *
+	 * Creates a new object of type Lines for a territory with the given rows and
+	 * columns counts containing the given lines.
+	 *
+	 * @param rowsCount    the amount of rows of the territory
+	 * @param columnsCount the amount of columns of the territory
+	 * @param winLength    the amount of cells in a row needed to win
+	 * @param lineCells    the cell indices of every line
+	 */
+	private Lines(final int rowsCount, final int columnsCount, final int winLength, final int[][] lineCells) {
+		this.rowsCount = rowsCount;
+		this.columnsCount = columnsCount;
+		this.winLength = winLength;
+		this.lineCells = lineCells;
+		this.cellLines = initCellLines();
+		this.cellOrder = initCellOrder();
+	}
+
+	/**
+	 * Gets the classic lines for a square territory.
+	 *
+	 * Gets the lines of the classic rules, all rows, all columns and both main
+	 * diagonals, for a square territory with the given amount of rows and columns.
+	 *
+	 * @param size the amount of rows and columns of the territory
+	 * @return the classic lines for the given size
+	 * @throws IllegalArgumentException if given size is not positive
+	 */
+	public static Lines classic(final int size) {
+		return mnk(size, size, size);
+	}
+
+	/**
+	 * Gets the m,n,k lines for a territory.
+	 *
+	 * Gets all horizontal, vertical and diagonal runs of the given win length in a
+	 * territory with the given amount of rows and columns.
+	 *
+	 * @param rowsCount    the amount of rows of the territory
+	 * @param columnsCount the amount of columns of the territory
+	 * @param winLength    the amount of cells in a row needed to win
+	 * @return the lines for the given rules
+	 * @throws IllegalArgumentException if given counts are not positive or the
+	 *                                  win length does not fit into the territory
+	 */
+	public static Lines mnk(final int rowsCount, final int columnsCount, final int winLength) {
+		if (rowsCount <= 0 || columnsCount <= 0 || winLength <= 0) {
+			throw new IllegalArgumentException("Given counts and win length must be positive!");
+		}
+		if (winLength > Math.max(rowsCount, columnsCount)) {
+			throw new IllegalArgumentException("Given win length does not fit into the territory!");
+		}
+		long key = (long) rowsCount << 40 | (long) columnsCount << 20 | winLength;
+		return LINES.computeIfAbsent(key, k -> createMnk(rowsCount, columnsCount, winLength));
+	}
+
+	/**
+	 * Creates the m,n,k lines for a territory.
+	 *
+	 * Creates the runs ordered by direction, first all horizontal ones, then the
+	 * vertical ones, the diagonal ones running down to the right and finally the
+	 * ones running down to the left. For the classic rules this is the order rows,
+	 * columns, left diag and right diag.
+	 *
+	 * @param rowsCount    the amount of rows of the territory
+	 * @param columnsCount the amount of columns of the territory
+	 * @param winLength    the amount of cells in a row needed to win
+	 * @return the new lines for the given rules
+	 */
+	private static Lines createMnk(final int rowsCount, final int columnsCount, final int winLength) {
+		List<int[]> lineCells = new ArrayList<int[]>();
+		// Horizontal runs, row by row
+		for (int row = 0; row < rowsCount; row++) {
+			for (int column = 0; column + winLength <= columnsCount; column++) {
+				lineCells.add(createRun(columnsCount, winLength, row, column, 0, 1));
+			}
+		}
+		// Vertical runs, column by column
+		for (int column = 0; column < columnsCount; column++) {
+			for (int row = 0; row + winLength <= rowsCount; row++) {
+				lineCells.add(createRun(columnsCount, winLength, row, column, 1, 0));
+			}
+		}
+		// Diagonal runs down to the right
+		for (int row = 0; row + winLength <= rowsCount; row++) {
+			for (int column = 0; column + winLength <= columnsCount; column++) {
+				lineCells.add(createRun(columnsCount, winLength, row, column, 1, 1));
+			}
+		}
+		// Diagonal runs down to the left
+		for (int row = 0; row + winLength <= rowsCount; row++) {
+			for (int column = winLength - 1; column < columnsCount; column++) {
+				lineCells.add(createRun(columnsCount, winLength, row, column, 1, -1));
+			}
+		}
+		return new Lines(rowsCount, columnsCount, winLength, lineCells.toArray(new int[lineCells.size()][]));
+	}
+
+	/**
+	 * Creates the cell indices of one run.
+	 *
+	 * @param columnsCount the amount of columns of the territory
+	 * @param winLength    the amount of cells of the run
+	 * @param row          the row of the first cell
+	 * @param column       the column of the first cell
+	 * @param rowStep      the row difference between two cells of the run
+	 * @param columnStep   the column difference between two cells of the run
+	 * @return the cell indices of the run
+	 */
+	private static int[] createRun(final int columnsCount, final int winLength, final int row, final int column,
+			final int rowStep, final int columnStep) {
+		int[] cells = new int[winLength];
+		for (int i = 0; i < winLength; i++) {
+			cells[i] = (row + i * rowStep) * columnsCount + column + i * columnStep;
+		}
+		return cells;
+	}
+
+	/**
+	 * Initializes the lines running through every cell.
+	 *
+	 * @return the indices of the lines running through every cell
+	 */
+	private int[][] initCellLines() {
+		int[] counts = new int[getCellsCount()];
+		for (int[] cells : lineCells) {
+			for (int cell : cells) {
+				counts[cell]++;
+			}
+		}
+		int[][] result = new int[getCellsCount()][];
+		for (int cell = 0; cell < result.length; cell++) {
+			result[cell] = new int[counts[cell]];
+			counts[cell] = 0;
+		}
+		for (int line = 0; line < lineCells.length; line++) {
+			for (int cell : lineCells[line]) {
+				result[cell][counts[cell]++] = line;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Initializes the cell order used for move ordering.
+	 *
+	 * @return all cell indices ordered by how promising a move on them is
+	 */
+	private int[] initCellOrder() {
+		Integer[] cells = new Integer[getCellsCount()];
+		for (int cell = 0; cell < cells.length; cell++) {
+			cells[cell] = cell;
+		}
+		Arrays.sort(cells, Comparator.<Integer>comparingInt(cell -> -cellLines[cell].length)
+				.thenComparingInt(this::getDistanceToCenter).thenComparingInt(cell -> cell));
+		return Arrays.stream(cells).mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Gets the doubled manhattan distance of a cell to the center of the
+	 * territory.
+	 *
+	 * @param cell the cell index
+	 * @return the doubled distance of the cell to the center
+	 */
+	private int getDistanceToCenter(final int cell) {
+		int row = cell / columnsCount;
+		int column = cell % columnsCount;
+		return Math.abs(2 * row - (rowsCount - 1)) + Math.abs(2 * column - (columnsCount - 1));
+	}
+
+	/**
+	 * Gets the amount of rows of the territory.
+	 *
+	 * @return the amount of rows
+	 */
+	public /* @ pure @ */ int getRowsCount() {
+		return rowsCount;
+	}
+
+	/**
+	 * Gets the amount of columns of the territory.
+	 *
+	 * @return the amount of columns
+	 */
+	public /* @ pure @ */ int getColumnsCount() {
+		return columnsCount;
+	}
+
+	/**
+	 * Gets the win length.
+	 *
+	 * @return the amount of cells in a row needed to win
+	 */
+	public /* @ pure @ */ int getWinLength() {
+		return winLength;
+	}
+
+	/**
+	 * Gets the amount of cells of the territory.
+	 *
+	 * @return the amount of cells
+	 */
+	public /* @ pure @ */ int getCellsCount() {
+		return rowsCount * columnsCount;
+	}
+
+	/**
+	 * Gets the amount of lines.
+	 *
+	 * @return the amount of winning lines
+	 */
+	public /* @ pure @ */ int getLinesCount() {
+		return lineCells.length;
+	}
+
+	/**
+	 * Gets the amount of cells of a line.
+	 *
+	 * @param line the line index
+	 * @return the amount of cells that have to be marked to complete the line
+	 */
+	public /* @ pure @ */ int getLineLength(final int line) {
+		return lineCells[line].length;
+	}
+
+	/**
+	 * Gets the cells of a line.
+	 *
+	 * Returns the internal array of cell indices of the given line, which must not
+	 * be modified.
+	 *
+	 * @param line the line index
+	 * @return the cell indices of the line
+	 */
+	public /* @ pure @ */ int[] getLineCells(final int line) {
+		return lineCells[line];
+	}
+
+	/**
+	 * Gets the lines running through a cell.
+	 *
+	 * Returns the internal array of line indices of the given cell, which must not
+	 * be modified.
+	 *
+	 * @param cell the cell index
+	 * @return the indices of all lines running through the cell
+	 */
+	public /* @ pure @ */ int[] getCellLines(final int cell) {
+		return cellLines[cell];
+	}
+
+	/**
+	 * Gets the cell order used for move ordering.
+	 *
+	 * Returns the internal array of all cell indices ordered by how promising a
+	 * move on them usually is, which must not be modified.
+	 *
+	 * @return the ordered cell indices
+	 */
+	public /* @ pure @ */ int[] getCellOrder() {
+		return cellOrder;
+	}
+
+}
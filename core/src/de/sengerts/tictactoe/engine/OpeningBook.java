@@ -0,0 +1,372 @@
+package de.sengerts.tictactoe.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class representing a memory mapped opening book.
+ *
+ * A book maps the canonical positions of the first moves of games
+ * ({@link Symmetries}) to the move a deep search found best in them. The book
+ * file holds a header followed by one fixed size entry per position, sorted by
+ * the unsigned key of the position, which combines the canonical hash, the side
+ * to move and the win length, so one book serves every board size and win
+ * length.
+ *
+ * The file is mapped into memory when a book is opened and probed with a
+ * binary search over the mapping, so probing a position reads a handful of
+ * pages the operating system keeps cached for all processes and allocates
+ * nothing. Positions with more marks than the deepest position of the book are
+ * answered without touching the mapping at all. All methods of a book are
+ * thread safe.
+ *
+ * @author Tobias Senger
+ */
+public final class OpeningBook {
+
+	/**
+	 * Class variable that stores the cell probing returns for a position the
+	 * book does not know.
+	 */
+	public static final int NO_MOVE = -1;
+
+	/**
+	 * Class variable that stores the magic bytes the book file starts with.
+	 */
+	private static final byte[] MAGIC = { 'T', 'T', 'T', 'B' };
+
+	/**
+	 * Class variable that stores the version of the book file.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Class variable that stores the size of the header of the book file: the
+	 * magic bytes, the version, the most marks of a position of the book, two
+	 * reserved bytes and the amount of entries.
+	 */
+	private static final int HEADER_BYTES = 16;
+
+	/**
+	 * Class variable that stores the size of an entry of the book file: the key
+	 * of the position, the best cell in the canonical position and its score.
+	 */
+	private static final int ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+	/**
+	 * Class variable that stores the file name extension of the file written
+	 * before it replaces the book file.
+	 */
+	private static final String TEMPORARY_EXTENSION = ".tmp";
+
+	/**
+	 * Instance variable that stores the mapped book file.
+	 */
+	private final ByteBuffer mapping;
+
+	/**
+	 * Instance variable that stores the amount of entries.
+	 */
+	private final int entriesCount;
+
+	/**
+	 * Instance variable that stores the most marks of a position of the book.
+	 */
+	private final int maxMarkedCount;
+
+	/**
+	 * Another constructor for class OpeningBook.
+	 *
+	 * Opens the given book file and maps it into memory. The file is closed
+	 * right away, the mapping is released once the book is garbage collected.
+	 *
+	 * @param file the book file
+	 * @throws IOException if the file can not be read or does not hold a book of
+	 *                     a known version
+	 * @throws IllegalArgumentException if given file is null
+	 */
+	public OpeningBook(final File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Given file can not be null!");
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+				throw new IOException("Opening book has an invalid size!");
+			}
+			this.mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (mapping.get(i) != MAGIC[i]) {
+				throw new IOException("File does not hold an opening book!");
+			}
+		}
+		if (mapping.get(MAGIC.length) != VERSION) {
+			throw new IOException("File holds an opening book of an unknown version!");
+		}
+		this.maxMarkedCount = mapping.get(MAGIC.length + 1) & 0xFF;
+		long count = mapping.getLong(8);
+		if (count < 0 || mapping.capacity() != HEADER_BYTES + count * ENTRY_BYTES) {
+			throw new IOException("Opening book has an invalid size!");
+		}
+		this.entriesCount = (int) count;
+	}
+
+	/**
+	 * Probes a position.
+	 *
+	 * @param board the board of the position, which is not changed
+	 * @param side the side to move
+	 * @return the empty cell the book knows as best move of the given side on
+	 *         the given board or {@link #NO_MOVE} if the book does not know the
+	 *         position
+	 * @throws IllegalArgumentException if given board is null
+	 */
+	public int probe(final Board board, final int side) {
+		if (board == null) {
+			throw new IllegalArgumentException("Given board can not be null!");
+		}
+		if (board.getMarkedCount() > maxMarkedCount || entriesCount == 0) {
+			return NO_MOVE;
+		}
+		Symmetries symmetries = Symmetries.get(board.getLines());
+		int symmetry = getCanonicalSymmetry(board, symmetries);
+		long key = getKey(board, side, symmetries, symmetry);
+
+		int low = 0;
+		int high = entriesCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = HEADER_BYTES + middle * ENTRY_BYTES;
+			int comparison = Long.compareUnsigned(mapping.getLong(offset), key);
+			if (comparison == 0) {
+				int canonicalCell = mapping.getInt(offset + Long.BYTES);
+				if (canonicalCell < 0 || canonicalCell >= board.getCellsCount()) {
+					return NO_MOVE;
+				}
+				int cell = symmetries.unmapCell(symmetry, canonicalCell);
+				// Two positions with the same key
+				return board.isEmpty(cell) ? cell : NO_MOVE;
+			} else if (comparison < 0) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return NO_MOVE;
+	}
+
+	/**
+	 * Gets the canonical symmetry of a position without allocating.
+	 *
+	 * Chooses the same symmetry as {@link Symmetries#getCanonicalSymmetry(Board)}
+	 * by hashing the marked cells of the bitboards once per symmetry, which for
+	 * the few marks of an opening position is cheaper than looking at every
+	 * cell.
+	 *
+	 * @param board the board of the position
+	 * @param symmetries the symmetries of the board
+	 * @return the symmetry whose hash of the marked cells is the smallest
+	 *         unsigned one
+	 */
+	public static int getCanonicalSymmetry(final Board board, final Symmetries symmetries) {
+		int canonicalSymmetry = 0;
+		long canonicalHash = 0;
+		for (int symmetry = 0; symmetry < symmetries.getCount(); symmetry++) {
+			long hash = getMarksHash(board, symmetries, symmetry);
+			if (symmetry == 0 || Long.compareUnsigned(hash, canonicalHash) < 0) {
+				canonicalSymmetry = symmetry;
+				canonicalHash = hash;
+			}
+		}
+		return canonicalSymmetry;
+	}
+
+	/**
+	 * Gets the hash of the marked cells of a position under a symmetry.
+	 *
+	 * @param board the board of the position
+	 * @param symmetries the symmetries of the board
+	 * @param symmetry the symmetry
+	 * @return the hash of the marked cells mapped by the given symmetry,
+	 *         without the key of the board size
+	 */
+	private static long getMarksHash(final Board board, final Symmetries symmetries, final int symmetry) {
+		int stride = board.getStride();
+		long hash = 0;
+		for (int side = 0; side < Board.SIDES; side++) {
+			for (int word = 0; word < board.getWordsCount(); word++) {
+				long bits = board.getWord(side, word);
+				while (bits != 0) {
+					int index = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+					int cell = index / stride * (stride - 1) + index % stride;
+					hash ^= Zobrist.getCellKey(symmetries.mapCell(symmetry, cell), side);
+					bits &= bits - 1;
+				}
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the key of a position.
+	 *
+	 * @param board the board of the position
+	 * @param side the side to move
+	 * @param symmetries the symmetries of the board
+	 * @param symmetry the canonical symmetry of the board
+	 * @return the key of the canonical position, the side to move and the win
+	 *         length of the board in the book
+	 */
+	public static long getKey(final Board board, final int side, final Symmetries symmetries,
+			final int symmetry) {
+		Lines lines = board.getLines();
+		return Zobrist.getSizeKey(lines.getRowsCount(), lines.getColumnsCount())
+				^ getMarksHash(board, symmetries, symmetry) ^ Zobrist.getSideKey(side)
+				^ Zobrist.getWinLengthKey(lines.getWinLength());
+	}
+
+	/**
+	 * Writes a book file.
+	 *
+	 * Sorts the given entries by their unsigned keys and writes them to a
+	 * temporary file, which then replaces the given file, so a book being
+	 * probed by a running process is never seen half written.
+	 *
+	 * @param file the book file
+	 * @param maxMarkedCount the most marks of a position of the book
+	 * @param keys the keys of the positions ({@link #getKey(Board, int, Symmetries, int)}),
+	 *             which are sorted in place
+	 * @param cells the best cells in the canonical positions, which are sorted
+	 *              along with the keys
+	 * @param scores the scores of the best cells, which are sorted along with
+	 *               the keys
+	 * @param count the amount of entries
+	 * @throws IOException if the file can not be written
+	 * @throws IllegalArgumentException if given file or arrays are null, given
+	 *                                  count exceeds an array or given maximum
+	 *                                  is not between zero and 255
+	 */
+	public static void write(final File file, final int maxMarkedCount, final long[] keys, final int[] cells,
+			final int[] scores, final int count) throws IOException {
+		if (file == null || keys == null || cells == null || scores == null) {
+			throw new IllegalArgumentException("Given file, keys, cells and scores can not be null!");
+		}
+		if (count < 0 || count > keys.length || count > cells.length || count > scores.length) {
+			throw new IllegalArgumentException("Given count exceeds the given entries!");
+		}
+		if (maxMarkedCount < 0 || maxMarkedCount > 0xFF) {
+			throw new IllegalArgumentException("Given max marked count must be between zero and 255!");
+		}
+		sort(keys, cells, scores, 0, count - 1);
+
+		File temporaryFile = new File(file.getPath() + TEMPORARY_EXTENSION);
+		try (FileOutputStream fileOut = new FileOutputStream(temporaryFile);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+			out.write(MAGIC);
+			out.write(new byte[] { VERSION, (byte) maxMarkedCount, 0, 0 });
+			out.writeLong(count);
+			for (int i = 0; i < count; i++) {
+				out.writeLong(keys[i]);
+				out.writeInt(cells[i]);
+				out.writeInt(scores[i]);
+			}
+			out.flush();
+			fileOut.getFD().sync();
+		}
+		Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Sorts entries by their unsigned keys with a quicksort.
+	 *
+	 * @param keys the keys of the entries
+	 * @param cells the cells of the entries
+	 * @param scores the scores of the entries
+	 * @param low the index of the first entry to sort
+	 * @param high the index of the last entry to sort
+	 */
+	private static void sort(final long[] keys, final int[] cells, final int[] scores, int low, int high) {
+		while (low < high) {
+			long pivot = keys[(low + high) >>> 1];
+			int left = low;
+			int right = high;
+			while (left <= right) {
+				while (Long.compareUnsigned(keys[left], pivot) < 0) {
+					left++;
+				}
+				while (Long.compareUnsigned(keys[right], pivot) > 0) {
+					right--;
+				}
+				if (left <= right) {
+					swap(keys, cells, scores, left++, right--);
+				}
+			}
+			if (right - low < high - left) {
+				sort(keys, cells, scores, low, right);
+				low = left;
+			} else {
+				sort(keys, cells, scores, left, high);
+				high = right;
+			}
+		}
+	}
+
+	/**
+	 * Swaps two entries.
+	 *
+	 * @param keys the keys of the entries
+	 * @param cells the cells of the entries
+	 * @param scores the scores of the entries
+	 * @param first the index of the first entry
+	 * @param second the index of the second entry
+	 */
+	private static void swap(final long[] keys, final int[] cells, final int[] scores, final int first,
+			final int second) {
+		long key = keys[first];
+		keys[first] = keys[second];
+		keys[second] = key;
+		int cell = cells[first];
+		cells[first] = cells[second];
+		cells[second] = cell;
+		int score = scores[first];
+		scores[first] = scores[second];
+		scores[second] = score;
+	}
+
+	/**
+	 * Gets the amount of entries.
+	 *
+	 * @return the amount of positions of this book
+	 */
+	public /* @ pure @ */ int getEntriesCount() {
+		return entriesCount;
+	}
+
+	/**
+	 * Gets the most marks of a position.
+	 *
+	 * @return the most marks of a position of this book
+	 */
+	public /* @ pure @ */ int getMaxMarkedCount() {
+		return maxMarkedCount;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "OpeningBook(entries=" + entriesCount + ", maxMarkedCount=" + maxMarkedCount + ")";
+	}
+
+}
@@ -0,0 +1,74 @@
+package de.sengerts.tictactoe.engine;
+
+/**
+ * Class representing the generic win checker working with any lines.
+ *
+ * The checker uses the bit-parallel run detection of the board
+ * ({@link Board#hasWinningRun(int)}) and computes its line masks from the
+ * lines it was created for.
+ *
+ * @author Tobias Senger
+ */
+public final class RunWinChecker implements WinChecker {
+
+	/**
+	 * Instance variable that stores the mask of every line.
+	 */
+	private final long[][] lineMasks;
+
+	/**
+	 * Another constructor for class RunWinChecker.
+	 *
+	 * Creates a new generic win checker for boards with the given lines.
+	 *
+	 * @param lines the lines of the boards to check
+	 * @throws IllegalArgumentException if given lines are null
+	 */
+	public RunWinChecker(final Lines lines) {
+		if (lines == null) {
+			throw new IllegalArgumentException("Given lines can not be null!");
+		}
+		int columnsCount = lines.getColumnsCount();
+		int wordsCount = (lines.getRowsCount() * (columnsCount + 1) + 63) >>> 6;
+		this.lineMasks = new long[lines.getLinesCount()][wordsCount];
+		for (int line = 0; line < lines.getLinesCount(); line++) {
+			for (int cell : lines.getLineCells(line)) {
+				int bit = cell + cell / columnsCount;
+				lineMasks[line][bit >>> 6] |= 1L << (bit & 63);
+			}
+		}
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.engine.WinChecker#hasWinningLine(de.sengerts.tictactoe.engine.Board, int)
+	 */
+	@Override
+	public boolean hasWinningLine(final Board board, final int side) {
+		return board.hasWinningRun(side);
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.engine.WinChecker#getLinesCount()
+	 */
+	@Override
+	public int getLinesCount() {
+		return lineMasks.length;
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.engine.WinChecker#getWordsCount()
+	 */
+	@Override
+	public int getWordsCount() {
+		return lineMasks.length == 0 ? 0 : lineMasks[0].length;
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.engine.WinChecker#getLineMask(int, int)
+	 */
+	@Override
+	public long getLineMask(final int line, final int word) {
+		return lineMasks[line][word];
+	}
+
+}
@@ -0,0 +1,91 @@
+package de.sengerts.tictactoe.engine;
+
+/**
+ * Immutable class representing how much work a search may spend on one move.
+ *
+ * A budget is counted in visited positions rather than in time, so a search
+ * with the same budget on the same position always returns the same move on
+ * every machine.
+ *
+ * @author Tobias Senger
+ */
+public final class SearchBudget {
+
+	/**
+	 * Instance variable that stores the maximum amount of visited positions.
+	 */
+	private final long maxNodes;
+
+	/**
+	 * Instance variable that stores the maximum search depth in moves.
+	 */
+	private final int maxDepth;
+
+	/**
+	 * Another constructor for class SearchBudget.
+	 *
+	 * Creates a new object of type SearchBudget with the given maximum amount of
+	 * visited positions and the given maximum depth.
+	 *
+	 * @param maxNodes the maximum amount of visited positions per move
+	 * @param maxDepth the maximum search depth in moves
+	 * @throws IllegalArgumentException if given nodes or depth are not positive
+	 */
+	public SearchBudget(final long maxNodes, final int maxDepth) {
+		if (maxNodes <= 0 || maxDepth <= 0) {
+			throw new IllegalArgumentException("Max nodes and max depth must be greater than zero!");
+		}
+		this.maxNodes = maxNodes;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Gets the maximum amount of visited positions.
+	 *
+	 * @return the maximum amount of visited positions per move
+	 */
+	public /* @ pure @ */ long getMaxNodes() {
+		return maxNodes;
+	}
+
+	/**
+	 * Gets the maximum search depth.
+	 *
+	 * @return the maximum search depth in moves
+	 */
+	public /* @ pure @ */ int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/*
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof SearchBudget)) {
+			return false;
+		}
+		final SearchBudget objectBudget = (SearchBudget) object;
+		return maxNodes == objectBudget.getMaxNodes() && maxDepth == objectBudget.getMaxDepth();
+	}
+
+	/*
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * Long.hashCode(maxNodes) + maxDepth;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "SearchBudget(maxNodes=" + maxNodes + ", maxDepth=" + maxDepth + ")";
+	}
+
+}
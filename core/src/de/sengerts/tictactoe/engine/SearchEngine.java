@@ -0,0 +1,377 @@
+package de.sengerts.tictactoe.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Class representing the search engine all AI difficulties are based on.
+ *
+ * The engine runs an iteratively deepened negamax search with alpha-beta
+ * pruning and a transposition table. How strong it plays is only controlled by
+ * the {@link SearchBudget} of a search, so all difficulties share the same
+ * evaluation and differ only in how much work they may spend on a move.
+ *
+ * An engine is not thread safe, every thread has to use its own engine. The
+ * transposition table of an engine can be shared with engines of other threads.
+ *
+ * @author Tobias Senger
+ */
+public final class SearchEngine {
+
+	/**
+	 * Class variable that stores the score of a won position before subtracting
+	 * the amount of moves it takes to win.
+	 */
+	public static final int WIN_SCORE = 1_000_000;
+
+	/**
+	 * Class variable that stores the lowest score that still means a forced win.
+	 */
+	public static final int WIN_THRESHOLD = WIN_SCORE - 10_000;
+
+	/**
+	 * Class variable that stores the default base two logarithm of the amount of
+	 * transposition table entries.
+	 */
+	public static final int DEFAULT_TABLE_BITS = 16;
+
+	/**
+	 * Class variable that stores a score greater than every reachable score.
+	 */
+	private static final int INFINITY = WIN_SCORE + 1;
+
+	/**
+	 * Instance variable that stores the transposition table of this engine.
+	 */
+	private final TranspositionTable transpositionTable;
+
+	/**
+	 * Instance variable that stores the amount of positions visited by the
+	 * current search.
+	 */
+	private long nodes;
+
+	/**
+	 * Instance variable that stores the amount of positions the current search
+	 * may visit.
+	 */
+	private long nodeLimit;
+
+	/**
+	 * Instance variable that stores whether the current search ran out of budget.
+	 */
+	private boolean aborted;
+
+	/**
+	 * Constructor for class SearchEngine.
+	 *
+	 * Creates a new search engine with its own transposition table of the default
+	 * size.
+	 */
+	public SearchEngine() {
+		this(new TranspositionTable(DEFAULT_TABLE_BITS));
+	}
+
+	/**
+	 * Another constructor for class SearchEngine.
+	 *
+	 * Creates a new search engine using the given transposition table.
+	 *
+	 * @param transpositionTable the transposition table to use
+	 * @throws IllegalArgumentException if given transposition table is null
+	 */
+	public SearchEngine(final TranspositionTable transpositionTable) {
+		if (transpositionTable == null) {
+			throw new IllegalArgumentException("Given transposition table can not be null!");
+		}
+		this.transpositionTable = transpositionTable;
+	}
+
+	/**
+	 * Searches the best move of a side.
+	 *
+	 * Searches the best move for the given side on the given board by deepening
+	 * the search one move at a time until the budget's depth is reached, the
+	 * budget's amount of positions has been visited or the game is solved. The
+	 * move of the deepest completed iteration is returned, the first one in cell
+	 * order if several moves share the best score. The given board is modified
+	 * during the search but restored before this method returns.
+	 *
+	 * @param board  the board to search on
+	 * @param side   the side to move
+	 * @param budget the budget of this search
+	 * @return the result of the search
+	 * @throws IllegalArgumentException if given board or budget are null or the
+	 *                                  board is already full
+	 */
+	public SearchResult search(final Board board, final int side, final SearchBudget budget) {
+		return search(board, side, budget, null);
+	}
+
+	/**
+	 * Searches the best move of a side, breaking ties randomly.
+	 *
+	 * Searches like {@link #search(Board, int, SearchBudget)}, but picks one of
+	 * the moves sharing the best score of an iteration with the given random,
+	 * each with the same probability. To tell equal scores from worse ones, the
+	 * moves after the best one so far are searched with a window lowered by
+	 * one, which costs a few more positions.
+	 *
+	 * @param board  the board to search on
+	 * @param side   the side to move
+	 * @param budget the budget of this search
+	 * @param random the random breaking ties between equally scored moves or
+	 *               null to take the first of them in cell order
+	 * @return the result of the search
+	 * @throws IllegalArgumentException if given board or budget are null or the
+	 *                                  board is already full
+	 */
+	public SearchResult search(final Board board, final int side, final SearchBudget budget,
+			final SplittableRandom random) {
+		if (board == null || budget == null) {
+			throw new IllegalArgumentException("Given board and budget can not be null!");
+		}
+		if (board.isFull()) {
+			throw new IllegalArgumentException("Given board has no empty cell left!");
+		}
+		this.nodes = 0;
+		this.nodeLimit = budget.getMaxNodes();
+		this.aborted = false;
+
+		int[] cellOrder = board.getLines().getCellOrder();
+		int emptyCount = board.getCellsCount() - board.getMarkedCount();
+		int maxDepth = Math.min(budget.getMaxDepth(), emptyCount);
+		int bestCell = -1;
+		int bestScore = 0;
+		int completedDepth = 0;
+
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			int alpha = -INFINITY;
+			int iterationCell = -1;
+			int tiesCount = 0;
+			for (int i = -1; i < cellOrder.length; i++) {
+				int cell = i < 0 ? bestCell : cellOrder[i];
+				if (cell < 0 || (i >= 0 && cell == bestCell) || !board.isEmpty(cell)) {
+					continue;
+				}
+				int score = searchMove(board, side, cell, depth, random == null ? alpha : alpha - 1, INFINITY, 0);
+				if (aborted) {
+					break;
+				}
+				if (score > alpha) {
+					alpha = score;
+					iterationCell = cell;
+					tiesCount = 1;
+				} else if (random != null && score == alpha && random.nextInt(++tiesCount) == 0) {
+					iterationCell = cell;
+				}
+			}
+			if (aborted) {
+				if (completedDepth == 0 && iterationCell != -1) {
+					bestCell = iterationCell;
+					bestScore = alpha;
+				}
+				break;
+			}
+			bestCell = iterationCell;
+			bestScore = alpha;
+			completedDepth = depth;
+			if (Math.abs(bestScore) >= WIN_THRESHOLD) {
+				break;
+			}
+		}
+
+		if (bestCell == -1) {
+			bestCell = getFirstEmptyCell(board, cellOrder);
+		}
+		return new SearchResult(bestCell, bestScore, completedDepth, nodes);
+	}
+
+	/**
+	 * Scores one move by marking it, searching the resulting position and
+	 * unmarking it again. Positions in which no line can be completed anymore are
+	 * scored as a draw right away.
+	 *
+	 * @param board the board to search on
+	 * @param side  the side making the move
+	 * @param cell  the cell to mark
+	 * @param depth the remaining depth including this move
+	 * @param alpha the lower bound of the window from the view of the side
+	 * @param beta  the upper bound of the window from the view of the side
+	 * @param ply   the amount of moves made since the root
+	 * @return the score of the move from the view of the given side
+	 */
+	private int searchMove(final Board board, final int side, final int cell, final int depth, final int alpha,
+			final int beta, final int ply) {
+		board.mark(cell, side);
+		int score;
+		if (board.isWinningCell(cell, side)) {
+			score = WIN_SCORE - ply - 1;
+		} else if (board.isFull() || !board.hasWinnableLine()) {
+			score = 0;
+		} else {
+			score = -negamax(board, Board.getOpponent(side), depth - 1, -beta, -alpha, ply + 1);
+		}
+		board.unmark(cell, side);
+		return score;
+	}
+
+	/**
+	 * Searches a position with the negamax algorithm.
+	 *
+	 * @param board the board to search on, which is neither won nor full
+	 * @param side  the side to move
+	 * @param depth the remaining depth
+	 * @param alpha the lower bound of the window
+	 * @param beta  the upper bound of the window
+	 * @param ply   the amount of moves made since the root
+	 * @return the score of the position from the view of the side to move
+	 */
+	private int negamax(final Board board, final int side, final int depth, int alpha, int beta, final int ply) {
+		if (++nodes > nodeLimit) {
+			aborted = true;
+			return 0;
+		}
+		if (depth == 0) {
+			return evaluate(board, side);
+		}
+
+		long key = board.getHash() ^ Zobrist.getSideKey(side);
+		long entry = transpositionTable.probe(key);
+		int tableCell = -1;
+		if (entry != TranspositionTable.MISS) {
+			tableCell = TranspositionTable.getMove(entry);
+			if (TranspositionTable.getDepth(entry) >= depth) {
+				int tableScore = fromTableScore(TranspositionTable.getScore(entry), ply);
+				int flag = TranspositionTable.getFlag(entry);
+				if (flag == TranspositionTable.EXACT) {
+					return tableScore;
+				} else if (flag == TranspositionTable.LOWER_BOUND) {
+					alpha = Math.max(alpha, tableScore);
+				} else {
+					beta = Math.min(beta, tableScore);
+				}
+				if (alpha >= beta) {
+					return tableScore;
+				}
+			}
+		}
+
+		int originalAlpha = alpha;
+		int bestScore = -INFINITY;
+		int bestCell = -1;
+		int[] cellOrder = board.getLines().getCellOrder();
+		for (int i = -1; i < cellOrder.length; i++) {
+			int cell = i < 0 ? tableCell : cellOrder[i];
+			if (cell < 0 || (i >= 0 && cell == tableCell) || !board.isEmpty(cell)) {
+				continue;
+			}
+			int score = searchMove(board, side, cell, depth, alpha, beta, ply);
+			if (aborted) {
+				return 0;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				bestCell = cell;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+			if (alpha >= beta) {
+				break;
+			}
+		}
+
+		int flag = bestScore <= originalAlpha ? TranspositionTable.UPPER_BOUND
+				: bestScore >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+		transpositionTable.store(key, toTableScore(bestScore, ply), depth, flag, bestCell);
+		return bestScore;
+	}
+
+	/**
+	 * Evaluates a position without searching.
+	 *
+	 * Evaluates a position by summing up the squared amount of marks of every line
+	 * that is still winnable for only one side, positive for the side to move and
+	 * negative for its opponent.
+	 *
+	 * @param board the board to evaluate
+	 * @param side  the side to move
+	 * @return the score of the position from the view of the side to move
+	 */
+	public static int evaluate(final Board board, final int side) {
+		int opponent = Board.getOpponent(side);
+		int score = 0;
+		for (int line = 0; line < board.getLines().getLinesCount(); line++) {
+			int own = board.getLineCount(side, line);
+			int other = board.getLineCount(opponent, line);
+			if (other == 0) {
+				score += own * own;
+			} else if (own == 0) {
+				score -= other * other;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Converts a score relative to the root into one relative to the current
+	 * position, so won positions can be shared between different plies.
+	 *
+	 * @param score the score relative to the root
+	 * @param ply   the amount of moves made since the root
+	 * @return the score to store in the transposition table
+	 */
+	private static int toTableScore(final int score, final int ply) {
+		if (score >= WIN_THRESHOLD) {
+			return score + ply;
+		}
+		if (score <= -WIN_THRESHOLD) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	/**
+	 * Converts a score read from the transposition table back into one relative
+	 * to the root.
+	 *
+	 * @param score the score stored in the transposition table
+	 * @param ply   the amount of moves made since the root
+	 * @return the score relative to the root
+	 */
+	private static int fromTableScore(final int score, final int ply) {
+		if (score >= WIN_THRESHOLD) {
+			return score - ply;
+		}
+		if (score <= -WIN_THRESHOLD) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	/**
+	 * Gets the first empty cell in the given order.
+	 *
+	 * @param board     the board to get an empty cell of
+	 * @param cellOrder the order to check the cells in
+	 * @return the first empty cell
+	 */
+	private static int getFirstEmptyCell(final Board board, final int[] cellOrder) {
+		for (int cell : cellOrder) {
+			if (board.isEmpty(cell)) {
+				return cell;
+			}
+		}
+		throw new IllegalStateException("Board has no empty cell left!");
+	}
+
+	/**
+	 * Gets the transposition table.
+	 *
+	 * @return the transposition table of this engine
+	 */
+	public /* @ pure @ */ TranspositionTable getTranspositionTable() {
+		return transpositionTable;
+	}
+
+}
@@ -0,0 +1,90 @@
+package de.sengerts.tictactoe.engine;
+
+/**
+ * Immutable class representing the outcome of a search for the best move.
+ *
+ * @author Tobias Senger
+ */
+public final class SearchResult {
+
+	/**
+	 * Instance variable that stores the index of the best cell found.
+	 */
+	private final int cell;
+
+	/**
+	 * Instance variable that stores the score of the best cell from the view of
+	 * the side to move.
+	 */
+	private final int score;
+
+	/**
+	 * Instance variable that stores the deepest completely searched depth.
+	 */
+	private final int depth;
+
+	/**
+	 * Instance variable that stores the amount of visited positions.
+	 */
+	private final long nodes;
+
+	/**
+	 * Another constructor for class SearchResult.
+	 *
+	 * @param cell  the index of the best cell found
+	 * @param score the score of the best cell from the view of the side to move
+	 * @param depth the deepest completely searched depth
+	 * @param nodes the amount of visited positions
+	 */
+	public SearchResult(final int cell, final int score, final int depth, final long nodes) {
+		this.cell = cell;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+	}
+
+	/**
+	 * Gets the best cell.
+	 *
+	 * @return the index of the best cell found
+	 */
+	public /* @ pure @ */ int getCell() {
+		return cell;
+	}
+
+	/**
+	 * Gets the score.
+	 *
+	 * @return the score of the best cell from the view of the side to move
+	 */
+	public /* @ pure @ */ int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the depth.
+	 *
+	 * @return the deepest completely searched depth
+	 */
+	public /* @ pure @ */ int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Gets the amount of visited positions.
+	 *
+	 * @return the amount of visited positions
+	 */
+	public /* @ pure @ */ long getNodes() {
+		return nodes;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "SearchResult(cell=" + cell + ", score=" + score + ", depth=" + depth + ", nodes=" + nodes + ")";
+	}
+
+}
@@ -0,0 +1,191 @@
+package de.sengerts.tictactoe.engine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable class representing the symmetries of a tic tac toe territory.
+ *
+ * A symmetry maps every cell to another one so that the winning lines are
+ * mapped onto winning lines again, which makes positions mapped onto each other
+ * equivalent for both sides. A square territory has eight symmetries, the
+ * rotations and reflections of the square, a rectangular one only the four of
+ * the rectangle. Of all equivalent positions the one with the smallest hash is
+ * the canonical one, so equivalent positions can share everything computed for
+ * one of them.
+ *
+ * @author Tobias Senger
+ */
+public final class Symmetries {
+
+	/**
+	 * Class variable that caches the symmetries by their lines.
+	 */
+	private static final Map<Lines, Symmetries> SYMMETRIES = new ConcurrentHashMap<Lines, Symmetries>();
+
+	/**
+	 * Instance variable that stores the cell a cell is mapped to by every
+	 * symmetry, the first symmetry being the identity.
+	 */
+	private final int[][] cellMaps;
+
+	/**
+	 * Instance variable that stores the cell a cell is mapped back from by every
+	 * symmetry.
+	 */
+	private final int[][] inverseCellMaps;
+
+	/**
+	 * Another constructor for class Symmetries.
+	 *
+	 * @param lines the lines of the territory
+	 */
+	private Symmetries(final Lines lines) {
+		this.cellMaps = createCellMaps(lines.getRowsCount(), lines.getColumnsCount());
+		this.inverseCellMaps = new int[cellMaps.length][lines.getCellsCount()];
+		for (int symmetry = 0; symmetry < cellMaps.length; symmetry++) {
+			for (int cell = 0; cell < lines.getCellsCount(); cell++) {
+				inverseCellMaps[symmetry][cellMaps[symmetry][cell]] = cell;
+			}
+		}
+	}
+
+	/**
+	 * Gets the symmetries of a territory.
+	 *
+	 * @param lines the lines of the territory
+	 * @return the symmetries of the territory
+	 * @throws IllegalArgumentException if given lines are null
+	 */
+	public static Symmetries get(final Lines lines) {
+		if (lines == null) {
+			throw new IllegalArgumentException("Given lines can not be null!");
+		}
+		return SYMMETRIES.computeIfAbsent(lines, Symmetries::new);
+	}
+
+	/**
+	 * Creates the cell maps of all symmetries of a territory.
+	 *
+	 * @param rowsCount    the amount of rows of the territory
+	 * @param columnsCount the amount of columns of the territory
+	 * @return the cell map of every symmetry
+	 */
+	private static int[][] createCellMaps(final int rowsCount, final int columnsCount) {
+		boolean square = rowsCount == columnsCount;
+		int[][] cellMaps = new int[square ? 8 : 4][rowsCount * columnsCount];
+		int lastRow = rowsCount - 1;
+		int lastColumn = columnsCount - 1;
+		for (int row = 0; row < rowsCount; row++) {
+			for (int column = 0; column < columnsCount; column++) {
+				int cell = row * columnsCount + column;
+				cellMaps[0][cell] = cell;
+				cellMaps[1][cell] = (lastRow - row) * columnsCount + (lastColumn - column);
+				cellMaps[2][cell] = row * columnsCount + (lastColumn - column);
+				cellMaps[3][cell] = (lastRow - row) * columnsCount + column;
+				if (square) {
+					cellMaps[4][cell] = column * columnsCount + row;
+					cellMaps[5][cell] = (lastColumn - column) * columnsCount + (lastRow - row);
+					cellMaps[6][cell] = column * columnsCount + (lastRow - row);
+					cellMaps[7][cell] = (lastColumn - column) * columnsCount + row;
+				}
+			}
+		}
+		return cellMaps;
+	}
+
+	/**
+	 * Gets the canonical symmetry of a position.
+	 *
+	 * @param board the board of the position, whose lines must be the ones of
+	 *              these symmetries
+	 * @return the symmetry mapping the position onto its canonical position, the
+	 *         lowest one if several do
+	 */
+	public int getCanonicalSymmetry(final Board board) {
+		long[] hashes = new long[cellMaps.length];
+		for (int cell = 0; cell < board.getCellsCount(); cell++) {
+			int side = board.getSide(cell);
+			if (side == Board.NO_SIDE) {
+				continue;
+			}
+			for (int symmetry = 0; symmetry < cellMaps.length; symmetry++) {
+				hashes[symmetry] ^= Zobrist.getCellKey(cellMaps[symmetry][cell], side);
+			}
+		}
+		int canonicalSymmetry = 0;
+		for (int symmetry = 1; symmetry < hashes.length; symmetry++) {
+			if (Long.compareUnsigned(hashes[symmetry], hashes[canonicalSymmetry]) < 0) {
+				canonicalSymmetry = symmetry;
+			}
+		}
+		return canonicalSymmetry;
+	}
+
+	/**
+	 * Gets the hash of a position mapped by a symmetry.
+	 *
+	 * Gets the hash the board would have ({@link Board#getHash()}) if all its
+	 * marks were mapped by the given symmetry.
+	 *
+	 * @param board    the board of the position, whose lines must be the ones of
+	 *                 these symmetries
+	 * @param symmetry the symmetry to map the position by
+	 * @return the hash of the mapped position
+	 */
+	public long getHash(final Board board, final int symmetry) {
+		Lines lines = board.getLines();
+		long hash = Zobrist.getSizeKey(lines.getRowsCount(), lines.getColumnsCount());
+		for (int cell = 0; cell < board.getCellsCount(); cell++) {
+			int side = board.getSide(cell);
+			if (side != Board.NO_SIDE) {
+				hash ^= Zobrist.getCellKey(cellMaps[symmetry][cell], side);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the hash of the canonical position of a position.
+	 *
+	 * @param board the board of the position, whose lines must be the ones of
+	 *              these symmetries
+	 * @return the hash of the position mapped by its canonical symmetry, which
+	 *         is equal for all equivalent positions
+	 */
+	public long getCanonicalHash(final Board board) {
+		return getHash(board, getCanonicalSymmetry(board));
+	}
+
+	/**
+	 * Maps a cell by a symmetry.
+	 *
+	 * @param symmetry the symmetry to map the cell by
+	 * @param cell     the cell index
+	 * @return the index of the cell the given cell is mapped to
+	 */
+	public int mapCell(final int symmetry, final int cell) {
+		return cellMaps[symmetry][cell];
+	}
+
+	/**
+	 * Maps a cell back by a symmetry.
+	 *
+	 * @param symmetry the symmetry to map the cell back by
+	 * @param cell     the index of a mapped cell
+	 * @return the index of the cell the symmetry maps to the given cell
+	 */
+	public int unmapCell(final int symmetry, final int cell) {
+		return inverseCellMaps[symmetry][cell];
+	}
+
+	/**
+	 * Gets the amount of symmetries.
+	 *
+	 * @return the amount of symmetries including the identity
+	 */
+	public int getCount() {
+		return cellMaps.length;
+	}
+
+}
@@ -0,0 +1,629 @@
+package de.sengerts.tictactoe.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class representing a memory mapped tablebase of a small board.
+ *
+ * A tablebase holds the value of every position of a board with at most
+ * {@link #MAX_CELLS} cells under perfect play by both sides: whether the side
+ * to move wins, draws or loses. It is computed once by a
+ * {@link TablebaseSolver} and lets AI players pick perfect moves by looking at
+ * the values of the positions after every move instead of searching.
+ *
+ * Positions are stored from the view of the side to move, which is always
+ * called the mover here, so a position and the same position with the sides
+ * swapped share one value. A mover can only have as many or one mark less than
+ * its opponent, and the positions are ranked by the amount of marks and then
+ * by the combinations of the cells of the mover and of the opponent among the
+ * remaining cells ({@link #getRank(int, int)}), so the table has no entries for
+ * impossible positions. Each value takes two bits, so the tablebase of a 4x4
+ * board with its 10 million positions takes 2.5 megabytes instead of the 43
+ * million positions of all arrangements of marks.
+ *
+ * The tablebase file is mapped into memory when it is opened, so looking up a
+ * position allocates nothing and reads one byte of a page the operating system
+ * keeps cached for all processes. All methods of a tablebase are thread safe.
+ *
+ * @author Tobias Senger
+ */
+public final class Tablebase {
+
+	/**
+	 * Class variable that stores the most cells of a board a tablebase can be
+	 * computed for.
+	 */
+	public static final int MAX_CELLS = 16;
+
+	/**
+	 * Class variable that stores the value of a position that can not be
+	 * reached, as the mover has already won.
+	 */
+	public static final int INVALID = 0;
+
+	/**
+	 * Class variable that stores the value of a position the mover wins.
+	 */
+	public static final int WIN = 1;
+
+	/**
+	 * Class variable that stores the value of a position that ends in a draw.
+	 */
+	public static final int DRAW = 2;
+
+	/**
+	 * Class variable that stores the value of a position the mover loses,
+	 * including the positions the opponent has already won.
+	 */
+	public static final int LOSS = 3;
+
+	/**
+	 * Class variable that stores the cell returned for a position no perfect
+	 * move is known for.
+	 */
+	public static final int NO_MOVE = -1;
+
+	/**
+	 * Class variable that stores the file name extension of tablebase files.
+	 */
+	public static final String EXTENSION = ".tttt";
+
+	/**
+	 * Class variable that stores the magic bytes the tablebase file starts
+	 * with.
+	 */
+	private static final byte[] MAGIC = { 'T', 'T', 'T', 'E' };
+
+	/**
+	 * Class variable that stores the version of the tablebase file.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Class variable that stores the size of the header of the tablebase file:
+	 * the magic bytes, the version, the amounts of rows and columns, the win
+	 * length and the amount of positions.
+	 */
+	private static final int HEADER_BYTES = 16;
+
+	/**
+	 * Class variable that stores the amount of values per byte.
+	 */
+	private static final int VALUES_PER_BYTE = 4;
+
+	/**
+	 * Class variable that stores the file name extension of the file written
+	 * before it replaces the tablebase file.
+	 */
+	private static final String TEMPORARY_EXTENSION = ".tmp";
+
+	/**
+	 * Class variable that stores the binomial coefficients up to the most
+	 * cells.
+	 */
+	private static final int[][] BINOMIALS = createBinomials();
+
+	/**
+	 * Instance variable that stores the lines of the board.
+	 */
+	private final Lines lines;
+
+	/**
+	 * Instance variable that stores the amount of cells of the board.
+	 */
+	private final int cellsCount;
+
+	/**
+	 * Instance variable that stores the cell masks of all lines through every
+	 * cell.
+	 */
+	private final int[][] cellLineMasks;
+
+	/**
+	 * Instance variable that stores the rank of the first position with every
+	 * amount of marks, followed by the amount of all positions.
+	 */
+	private final long[] layerOffsets;
+
+	/**
+	 * Instance variable that stores the mapped tablebase file or null while the
+	 * tablebase is being solved.
+	 */
+	private final ByteBuffer mapping;
+
+	/**
+	 * Another constructor for class Tablebase.
+	 *
+	 * Opens the given tablebase file and maps it into memory. The file is
+	 * closed right away, the mapping is released once the tablebase is garbage
+	 * collected.
+	 *
+	 * @param file the tablebase file
+	 * @throws IOException if the file can not be read or does not hold a
+	 *                     tablebase of a known version
+	 * @throws IllegalArgumentException if given file is null
+	 */
+	public Tablebase(final File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Given file can not be null!");
+		}
+		ByteBuffer fileMapping;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+				throw new IOException("Tablebase has an invalid size!");
+			}
+			fileMapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (fileMapping.get(i) != MAGIC[i]) {
+				throw new IOException("File does not hold a tablebase!");
+			}
+		}
+		if (fileMapping.get(MAGIC.length) != VERSION) {
+			throw new IOException("File holds a tablebase of an unknown version!");
+		}
+		int rowsCount = fileMapping.get(MAGIC.length + 1);
+		int columnsCount = fileMapping.get(MAGIC.length + 2);
+		int winLength = fileMapping.get(MAGIC.length + 3);
+		if (rowsCount <= 0 || columnsCount <= 0 || rowsCount * columnsCount > MAX_CELLS || winLength <= 0
+				|| winLength > Math.max(rowsCount, columnsCount)) {
+			throw new IOException("Tablebase has an invalid board!");
+		}
+		this.lines = Lines.mnk(rowsCount, columnsCount, winLength);
+		this.cellsCount = lines.getCellsCount();
+		this.cellLineMasks = createCellLineMasks(lines);
+		this.layerOffsets = createLayerOffsets(cellsCount);
+		long positionsCount = fileMapping.getLong(8);
+		if (positionsCount != getPositionsCount()
+				|| fileMapping.capacity() != HEADER_BYTES + getValueBytes(positionsCount)) {
+			throw new IOException("Tablebase has an invalid size!");
+		}
+		this.mapping = fileMapping;
+	}
+
+	/**
+	 * Another constructor for class Tablebase.
+	 *
+	 * Creates the ranking of the positions of a board without any values, for
+	 * solving its tablebase.
+	 *
+	 * @param lines the lines of the board
+	 * @throws IllegalArgumentException if given lines are null or have more
+	 *                                  than {@link #MAX_CELLS} cells
+	 */
+	Tablebase(final Lines lines) {
+		if (lines == null) {
+			throw new IllegalArgumentException("Given lines can not be null!");
+		}
+		if (lines.getCellsCount() > MAX_CELLS) {
+			throw new IllegalArgumentException("Given lines have more than " + MAX_CELLS + " cells!");
+		}
+		this.lines = lines;
+		this.cellsCount = lines.getCellsCount();
+		this.cellLineMasks = createCellLineMasks(lines);
+		this.layerOffsets = createLayerOffsets(cellsCount);
+		this.mapping = null;
+	}
+
+	/**
+	 * Creates the binomial coefficients.
+	 *
+	 * @return the binomial coefficients of up to the most cells
+	 */
+	private static int[][] createBinomials() {
+		int[][] binomials = new int[MAX_CELLS + 1][MAX_CELLS + 1];
+		for (int n = 0; n <= MAX_CELLS; n++) {
+			binomials[n][0] = 1;
+			for (int k = 1; k <= n; k++) {
+				binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+			}
+		}
+		return binomials;
+	}
+
+	/**
+	 * Creates the cell masks of the lines through every cell.
+	 *
+	 * @param lines the lines of the board
+	 * @return the masks of the cells of every line through every cell
+	 */
+	private static int[][] createCellLineMasks(final Lines lines) {
+		int[][] cellLineMasks = new int[lines.getCellsCount()][];
+		for (int cell = 0; cell < lines.getCellsCount(); cell++) {
+			int[] cellLines = lines.getCellLines(cell);
+			cellLineMasks[cell] = new int[cellLines.length];
+			for (int i = 0; i < cellLines.length; i++) {
+				for (int lineCell : lines.getLineCells(cellLines[i])) {
+					cellLineMasks[cell][i] |= 1 << lineCell;
+				}
+			}
+		}
+		return cellLineMasks;
+	}
+
+	/**
+	 * Creates the offsets of the layers of positions.
+	 *
+	 * @param cellsCount the amount of cells of the board
+	 * @return the rank of the first position with every amount of marks,
+	 *         followed by the amount of all positions
+	 */
+	private static long[] createLayerOffsets(final int cellsCount) {
+		long[] layerOffsets = new long[cellsCount + 2];
+		for (int marks = 0; marks <= cellsCount; marks++) {
+			layerOffsets[marks + 1] = layerOffsets[marks] + getLayerSize(cellsCount, marks);
+		}
+		return layerOffsets;
+	}
+
+	/**
+	 * Gets the amount of positions with an amount of marks.
+	 *
+	 * @param cellsCount the amount of cells of the board
+	 * @param marks the amount of marks
+	 * @return the amount of arrangements of the marks of the mover and the
+	 *         opponent
+	 */
+	private static long getLayerSize(final int cellsCount, final int marks) {
+		int moverMarks = getMoverMarks(marks);
+		return (long) BINOMIALS[cellsCount][moverMarks] * BINOMIALS[cellsCount - moverMarks][marks - moverMarks];
+	}
+
+	/**
+	 * Gets the amount of marks of the mover.
+	 *
+	 * @param marks the amount of marks of both sides
+	 * @return the amount of marks of the mover, which has as many or one mark
+	 *         less than its opponent
+	 */
+	static int getMoverMarks(final int marks) {
+		return marks / 2;
+	}
+
+	/**
+	 * Gets the rank of a position.
+	 *
+	 * @param mover the cell mask of the mover
+	 * @param opponent the cell mask of the opponent
+	 * @return the index of the value of the position or -1 if the amounts of
+	 *         marks are not possible
+	 */
+	long getRank(final int mover, final int opponent) {
+		int moverMarks = Integer.bitCount(mover);
+		int marks = moverMarks + Integer.bitCount(opponent);
+		if (moverMarks != getMoverMarks(marks)) {
+			return -1;
+		}
+		int free = ~mover & ((1 << cellsCount) - 1);
+		return layerOffsets[marks]
+				+ (long) getCombinationRank(mover) * BINOMIALS[cellsCount - moverMarks][marks - moverMarks]
+				+ getCombinationRank(compress(opponent, free));
+	}
+
+	/**
+	 * Gets the rank of a combination of cells among all combinations with as
+	 * many cells in the order of their masks.
+	 *
+	 * @param mask the cell mask of the combination
+	 * @return the rank of the combination
+	 */
+	static int getCombinationRank(int mask) {
+		int rank = 0;
+		int count = 1;
+		while (mask != 0) {
+			rank += BINOMIALS[Integer.numberOfTrailingZeros(mask)][count++];
+			mask &= mask - 1;
+		}
+		return rank;
+	}
+
+	/**
+	 * Gets the combination of cells with a rank.
+	 *
+	 * @param rank the rank of the combination
+	 * @param count the amount of cells of the combination
+	 * @return the cell mask of the combination
+	 */
+	static int getCombination(int rank, final int count) {
+		int mask = 0;
+		for (int i = count; i > 0; i--) {
+			int cell = i - 1;
+			while (BINOMIALS[cell + 1][i] <= rank) {
+				cell++;
+			}
+			rank -= BINOMIALS[cell][i];
+			mask |= 1 << cell;
+		}
+		return mask;
+	}
+
+	/**
+	 * Compresses the cells of a mask to the positions of some cells.
+	 *
+	 * @param mask the mask to compress
+	 * @param cells the cells keeping their bits, lowest first
+	 * @return the bits of the given mask at the given cells, packed together
+	 */
+	static int compress(final int mask, int cells) {
+		int compressed = 0;
+		for (int bit = 1; cells != 0; bit <<= 1) {
+			if ((mask & cells & -cells) != 0) {
+				compressed |= bit;
+			}
+			cells &= cells - 1;
+		}
+		return compressed;
+	}
+
+	/**
+	 * Deposits packed bits at the positions of some cells.
+	 *
+	 * @param compressed the packed bits
+	 * @param cells the cells to deposit the bits at, lowest first
+	 * @return the mask of the cells whose bits are set
+	 */
+	static int deposit(int compressed, int cells) {
+		int mask = 0;
+		while (cells != 0) {
+			int lowest = cells & -cells;
+			if ((compressed & 1) != 0) {
+				mask |= lowest;
+			}
+			compressed >>>= 1;
+			cells &= cells - 1;
+		}
+		return mask;
+	}
+
+	/**
+	 * Gets whether a cell completes a line.
+	 *
+	 * @param mask the cell mask of a side including the cell
+	 * @param cell the cell
+	 * @return true if all cells of a line through the cell are in the mask
+	 */
+	boolean isWinningCell(final int mask, final int cell) {
+		for (int lineMask : cellLineMasks[cell]) {
+			if ((mask & lineMask) == lineMask) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets whether a side has completed a line.
+	 *
+	 * @param mask the cell mask of the side
+	 * @return true if all cells of any line are in the mask
+	 */
+	boolean hasLine(final int mask) {
+		for (int rest = mask; rest != 0; rest &= rest - 1) {
+			if (isWinningCell(mask, Integer.numberOfTrailingZeros(rest))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the value of a position.
+	 *
+	 * @param board the board of the position
+	 * @param side the side to move
+	 * @return the value of the position for the given side, {@link #WIN},
+	 *         {@link #DRAW} or {@link #LOSS}, or {@link #INVALID} if the amounts
+	 *         of marks are not possible or the side has already won
+	 * @throws IllegalArgumentException if given board is null or has other
+	 *                                  lines than this tablebase
+	 */
+	public int getValue(final Board board, final int side) {
+		checkBoard(board);
+		long rank = getRank(getMask(board, side), getMask(board, Board.getOpponent(side)));
+		return rank < 0 ? INVALID : getValue(rank);
+	}
+
+	/**
+	 * Gets a perfect move.
+	 *
+	 * Gets the first move in the cell order of the board that keeps the best
+	 * value of the position for the given side. Positions the side loses
+	 * anyway have no perfect move, so they can be left to a search which makes
+	 * the win as hard as possible for an opponent that is not perfect.
+	 *
+	 * @param board the board of the position, which is not changed
+	 * @param side the side to move
+	 * @return the cell of a move winning or drawing the position or
+	 *         {@link #NO_MOVE} if the position is lost or not possible
+	 * @throws IllegalArgumentException if given board is null or has other
+	 *                                  lines than this tablebase
+	 */
+	public int getBestCell(final Board board, final int side) {
+		checkBoard(board);
+		int mover = getMask(board, side);
+		int opponent = getMask(board, Board.getOpponent(side));
+		if (getRank(mover, opponent) < 0) {
+			return NO_MOVE;
+		}
+		int drawingCell = NO_MOVE;
+		for (int cell : lines.getCellOrder()) {
+			int bit = 1 << cell;
+			if (((mover | opponent) & bit) != 0) {
+				continue;
+			}
+			if (isWinningCell(mover | bit, cell)) {
+				return cell;
+			}
+			int value = getValue(getRank(opponent, mover | bit));
+			if (value == LOSS) {
+				return cell;
+			} else if (value == DRAW && drawingCell == NO_MOVE) {
+				drawingCell = cell;
+			}
+		}
+		return drawingCell;
+	}
+
+	/**
+	 * Checks a board.
+	 *
+	 * @param board the board to check
+	 * @throws IllegalArgumentException if given board is null or has other
+	 *                                  lines than this tablebase
+	 */
+	private void checkBoard(final Board board) {
+		if (board == null) {
+			throw new IllegalArgumentException("Given board can not be null!");
+		}
+		if (board.getLines() != lines) {
+			throw new IllegalArgumentException("Given board does not fit this tablebase!");
+		}
+	}
+
+	/**
+	 * Gets the cell mask of a side.
+	 *
+	 * @param board the board
+	 * @param side the side
+	 * @return the mask of the cells marked by the side
+	 */
+	private int getMask(final Board board, final int side) {
+		int mask = 0;
+		for (int cell = 0; cell < cellsCount; cell++) {
+			if (board.getSide(cell) == side) {
+				mask |= 1 << cell;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Gets the value of a position by its rank.
+	 *
+	 * @param rank the rank of the position
+	 * @return the value of the position for the mover
+	 */
+	private int getValue(final long rank) {
+		int packed = mapping.get(HEADER_BYTES + (int) (rank / VALUES_PER_BYTE));
+		return packed >>> (int) (rank % VALUES_PER_BYTE * 2) & 3;
+	}
+
+	/**
+	 * Writes a tablebase file.
+	 *
+	 * Packs the given values to two bits each and writes them to a temporary
+	 * file, which then replaces the given file.
+	 *
+	 * @param file the tablebase file
+	 * @param values the value of every position by its rank
+	 * @throws IOException if the file can not be written
+	 * @throws IllegalArgumentException if given file or values are null or
+	 *                                  given values do not fit this tablebase
+	 */
+	void write(final File file, final byte[] values) throws IOException {
+		if (file == null || values == null) {
+			throw new IllegalArgumentException("Given file and values can not be null!");
+		}
+		if (values.length != getPositionsCount()) {
+			throw new IllegalArgumentException("Given values do not fit this tablebase!");
+		}
+		File temporaryFile = new File(file.getPath() + TEMPORARY_EXTENSION);
+		try (FileOutputStream fileOut = new FileOutputStream(temporaryFile);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+			out.write(MAGIC);
+			out.write(new byte[] { VERSION, (byte) lines.getRowsCount(), (byte) lines.getColumnsCount(),
+					(byte) lines.getWinLength() });
+			out.writeLong(values.length);
+			for (int rank = 0; rank < values.length; rank += VALUES_PER_BYTE) {
+				int packed = 0;
+				for (int i = 0; i < VALUES_PER_BYTE && rank + i < values.length; i++) {
+					packed |= (values[rank + i] & 3) << (i * 2);
+				}
+				out.write(packed);
+			}
+			out.flush();
+			fileOut.getFD().sync();
+		}
+		Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Gets the amount of bytes of packed values.
+	 *
+	 * @param positionsCount the amount of positions
+	 * @return the amount of bytes the values of the positions take
+	 */
+	private static long getValueBytes(final long positionsCount) {
+		return (positionsCount + VALUES_PER_BYTE - 1) / VALUES_PER_BYTE;
+	}
+
+	/**
+	 * Gets the file name of the tablebase of a board.
+	 *
+	 * @param lines the lines of the board
+	 * @return the file name of the tablebase, like 4x4k3.tttt
+	 */
+	public static String getFileName(final Lines lines) {
+		return lines.getRowsCount() + "x" + lines.getColumnsCount() + "k" + lines.getWinLength() + EXTENSION;
+	}
+
+	/**
+	 * Gets the rank of the first position of a layer.
+	 *
+	 * @param marks the amount of marks of the layer
+	 * @return the rank of the first position with the amount of marks
+	 */
+	long getLayerOffset(final int marks) {
+		return layerOffsets[marks];
+	}
+
+	/**
+	 * Gets the binomial coefficient.
+	 *
+	 * @param n the size of the set
+	 * @param k the size of the subsets
+	 * @return the amount of subsets of size k of a set of size n
+	 */
+	static int getBinomial(final int n, final int k) {
+		return BINOMIALS[n][k];
+	}
+
+	/**
+	 * Gets the amount of positions.
+	 *
+	 * @return the amount of positions with a value in this tablebase
+	 */
+	public long getPositionsCount() {
+		return layerOffsets[cellsCount + 1];
+	}
+
+	/**
+	 * Gets the lines.
+	 *
+	 * @return the lines of the board of this tablebase
+	 */
+	public /* @ pure @ */ Lines getLines() {
+		return lines;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Tablebase(" + lines.getRowsCount() + "x" + lines.getColumnsCount() + ", winLength="
+				+ lines.getWinLength() + ", positions=" + getPositionsCount() + ")";
+	}
+
+}
@@ -0,0 +1,343 @@
+package de.sengerts.tictactoe.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class solving the {@link Tablebase} of a small board by retrograde analysis.
+ *
+ * A move never takes a mark back, so every move leads from a position with
+ * some amount of marks to one with one mark more. The solver therefore starts
+ * with the positions of the full board and works backwards one layer of
+ * positions with the same amount of marks at a time, so the values of all
+ * positions after any move of a layer are known when the layer is solved.
+ * Positions the opponent has won are lost, full positions without a winner are
+ * drawn, and every other position is won if a move completes a line or leads
+ * to a lost position of the opponent, drawn if a move leads to a drawn one and
+ * lost otherwise.
+ *
+ * Symmetric positions ({@link Symmetries}) have the same value, so only the
+ * position with the smallest cell masks of every set of symmetric positions is
+ * solved, and the other ones copy its value afterwards. Both steps of a layer
+ * are split into ranges of positions solved in parallel on the given workers.
+ *
+ * @author Tobias Senger
+ */
+public final class TablebaseSolver {
+
+	/**
+	 * Class variable that stores the amount of ranges per worker a layer is
+	 * split into, so workers finishing early can take over more ranges.
+	 */
+	private static final int RANGES_PER_WORKER = 8;
+
+	/**
+	 * Instance variable that stores the ranking of the positions.
+	 */
+	private final Tablebase ranking;
+
+	/**
+	 * Instance variable that stores the amount of cells of the board.
+	 */
+	private final int cellsCount;
+
+	/**
+	 * Instance variable that stores the cell masks every cell mask is mapped to
+	 * by every symmetry, by the symmetry, the byte of the mask and the bits of
+	 * the byte.
+	 */
+	private final int[][][] symmetryMasks;
+
+	/**
+	 * Instance variable that stores the value of every position by its rank.
+	 */
+	private final byte[] values;
+
+	/**
+	 * Instance variable that stores the amount of positions solved by searching
+	 * their moves rather than copying the value of a symmetric position.
+	 */
+	private long searchedCount;
+
+	/**
+	 * Another constructor for class TablebaseSolver.
+	 *
+	 * @param lines the lines of the board
+	 * @throws IllegalArgumentException if given lines are null or have more
+	 *                                  than {@link Tablebase#MAX_CELLS} cells
+	 */
+	public TablebaseSolver(final Lines lines) {
+		this.ranking = new Tablebase(lines);
+		this.cellsCount = lines.getCellsCount();
+		this.symmetryMasks = createSymmetryMasks(Symmetries.get(lines), cellsCount);
+		this.values = new byte[(int) ranking.getPositionsCount()];
+	}
+
+	/**
+	 * Creates the mapped cell masks of all symmetries.
+	 *
+	 * @param symmetries the symmetries of the board
+	 * @param cellsCount the amount of cells of the board
+	 * @return the cell mask every byte of a cell mask is mapped to by every
+	 *         symmetry
+	 */
+	private static int[][][] createSymmetryMasks(final Symmetries symmetries, final int cellsCount) {
+		int[][][] symmetryMasks = new int[symmetries.getCount()][(cellsCount + 7) / 8][256];
+		for (int symmetry = 0; symmetry < symmetries.getCount(); symmetry++) {
+			for (int part = 0; part < symmetryMasks[symmetry].length; part++) {
+				for (int bits = 0; bits < 256; bits++) {
+					int mask = 0;
+					for (int bit = 0; bit < 8 && part * 8 + bit < cellsCount; bit++) {
+						if ((bits & 1 << bit) != 0) {
+							mask |= 1 << symmetries.mapCell(symmetry, part * 8 + bit);
+						}
+					}
+					symmetryMasks[symmetry][part][bits] = mask;
+				}
+			}
+		}
+		return symmetryMasks;
+	}
+
+	/**
+	 * Solves the tablebase.
+	 *
+	 * @param workers the workers solving the ranges of a layer in parallel
+	 * @param workersCount the amount of the given workers
+	 * @throws InterruptedException if the solver is interrupted
+	 * @throws ExecutionException if solving a range fails
+	 * @throws IllegalArgumentException if given workers are null or given
+	 *                                  amount is not positive
+	 */
+	public void solve(final ExecutorService workers, final int workersCount)
+			throws InterruptedException, ExecutionException {
+		if (workers == null) {
+			throw new IllegalArgumentException("Given workers can not be null!");
+		}
+		if (workersCount <= 0) {
+			throw new IllegalArgumentException("Given amount of workers must be positive!");
+		}
+		searchedCount = 0;
+		for (int marks = cellsCount; marks >= 0; marks--) {
+			for (boolean searching : new boolean[] { true, false }) {
+				int moverMarks = Tablebase.getMoverMarks(marks);
+				int moversCount = Tablebase.getBinomial(cellsCount, moverMarks);
+				int rangesCount = Math.min(moversCount, workersCount * RANGES_PER_WORKER);
+				List<Future<Long>> ranges = new ArrayList<Future<Long>>();
+				for (int range = 0; range < rangesCount; range++) {
+					int first = (int) ((long) moversCount * range / rangesCount);
+					int end = (int) ((long) moversCount * (range + 1) / rangesCount);
+					final int layer = marks;
+					ranges.add(workers.submit(() -> solveRange(layer, first, end, searching)));
+				}
+				for (Future<Long> range : ranges) {
+					searchedCount += range.get();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solves a range of the positions of a layer.
+	 *
+	 * The positions are visited in the order of their ranks, the combinations
+	 * of the cells of the mover in the order of their masks and for each of them
+	 * the combinations of the cells of the opponent among the remaining cells.
+	 *
+	 * @param marks the amount of marks of the positions of the layer
+	 * @param first the rank of the first combination of the mover's cells
+	 * @param end the rank after the last combination of the mover's cells
+	 * @param searching whether the positions with the smallest cell masks of
+	 *                  their symmetric positions are solved by searching their
+	 *                  moves or the other ones by copying their values
+	 * @return the amount of positions solved by searching their moves
+	 */
+	private long solveRange(final int marks, final int first, final int end, final boolean searching) {
+		int moverMarks = Tablebase.getMoverMarks(marks);
+		int opponentMarks = marks - moverMarks;
+		int freeCount = cellsCount - moverMarks;
+		int opponentsCount = Tablebase.getBinomial(freeCount, opponentMarks);
+		int all = (1 << cellsCount) - 1;
+		long searched = 0;
+		int mover = Tablebase.getCombination(first, moverMarks);
+		for (int moverRank = first; moverRank < end; moverRank++) {
+			int free = ~mover & all;
+			long rank = ranking.getLayerOffset(marks) + (long) moverRank * opponentsCount;
+			int compressed = (1 << opponentMarks) - 1;
+			for (int opponentRank = 0; opponentRank < opponentsCount; opponentRank++, rank++) {
+				int opponent = Tablebase.deposit(compressed, free);
+				int canonical = getCanonicalKey(mover, opponent);
+				if (canonical == getKey(mover, opponent)) {
+					if (searching) {
+						values[(int) rank] = (byte) solve(mover, opponent, free);
+						searched++;
+					}
+				} else if (!searching) {
+					values[(int) rank] = values[(int) ranking.getRank(canonical >>> 16, canonical & 0xFFFF)];
+				}
+				compressed = getNextCombination(compressed);
+			}
+			mover = getNextCombination(mover);
+		}
+		return searched;
+	}
+
+	/**
+	 * Solves a position.
+	 *
+	 * @param mover the cell mask of the mover
+	 * @param opponent the cell mask of the opponent
+	 * @param free the cell mask of the cells not marked by the mover
+	 * @return the value of the position for the mover
+	 */
+	private int solve(final int mover, final int opponent, final int free) {
+		if (ranking.hasLine(opponent)) {
+			return ranking.hasLine(mover) ? Tablebase.INVALID : Tablebase.LOSS;
+		}
+		if (ranking.hasLine(mover)) {
+			return Tablebase.INVALID;
+		}
+		int empty = free & ~opponent;
+		if (empty == 0) {
+			return Tablebase.DRAW;
+		}
+		int value = Tablebase.LOSS;
+		for (int rest = empty; rest != 0; rest &= rest - 1) {
+			int cell = Integer.numberOfTrailingZeros(rest);
+			int marked = mover | 1 << cell;
+			if (ranking.isWinningCell(marked, cell)) {
+				return Tablebase.WIN;
+			}
+			int childValue = values[(int) ranking.getRank(opponent, marked)];
+			if (childValue == Tablebase.LOSS) {
+				return Tablebase.WIN;
+			} else if (childValue == Tablebase.DRAW) {
+				value = Tablebase.DRAW;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the key of a position.
+	 *
+	 * @param mover the cell mask of the mover
+	 * @param opponent the cell mask of the opponent
+	 * @return both cell masks in one int, the mover's one in the upper half
+	 */
+	private static int getKey(final int mover, final int opponent) {
+		return mover << 16 | opponent;
+	}
+
+	/**
+	 * Gets the smallest key of the symmetric positions of a position.
+	 *
+	 * @param mover the cell mask of the mover
+	 * @param opponent the cell mask of the opponent
+	 * @return the smallest unsigned key of the position mapped by any symmetry
+	 */
+	private int getCanonicalKey(final int mover, final int opponent) {
+		int canonical = getKey(mover, opponent);
+		for (int symmetry = 1; symmetry < symmetryMasks.length; symmetry++) {
+			int key = getKey(map(symmetry, mover), map(symmetry, opponent));
+			if (Integer.compareUnsigned(key, canonical) < 0) {
+				canonical = key;
+			}
+		}
+		return canonical;
+	}
+
+	/**
+	 * Maps a cell mask by a symmetry.
+	 *
+	 * @param symmetry the symmetry
+	 * @param mask the cell mask
+	 * @return the mask of the cells the cells of the given mask are mapped to
+	 */
+	private int map(final int symmetry, final int mask) {
+		int[][] masks = symmetryMasks[symmetry];
+		int mapped = 0;
+		for (int part = 0; part < masks.length; part++) {
+			mapped |= masks[part][mask >>> (part * 8) & 0xFF];
+		}
+		return mapped;
+	}
+
+	/**
+	 * Gets the next combination of as many cells in the order of their masks.
+	 *
+	 * @param mask the cell mask of a combination
+	 * @return the next larger mask with as many cells
+	 */
+	private static int getNextCombination(final int mask) {
+		if (mask == 0) {
+			return 0;
+		}
+		int lowest = mask & -mask;
+		int ripple = mask + lowest;
+		return ripple | ((mask ^ ripple) >>> 2) / lowest;
+	}
+
+	/**
+	 * Writes the solved tablebase.
+	 *
+	 * @param file the tablebase file, which is replaced
+	 * @throws IOException if the file can not be written
+	 * @throws IllegalArgumentException if given file is null
+	 */
+	public void write(final File file) throws IOException {
+		ranking.write(file, values);
+	}
+
+	/**
+	 * Gets the amount of positions with a value.
+	 *
+	 * @param value the value, {@link Tablebase#WIN}, {@link Tablebase#DRAW},
+	 *              {@link Tablebase#LOSS} or {@link Tablebase#INVALID}
+	 * @return the amount of solved positions with the given value for the
+	 *         mover
+	 */
+	public long getValueCount(final int value) {
+		long count = 0;
+		for (byte positionValue : values) {
+			if (positionValue == value) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the amount of searched positions.
+	 *
+	 * @return the amount of positions solved by searching their moves, one of
+	 *         every set of symmetric positions
+	 */
+	public /* @ pure @ */ long getSearchedCount() {
+		return searchedCount;
+	}
+
+	/**
+	 * Gets the amount of positions.
+	 *
+	 * @return the amount of positions of the tablebase
+	 */
+	public long getPositionsCount() {
+		return values.length;
+	}
+
+	/**
+	 * Gets the lines.
+	 *
+	 * @return the lines of the board of the solved tablebase
+	 */
+	public /* @ pure @ */ Lines getLines() {
+		return ranking.getLines();
+	}
+
+}
@@ -0,0 +1,581 @@
+package de.sengerts.tictactoe.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Class representing a fixed size hash table of already searched positions.
+ *
+ * Every entry is packed into two longs, the position key and the entry data.
+ * The key is stored xor-ed with the data, so an entry whose two halves were
+ * written by different searches never matches a probe and no locking is needed
+ * when a table is shared.
+ *
+ * A table can also be backed by a memory mapped file of one board size and win
+ * length ({@link #open(File, Lines, int)}), so the searched positions survive
+ * restarts. The file starts with a versioned header, which also holds a
+ * checksum of all entries written when the table is closed. While the table is
+ * open, the header marks the file as dirty, so a file left behind by a crashed
+ * process is never trusted and starts empty again. Only one process writes to
+ * a file, the one holding its lock. Other processes on the same host, or other
+ * tables of the same process, map the file copy on write instead, so they share the pages of the writer, search
+ * with its entries and keep their own entries private.
+ *
+ * @author Tobias Senger
+ */
+public final class TranspositionTable implements Closeable {
+
+	/**
+	 * Class variable that stores the flag of entries with an exact score.
+	 */
+	public static final int EXACT = 0;
+
+	/**
+	 * Class variable that stores the flag of entries whose score is a lower bound.
+	 */
+	public static final int LOWER_BOUND = 1;
+
+	/**
+	 * Class variable that stores the flag of entries whose score is an upper
+	 * bound.
+	 */
+	public static final int UPPER_BOUND = 2;
+
+	/**
+	 * Class variable that stores the value returned by probes without a matching
+	 * entry. Stored entries always have a depth of at least one and therefore can
+	 * never be zero.
+	 */
+	public static final long MISS = 0L;
+
+	/**
+	 * Class variable that stores the file name extension of table files.
+	 */
+	public static final String EXTENSION = ".tttp";
+
+	/**
+	 * Class variable that stores the most size bits of a table backed by a
+	 * file, as the keys and the data of its entries are mapped separately.
+	 */
+	public static final int MAX_FILE_SIZE_BITS = 27;
+
+	/**
+	 * Class variable that stores the magic bytes a table file starts with.
+	 */
+	private static final int MAGIC = 'T' | 'T' << 8 | 'T' << 16 | 'P' << 24;
+
+	/**
+	 * Class variable that stores the version of the table file, which has to be
+	 * increased whenever the packing of the entries changes.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Class variable that stores the size of the header of the table file.
+	 */
+	private static final int HEADER_BYTES = 64;
+
+	/**
+	 * Class variable that stores the offset of the version in the header.
+	 */
+	private static final int VERSION_OFFSET = 4;
+
+	/**
+	 * Class variable that stores the offset of the size bits in the header.
+	 */
+	private static final int SIZE_BITS_OFFSET = 8;
+
+	/**
+	 * Class variable that stores the offset of the state in the header.
+	 */
+	private static final int STATE_OFFSET = 12;
+
+	/**
+	 * Class variable that stores the offset of the board tag in the header.
+	 */
+	private static final int TAG_OFFSET = 16;
+
+	/**
+	 * Class variable that stores the offset of the checksum in the header.
+	 */
+	private static final int CHECKSUM_OFFSET = 24;
+
+	/**
+	 * Class variable that stores the state of a file whose table is open or
+	 * was not closed.
+	 */
+	private static final int DIRTY = 0;
+
+	/**
+	 * Class variable that stores the state of a file whose table was closed
+	 * and whose checksum is valid.
+	 */
+	private static final int CLEAN = 1;
+
+	/**
+	 * Instance variable that stores the xor-ed keys of all entries.
+	 */
+	private final LongBuffer keys;
+
+	/**
+	 * Instance variable that stores the data of all entries.
+	 */
+	private final LongBuffer data;
+
+	/**
+	 * Instance variable that stores the mask to map keys to entry indices.
+	 */
+	private final int mask;
+
+	/**
+	 * Instance variable that stores the locked channel of the file this table
+	 * writes to or null if it writes to no file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Instance variable that stores the mapped header of the file this table
+	 * writes to or null if it writes to no file.
+	 */
+	private final MappedByteBuffer header;
+
+	/**
+	 * Instance variable that stores the mapped bytes of the keys and of the
+	 * data of the file this table writes to or null if it writes to no file.
+	 */
+	private final MappedByteBuffer[] entryBytes;
+
+	/**
+	 * Instance variable that stores whether this table holds the entries of a
+	 * file written by an earlier or another process.
+	 */
+	private final boolean restored;
+
+	/**
+	 * Instance variable that stores whether this table shares the entries of
+	 * a file another process writes to.
+	 */
+	private final boolean shared;
+
+	/**
+	 * Instance variable that stores whether this table has been closed, after
+	 * which nothing is stored anymore.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Another constructor for class TranspositionTable.
+	 *
+	 * Creates a new empty table with 2^sizeBits entries.
+	 *
+	 * @param sizeBits the base two logarithm of the amount of entries
+	 * @throws IllegalArgumentException if given size bits are not between 1 and 30
+	 */
+	public TranspositionTable(final int sizeBits) {
+		this(wrap(sizeBits), LongBuffer.wrap(new long[1 << sizeBits]), null, null, null, false, false);
+	}
+
+	/**
+	 * Another constructor for class TranspositionTable.
+	 *
+	 * @param keys the xor-ed keys of all entries
+	 * @param data the data of all entries
+	 * @param channel the locked channel of the written file or null
+	 * @param header the mapped header of the written file or null
+	 * @param entryBytes the mapped keys and data of the written file or null
+	 * @param restored whether the table holds the entries of a file
+	 * @param shared whether the table shares the entries of a file another
+	 *               process writes to
+	 */
+	private TranspositionTable(final LongBuffer keys, final LongBuffer data, final FileChannel channel,
+			final MappedByteBuffer header, final MappedByteBuffer[] entryBytes, final boolean restored,
+			final boolean shared) {
+		this.keys = keys;
+		this.data = data;
+		this.mask = keys.capacity() - 1;
+		this.channel = channel;
+		this.header = header;
+		this.entryBytes = entryBytes;
+		this.restored = restored;
+		this.shared = shared;
+	}
+
+	/**
+	 * Creates the keys of a table in memory.
+	 *
+	 * @param sizeBits the base two logarithm of the amount of entries
+	 * @return the zeroed keys of all entries
+	 * @throws IllegalArgumentException if given size bits are not between 1 and 30
+	 */
+	private static LongBuffer wrap(final int sizeBits) {
+		if (sizeBits < 1 || sizeBits > 30) {
+			throw new IllegalArgumentException("Given size bits must be between 1 and 30!");
+		}
+		return LongBuffer.wrap(new long[1 << sizeBits]);
+	}
+
+	/**
+	 * Opens a table backed by a file.
+	 *
+	 * If no other process holds the lock of the given file, the returned table
+	 * writes to the file. It starts with the entries of the file if the file
+	 * was closed properly and its header and checksum fit the given board and
+	 * size, otherwise it starts empty and the file is cleared. If another
+	 * process writes to the file, the returned table maps its entries copy on
+	 * write, or starts empty in memory if they do not fit.
+	 *
+	 * @param file the table file, which is created if it does not exist
+	 * @param lines the lines of the board the table is searched for
+	 * @param sizeBits the base two logarithm of the amount of entries
+	 * @return the opened table, which has to be closed to keep its entries
+	 * @throws IOException if the file can not be opened or mapped
+	 * @throws IllegalArgumentException if given file or lines are null or
+	 *                                  given size bits are not between 1 and
+	 *                                  {@link #MAX_FILE_SIZE_BITS}
+	 */
+	public static TranspositionTable open(final File file, final Lines lines, final int sizeBits)
+			throws IOException {
+		if (file == null || lines == null) {
+			throw new IllegalArgumentException("Given file and lines can not be null!");
+		}
+		if (sizeBits < 1 || sizeBits > MAX_FILE_SIZE_BITS) {
+			throw new IllegalArgumentException("Given size bits must be between 1 and " + MAX_FILE_SIZE_BITS + "!");
+		}
+		long tag = getTag(lines);
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+		try {
+			FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				lock = null;
+			}
+			if (lock == null) {
+				try {
+					return openShared(channel, sizeBits, tag);
+				} finally {
+					channel.close();
+				}
+			}
+			return openWritten(channel, sizeBits, tag);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a table writing to a locked file.
+	 *
+	 * @param channel the channel of the file holding its lock
+	 * @param sizeBits the base two logarithm of the amount of entries
+	 * @param tag the tag of the board
+	 * @return the opened table
+	 * @throws IOException if the file can not be mapped
+	 */
+	private static TranspositionTable openWritten(final FileChannel channel, final int sizeBits, final long tag)
+			throws IOException {
+		long entriesBytes = (long) Long.BYTES << sizeBits;
+		boolean sized = channel.size() == HEADER_BYTES + 2 * entriesBytes;
+		if (!sized) {
+			channel.truncate(0);
+		}
+		MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		MappedByteBuffer[] entryBytes = mapEntries(channel, FileChannel.MapMode.READ_WRITE, entriesBytes);
+		boolean restored = sized && fits(header, sizeBits, tag) && header.getInt(STATE_OFFSET) == CLEAN
+				&& header.getLong(CHECKSUM_OFFSET) == getChecksum(entryBytes);
+		header.putInt(STATE_OFFSET, DIRTY);
+		header.force();
+		TranspositionTable table = new TranspositionTable(entryBytes[0].asLongBuffer(),
+				entryBytes[1].asLongBuffer(), channel, header, entryBytes, restored, false);
+		if (!restored) {
+			if (sized) {
+				table.clear();
+			}
+			header.putInt(0, MAGIC);
+			header.putInt(VERSION_OFFSET, VERSION);
+			header.putInt(SIZE_BITS_OFFSET, sizeBits);
+			header.putLong(TAG_OFFSET, tag);
+			header.force();
+		}
+		return table;
+	}
+
+	/**
+	 * Opens a table sharing a file another process writes to.
+	 *
+	 * The file of a living writer is always dirty, so only its header is
+	 * checked. Its entries can not be torn, as every entry is checked against
+	 * its key on every probe.
+	 *
+	 * @param channel the channel of the file another process holds the lock of
+	 * @param sizeBits the base two logarithm of the amount of entries
+	 * @param tag the tag of the board
+	 * @return the opened table, which is in memory if the file does not fit
+	 * @throws IOException if the file can not be mapped
+	 */
+	private static TranspositionTable openShared(final FileChannel channel, final int sizeBits, final long tag)
+			throws IOException {
+		long entriesBytes = (long) Long.BYTES << sizeBits;
+		if (channel.size() != HEADER_BYTES + 2 * entriesBytes
+				|| !fits(map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES), sizeBits, tag)) {
+			return new TranspositionTable(sizeBits);
+		}
+		MappedByteBuffer[] entryBytes = mapEntries(channel, FileChannel.MapMode.PRIVATE, entriesBytes);
+		return new TranspositionTable(entryBytes[0].asLongBuffer(), entryBytes[1].asLongBuffer(), null, null, null,
+				true, true);
+	}
+
+	/**
+	 * Maps a region of a table file.
+	 *
+	 * @param channel the channel of the file
+	 * @param mode the mode to map the region with
+	 * @param position the offset of the region
+	 * @param size the size of the region
+	 * @return the little endian mapped region, which extends the file if
+	 *         needed and written
+	 * @throws IOException if the region can not be mapped
+	 */
+	private static MappedByteBuffer map(final FileChannel channel, final FileChannel.MapMode mode,
+			final long position, final long size) throws IOException {
+		MappedByteBuffer region = channel.map(mode, position, size);
+		region.order(ByteOrder.LITTLE_ENDIAN);
+		return region;
+	}
+
+	/**
+	 * Maps the keys and the data of the entries of a table file.
+	 *
+	 * @param channel the channel of the file
+	 * @param mode the mode to map the entries with
+	 * @param entriesBytes the size of the keys and of the data
+	 * @return the mapped keys and the mapped data
+	 * @throws IOException if the entries can not be mapped
+	 */
+	private static MappedByteBuffer[] mapEntries(final FileChannel channel, final FileChannel.MapMode mode,
+			final long entriesBytes) throws IOException {
+		return new MappedByteBuffer[] { map(channel, mode, HEADER_BYTES, entriesBytes),
+				map(channel, mode, HEADER_BYTES + entriesBytes, entriesBytes) };
+	}
+
+	/**
+	 * Gets whether the header of a table file fits a table.
+	 *
+	 * @param header the mapped header
+	 * @param sizeBits the base two logarithm of the amount of entries
+	 * @param tag the tag of the board
+	 * @return true if the header has the magic bytes, version, size bits and
+	 *         board tag of the table, otherwise false
+	 */
+	private static boolean fits(final ByteBuffer header, final int sizeBits, final long tag) {
+		return header.getInt(0) == MAGIC && header.getInt(VERSION_OFFSET) == VERSION
+				&& header.getInt(SIZE_BITS_OFFSET) == sizeBits && header.getLong(TAG_OFFSET) == tag;
+	}
+
+	/**
+	 * Gets the checksum of the entries of a table file.
+	 *
+	 * @param entryBytes the mapped keys and data
+	 * @return the CRC-32 of the keys and the data
+	 */
+	private static long getChecksum(final ByteBuffer[] entryBytes) {
+		CRC32 checksum = new CRC32();
+		for (ByteBuffer bytes : entryBytes) {
+			checksum.update(bytes.duplicate());
+		}
+		return checksum.getValue();
+	}
+
+	/**
+	 * Gets the tag of a board.
+	 *
+	 * The tag depends on the board size, the win length and the keys of the
+	 * positions, so a file is never used for another board or after the keys
+	 * have changed.
+	 *
+	 * @param lines the lines of the board
+	 * @return the tag stored in the header of the table files of the board
+	 */
+	private static long getTag(final Lines lines) {
+		return Zobrist.getSizeKey(lines.getRowsCount(), lines.getColumnsCount())
+				^ Zobrist.getWinLengthKey(lines.getWinLength()) ^ Zobrist.getCellKey(0, 0);
+	}
+
+	/**
+	 * Gets the file name of the table of a board.
+	 *
+	 * @param lines the lines of the board
+	 * @return the file name of the table, like 7x7k4.tttp
+	 */
+	public static String getFileName(final Lines lines) {
+		return lines.getRowsCount() + "x" + lines.getColumnsCount() + "k" + lines.getWinLength() + EXTENSION;
+	}
+
+	/**
+	 * Probes this table for a position.
+	 *
+	 * @param key the key of the position
+	 * @return the entry data of the position or {@link #MISS} if not stored
+	 */
+	public long probe(final long key) {
+		int index = (int) key & mask;
+		long entry = data.get(index);
+		return (keys.get(index) ^ entry) == key ? entry : MISS;
+	}
+
+	/**
+	 * Stores an entry for a position, replacing the entry at its index, unless
+	 * this table has been closed.
+	 *
+	 * @param key   the key of the position
+	 * @param score the score of the position
+	 * @param depth the depth the position was searched with, at least one
+	 * @param flag  the flag telling whether the score is exact or a bound
+	 * @param move  the best cell of the position or -1 if none
+	 */
+	public void store(final long key, final int score, final int depth, final int flag, final int move) {
+		if (closed) {
+			return;
+		}
+		int index = (int) key & mask;
+		long entry = ((long) score << 32) | ((long) (Math.min(depth, 0xFF)) << 24) | ((long) flag << 16)
+				| ((move + 1) & 0xFFFF);
+		data.put(index, entry);
+		keys.put(index, key ^ entry);
+	}
+
+	/**
+	 * Clears all entries of this table.
+	 */
+	public void clear() {
+		for (int index = 0; index <= mask; index++) {
+			keys.put(index, 0L);
+			data.put(index, 0L);
+		}
+	}
+
+	/**
+	 * Closes this table.
+	 *
+	 * Stops storing entries and, if this table writes to a file, forces its
+	 * entries to the file, writes their checksum, marks the file as clean and
+	 * releases its lock. Entries of searches still running while the checksum
+	 * is computed make the file dirty again, so it starts empty next time.
+	 * Closing a table in memory or a closed table does nothing else.
+	 */
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (channel == null) {
+			return;
+		}
+		try {
+			for (MappedByteBuffer bytes : entryBytes) {
+				bytes.force();
+			}
+			header.putLong(CHECKSUM_OFFSET, getChecksum(entryBytes));
+			header.putInt(STATE_OFFSET, CLEAN);
+			header.force();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Gets the score of an entry.
+	 *
+	 * @param entry the entry data
+	 * @return the score stored in the entry
+	 */
+	public static int getScore(final long entry) {
+		return (int) (entry >> 32);
+	}
+
+	/**
+	 * Gets the depth of an entry.
+	 *
+	 * @param entry the entry data
+	 * @return the depth stored in the entry
+	 */
+	public static int getDepth(final long entry) {
+		return (int) (entry >>> 24) & 0xFF;
+	}
+
+	/**
+	 * Gets the flag of an entry.
+	 *
+	 * @param entry the entry data
+	 * @return the flag stored in the entry
+	 */
+	public static int getFlag(final long entry) {
+		return (int) (entry >>> 16) & 0x3;
+	}
+
+	/**
+	 * Gets the best move of an entry.
+	 *
+	 * @param entry the entry data
+	 * @return the best cell stored in the entry or -1 if none
+	 */
+	public static int getMove(final long entry) {
+		return ((int) entry & 0xFFFF) - 1;
+	}
+
+	/**
+	 * Gets the amount of entries.
+	 *
+	 * @return the amount of entries of this table
+	 */
+	public /* @ pure @ */ int getSize() {
+		return mask + 1;
+	}
+
+	/**
+	 * Gets whether this table is backed by a file.
+	 *
+	 * @return true if this table writes to a file or shares the entries of a
+	 *         file another process writes to, otherwise false
+	 */
+	public /* @ pure @ */ boolean isPersistent() {
+		return channel != null || shared;
+	}
+
+	/**
+	 * Gets whether this table was restored.
+	 *
+	 * @return true if this table started with the entries of a file written
+	 *         by an earlier or another process, otherwise false
+	 */
+	public /* @ pure @ */ boolean isRestored() {
+		return restored;
+	}
+
+	/**
+	 * Gets whether this table is shared.
+	 *
+	 * @return true if this table shares the entries of a file another process
+	 *         writes to, keeping its own entries private, otherwise false
+	 */
+	public /* @ pure @ */ boolean isShared() {
+		return shared;
+	}
+
+}
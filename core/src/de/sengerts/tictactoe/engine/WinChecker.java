@@ -0,0 +1,56 @@
+package de.sengerts.tictactoe.engine;
+
+/**
+ * Interface for checking whether a side has completed a winning line of a
+ * board.
+ *
+ * Besides the generic implementation working with any rules
+ * ({@link RunWinChecker}) there is a size specialized implementation for
+ * every board size of the classic rules, generated at build time with all
+ * lines unrolled into constant masks. {@link WinCheckers#get(int, int, int)}
+ * picks the fastest available one.
+ *
+ * @author Tobias Senger
+ */
+public interface WinChecker {
+
+	/**
+	 * Gets whether a side has completed a winning line.
+	 *
+	 * @param board the board to check, whose lines must be the ones of this
+	 *              checker
+	 * @param side  the side to check
+	 * @return true if the side has marked every cell of at least one line,
+	 *         otherwise false
+	 */
+	boolean hasWinningLine(Board board, int side);
+
+	/**
+	 * Gets the amount of lines.
+	 *
+	 * @return the amount of winning lines of this checker
+	 */
+	int getLinesCount();
+
+	/**
+	 * Gets the amount of words of every line mask.
+	 *
+	 * @return the amount of 64 bit words per line mask, which equals the amount
+	 *         of words of a bitboard of the board
+	 */
+	int getWordsCount();
+
+	/**
+	 * Gets one word of the mask of a line.
+	 *
+	 * The masks use the padded bit layout of {@link Board}, so a line is
+	 * complete for a side if and-ing every word of the side's bitboard with the
+	 * line mask gives the line mask again.
+	 *
+	 * @param line the line index, in the order of {@link Lines}
+	 * @param word the index of the 64 bit word
+	 * @return the bits of the line in the given word
+	 */
+	long getLineMask(int line, int word);
+
+}
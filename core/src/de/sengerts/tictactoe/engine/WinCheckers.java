@@ -0,0 +1,43 @@
+package de.sengerts.tictactoe.engine;
+
+import de.sengerts.tictactoe.engine.generated.GeneratedWinCheckers;
+
+/**
+ * Class providing the win checker for a set of rules.
+ *
+ * @author Tobias Senger
+ */
+public final class WinCheckers {
+
+	/**
+	 * Private constructor for class WinCheckers, as it only has static methods.
+	 */
+	private WinCheckers() {
+	}
+
+	/**
+	 * Gets the win checker for a territory and win length.
+	 *
+	 * Gets the size specialized checker generated at build time if the rules are
+	 * the classic ones on a square territory of a generated size
+	 * ({@link GeneratedWinCheckers#MIN_SIZE} to
+	 * {@link GeneratedWinCheckers#MAX_SIZE}), otherwise a new generic checker.
+	 *
+	 * @param rowsCount    the amount of rows of the territory
+	 * @param columnsCount the amount of columns of the territory
+	 * @param winLength    the amount of cells in a row needed to win
+	 * @return the win checker for the given rules
+	 * @throws IllegalArgumentException if given counts are not positive or the
+	 *                                  win length does not fit into the territory
+	 */
+	public static WinChecker get(final int rowsCount, final int columnsCount, final int winLength) {
+		if (rowsCount == columnsCount && columnsCount == winLength) {
+			WinChecker generated = GeneratedWinCheckers.get(rowsCount);
+			if (generated != null) {
+				return generated;
+			}
+		}
+		return new RunWinChecker(Lines.mnk(rowsCount, columnsCount, winLength));
+	}
+
+}
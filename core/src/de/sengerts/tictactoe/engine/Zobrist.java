@@ -0,0 +1,91 @@
+package de.sengerts.tictactoe.engine;
+
+/**
+ * Class providing the Zobrist keys used to hash board positions.
+ *
+ * The keys are derived from a fixed seed with the SplitMix64 finalizer instead
+ * of being drawn from a random number generator, so they are identical in every
+ * run and hashes can be stored and compared across processes.
+ *
+ * @author Tobias Senger
+ */
+public final class Zobrist {
+
+	/**
+	 * Class variable that stores the seed all keys are derived from.
+	 */
+	private static final long SEED = 0x5EA6E7754C0FFEE5L;
+
+	/**
+	 * Class variable that stores the odd constant used to spread key indices.
+	 */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Private constructor for class Zobrist, as it only has static methods.
+	 */
+	private Zobrist() {
+	}
+
+	/**
+	 * Gets the key of a marked cell.
+	 *
+	 * @param cell the cell index
+	 * @param side the side that marked the cell
+	 * @return the key for the given cell marked by the given side
+	 */
+	public static long getCellKey(final int cell, final int side) {
+		return mix(SEED + (2L * cell + side + 1) * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Gets the key of the side to move.
+	 *
+	 * @param side the side to move
+	 * @return the key for the given side to move, zero for side X
+	 */
+	public static long getSideKey(final int side) {
+		return side == 0 ? 0L : mix(SEED - GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Gets the key of a territory size.
+	 *
+	 * Gets the key every hash of an empty board starts with, so equal
+	 * arrangements of marks on different territory sizes hash differently.
+	 *
+	 * @param rowsCount    the amount of rows
+	 * @param columnsCount the amount of columns
+	 * @return the key for the given territory size
+	 */
+	public static long getSizeKey(final int rowsCount, final int columnsCount) {
+		return mix(SEED ^ ((long) rowsCount << 32 | columnsCount));
+	}
+
+	/**
+	 * Gets the key of a win length.
+	 *
+	 * Gets the key telling apart equal positions of games with different win
+	 * lengths, for hashes stored beyond one board, like the keys of an
+	 * {@link OpeningBook}.
+	 *
+	 * @param winLength the amount of marks in a row needed to win
+	 * @return the key for the given win length
+	 */
+	public static long getWinLengthKey(final int winLength) {
+		return mix(SEED - (winLength + 2L) * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Mixes the given value with the SplitMix64 finalizer.
+	 *
+	 * @param value the value to mix
+	 * @return the mixed value
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+}
@@ -0,0 +1,23 @@
+package de.sengerts.tictactoe.logic;
+
+/**
+ * Interface representing a command changing the state of a tic tac toe game.
+ * 
+ * Commands are submitted to a {@link GameLoop} from any thread and executed
+ * one after another on the thread running the loop, which is the only thread
+ * allowed to change the games of the loop.
+ * 
+ * @author Tobias Senger
+ */
+@FunctionalInterface
+public interface GameCommand {
+
+	/**
+	 * Executes this command.
+	 * 
+	 * Executes this command on the thread running the game loop it was
+	 * submitted to.
+	 */
+	void execute();
+
+}
@@ -0,0 +1,40 @@
+package de.sengerts.tictactoe.logic;
+
+import de.sengerts.tictactoe.model.players.Player;
+
+/**
+ * Interface for listening to the progress of a tic tac toe game.
+ * 
+ * All methods are called on the thread running the game's {@link GameLoop},
+ * right after the game has changed.
+ * 
+ * @author Tobias Senger
+ */
+public interface GameListener {
+
+	/**
+	 * Called after a player has marked a tile.
+	 * 
+	 * @param gameLogic the game the move was made in
+	 * @param player the player who made the move
+	 * @param cell the index of the marked tile in the territory
+	 */
+	void moveMade(GameLogic gameLogic, Player player, int cell);
+
+	/**
+	 * Called after a move was rejected, because the game is over, it is not a
+	 * human player's turn or the tile is already marked.
+	 * 
+	 * @param gameLogic the game the move was rejected in
+	 * @param cell the index of the tile the move wanted to mark
+	 */
+	void moveRejected(GameLogic gameLogic, int cell);
+
+	/**
+	 * Called after a game has ended with a winner or a draw.
+	 * 
+	 * @param gameLogic the game that ended
+	 */
+	void gameEnded(GameLogic gameLogic);
+
+}
@@ -1,33 +1,58 @@
 package de.sengerts.tictactoe.logic;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
-
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.WinChecker;
+import de.sengerts.tictactoe.engine.WinCheckers;
+import de.sengerts.tictactoe.exceptions.TileAreadyMarkedException;
 import de.sengerts.tictactoe.model.GameState;
 import de.sengerts.tictactoe.model.board.Location;
 import de.sengerts.tictactoe.model.board.Territory;
+import de.sengerts.tictactoe.model.board.ThreatIndex;
+import de.sengerts.tictactoe.model.board.Tile;
 import de.sengerts.tictactoe.model.players.AIPlayer;
 import de.sengerts.tictactoe.model.players.HumanPlayer;
 import de.sengerts.tictactoe.model.players.Player;
 import de.sengerts.tictactoe.model.players.PlayerSign;
-import de.sengerts.tictactoe.model.players.ai.EasyAIPlayer;
-import de.sengerts.tictactoe.model.players.ai.HardAIPlayer;
-import de.sengerts.tictactoe.model.players.ai.MediumAIPlayer;
+import de.sengerts.tictactoe.model.players.ai.SearchAIPlayer;
 import de.sengerts.tictactoe.model.settings.AIDifficulty;
 import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
 
 /**
  * Class representing a tic tac toe game.
  * 
+ * A game is only changed by the commands of its {@link GameLoop}, which are
+ * executed one after another by a single thread. Human players' moves are
+ * submitted as commands, and AI players compute their moves on a copy of the
+ * board on a thread of the game's scheduler and submit them as commands as
+ * well.
+ * 
+ * Every game has its own random number generator created from a seed, so a
+ * game can be reproduced exactly by creating it with the same seed and making
+ * the same human moves.
+ * 
  * @author Tobias Senger
  */
 public class GameLogic {
 
-	public static final Random RANDOM = new Random();
-	public static final Timer TIMER = new Timer();
+	/**
+	 * Class variable that stores the delay in milliseconds before an AI player
+	 * starts choosing its move.
+	 */
+	public static final long AI_MOVE_DELAY_MILLIS = 400;
+
+	/**
+	 * Class variable that stores the odd step between the seeds from which the
+	 * seeds of continued games are derived, one per amount of marked tiles.
+	 */
+	private static final long CONTINUATION_SEED_STEP = 0x9E3779B97F4A7C15L;
 
 	/**
 	 * Instance variable that stores the state of this tic tac toe game.
@@ -50,11 +75,56 @@ public class GameLogic {
 	 */
 	private final AIDifficulty aiDifficulty;
 
+	/**
+	 * Instance variable that stores the optional rules of this tic tac toe game.
+	 */
+	private final GameRules rules;
+
+	/**
+	 * Instance variable that stores the win checker chosen for the size and
+	 * rules of this tic tac toe game.
+	 */
+	private final WinChecker winChecker;
+
 	/**
 	 * Instance variable that stores the territory of this tic tac toe game.
 	 */
 	private final Territory territory;
 
+	/**
+	 * Instance variable that stores the game loop executing all changes of this
+	 * tic tac toe game.
+	 */
+	private final GameLoop gameLoop;
+
+	/**
+	 * Instance variable that stores the scheduler slot of this tic tac toe game.
+	 */
+	private final GameScheduler scheduler;
+
+	/**
+	 * Instance variable that stores the seed of the random number generator of
+	 * this tic tac toe game.
+	 */
+	private final long seed;
+
+	/**
+	 * Instance variable that stores the random number generator of this tic tac
+	 * toe game, which is only used on the game loop's thread.
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * Instance variable that stores the listeners of this tic tac toe game.
+	 */
+	private final List<GameListener> listeners;
+
+	/**
+	 * Instance variable that stores the delay in milliseconds before the AI
+	 * player of this tic tac toe game starts choosing its move.
+	 */
+	private volatile long aiMoveDelayMillis;
+
 	/**
 	 * Instance variable that stores both players of this tic tac toe game.
 	 */
@@ -82,25 +152,158 @@ public class GameLogic {
 	 * @param aiDifficulty the AI difficulty for this game
 	 */
 	public GameLogic(final Dimension size, final boolean aiOpponent, final AIDifficulty aiDifficulty) {
+		this(size, aiOpponent, aiDifficulty, GameRules.CLASSIC);
+	}
+
+	/**
+	 * Another constructor for class TicTacToeGame.
+	 * 
+	 * Creates a new object of type TicTacToeGame with the given size containing
+	 * rows and column counts for the games territory, played with the given
+	 * optional rules.
+	 * 
+	 * @param size the size of the tic tac toe game territory
+	 * @param aiOpponent whether this game is a game against an AI player
+	 * @param aiDifficulty the AI difficulty for this game
+	 * @param rules the optional rules of this game
+	 */
+	public GameLogic(final Dimension size, final boolean aiOpponent, final AIDifficulty aiDifficulty,
+			final GameRules rules) {
+		this(size, aiOpponent, aiDifficulty, rules, new GameLoop());
+	}
+
+	/**
+	 * Another constructor for class TicTacToeGame.
+	 * 
+	 * Creates a new object of type TicTacToeGame with the given size containing
+	 * rows and column counts for the games territory, played with the given
+	 * optional rules and driven by the given game loop, which may drive other
+	 * games as well.
+	 * 
+	 * @param size the size of the tic tac toe game territory
+	 * @param aiOpponent whether this game is a game against an AI player
+	 * @param aiDifficulty the AI difficulty for this game
+	 * @param rules the optional rules of this game
+	 * @param gameLoop the game loop executing all changes of this game
+	 */
+	public GameLogic(final Dimension size, final boolean aiOpponent, final AIDifficulty aiDifficulty,
+			final GameRules rules, final GameLoop gameLoop) {
+		this(size, aiOpponent, aiDifficulty, rules, gameLoop, GameScheduler.getSharedExecutor(),
+				ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Another constructor for class TicTacToeGame.
+	 * 
+	 * Creates a new object of type TicTacToeGame with the given size containing
+	 * rows and column counts for the games territory, played with the given
+	 * optional rules, driven by the given game loop, letting its AI player
+	 * choose moves on the given executor and drawing its random numbers from a
+	 * generator with the given seed.
+	 * 
+	 * @param size the size of the tic tac toe game territory
+	 * @param aiOpponent whether this game is a game against an AI player
+	 * @param aiDifficulty the AI difficulty for this game
+	 * @param rules the optional rules of this game
+	 * @param gameLoop the game loop executing all changes of this game
+	 * @param executor the executor this game gets its scheduler slot on
+	 * @param seed the seed of the random number generator of this game
+	 */
+	public GameLogic(final Dimension size, final boolean aiOpponent, final AIDifficulty aiDifficulty,
+			final GameRules rules, final GameLoop gameLoop, final ScheduledExecutorService executor,
+			final long seed) {
+		this(size, aiOpponent, aiDifficulty, rules, gameLoop, executor, seed, null);
+	}
+
+	/**
+	 * Another constructor for class TicTacToeGame.
+	 * 
+	 * Creates a new object of type TicTacToeGame continuing the game of the
+	 * given snapshot ({@link #snapshot()}), driven by the given game loop and
+	 * letting its AI player choose moves on the given executor.
+	 * 
+	 * @param snapshot the snapshot of the game to continue
+	 * @param gameLoop the game loop executing all changes of this game
+	 * @param executor the executor this game gets its scheduler slot on
+	 * @throws IllegalArgumentException if given snapshot is null or does not fit
+	 *                                  its rules
+	 */
+	public GameLogic(final GameSnapshot snapshot, final GameLoop gameLoop, final ScheduledExecutorService executor) {
+		this(checkSnapshot(snapshot).getSize(), snapshot.isAiOpponent(), snapshot.getAiDifficulty(),
+				snapshot.getRules(), gameLoop, executor, snapshot.getSeed(), snapshot);
+	}
+
+	/**
+	 * Checks that a snapshot is given.
+	 * 
+	 * @param snapshot the snapshot to check
+	 * @return the given snapshot
+	 * @throws IllegalArgumentException if given snapshot is null
+	 */
+	private static GameSnapshot checkSnapshot(final GameSnapshot snapshot) {
+		if (snapshot == null) {
+			throw new IllegalArgumentException("Given snapshot can not be null!");
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Another constructor for class TicTacToeGame.
+	 * 
+	 * Creates a new object of type TicTacToeGame as described by the public
+	 * constructors, continuing the game of the given snapshot if there is one.
+	 * 
+	 * @param size the size of the tic tac toe game territory
+	 * @param aiOpponent whether this game is a game against an AI player
+	 * @param aiDifficulty the AI difficulty for this game
+	 * @param rules the optional rules of this game
+	 * @param gameLoop the game loop executing all changes of this game
+	 * @param executor the executor this game gets its scheduler slot on
+	 * @param seed the seed of the random number generator of this game
+	 * @param snapshot the snapshot of the game to continue or null
+	 */
+	private GameLogic(final Dimension size, final boolean aiOpponent, final AIDifficulty aiDifficulty,
+			final GameRules rules, final GameLoop gameLoop, final ScheduledExecutorService executor,
+			final long seed, final GameSnapshot snapshot) {
 		if (size == null) {
 			throw new IllegalArgumentException("Given size can not be null!");
 		}
+		if (rules == null) {
+			throw new IllegalArgumentException("Given rules can not be null!");
+		}
+		if (gameLoop == null) {
+			throw new IllegalArgumentException("Given game loop can not be null!");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("Given executor can not be null!");
+		}
 		if (size.getRowsCount() <= 0 || size.getColumnsCount() <= 0) {
 			throw new IllegalArgumentException("Given sizes column count and row count must be positive!");
 		}
-		if (size.getRowsCount() != size.getColumnsCount()) {
+		if (rules.isClassic() && size.getRowsCount() != size.getColumnsCount()) {
 			throw new IllegalArgumentException("Given size must be a square (equal rows and columns counts)!");
 		}
+		if (rules.getWinLength() > Math.max(size.getRowsCount(), size.getColumnsCount())) {
+			throw new IllegalArgumentException("Given rules win length does not fit into the given size!");
+		}
 
 		// TODO Verify that row/ column count is odd
 		this.gameState = GameState.INGAME;
 		this.size = size;
 		this.aiOpponent = aiOpponent;
 		this.aiDifficulty = aiDifficulty;
-		this.players = new LinkedList<Player>();
+		this.rules = rules;
+		this.gameLoop = gameLoop;
+		this.scheduler = new GameScheduler(executor);
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+		this.listeners = new CopyOnWriteArrayList<GameListener>();
+		this.aiMoveDelayMillis = AI_MOVE_DELAY_MILLIS;
+		this.winChecker = WinCheckers.get(size.getRowsCount(), size.getColumnsCount(), rules.getWinLength(size));
+		this.players = new ArrayList<Player>(2);
 		this.territory = new Territory(this);
 
-		initPlayers();
+		initPlayers(snapshot);
 	}
 
 	/**
@@ -108,62 +311,185 @@ public class GameLogic {
 	 * 
 	 * Initializes both players of this tic tac toe game by creating both a human
 	 * player and an ai player and adding them to the set in the instance variable
-	 * players.
+	 * players. A new game lets a random player begin, a continued game marks the
+	 * tiles of the given snapshot and continues with the player whose turn it
+	 * was. If it is the AI player's turn, its move is started by the game loop,
+	 * so the AI move delay can still be changed right after construction.
+	 * 
+	 * @param snapshot the snapshot of the game to continue or null
+	 * @throws IllegalArgumentException if given snapshot has already been won
 	 */
-	private void initPlayers() {
+	private void initPlayers(final GameSnapshot snapshot) {
 		HumanPlayer humanPlayer = new HumanPlayer(this, PlayerSign.X);
 		Player opponentPlayer = aiOpponent ? getNewAIPlayer() : new HumanPlayer(this, PlayerSign.O);
 
 		players.add(humanPlayer);
 		players.add(opponentPlayer);
 
-		this.currentPlayerIndex = RANDOM.nextInt(players.size());
-		checkAIPlayersTurn();
+		if (snapshot == null) {
+			this.currentPlayerIndex = random.nextInt(players.size());
+		} else {
+			restoreTiles(snapshot.getBoard());
+			this.currentPlayerIndex = snapshot.getCurrentSide();
+		}
+		gameLoop.submit(this::checkAIPlayersTurn);
+	}
+
+	/**
+	 * Marks the tiles of a snapshot.
+	 * 
+	 * Marks every tile whose cell is marked on the given board for the player
+	 * with the sign of the cell's side, without notifying the listeners.
+	 * 
+	 * @param board the board of the snapshot
+	 * @throws IllegalArgumentException if a player has already won on the board
+	 */
+	private void restoreTiles(final Board board) {
+		for (int cell = 0; cell < board.getCellsCount(); cell++) {
+			if (board.isEmpty(cell)) {
+				continue;
+			}
+			Player player = players.get(board.getSide(cell));
+			try {
+				territory.markTile(territory.getTiles().get(cell), player);
+			} catch (TileAreadyMarkedException e) {
+				throw new IllegalStateException("Tile of a new territory is already marked!", e);
+			}
+		}
+		for (Player player : players) {
+			if (territory.hasWinningRun(player.getPlayerSign())) {
+				throw new IllegalArgumentException("Given snapshot has already been won!");
+			}
+		}
 	}
 
 	/**
 	 * Creates a new AI player.
 	 * 
-	 * Creates and returns a new AI Player with given set AI difficulty.
+	 * Creates and returns a new AI Player that lets the search engine
+	 * pick its moves with the search budget of the given set AI difficulty.
 	 * 
 	 * @return new AI Player with given difficulty
 	 */
 	private AIPlayer getNewAIPlayer() {
-		if (aiDifficulty == AIDifficulty.EASY) {
-			return new EasyAIPlayer(this, PlayerSign.O);
-		} else if (aiDifficulty == AIDifficulty.MEDIUM) {
-			return new MediumAIPlayer(this, PlayerSign.O);
-		} else {
-			return new HardAIPlayer(this, PlayerSign.O);
-		}
+		return new SearchAIPlayer(this, PlayerSign.O, aiDifficulty);
 	}
 
 	/**
 	 * Lets a human player make a move.
 	 * 
-	 * Lets a human player make a move by first verifying that it's the human
-	 * players turn and then letting the current human player whose turn it is make
-	 * a move.
+	 * Lets a human player make a move by submitting a command to this game's
+	 * loop that, once executed, verifies that it's the human players turn and
+	 * then lets the current human player whose turn it is mark the tile at the
+	 * given location. This method can be called from any thread.
+	 * 
+	 * @param location the location of the tile to mark
+	 * @throws IllegalArgumentException if given location is null or not inside
+	 *                                  the territory
+	 */
+	public void makeHumanPlayerMove(final Location location) {
+		if (location == null) {
+			throw new IllegalArgumentException("Given location can not be null!");
+		}
+		if (!territory.isLocationInTerritory(location)) {
+			throw new IllegalArgumentException("Given location is not inside the territory!");
+		}
+		gameLoop.submit(() -> applyHumanPlayerMove(location));
+	}
+
+	/**
+	 * Applies a human player's move.
+	 * 
+	 * Applies a human player's move on the game loop's thread by verifying that
+	 * the game is still running and it's the human players turn and then marking
+	 * the tile at the given location for the current player. Otherwise the
+	 * listeners are told that the move was rejected.
+	 * 
+	 * @param location the location of the tile to mark
+	 */
+	private void applyHumanPlayerMove(final Location location) {
+		Tile tile = territory.getTile(location);
+		if (!isInGame() || !isHumanPlayersTurn()) {
+			rejectMove(tile);
+			return;
+		}
+		markTile(getCurrentPlayer(), tile);
+	}
+
+	/**
+	 * Applies an AI player's move.
+	 * 
+	 * Applies an AI player's move on the game loop's thread by verifying that
+	 * the game is still running, it's still the given AI player's turn and no
+	 * tile has been marked since the AI player started computing its move, and
+	 * then marking the tile of the given cell for the AI player.
+	 * 
+	 * @param aiPlayer the AI player who computed the move
+	 * @param markedCount the amount of marked tiles the move was computed for
+	 * @param cell the index of the cell to mark
+	 */
+	private void applyAIPlayerMove(final AIPlayer aiPlayer, final int markedCount, final int cell) {
+		if (!isInGame() || getCurrentPlayer() != aiPlayer
+				|| territory.getBoard().getMarkedCount() != markedCount) {
+			return;
+		}
+		markTile(aiPlayer, territory.getTiles().get(cell));
+	}
+
+	/**
+	 * Lets a player mark a tile.
+	 * 
+	 * Lets a player mark a tile if it is not marked yet by another player,
+	 * notifies the listeners of this game and then ends the players move
+	 * ({@link #endMove()}). If the tile is already marked, the listeners are
+	 * told that the move was rejected and it stays the player's turn.
+	 * 
+	 * @param player the player marking the tile
+	 * @param tile the tile to mark
 	 */
-	public void makeHumanPlayerMove() {
-		if (!isHumanPlayersTurn()) {
-			// TODO Alert player
+	private void markTile(final Player player, final Tile tile) {
+		try {
+			territory.markTile(tile, player);
+		} catch (TileAreadyMarkedException e) {
+			rejectMove(tile);
 			return;
 		}
-		getCurrentPlayer().makeMove();
+		int cell = tile.getCell();
+		for (GameListener listener : listeners) {
+			listener.moveMade(this, player, cell);
+		}
+		endMove();
+	}
+
+	/**
+	 * Rejects a move.
+	 * 
+	 * Rejects a move by notifying the listeners of this game, without
+	 * changing the game.
+	 * 
+	 * @param tile the tile the move wanted to mark
+	 */
+	private void rejectMove(final Tile tile) {
+		int cell = tile.getCell();
+		for (GameListener listener : listeners) {
+			listener.moveRejected(this, cell);
+		}
 	}
 
 	/**
 	 * Ends a players move.
 	 * 
 	 * Ends a players move by checking if the game should now end
-	 * ({@link #checkEnd()}) and if not, setting the next player whose turn it is
+	 * ({@link #checkEnd()}) and if so notifying the listeners, otherwise setting the next player whose turn it is
 	 * ({@link #setNextPlayer()}) and then checking if its currently the AI player's
 	 * turn and if yes, letting it make its move ({@link #checkAIPlayersTurn()}).
 	 */
-	public void endMove() {
+	private void endMove() {
 		checkEnd();
 		if (getGameState() != GameState.INGAME) {
+			for (GameListener listener : listeners) {
+				listener.gameEnded(this);
+			}
 			return;
 		}
 		setNextPlayer();
@@ -174,67 +500,54 @@ public class GameLogic {
 	 * Checks if its the AI players turn and if yes lets it make a move.
 	 * 
 	 * Checks if its the AI player's turn and if yes lets it make a move by first
-	 * verifying that its the AI player's turn and then, after waiting 400
-	 * milliseconds, letting the AI player make its next move.
+	 * verifying that its the AI player's turn and then, after waiting the AI
+	 * move delay, letting the AI player choose its
+	 * next move on a thread of this game's scheduler. The AI player only sees
+	 * copies of the territory's board and threat index taken now and a random
+	 * number generator split off this game's one, and the chosen move is
+	 * submitted to this game's loop ({@link #applyAIPlayerMove(AIPlayer, int, int)}).
 	 */
 	private void checkAIPlayersTurn() {
 		Player currentPlayer = getCurrentPlayer();
 		if (!currentPlayer.isAIPlayer()) {
 			return;
 		}
-		TIMER.schedule(new TimerTask() {
-			@Override
-			public void run() {
-				currentPlayer.makeMove();
-			}
-		}, 400);
+		AIPlayer aiPlayer = (AIPlayer) currentPlayer;
+		Board board = territory.getBoard().copy();
+		ThreatIndex threatIndex = territory.getThreatIndex().copy(board);
+		SplittableRandom moveRandom = random.split();
+		int markedCount = board.getMarkedCount();
+		scheduler.schedule(() -> {
+			int cell = aiPlayer.chooseCell(board, threatIndex, moveRandom);
+			gameLoop.submit(() -> applyAIPlayerMove(aiPlayer, markedCount, cell));
+		}, aiMoveDelayMillis);
 	}
 
 	/**
 	 * Checks if this game should end and ends it if it should.
 	 * 
-	 * Checks if the game should end by first checking if there is a winner
-	 * horizontally (in row), vertically (in column) or diagonally (in left or right
-	 * diag) and if so, let this player win the game ({@link #winGame(Player
-	 * winner)}). If that is not the case, it also checks whether all fields are
-	 * marked, resulting in the game being ended with a draw
+	 * Checks if the game should end by first checking if the player who just
+	 * moved has marked the win length of tiles in a row horizontally,
+	 * vertically or diagonally and if so, let this player win the game
+	 * ({@link #winGame(Player winner)}). If that is not the case, it also checks whether all fields are
+	 * marked or, with early draw detection enabled, whether no line can be
+	 * completed anymore, resulting in the game being ended with a draw
 	 * ({@link #endGameWithDraw}).
 	 */
 	private void checkEnd() {
 		Territory territory = getTerritory();
 
-		// Check if there is a winner horizontally
-		for (int row = 0; row < size.getRowsCount(); row++) {
-			if (!territory.isRowCompletelyMarkedByOnePlayer(row))
-				continue;
-
-			Player winner = territory.getTile(new Location(row, 0)).getMarkedPlayer();
-			winGame(winner);
-			return;
-		}
-
-		// Check if there is a winner vertically
-		for (int column = 0; column < size.getColumnsCount(); column++) {
-			if (!territory.isColumnCompletelyMarkedByOnePlayer(column))
-				continue;
-
-			Player winner = territory.getTile(new Location(0, column)).getMarkedPlayer();
-			winGame(winner);
-			return;
-		}
-
-		// Check if there is a winner diagonally
-		if (territory.isLeftDiagCompletelyMarkedByOnePlayer() || territory.isRightDiagCompletelyMarkedByOnePlayer()) {
-			int midTileRow = territory.getSize().getRowsCount() / 2;
-			int midTileColumn = territory.getSize().getColumnsCount() / 2;
-
-			Player winner = territory.getTile(new Location(midTileRow, midTileColumn)).getMarkedPlayer();
-			winGame(winner);
+		// Check if the player who just moved has won. With the classic rules
+		// the winning runs are the rows, columns and main diags.
+		Player currentPlayer = getCurrentPlayer();
+		if (territory.hasWinningRun(currentPlayer.getPlayerSign())) {
+			winGame(currentPlayer);
 			return;
 		}
 
-		// Check if it is a draw (all tiles marked).
-		if (territory.isEveryTileMarked()) {
+		// Check if it is a draw (all tiles marked or, optionally, all lines blocked).
+		if (territory.isEveryTileMarked()
+				|| (rules.isEarlyDrawDetection() && !territory.isAnyLineWinnable())) {
 			endGameWithDraw();
 		}
 	}
@@ -299,6 +612,15 @@ public class GameLogic {
 		return players.get(currentPlayerIndex);
 	}
 
+	/**
+	 * Gets the side to move.
+	 * 
+	 * @return the side of the player whose turn it is
+	 */
+	public int getCurrentSide() {
+		return currentPlayerIndex;
+	}
+
 	/**
 	 * Gets if the game is ingame.
 	 * 
@@ -362,6 +684,142 @@ public class GameLogic {
 		return size;
 	}
 
+	/**
+	 * Gets the games rules.
+	 * 
+	 * Returns the optional rules this tic tac toe game is played with.
+	 * 
+	 * @return the rules of this tic tac toe game
+	 */
+	public /* @ pure @ */ GameRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Gets the games AI difficulty.
+	 *
+	 * Returns the AI difficulty this tic tac toe game was created with, which
+	 * is only used if it is a game against an AI player.
+	 *
+	 * @return the AI difficulty of this tic tac toe game
+	 */
+	public /* @ pure @ */ AIDifficulty getAiDifficulty() {
+		return aiDifficulty;
+	}
+
+	/**
+	 * Gets the games win checker.
+	 * 
+	 * Returns the win checker chosen for the size and rules of this tic tac toe
+	 * game, which is a size specialized one for the classic rules.
+	 * 
+	 * @return the win checker of this tic tac toe game
+	 */
+	public /* @ pure @ */ WinChecker getWinChecker() {
+		return winChecker;
+	}
+
+	/**
+	 * Adds a listener.
+	 * 
+	 * Adds a listener that is notified about every move and the end of this tic
+	 * tac toe game.
+	 * 
+	 * @param listener the listener to add
+	 * @throws IllegalArgumentException if given listener is null
+	 */
+	public void addListener(final GameListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("Given listener can not be null!");
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 * 
+	 * @param listener the listener to remove
+	 */
+	public void removeListener(final GameListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Sets the AI move delay.
+	 * 
+	 * Sets the delay in milliseconds before the AI player starts choosing its
+	 * move, which is {@link #AI_MOVE_DELAY_MILLIS} by default so a human player
+	 * can follow the game. Servers and simulations usually set it to zero.
+	 * 
+	 * @param aiMoveDelayMillis the AI move delay in milliseconds
+	 * @throws IllegalArgumentException if given delay is negative
+	 */
+	public void setAiMoveDelayMillis(final long aiMoveDelayMillis) {
+		if (aiMoveDelayMillis < 0) {
+			throw new IllegalArgumentException("Given delay can not be negative!");
+		}
+		this.aiMoveDelayMillis = aiMoveDelayMillis;
+	}
+
+	/**
+	 * Takes a snapshot of this game.
+	 * 
+	 * Takes a snapshot of this running game from which it can be continued
+	 * later ({@link #GameLogic(GameSnapshot, GameLoop, ScheduledExecutorService)}).
+	 * The continued game draws its random numbers from a new seed derived from
+	 * this game's seed and the amount of marked tiles, so it does not repeat
+	 * the sequence of this game, while taking the snapshot leaves this game's
+	 * generator untouched and the game reproducible from its seed
+	 * ({@link #getSeed()}). This method must only be called on the game loop's
+	 * thread.
+	 * 
+	 * @return the snapshot of this game
+	 * @throws IllegalStateException if this game has already ended
+	 */
+	public GameSnapshot snapshot() {
+		if (isEnded()) {
+			throw new IllegalStateException("Ended game can not be continued!");
+		}
+		Board board = territory.getBoard();
+		long continuationSeed = new SplittableRandom(seed + board.getMarkedCount() * CONTINUATION_SEED_STEP)
+				.nextLong();
+		return new GameSnapshot(size, aiOpponent, aiDifficulty, rules, board, currentPlayerIndex, continuationSeed);
+	}
+
+	/**
+	 * Disposes this game.
+	 * 
+	 * Disposes this game by cancelling all pending tasks of its scheduler slot,
+	 * so an abandoned game does not keep its AI player computing moves.
+	 */
+	public void dispose() {
+		scheduler.cancel();
+	}
+
+	/**
+	 * Gets the games seed.
+	 * 
+	 * Returns the seed of the random number generator of this tic tac toe game,
+	 * with which the game can be reproduced.
+	 * 
+	 * @return the seed of this tic tac toe game
+	 */
+	public /* @ pure @ */ long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Gets the games loop.
+	 * 
+	 * Returns the game loop executing all changes of this tic tac toe game,
+	 * which has to be drained or run for this game to make progress.
+	 * 
+	 * @return the game loop of this tic tac toe game
+	 */
+	public /* @ pure @ */ GameLoop getGameLoop() {
+		return gameLoop;
+	}
+
 	/**
 	 * Gets the games territory.
 	 * 
@@ -0,0 +1,180 @@
+package de.sengerts.tictactoe.logic;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Class representing a single threaded command loop driving tic tac toe games.
+ * 
+ * Every change of a game, like a human player's click or the move an AI player
+ * computed on another thread, is submitted as a {@link GameCommand} and applied
+ * in submission order by the one thread running this loop. The games of a loop
+ * therefore never need any locks, and one loop can drive any amount of games.
+ * 
+ * A loop is either drained regularly by a thread that is busy otherwise, like
+ * the render thread of the user interface ({@link #drain()}), or given a thread
+ * of its own ({@link #run()}) until it is stopped ({@link #stop()}).
+ * 
+ * @author Tobias Senger
+ */
+public class GameLoop implements Runnable {
+
+	/**
+	 * Class variable that stores the command telling a running loop to stop.
+	 */
+	private static final GameCommand STOP = () -> {
+	};
+
+	/**
+	 * Instance variable that stores the submitted commands that have not been
+	 * executed yet.
+	 */
+	private final BlockingQueue<GameCommand> commands;
+
+	/**
+	 * Instance variable that stores whether this loop is stopped.
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * Instance variable that stores the action run after every submitted
+	 * command, which may be null.
+	 */
+	private final Runnable wakeUp;
+
+	/**
+	 * Constructor for class GameLoop.
+	 * 
+	 * Creates a new game loop without any pending commands.
+	 */
+	public GameLoop() {
+		this(null);
+	}
+
+	/**
+	 * Another constructor for class GameLoop.
+	 * 
+	 * Creates a new game loop without any pending commands that runs the given
+	 * action after every submitted command, for example to wake up a selector
+	 * the thread draining this loop is blocked in.
+	 * 
+	 * @param wakeUp the action to run after every submitted command or null
+	 */
+	public GameLoop(final Runnable wakeUp) {
+		this.commands = new LinkedBlockingQueue<GameCommand>();
+		this.wakeUp = wakeUp;
+	}
+
+	/**
+	 * Submits a command.
+	 * 
+	 * Submits the given command to be executed after all commands submitted
+	 * before. This method can be called from any thread.
+	 * 
+	 * @param command the command to execute
+	 * @throws IllegalArgumentException if given command is null
+	 */
+	public void submit(final GameCommand command) {
+		if (command == null) {
+			throw new IllegalArgumentException("Given command can not be null!");
+		}
+		commands.add(command);
+		if (wakeUp != null) {
+			wakeUp.run();
+		}
+	}
+
+	/**
+	 * Executes all pending commands.
+	 * 
+	 * Executes all commands submitted so far on the calling thread, including
+	 * commands submitted by the executed commands themselves.
+	 * 
+	 * @return the amount of executed commands
+	 */
+	public int drain() {
+		int executed = 0;
+		GameCommand command;
+		while ((command = commands.poll()) != null) {
+			if (command != STOP) {
+				execute(command);
+				executed++;
+			}
+		}
+		return executed;
+	}
+
+	/**
+	 * Runs this loop on the calling thread.
+	 * 
+	 * Waits for commands and executes them one after another until this loop is
+	 * stopped or the calling thread is interrupted.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		while (!stopped) {
+			GameCommand command;
+			try {
+				command = commands.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (command != STOP) {
+				execute(command);
+			}
+		}
+	}
+
+	/**
+	 * Stops this loop.
+	 * 
+	 * Stops this loop after the command currently being executed, without
+	 * executing the pending ones.
+	 */
+	public void stop() {
+		this.stopped = true;
+		commands.add(STOP);
+	}
+
+	/**
+	 * Executes one command.
+	 * 
+	 * Executes the given command and hands every exception it throws to the
+	 * uncaught exception handler of the current thread, so a failing command of
+	 * one game does not stop the other games of this loop.
+	 * 
+	 * @param command the command to execute
+	 */
+	private void execute(final GameCommand command) {
+		try {
+			command.execute();
+		} catch (RuntimeException e) {
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+		}
+	}
+
+	/**
+	 * Gets the amount of pending commands.
+	 * 
+	 * @return the amount of submitted commands that have not been executed yet
+	 */
+	public int getPendingCommandsCount() {
+		return commands.size();
+	}
+
+	/**
+	 * Gets whether this loop is stopped.
+	 * 
+	 * @return true if this loop has been stopped, otherwise false
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+}
@@ -0,0 +1,164 @@
+package de.sengerts.tictactoe.logic;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class representing the scheduler slot of one tic tac toe game.
+ * 
+ * All games share a pool of scheduler threads, by default one per available
+ * processor ({@link #getSharedExecutor()}), instead of queueing behind one
+ * timer thread. Each game gets its own scheduler on top of the pool, which
+ * keeps track of the game's pending tasks so they can be cancelled together
+ * when the game is disposed.
+ * 
+ * @author Tobias Senger
+ */
+public class GameScheduler {
+
+	/**
+	 * Class variable that stores the lazily created executor shared by all
+	 * games that are not given an executor of their own.
+	 */
+	private static ScheduledExecutorService sharedExecutor;
+
+	/**
+	 * Instance variable that stores the executor running the tasks of this
+	 * scheduler.
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Instance variable that stores the tasks of this scheduler that may not
+	 * have run yet.
+	 */
+	private final List<Future<?>> pendingTasks;
+
+	/**
+	 * Instance variable that stores whether this scheduler is cancelled.
+	 */
+	private boolean cancelled;
+
+	/**
+	 * Another constructor for class GameScheduler.
+	 * 
+	 * Creates a new scheduler slot running its tasks on the given executor.
+	 * 
+	 * @param executor the executor to run the tasks on
+	 * @throws IllegalArgumentException if given executor is null
+	 */
+	public GameScheduler(final ScheduledExecutorService executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Given executor can not be null!");
+		}
+		this.executor = executor;
+		this.pendingTasks = new ArrayList<Future<?>>();
+	}
+
+	/**
+	 * Gets the executor shared by all games.
+	 * 
+	 * Gets the executor shared by all games, creating it with one daemon thread
+	 * per available processor on first use.
+	 * 
+	 * @return the shared executor
+	 */
+	public static synchronized ScheduledExecutorService getSharedExecutor() {
+		if (sharedExecutor == null) {
+			sharedExecutor = newExecutor("game-scheduler", Runtime.getRuntime().availableProcessors());
+		}
+		return sharedExecutor;
+	}
+
+	/**
+	 * Creates a new executor for game tasks.
+	 * 
+	 * Creates a new executor with the given amount of daemon threads, named by
+	 * the given prefix and a running number, that removes cancelled tasks from
+	 * its queue right away.
+	 * 
+	 * @param threadNamePrefix the prefix of the thread names
+	 * @param threadsCount the amount of threads
+	 * @return the new executor
+	 * @throws IllegalArgumentException if given prefix is null or given amount
+	 *                                  is not positive
+	 */
+	public static ScheduledExecutorService newExecutor(final String threadNamePrefix, final int threadsCount) {
+		if (threadNamePrefix == null) {
+			throw new IllegalArgumentException("Given thread name prefix can not be null!");
+		}
+		if (threadsCount <= 0) {
+			throw new IllegalArgumentException("Given threads count must be positive!");
+		}
+		AtomicInteger createdThreadsCount = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, threadNamePrefix + "-" + createdThreadsCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threadsCount, threadFactory);
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+
+	/**
+	 * Schedules a task.
+	 * 
+	 * Schedules the given task to run once on a thread of the executor after the
+	 * given delay. Tasks scheduled after this scheduler has been cancelled are
+	 * ignored.
+	 * 
+	 * @param task the task to run
+	 * @param delayMillis the delay in milliseconds
+	 * @throws IllegalArgumentException if given task is null or delay is negative
+	 */
+	public synchronized void schedule(final Runnable task, final long delayMillis) {
+		if (task == null) {
+			throw new IllegalArgumentException("Given task can not be null!");
+		}
+		if (delayMillis < 0) {
+			throw new IllegalArgumentException("Given delay can not be negative!");
+		}
+		if (cancelled) {
+			return;
+		}
+		for (Iterator<Future<?>> iterator = pendingTasks.iterator(); iterator.hasNext();) {
+			if (iterator.next().isDone()) {
+				iterator.remove();
+			}
+		}
+		pendingTasks.add(executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Cancels this scheduler.
+	 * 
+	 * Cancels all pending tasks of this scheduler without interrupting running
+	 * ones and ignores all tasks scheduled afterwards. The executor itself keeps
+	 * running for the other games.
+	 */
+	public synchronized void cancel() {
+		this.cancelled = true;
+		for (Future<?> task : pendingTasks) {
+			task.cancel(false);
+		}
+		pendingTasks.clear();
+	}
+
+	/**
+	 * Gets whether this scheduler is cancelled.
+	 * 
+	 * @return true if this scheduler has been cancelled, otherwise false
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+}
@@ -0,0 +1,267 @@
+package de.sengerts.tictactoe.logic;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
+import de.sengerts.tictactoe.net.GameProtocol;
+
+/**
+ * Immutable class representing the state of a running tic tac toe game.
+ *
+ * A snapshot holds everything needed to continue a game with a new
+ * {@link GameLogic}: the settings, the marked cells, the side whose turn it is
+ * and a seed for the random number generator of the continued game. Snapshots
+ * are encoded into a few bytes, the marked cells packed with two bits each as
+ * in {@link GameProtocol#writeBoard(ByteBuffer, Board)}, so a parked game takes
+ * about a hundred bytes even on the biggest territory.
+ *
+ * @author Tobias Senger
+ */
+public final class GameSnapshot {
+
+	/**
+	 * Class variable that stores the version of the encoding.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Class variable that stores the flag of a game against an AI player.
+	 */
+	private static final int FLAG_AI_OPPONENT = 1;
+
+	/**
+	 * Class variable that stores the flag of a game with early draw detection.
+	 */
+	private static final int FLAG_EARLY_DRAW_DETECTION = 2;
+
+	/**
+	 * Class variable that stores the encoded AI difficulty of a game without
+	 * one.
+	 */
+	private static final int NO_AI_DIFFICULTY = 0xFF;
+
+	/**
+	 * Class variable that stores the amount of bytes before the board: the
+	 * version, the flags, the AI difficulty, the win length, the current side
+	 * and the seed.
+	 */
+	private static final int HEADER_BYTES = 5 + Long.BYTES;
+
+	/**
+	 * Instance variable that stores the size of the game.
+	 */
+	private final Dimension size;
+
+	/**
+	 * Instance variable that stores whether the opponent is an AI player.
+	 */
+	private final boolean aiOpponent;
+
+	/**
+	 * Instance variable that stores the AI difficulty of the game, which may be
+	 * null.
+	 */
+	private final AIDifficulty aiDifficulty;
+
+	/**
+	 * Instance variable that stores the rules of the game.
+	 */
+	private final GameRules rules;
+
+	/**
+	 * Instance variable that stores the marked cells of the game.
+	 */
+	private final Board board;
+
+	/**
+	 * Instance variable that stores the side whose turn it is.
+	 */
+	private final int currentSide;
+
+	/**
+	 * Instance variable that stores the seed of the random number generator of
+	 * the continued game.
+	 */
+	private final long seed;
+
+	/**
+	 * Another constructor for class GameSnapshot.
+	 *
+	 * @param size the size of the game
+	 * @param aiOpponent whether the opponent is an AI player
+	 * @param aiDifficulty the AI difficulty of the game
+	 * @param rules the rules of the game
+	 * @param board the marked cells of the game, which is copied
+	 * @param currentSide the side whose turn it is
+	 * @param seed the seed of the random number generator of the continued game
+	 * @throws IllegalArgumentException if given size, rules or board is null, the
+	 *                                  board does not fit the size or given side
+	 *                                  is not a side
+	 */
+	public GameSnapshot(final Dimension size, final boolean aiOpponent, final AIDifficulty aiDifficulty,
+			final GameRules rules, final Board board, final int currentSide, final long seed) {
+		if (size == null || rules == null || board == null) {
+			throw new IllegalArgumentException("Given size, rules and board can not be null!");
+		}
+		if (board.getLines().getRowsCount() != size.getRowsCount()
+				|| board.getLines().getColumnsCount() != size.getColumnsCount()) {
+			throw new IllegalArgumentException("Given board does not fit the given size!");
+		}
+		if (currentSide < 0 || currentSide >= Board.SIDES) {
+			throw new IllegalArgumentException("Given current side is not a side!");
+		}
+		this.size = size;
+		this.aiOpponent = aiOpponent;
+		this.aiDifficulty = aiDifficulty;
+		this.rules = rules;
+		this.board = board.copy();
+		this.currentSide = currentSide;
+		this.seed = seed;
+	}
+
+	/**
+	 * Writes this snapshot.
+	 *
+	 * @param out the buffer to write to
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public void write(final ByteBuffer out) {
+		out.put((byte) VERSION);
+		out.put((byte) ((aiOpponent ? FLAG_AI_OPPONENT : 0)
+				| (rules.isEarlyDrawDetection() ? FLAG_EARLY_DRAW_DETECTION : 0)));
+		out.put((byte) (aiDifficulty == null ? NO_AI_DIFFICULTY : aiDifficulty.ordinal()));
+		out.put((byte) rules.getWinLength());
+		out.put((byte) currentSide);
+		out.putLong(seed);
+		GameProtocol.writeBoard(out, board);
+	}
+
+	/**
+	 * Reads a snapshot.
+	 *
+	 * @param in the buffer to read from
+	 * @return the snapshot written by {@link #write(ByteBuffer)}
+	 * @throws IllegalArgumentException if the buffer does not hold a valid
+	 *                                  snapshot
+	 */
+	public static GameSnapshot read(final ByteBuffer in) {
+		if ((in.get() & 0xFF) != VERSION) {
+			throw new IllegalArgumentException("Given snapshot has an unknown version!");
+		}
+		int flags;
+		int difficulty;
+		int winLength;
+		int currentSide;
+		long seed;
+		Board board;
+		try {
+			flags = in.get() & 0xFF;
+			difficulty = in.get() & 0xFF;
+			winLength = in.get() & 0xFF;
+			currentSide = in.get() & 0xFF;
+			seed = in.getLong();
+			board = GameProtocol.readBoard(in);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Given snapshot is truncated!", e);
+		}
+		if (difficulty != NO_AI_DIFFICULTY && difficulty >= AIDifficulty.values().length) {
+			throw new IllegalArgumentException("Given snapshot has an unknown AI difficulty!");
+		}
+		return new GameSnapshot(
+				new Dimension(board.getLines().getRowsCount(), board.getLines().getColumnsCount()),
+				(flags & FLAG_AI_OPPONENT) != 0,
+				difficulty == NO_AI_DIFFICULTY ? null : AIDifficulty.values()[difficulty],
+				new GameRules((flags & FLAG_EARLY_DRAW_DETECTION) != 0, winLength), board, currentSide, seed);
+	}
+
+	/**
+	 * Encodes this snapshot.
+	 *
+	 * @return the bytes written by {@link #write(ByteBuffer)}
+	 */
+	public byte[] toBytes() {
+		ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + 3 + (board.getCellsCount() + 3) / 4);
+		write(out);
+		return out.array();
+	}
+
+	/**
+	 * Decodes a snapshot.
+	 *
+	 * @param bytes the bytes returned by {@link #toBytes()}
+	 * @return the decoded snapshot
+	 * @throws IllegalArgumentException if the bytes are not a valid snapshot
+	 */
+	public static GameSnapshot fromBytes(final byte[] bytes) {
+		return read(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Gets the size.
+	 *
+	 * @return the size of the game
+	 */
+	public /* @ pure @ */ Dimension getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets whether the opponent is an AI player.
+	 *
+	 * @return true if the opponent is an AI player, otherwise false
+	 */
+	public /* @ pure @ */ boolean isAiOpponent() {
+		return aiOpponent;
+	}
+
+	/**
+	 * Gets the AI difficulty.
+	 *
+	 * @return the AI difficulty of the game
+	 */
+	public /* @ pure @ */ AIDifficulty getAiDifficulty() {
+		return aiDifficulty;
+	}
+
+	/**
+	 * Gets the rules.
+	 *
+	 * @return the rules of the game
+	 */
+	public /* @ pure @ */ GameRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Gets the board.
+	 *
+	 * @return a copy of the marked cells of the game
+	 */
+	public Board getBoard() {
+		return board.copy();
+	}
+
+	/**
+	 * Gets the current side.
+	 *
+	 * @return the side whose turn it is
+	 */
+	public /* @ pure @ */ int getCurrentSide() {
+		return currentSide;
+	}
+
+	/**
+	 * Gets the seed.
+	 *
+	 * @return the seed of the random number generator of the continued game
+	 */
+	public /* @ pure @ */ long getSeed() {
+		return seed;
+	}
+
+}
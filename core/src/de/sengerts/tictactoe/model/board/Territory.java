@@ -1,19 +1,29 @@
 package de.sengerts.tictactoe.model.board;
 
-import java.util.LinkedList;
+import java.util.AbstractList;
 import java.util.List;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.exceptions.TileAreadyMarkedException;
 import de.sengerts.tictactoe.logic.GameLogic;
 import de.sengerts.tictactoe.model.players.Player;
+import de.sengerts.tictactoe.model.players.PlayerSign;
 import de.sengerts.tictactoe.model.settings.Dimension;
 
 /**
  * Class representing the territory of a tic tac toe game.
  * 
- * A territory is a rectangular area, composed of multiple tiles, with equal
- * width and height specified by a given positive size.
+ * A territory is a rectangular area, composed of multiple tiles, with width
+ * and height specified by a given positive size. With the classic rules the
+ * width and height are equal.
+ * 
+ * The marks of all tiles are only stored in the bitboard of the territory,
+ * two bits per cell, and tiles and their locations are flyweight views
+ * created on demand, so a game with many tiles stays small enough to host a
+ * great many games in one server.
  * 
  * @author Tobias Senger
  */
@@ -25,11 +35,23 @@ public class Territory {
 	private final GameLogic ticTacToeGame;
 
 	/**
-	 * Instance variable that stores a list of Tile objects for this territory
-	 * object.
+	 * Instance variable that stores the list view of the tiles of this
+	 * territory object.
 	 */
 	private final List<Tile> tiles;
 
+	/**
+	 * Instance variable that stores the bitboard representation of this territory
+	 * which holds the marks of all tiles.
+	 */
+	private final Board board;
+
+	/**
+	 * Instance variable that stores the index of all lines each player can
+	 * complete with one move.
+	 */
+	private final ThreatIndex threatIndex;
+
 	/**
 	 * Another constructor for class Territory.
 	 * 
@@ -45,39 +67,100 @@ public class Territory {
 			throw new IllegalArgumentException("Given Tic Tac Toe game object can not be null!");
 		}
 		this.ticTacToeGame = ticTacToeGame;
-		this.tiles = new LinkedList<Tile>();
-
-		initTerritory();
+		this.board = new Board(Lines.mnk(getSize().getRowsCount(), getSize().getColumnsCount(),
+				ticTacToeGame.getRules().getWinLength(getSize())));
+		this.threatIndex = new ThreatIndex(board);
+		this.tiles = new TileList();
 	}
 
 	/**
-	 * Initializes the territory.
+	 * Marks a tile by a player.
+	 * 
+	 * Marks a tile by a player by marking the cell of the given tile on this
+	 * territory's board for the player's sign before updating the threat index.
 	 * 
-	 * Initializes the territory by creating the size*size tile objects making up
-	 * this square tic tac toe territory and adding them to the tiles list.
+	 * @param tile the tile of this territory to mark
+	 * @param player the player to mark the tile by
+	 * @throws TileAreadyMarkedException if tile has already been marked by a player
+	 * @throws IllegalArgumentException if given tile or player is null or the
+	 *                                  tile is not part of this territory
 	 */
-	private void initTerritory() {
-		for (int row = 0; row < getSize().getRowsCount(); row++) {
-			for (int column = 0; column < getSize().getColumnsCount(); column++) {
-				Location tileLocation = new Location(row, column);
-				Tile tile = new Tile(tileLocation);
+	public void markTile(final Tile tile, final Player player) throws TileAreadyMarkedException {
+		if (tile == null || player == null) {
+			throw new IllegalArgumentException("Given tile and player can not be null!");
+		}
+		if (tile.getTerritory() != this) {
+			throw new IllegalArgumentException("Given tile is not part of this territory!");
+		}
+		if (tile.isMarked()) {
+			throw new TileAreadyMarkedException();
+		}
+		int cell = tile.getCell();
+		board.mark(cell, player.getPlayerSign().ordinal());
+		threatIndex.update(cell);
+	}
 
-				tiles.add(tile);
-			}
+	/**
+	 * Gets a tile that lets a player win with its next mark.
+	 * 
+	 * Gets a tile that completes a row, column or diag in which all other tiles
+	 * are marked by the player with the given sign by looking it up in the threat
+	 * index of this territory, which takes constant time.
+	 * 
+	 * @param playerSign the sign of the player to get a winning tile for
+	 * @return a tile completing a line of the player or null if there is none
+	 */
+	public Tile getCompletingTile(final PlayerSign playerSign) {
+		if (playerSign == null) {
+			throw new IllegalArgumentException("Given player sign can not be null!");
 		}
+		int cell = threatIndex.getCompletingCell(playerSign.ordinal());
+		return cell < 0 ? null : new Tile(this, cell);
 	}
 
 	/**
 	 * Gets if all tiles in this territory are marked.
 	 * 
-	 * Gets if all tiles in this territory are marked by filtering the stream of the
-	 * list of tiles by not marked tiles and checking if the count of the filtered
-	 * stream is zero.
+	 * Gets if all tiles in this territory are marked by checking whether the
+	 * board of this territory is full.
 	 * 
 	 * @return true if all tiles in this territory are marked, otherwise false
 	 */
 	public boolean isEveryTileMarked() {
-		return tiles.stream().filter(tile -> !tile.isMarked()).count() == 0;
+		return board.isFull();
+	}
+
+	/**
+	 * Gets if any line in this territory can still be completed.
+	 * 
+	 * Gets if any row, column or diag in this territory can still be completed by
+	 * one player by checking the amount of lines the board of this territory
+	 * counts as marked by both players, which takes constant time.
+	 * 
+	 * @return true if at least one line is not marked by both players yet,
+	 *         otherwise false
+	 */
+	public boolean isAnyLineWinnable() {
+		return board.hasWinnableLine();
+	}
+
+	/**
+	 * Gets if a player has won in this territory.
+	 * 
+	 * Gets if the given player has marked the win length of tiles in a row
+	 * horizontally, vertically or diagonally by checking the bitboard of this
+	 * territory with the win checker of the tic tac toe game
+	 * ({@link GameLogic#getWinChecker()}).
+	 * 
+	 * @param playerSign the sign of the player to check
+	 * @return true if the player has a winning run of tiles, otherwise false
+	 * @throws IllegalArgumentException if given player sign is null
+	 */
+	public boolean hasWinningRun(final PlayerSign playerSign) {
+		if (playerSign == null) {
+			throw new IllegalArgumentException("Given player sign can not be null!");
+		}
+		return ticTacToeGame.getWinChecker().hasWinningLine(board, playerSign.ordinal());
 	}
 
 	/**
@@ -229,8 +312,8 @@ public class Territory {
 	 * Gets a tile at a location.
 	 * 
 	 * Gets a tile at a given location by caculating the tile index by given
-	 * location ({@link #getTileIndexByLocation(Location location)}) and returning the element
-	 * with this index from the list in the instance variable tiles.
+	 * location ({@link #getTileIndexByLocation(Location location)}) and returning a
+	 * new tile view of the cell with this index.
 	 * 
 	 * @param location the location to get the tile from
 	 * @return the tile at the given location
@@ -243,19 +326,19 @@ public class Territory {
 		if (!isLocationInTerritory(location)) {
 			throw new IllegalArgumentException("Given location is not inside the territory!");
 		}
-		return tiles.get(getTileIndexByLocation(location));
+		return new Tile(this, getTileIndexByLocation(location));
 	}
 
 	/**
 	 * Gets the number of tiles in this territory.
 	 * 
-	 * Gets the number of tiles in this territory by getting the size of the list of
-	 * tiles in the instance variable tiles.
+	 * Gets the number of tiles in this territory by getting the amount of cells
+	 * of the board of this territory.
 	 * 
-	 * @return size of the list of tiles of this territory
+	 * @return amount of tiles of this territory
 	 */
 	public int getTilesAmount() {
-		return tiles.size();
+		return board.getCellsCount();
 	}
 
 	/**
@@ -307,7 +390,8 @@ public class Territory {
 	 * Gets the tiles.
 	 * 
 	 * Returns all tiles of this territory object representing all fields of this
-	 * square tic tac toe territory.
+	 * square tic tac toe territory as an unmodifiable list view, which creates
+	 * the tile of a cell each time it is accessed.
 	 * 
 	 * @return the list of tiles for this territory
 	 */
@@ -315,6 +399,30 @@ public class Territory {
 		return tiles;
 	}
 
+	/**
+	 * Gets the board.
+	 * 
+	 * Returns the bitboard representation of this territory. It must only be
+	 * changed through {@link #markTile(Tile, Player)}, search code has to work on
+	 * a {@link Board#copy() copy}.
+	 * 
+	 * @return the board of this territory
+	 */
+	public /* @ pure @ */ Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Gets the threat index.
+	 * 
+	 * Returns the index of all lines each player can complete with one move.
+	 * 
+	 * @return the threat index of this territory
+	 */
+	public /* @ pure @ */ ThreatIndex getThreatIndex() {
+		return threatIndex;
+	}
+
 	/**
 	 * Gets the size.
 	 * 
@@ -327,4 +435,31 @@ public class Territory {
 		return ticTacToeGame.getSize();
 	}
 
+	/**
+	 * Class representing the list view of the tiles of the territory, ordered
+	 * by their cell indices.
+	 */
+	private final class TileList extends AbstractList<Tile> {
+
+		/*
+		 * @see java.util.AbstractList#get(int)
+		 */
+		@Override
+		public Tile get(final int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			return new Tile(Territory.this, index);
+		}
+
+		/*
+		 * @see java.util.AbstractCollection#size()
+		 */
+		@Override
+		public int size() {
+			return board.getCellsCount();
+		}
+
+	}
+
 }
@@ -0,0 +1,272 @@
+package de.sengerts.tictactoe.model.board;
+
+import java.util.Arrays;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+
+/**
+ * Class representing an index of all lines that one side can complete with a
+ * single move.
+ *
+ * For every side the index stores each line that is marked by this side in all
+ * but one cell and not marked by the opponent at all, together with the one
+ * missing cell. The index is updated after every mark by looking only at the
+ * lines through the marked cell, so asking whether a side can win with its next
+ * move takes constant time.
+ *
+ * The threats are kept in primitive arrays indexed by line, and the threats of
+ * every side are linked in the order they appeared, so updating the index
+ * neither boxes nor allocates.
+ *
+ * @author Tobias Senger
+ */
+public class ThreatIndex {
+
+	/**
+	 * Class variable that stores the value of a line without a threat or the
+	 * end of a list of threats.
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * Instance variable that stores the board whose lines are indexed.
+	 */
+	private final Board board;
+
+	/**
+	 * Instance variable that stores for every side and line the missing cell of
+	 * the line if it is a threat of the side, otherwise {@link #NONE}.
+	 */
+	private final int[][] missingCells;
+
+	/**
+	 * Instance variable that stores for every side and threatening line the
+	 * next younger threatening line of the side or {@link #NONE}.
+	 */
+	private final int[][] nextLines;
+
+	/**
+	 * Instance variable that stores for every side and threatening line the
+	 * next older threatening line of the side or {@link #NONE}.
+	 */
+	private final int[][] previousLines;
+
+	/**
+	 * Instance variable that stores for every side its oldest threatening line
+	 * or {@link #NONE}.
+	 */
+	private final int[] oldestLines;
+
+	/**
+	 * Instance variable that stores for every side its youngest threatening
+	 * line or {@link #NONE}.
+	 */
+	private final int[] youngestLines;
+
+	/**
+	 * Instance variable that stores for every side the amount of its threats.
+	 */
+	private final int[] threatsCounts;
+
+	/**
+	 * Another constructor for class ThreatIndex.
+	 *
+	 * Creates a new threat index for the given board and indexes all threats
+	 * already present on it.
+	 *
+	 * @param board the board whose lines should be indexed
+	 * @throws IllegalArgumentException if given board is null
+	 */
+	public ThreatIndex(final Board board) {
+		if (board == null) {
+			throw new IllegalArgumentException("Given board can not be null!");
+		}
+		int linesCount = board.getLines().getLinesCount();
+		this.board = board;
+		this.missingCells = new int[Board.SIDES][linesCount];
+		this.nextLines = new int[Board.SIDES][linesCount];
+		this.previousLines = new int[Board.SIDES][linesCount];
+		this.oldestLines = new int[Board.SIDES];
+		this.youngestLines = new int[Board.SIDES];
+		this.threatsCounts = new int[Board.SIDES];
+		for (int side = 0; side < Board.SIDES; side++) {
+			Arrays.fill(missingCells[side], NONE);
+			oldestLines[side] = NONE;
+			youngestLines[side] = NONE;
+		}
+		for (int line = 0; line < linesCount; line++) {
+			updateLine(line);
+		}
+	}
+
+	/**
+	 * Another constructor for class ThreatIndex.
+	 *
+	 * Creates a new threat index for the given board with the threats of the
+	 * given index, which must describe the same position.
+	 *
+	 * @param board       the board whose lines are indexed
+	 * @param threatIndex the threat index to copy the threats of
+	 */
+	private ThreatIndex(final Board board, final ThreatIndex threatIndex) {
+		this.board = board;
+		this.missingCells = new int[Board.SIDES][];
+		this.nextLines = new int[Board.SIDES][];
+		this.previousLines = new int[Board.SIDES][];
+		for (int side = 0; side < Board.SIDES; side++) {
+			missingCells[side] = threatIndex.missingCells[side].clone();
+			nextLines[side] = threatIndex.nextLines[side].clone();
+			previousLines[side] = threatIndex.previousLines[side].clone();
+		}
+		this.oldestLines = threatIndex.oldestLines.clone();
+		this.youngestLines = threatIndex.youngestLines.clone();
+		this.threatsCounts = threatIndex.threatsCounts.clone();
+	}
+
+	/**
+	 * Creates a copy of this index for a copy of its board.
+	 *
+	 * Creates an independent copy of this index for the given board, which has
+	 * to be a copy of the board of this index ({@link Board#copy()}), without
+	 * re-checking any line.
+	 *
+	 * @param board the copy of the board of this index
+	 * @return the copy of this index
+	 * @throws IllegalArgumentException if given board is null or has other lines
+	 */
+	public ThreatIndex copy(final Board board) {
+		if (board == null) {
+			throw new IllegalArgumentException("Given board can not be null!");
+		}
+		if (board.getLines() != this.board.getLines()) {
+			throw new IllegalArgumentException("Given board must have the lines of the indexed board!");
+		}
+		return new ThreatIndex(board, this);
+	}
+
+	/**
+	 * Updates this index after a cell has been marked.
+	 *
+	 * Updates this index by re-checking all lines running through the given cell,
+	 * which are the only lines whose threats can have changed.
+	 *
+	 * @param cell the cell index that has been marked on the board
+	 */
+	public void update(final int cell) {
+		for (int line : board.getLines().getCellLines(cell)) {
+			updateLine(line);
+		}
+	}
+
+	/**
+	 * Updates the threats of one line.
+	 *
+	 * @param line the line index to re-check
+	 */
+	private void updateLine(final int line) {
+		Lines lines = board.getLines();
+		for (int side = 0; side < Board.SIDES; side++) {
+			int own = board.getLineCount(side, line);
+			int other = board.getLineCount(Board.getOpponent(side), line);
+			if (other == 0 && own == lines.getLineLength(line) - 1) {
+				if (missingCells[side][line] == NONE) {
+					addThreat(side, line);
+				}
+				missingCells[side][line] = getMissingCell(line);
+			} else if (missingCells[side][line] != NONE) {
+				removeThreat(side, line);
+				missingCells[side][line] = NONE;
+			}
+		}
+	}
+
+	/**
+	 * Appends a line to the threats of a side as its youngest threat.
+	 *
+	 * @param side the side threatening to complete the line
+	 * @param line the line index not yet being a threat of the side
+	 */
+	private void addThreat(final int side, final int line) {
+		int youngest = youngestLines[side];
+		previousLines[side][line] = youngest;
+		nextLines[side][line] = NONE;
+		if (youngest == NONE) {
+			oldestLines[side] = line;
+		} else {
+			nextLines[side][youngest] = line;
+		}
+		youngestLines[side] = line;
+		threatsCounts[side]++;
+	}
+
+	/**
+	 * Unlinks a line from the threats of a side.
+	 *
+	 * @param side the side no longer threatening to complete the line
+	 * @param line the line index being a threat of the side
+	 */
+	private void removeThreat(final int side, final int line) {
+		int previous = previousLines[side][line];
+		int next = nextLines[side][line];
+		if (previous == NONE) {
+			oldestLines[side] = next;
+		} else {
+			nextLines[side][previous] = next;
+		}
+		if (next == NONE) {
+			youngestLines[side] = previous;
+		} else {
+			previousLines[side][next] = previous;
+		}
+		threatsCounts[side]--;
+	}
+
+	/**
+	 * Gets the only empty cell of a line.
+	 *
+	 * @param line the line index with exactly one empty cell
+	 * @return the empty cell of the line
+	 */
+	private int getMissingCell(final int line) {
+		for (int cell : board.getLines().getLineCells(line)) {
+			if (board.isEmpty(cell)) {
+				return cell;
+			}
+		}
+		throw new IllegalStateException("Line has no empty cell!");
+	}
+
+	/**
+	 * Gets a cell that lets a side win with its next move.
+	 *
+	 * @param side the side to get a winning cell for
+	 * @return the missing cell of the oldest threat of the side or -1 if the side
+	 *         has no threat
+	 */
+	public int getCompletingCell(final int side) {
+		int oldest = oldestLines[side];
+		return oldest == NONE ? NONE : missingCells[side][oldest];
+	}
+
+	/**
+	 * Gets whether a side can win with its next move.
+	 *
+	 * @param side the side to check
+	 * @return true if the side has at least one threat, otherwise false
+	 */
+	public boolean hasThreat(final int side) {
+		return threatsCounts[side] > 0;
+	}
+
+	/**
+	 * Gets the amount of threats of a side.
+	 *
+	 * @param side the side to count the threats of
+	 * @return the amount of lines the side can complete with one move
+	 */
+	public int getThreatsCount(final int side) {
+		return threatsCounts[side];
+	}
+
+}
@@ -1,94 +1,113 @@
 package de.sengerts.tictactoe.model.board;
 
-import de.sengerts.tictactoe.exceptions.TileAreadyMarkedException;
+import de.sengerts.tictactoe.engine.Board;
 import de.sengerts.tictactoe.model.players.Player;
 
 /**
  * Class representing one tile of the game territory at a specific location that
  * can be marked or not.
  * 
+ * A tile is only a flyweight view of one cell of the board of its territory,
+ * which stores the mark of every cell as two bits in the long words of its
+ * bitboards, so tiles do not keep any state of their own and are created on
+ * demand.
+ * 
  * @author Tobias Senger
  */
 public class Tile {
 
 	/**
-	 * Instance variable that stores the location of the tile.
+	 * Instance variable that stores the territory of the tile.
 	 */
-	private final Location location;
+	private final Territory territory;
 
 	/**
-	 * Instance variable that, when tile is marked, stores a player object
-	 * representing the player who marked this tile during a game. Is null by
-	 * default.
+	 * Instance variable that stores the index of the cell of the tile on the
+	 * board of its territory.
 	 */
-	private Player markedPlayer;
+	private final int cell;
 
 	/**
 	 * Another constructor for class Tile.
 	 * 
-	 * Creates a new tile object with a specific given location.
+	 * Creates a new tile object viewing the given cell of the given territory.
 	 * 
-	 * @param location the location of this tile, can not be null
-	 * @throws IllegalArgumentException if given location is null
+	 * @param territory the territory of this tile, can not be null
+	 * @param cell the index of the cell of this tile
+	 * @throws IllegalArgumentException if given territory is null or given cell
+	 *                                  is not inside the territory
 	 */
-	public Tile(final Location location) {
+	Tile(final Territory territory, final int cell) {
 		super();
-		if (location == null) {
-			throw new IllegalArgumentException("Given location can not be null!");
+		if (territory == null) {
+			throw new IllegalArgumentException("Given territory can not be null!");
+		}
+		if (cell < 0 || cell >= territory.getTilesAmount()) {
+			throw new IllegalArgumentException("Given cell is not inside the territory!");
 		}
-		// TODO Check if tile already exists
-		this.location = location;
+		this.territory = territory;
+		this.cell = cell;
 	}
 
 	/**
 	 * Gets the location.
 	 * 
-	 * Returns the location object of this tile. Can not be null.
+	 * Returns a new location object of this tile computed from the index of
+	 * its cell. Can not be null.
 	 * 
 	 * @return location of this tile object
 	 */
 	public /* @ pure @ */ Location getLocation() {
-		return location;
+		int columnsCount = territory.getSize().getColumnsCount();
+		return new Location(cell / columnsCount, cell % columnsCount);
 	}
 
 	/**
-	 * Gets the marked player.
+	 * Gets the cell.
 	 * 
-	 * Returns a player object of this tile if this tile is marked. Returns null by
-	 * default as long as no player marked this tile in the game.
+	 * Returns the index of the cell of this tile on the board of its territory.
 	 * 
-	 * @return marked player object of this tile object
+	 * @return cell index of this tile object
 	 */
-	public /* @ pure @ */ Player getMarkedPlayer() {
-		return markedPlayer;
+	public /* @ pure @ */ int getCell() {
+		return cell;
 	}
 
 	/**
-	 * Returns whether this tile is marked.
+	 * Gets the territory.
 	 * 
-	 * Returns whether this tile is marked by returning true if the marked player
-	 * object of this tile object is not null, otherwise it returns false.
+	 * Returns the territory this tile is a view of.
 	 * 
-	 * @return true if marked player object is not null, otherwise false
+	 * @return territory of this tile object
 	 */
-	public /* @ pure @ */ boolean isMarked() {
-		return markedPlayer != null;
+	public /* @ pure @ */ Territory getTerritory() {
+		return territory;
 	}
 
 	/**
-	 * Sets the marked player.
+	 * Gets the marked player.
 	 * 
-	 * Sets a player representing the player who marked this tile by assigning the
-	 * given player object to the instance variable markedPlayer.
+	 * Returns the player of the game whose sign marks the cell of this tile if
+	 * this tile is marked. Returns null as long as no player marked this tile in
+	 * the game.
 	 * 
-	 * @param markedPlayer the player to mark this tile by
-	 * @throws TileAreadyMarkedException if tile has already been marked by a player
+	 * @return marked player object of this tile object
 	 */
-	public void setMarkedPlayer(Player markedPlayer) throws TileAreadyMarkedException {
-		if (isMarked()) {
-			throw new TileAreadyMarkedException();
-		}
-		this.markedPlayer = markedPlayer;
+	public /* @ pure @ */ Player getMarkedPlayer() {
+		int side = territory.getBoard().getSide(cell);
+		return side == Board.NO_SIDE ? null : territory.getTicTacToeGame().getPlayers().get(side);
+	}
+
+	/**
+	 * Returns whether this tile is marked.
+	 * 
+	 * Returns whether this tile is marked by checking whether the cell of this
+	 * tile is marked on the board of its territory.
+	 * 
+	 * @return true if the cell of this tile is marked, otherwise false
+	 */
+	public /* @ pure @ */ boolean isMarked() {
+		return !territory.getBoard().isEmpty(cell);
 	}
 
 	/*
@@ -104,7 +123,16 @@ public class Tile {
 			return false;
 		}
 		final Tile objectTile = (Tile) object;
-		return objectTile.getLocation().equals(location);
+		return objectTile.territory == territory && objectTile.cell == cell;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return cell;
 	}
 
 	/*
@@ -113,8 +141,9 @@ public class Tile {
 	 */
 	@Override
 	public String toString() {
-		return "Tile(location=" + location.toString() + ", markedPlayer=" 
-				+ (isMarked() ? markedPlayer.getName() : "-") + ")";
+		Player markedPlayer = getMarkedPlayer();
+		return "Tile(location=" + getLocation().toString() + ", markedPlayer=" 
+				+ (markedPlayer != null ? markedPlayer.getName() : "-") + ")";
 	}
 
 }
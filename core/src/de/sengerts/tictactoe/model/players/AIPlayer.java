@@ -1,52 +1,72 @@
 package de.sengerts.tictactoe.model.players;
 
-import java.util.List;
+import java.util.SplittableRandom;
 
-import de.sengerts.tictactoe.exceptions.TileAreadyMarkedException;
+import de.sengerts.tictactoe.engine.Board;
 import de.sengerts.tictactoe.logic.GameLogic;
-import de.sengerts.tictactoe.model.board.Tile;
+import de.sengerts.tictactoe.model.board.ThreatIndex;
+import de.sengerts.tictactoe.model.players.ai.AIEngine;
 
 /**
  * Class representing an AI player of a tic tac toe game.
  * 
+ * An AI player is only the identity of a player in one game, its moves are
+ * chosen by a shared and thread safe {@link AIEngine}.
+ * 
  * @author Tobias Senger
  */
 public class AIPlayer extends Player {
 
+	/**
+	 * Instance variable that stores the engine choosing the moves of this
+	 * player.
+	 */
+	private final AIEngine aiEngine;
+
 	/**
 	 * Another constructor for class AIPlayer.
 	 * 
 	 * Creates a new AIPlayer object extending the Player class with the given
-	 * game logic object and player sign object.
+	 * game logic object and player sign object, whose moves are chosen by the
+	 * given engine.
 	 * 
 	 * @param gameLogic the game logic of the tic tac toe game this player is associated with
 	 * @param playerSign the sign of this AI player
+	 * @param aiEngine the engine choosing the moves of this player
+	 * @throws IllegalArgumentException if given AI engine is null
 	 */
-	public AIPlayer(final GameLogic gameLogic, final PlayerSign playerSign) {
+	public AIPlayer(final GameLogic gameLogic, final PlayerSign playerSign, final AIEngine aiEngine) {
 		super(gameLogic, playerSign);
+		if (aiEngine == null) {
+			throw new IllegalArgumentException("Given AI engine can not be null!");
+		}
+		this.aiEngine = aiEngine;
 	}
 
 	/**
-	 * Lets the AI player make an automated move.
+	 * Chooses the next cell the AI player wants to mark.
+	 * 
+	 * Lets the engine of this player choose the cell for the sign of this
+	 * player. This method is called on a thread other than the one running the
+	 * game loop, so it must only look at the given copies of the territory's
+	 * board and threat index and never at the game itself.
 	 * 
-	 * Here, the AI player calculates a fitting next field which he then marks
-	 * trying to win the tic tac toe game.
+	 * @param board a copy of the board of the territory
+	 * @param threatIndex a copy of the threat index of the territory
+	 * @param random the random number generator to use for this move
+	 * @return the index of the cell to mark
 	 */
-	@Override
-	public void makeMove() {
-		// TODO Not just randomly select a tile to mark
-		
-		while (true) {
-			try {
-				List<Tile> tiles = getGameLogic().getTerritory().getTiles();
-				Tile tile = tiles.get(GameLogic.RANDOM.nextInt(tiles.size()));
-				tile.setMarkedPlayer(this);
-				
-				getGameLogic().endMove();
-				return;
-			} catch (TileAreadyMarkedException e) {
-			}
-		}
+	public int chooseCell(final Board board, final ThreatIndex threatIndex, final SplittableRandom random) {
+		return aiEngine.chooseCell(board, threatIndex, getPlayerSign().ordinal(), random);
+	}
+
+	/**
+	 * Gets the AI engine.
+	 * 
+	 * @return the engine choosing the moves of this player
+	 */
+	public /* @ pure @ */ AIEngine getAiEngine() {
+		return aiEngine;
 	}
 	
 	/**
@@ -41,16 +41,6 @@ public abstract class Player {
 		this.playerSign = playerSign;
 	}
 	
-	/**
-	 * Abstract method for the make move logic in a tic tac toe game.
-	 * 
-	 * Here, the player picks a field which should be marked.
-	 * After that the tic tac toe game this player is associated with
-	 * checks whether there now is a draw or winner and decides what
-	 * to do next.
-	 * This method is implemented by subclasses of this parent class.
-	 */
-	public abstract void makeMove();
 	
 	/**
 	 * Indicates whether a player is an AI player or not.
@@ -0,0 +1,36 @@
+package de.sengerts.tictactoe.model.players.ai;
+
+import java.util.SplittableRandom;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.model.board.ThreatIndex;
+
+/**
+ * Interface for choosing the moves of AI players.
+ *
+ * An engine only gets copies of the board and threat index of a game and
+ * returns the cell to mark, it never keeps any state of a game. Engines have to
+ * be thread safe, so one engine instance is shared by the AI players of all
+ * games, together with everything it caches between moves.
+ * {@link AIEngines} provides the shared instances.
+ *
+ * @author Tobias Senger
+ */
+public interface AIEngine {
+
+	/**
+	 * Chooses the next cell a side wants to mark.
+	 *
+	 * This method can be called by many threads at the same time, each with its
+	 * own copies of the board and threat index.
+	 *
+	 * @param board       a copy of the board of the territory, which has at least
+	 *                    one empty cell and may be changed by the engine
+	 * @param threatIndex a copy of the threat index of the territory
+	 * @param side        the side to choose a cell for
+	 * @param random      the random number generator to use for this move
+	 * @return the index of the empty cell to mark
+	 */
+	int chooseCell(Board board, ThreatIndex threatIndex, int side, SplittableRandom random);
+
+}
@@ -0,0 +1,59 @@
+package de.sengerts.tictactoe.model.players.ai;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+
+/**
+ * Class providing the shared AI engines.
+ *
+ * @author Tobias Senger
+ */
+public final class AIEngines {
+
+	/**
+	 * Class variable that stores the search engines of all AI difficulties.
+	 */
+	private static final Map<AIDifficulty, SearchAIEngine> SEARCH_ENGINES = createSearchEngines();
+
+	/**
+	 * Private constructor for class AIEngines, as it only has static methods.
+	 */
+	private AIEngines() {
+	}
+
+	/**
+	 * Creates the search engines of all AI difficulties.
+	 *
+	 * @return the search engine of every AI difficulty
+	 */
+	private static Map<AIDifficulty, SearchAIEngine> createSearchEngines() {
+		Map<AIDifficulty, SearchAIEngine> engines = new EnumMap<AIDifficulty, SearchAIEngine>(AIDifficulty.class);
+		for (AIDifficulty aiDifficulty : AIDifficulty.values()) {
+			engines.put(aiDifficulty,
+					new SearchAIEngine(aiDifficulty.getSearchBudget(), aiDifficulty.isUsingPrecomputedMoves(),
+							aiDifficulty.isBreakingTiesRandomly()));
+		}
+		return engines;
+	}
+
+	/**
+	 * Gets the search engine of an AI difficulty.
+	 *
+	 * Gets the engine searching with the search budget of the given AI
+	 * difficulty, which is shared by the AI players of all games with this
+	 * difficulty.
+	 *
+	 * @param aiDifficulty the AI difficulty to get the engine of
+	 * @return the shared search engine of the AI difficulty
+	 * @throws IllegalArgumentException if given AI difficulty is null
+	 */
+	public static SearchAIEngine get(final AIDifficulty aiDifficulty) {
+		if (aiDifficulty == null) {
+			throw new IllegalArgumentException("Given AI difficulty can not be null!");
+		}
+		return SEARCH_ENGINES.get(aiDifficulty);
+	}
+
+}
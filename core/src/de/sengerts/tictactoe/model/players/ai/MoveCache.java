@@ -0,0 +1,516 @@
+package de.sengerts.tictactoe.model.players.ai;
+
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.engine.SearchBudget;
+import de.sengerts.tictactoe.engine.Symmetries;
+import de.sengerts.tictactoe.engine.Zobrist;
+
+/**
+ * Class representing a bounded cache of the moves searched for the AI players
+ * of all games.
+ *
+ * Moves are cached by the hash of the canonical position ({@link Symmetries}),
+ * the side to move, the board size and win length and the search budget, so
+ * every position reached in one game is answered from the cache in all other
+ * games reaching the same or an equivalent position. Positions requested by
+ * several threads at the same time are only searched once, the other threads
+ * wait for that search and take its move.
+ *
+ * Once more than the maximum amount of moves are cached, moves are evicted in
+ * the order they were cached, but every move that has been taken from the cache
+ * since it was last checked for eviction gets another chance with its
+ * frequency halved (a generalized clock). So the moves of the common openings
+ * stay cached while the moves of positions only reached once are evicted.
+ *
+ * The counters of this cache can be read at any time as metrics. All methods
+ * of a cache are thread safe.
+ *
+ * @author Tobias Senger
+ */
+public final class MoveCache {
+
+	/**
+	 * Class variable that stores the default maximum amount of cached moves.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1 << 16;
+
+	/**
+	 * Class variable that stores the highest frequency counted per move.
+	 */
+	private static final int MAX_FREQUENCY = 15;
+
+	/**
+	 * Instance variable that stores the maximum amount of cached moves.
+	 */
+	private final int maxEntries;
+
+	/**
+	 * Instance variable that stores the cached and currently searched moves by
+	 * their keys.
+	 */
+	private final ConcurrentMap<Key, Entry> entries;
+
+	/**
+	 * Instance variable that stores the cached moves in the order they are
+	 * checked for eviction.
+	 */
+	private final Queue<Entry> clock;
+
+	/**
+	 * Instance variable that stores the lock of the eviction.
+	 */
+	private final Object evictionLock;
+
+	/**
+	 * Instance variable that stores the amount of moves taken from the cache.
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * Instance variable that stores the amount of moves taken from a search of
+	 * another thread.
+	 */
+	private final LongAdder coalesced;
+
+	/**
+	 * Instance variable that stores the amount of searched moves.
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Instance variable that stores the amount of evicted moves.
+	 */
+	private final LongAdder evictions;
+
+	/**
+	 * Instance variable that stores the search time saved by hits and coalesced
+	 * requests in nanoseconds.
+	 */
+	private final LongAdder savedNanos;
+
+	/**
+	 * Instance variable that stores the time spent searching in nanoseconds.
+	 */
+	private final LongAdder searchNanos;
+
+	/**
+	 * Another constructor for class MoveCache.
+	 *
+	 * @param maxEntries the maximum amount of cached moves
+	 * @throws IllegalArgumentException if given maximum is not positive
+	 */
+	public MoveCache(final int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("Given max entries must be positive!");
+		}
+		this.maxEntries = maxEntries;
+		this.entries = new ConcurrentHashMap<Key, Entry>();
+		this.clock = new ConcurrentLinkedQueue<Entry>();
+		this.evictionLock = new Object();
+		this.hits = new LongAdder();
+		this.coalesced = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+		this.savedNanos = new LongAdder();
+		this.searchNanos = new LongAdder();
+	}
+
+	/**
+	 * Chooses the move of a side, searching it only if it is not cached.
+	 *
+	 * Takes the move of the canonical position of the given board from this
+	 * cache and maps it back onto the board. If it is not cached yet, it is
+	 * either taken from a search of the same position already running on
+	 * another thread or searched with the given search and cached.
+	 *
+	 * @param board        the board to choose a move on, whose marks must not
+	 *                     change while this method runs except during the search
+	 * @param side         the side to move
+	 * @param searchBudget the search budget the search is using
+	 * @param search       the search choosing a cell on the given board
+	 * @return the index of the empty cell to mark
+	 * @throws IllegalArgumentException if given board, budget or search is null
+	 */
+	public int chooseCell(final Board board, final int side, final SearchBudget searchBudget,
+			final IntSupplier search) {
+		if (board == null || searchBudget == null || search == null) {
+			throw new IllegalArgumentException("Given board, search budget and search can not be null!");
+		}
+		Symmetries symmetries = Symmetries.get(board.getLines());
+		int symmetry = symmetries.getCanonicalSymmetry(board);
+		long hash = symmetries.getHash(board, symmetry) ^ Zobrist.getSideKey(side);
+		Key key = new Key(hash, board.getLines(), searchBudget);
+
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			Entry newEntry = new Entry(key);
+			entry = entries.putIfAbsent(key, newEntry);
+			if (entry == null) {
+				int cell = search(newEntry, search);
+				newEntry.complete(symmetries.mapCell(symmetry, cell));
+				clock.add(newEntry);
+				evictIfFull();
+				return cell;
+			}
+		}
+
+		long startNanos = System.nanoTime();
+		boolean computed = entry.isComputed();
+		if (!entry.await()) {
+			return search.getAsInt();
+		}
+		int cell = symmetries.unmapCell(symmetry, entry.cell);
+		if (!board.isEmpty(cell)) {
+			// Two positions with the same hash
+			return search.getAsInt();
+		}
+		if (computed) {
+			hits.increment();
+			entry.hit();
+			savedNanos.add(entry.searchNanos);
+		} else {
+			coalesced.increment();
+			savedNanos.add(Math.max(0, entry.searchNanos - (System.nanoTime() - startNanos)));
+		}
+		return cell;
+	}
+
+	/**
+	 * Searches the move of a new entry.
+	 *
+	 * @param entry  the new entry
+	 * @param search the search choosing a cell
+	 * @return the searched cell
+	 */
+	private int search(final Entry entry, final IntSupplier search) {
+		long startNanos = System.nanoTime();
+		try {
+			int cell = search.getAsInt();
+			entry.searchNanos = System.nanoTime() - startNanos;
+			misses.increment();
+			searchNanos.add(entry.searchNanos);
+			return cell;
+		} catch (RuntimeException | Error e) {
+			entries.remove(entry.key, entry);
+			entry.fail();
+			throw e;
+		}
+	}
+
+	/**
+	 * Evicts moves until no more than the maximum amount of moves are cached.
+	 *
+	 * Checks the cached moves in the order they were cached. A move with a
+	 * frequency greater than zero is checked again later with its frequency
+	 * halved, a move with a frequency of zero is evicted.
+	 */
+	private void evictIfFull() {
+		if (entries.size() <= maxEntries) {
+			return;
+		}
+		synchronized (evictionLock) {
+			while (entries.size() > maxEntries) {
+				Entry entry = clock.poll();
+				if (entry == null) {
+					// Only moves being searched are left
+					return;
+				}
+				if (entry.frequency > 0) {
+					entry.frequency >>>= 1;
+					clock.add(entry);
+				} else if (entries.remove(entry.key, entry)) {
+					evictions.increment();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Clears all cached moves, keeping the counters.
+	 */
+	public void clear() {
+		synchronized (evictionLock) {
+			entries.clear();
+			clock.clear();
+		}
+	}
+
+	/**
+	 * Gets the amount of cached moves.
+	 *
+	 * @return the amount of cached and currently searched moves
+	 */
+	public int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the maximum amount of cached moves.
+	 *
+	 * @return the maximum amount of cached moves
+	 */
+	public /* @ pure @ */ int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Gets the amount of hits.
+	 *
+	 * @return the amount of moves taken from the cache
+	 */
+	public long getHitsCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the amount of coalesced requests.
+	 *
+	 * @return the amount of moves taken from a search of another thread
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Gets the amount of misses.
+	 *
+	 * @return the amount of searched moves
+	 */
+	public long getMissesCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the amount of evictions.
+	 *
+	 * @return the amount of evicted moves
+	 */
+	public long getEvictionsCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Gets the hit rate.
+	 *
+	 * @return the share of all moves that were not searched, coalesced requests
+	 *         included, or zero if no move was chosen yet
+	 */
+	public double getHitRate() {
+		long saved = getHitsCount() + getCoalescedCount();
+		long total = saved + getMissesCount();
+		return total == 0 ? 0 : (double) saved / total;
+	}
+
+	/**
+	 * Gets the saved search time.
+	 *
+	 * @return the search time saved by hits and coalesced requests in
+	 *         nanoseconds
+	 */
+	public long getSavedNanos() {
+		return savedNanos.sum();
+	}
+
+	/**
+	 * Gets the search time.
+	 *
+	 * @return the time spent searching the missed moves in nanoseconds
+	 */
+	public long getSearchNanos() {
+		return searchNanos.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"MoveCache(size=%d, hits=%d, coalesced=%d, misses=%d, evictions=%d, hitRate=%.3f, "
+						+ "savedMillis=%d, searchMillis=%d)",
+				getSize(), getHitsCount(), getCoalescedCount(), getMissesCount(), getEvictionsCount(), getHitRate(),
+				getSavedNanos() / 1_000_000, getSearchNanos() / 1_000_000);
+	}
+
+	/**
+	 * Class representing the key of a cached move.
+	 */
+	private static final class Key {
+
+		/**
+		 * Instance variable that stores the hash of the canonical position
+		 * including the side to move.
+		 */
+		private final long hash;
+
+		/**
+		 * Instance variable that stores the lines of the board, which are cached
+		 * per board size and win length.
+		 */
+		private final Lines lines;
+
+		/**
+		 * Instance variable that stores the search budget.
+		 */
+		private final SearchBudget searchBudget;
+
+		/**
+		 * Another constructor for class Key.
+		 *
+		 * @param hash         the hash of the canonical position including the
+		 *                     side to move
+		 * @param lines        the lines of the board
+		 * @param searchBudget the search budget
+		 */
+		private Key(final long hash, final Lines lines, final SearchBudget searchBudget) {
+			this.hash = hash;
+			this.lines = lines;
+			this.searchBudget = searchBudget;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(final Object object) {
+			if (this == object) {
+				return true;
+			}
+			if (!(object instanceof Key)) {
+				return false;
+			}
+			final Key objectKey = (Key) object;
+			return hash == objectKey.hash && lines == objectKey.lines && searchBudget.equals(objectKey.searchBudget);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return Long.hashCode(hash);
+		}
+
+	}
+
+	/**
+	 * Class representing a cached or currently searched move.
+	 */
+	private static final class Entry {
+
+		/**
+		 * Class variable that stores the cell of entries whose search failed.
+		 */
+		private static final int FAILED = -1;
+
+		/**
+		 * Instance variable that stores the key of this entry.
+		 */
+		private final Key key;
+
+		/**
+		 * Instance variable that stores the cell of the canonical position,
+		 * written before {@link #computed} is set.
+		 */
+		private int cell;
+
+		/**
+		 * Instance variable that stores the search time in nanoseconds, written
+		 * before {@link #computed} is set.
+		 */
+		private long searchNanos;
+
+		/**
+		 * Instance variable that stores whether the search of this entry has
+		 * finished.
+		 */
+		private volatile boolean computed;
+
+		/**
+		 * Instance variable that stores the approximate amount of hits since this
+		 * entry was last checked for eviction, which may lose increments of
+		 * concurrent hits.
+		 */
+		private volatile int frequency;
+
+		/**
+		 * Another constructor for class Entry.
+		 *
+		 * @param key the key of this entry
+		 */
+		private Entry(final Key key) {
+			this.key = key;
+		}
+
+		/**
+		 * Completes this entry with its searched cell and wakes up all waiting
+		 * threads.
+		 *
+		 * @param cell the cell of the canonical position
+		 */
+		private synchronized void complete(final int cell) {
+			this.cell = cell;
+			this.computed = true;
+			notifyAll();
+		}
+
+		/**
+		 * Completes this entry after its search failed and wakes up all waiting
+		 * threads.
+		 */
+		private synchronized void fail() {
+			complete(FAILED);
+		}
+
+		/**
+		 * Waits until the search of this entry has finished, returning right
+		 * away if it has already finished.
+		 *
+		 * @return true if the search found a cell, false if it failed or the
+		 *         waiting thread was interrupted
+		 */
+		private synchronized boolean await() {
+			while (!computed) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return cell != FAILED;
+		}
+
+		/**
+		 * Counts a hit of this entry.
+		 */
+		private void hit() {
+			if (frequency < MAX_FREQUENCY) {
+				frequency++;
+			}
+		}
+
+		/**
+		 * Gets whether the search of this entry has finished.
+		 *
+		 * @return true if the search has finished, otherwise false
+		 */
+		private boolean isComputed() {
+			return computed;
+		}
+
+	}
+
+}
@@ -0,0 +1,394 @@
+package de.sengerts.tictactoe.model.players.ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.engine.OpeningBook;
+import de.sengerts.tictactoe.engine.SearchBudget;
+import de.sengerts.tictactoe.engine.SearchEngine;
+import de.sengerts.tictactoe.engine.SearchResult;
+import de.sengerts.tictactoe.engine.Tablebase;
+import de.sengerts.tictactoe.engine.TranspositionTable;
+import de.sengerts.tictactoe.model.board.ThreatIndex;
+
+/**
+ * Class representing the AI engine letting the search engine pick the moves.
+ *
+ * Every move is searched by a new {@link SearchEngine}, which only holds the
+ * counters of one search, with one transposition table per board size and
+ * win length. The tables are shared by all search AI engines and therefore by
+ * the AI players of all games with the same rules, which keep the positions
+ * searched for one game warm for all others. Sharing the tables needs no
+ * locking ({@link TranspositionTable}). With a table directory set, the tables
+ * are backed by one file per board size and win length in the directory, so
+ * the searched positions survive restarts and are shared with the other
+ * processes using the same directory.
+ *
+ * Searched moves are additionally cached by their canonical positions in one
+ * {@link MoveCache} shared by all search AI engines, so the positions reached
+ * in many games, like the common openings, are only searched once per search
+ * budget. Engines using precomputed moves do not even search the openings
+ * once, they take the moves of the shared {@link OpeningBook} set for all
+ * engines, which were searched far deeper offline. On boards with a shared
+ * {@link Tablebase}, they do not search at all but play perfect moves, unless
+ * the position is lost anyway.
+ *
+ * Engines breaking ties randomly pick one of the equally scored moves of their
+ * searches with the random of the game, so the same seed replays the same
+ * game. Their moves are not cached, as a cached move would always be the same
+ * pick.
+ *
+ * @author Tobias Senger
+ */
+public final class SearchAIEngine implements AIEngine {
+
+	/**
+	 * Class variable that stores the base two logarithm of the amount of entries
+	 * of every shared transposition table.
+	 */
+	public static final int TABLE_BITS = SearchEngine.DEFAULT_TABLE_BITS + 2;
+
+	/**
+	 * Class variable that stores the shared transposition tables by the lines of
+	 * their boards, which are cached per board size and win length
+	 * ({@link Lines#mnk(int, int, int)}).
+	 */
+	private static final ConcurrentMap<Lines, TranspositionTable> TABLES
+			= new ConcurrentHashMap<Lines, TranspositionTable>();
+
+	/**
+	 * Class variable that stores the directory of the files backing the shared
+	 * transposition tables or null if they are only kept in memory.
+	 */
+	private static volatile File tableDirectory;
+
+	/**
+	 * Class variable that stores the cache of the searched moves of all search
+	 * AI engines.
+	 */
+	private static final MoveCache MOVE_CACHE = new MoveCache(MoveCache.DEFAULT_MAX_ENTRIES);
+
+	/**
+	 * Class variable that stores the opening book of all search AI engines or
+	 * null if there is none.
+	 */
+	private static volatile OpeningBook openingBook;
+
+	/**
+	 * Class variable that stores the tablebases of all search AI engines by the
+	 * lines of their boards.
+	 */
+	private static final ConcurrentMap<Lines, Tablebase> TABLEBASES = new ConcurrentHashMap<Lines, Tablebase>();
+
+	/**
+	 * Instance variable that stores the search budget of every move.
+	 */
+	private final SearchBudget searchBudget;
+
+	/**
+	 * Instance variable that stores whether this engine plays the moves of the
+	 * opening book and the tablebases.
+	 */
+	private final boolean usingPrecomputedMoves;
+
+	/**
+	 * Instance variable that stores whether this engine breaks ties between
+	 * equally scored moves randomly.
+	 */
+	private final boolean breakingTiesRandomly;
+
+	/**
+	 * Another constructor for class SearchAIEngine.
+	 *
+	 * Creates a new engine searching every move, without the opening book and
+	 * the tablebases, which takes the first of equally scored moves.
+	 *
+	 * @param searchBudget the search budget of every move
+	 * @throws IllegalArgumentException if given search budget is null
+	 */
+	public SearchAIEngine(final SearchBudget searchBudget) {
+		this(searchBudget, false);
+	}
+
+	/**
+	 * Another constructor for class SearchAIEngine.
+	 *
+	 * @param searchBudget the search budget of every move
+	 * @param usingPrecomputedMoves whether the engine plays the moves of the
+	 *                              opening book and the tablebases
+	 * @throws IllegalArgumentException if given search budget is null
+	 */
+	public SearchAIEngine(final SearchBudget searchBudget, final boolean usingPrecomputedMoves) {
+		this(searchBudget, usingPrecomputedMoves, false);
+	}
+
+	/**
+	 * Another constructor for class SearchAIEngine.
+	 *
+	 * @param searchBudget the search budget of every move
+	 * @param usingPrecomputedMoves whether the engine plays the moves of the
+	 *                              opening book and the tablebases
+	 * @param breakingTiesRandomly whether the engine breaks ties between
+	 *                             equally scored moves randomly instead of
+	 *                             taking cached moves
+	 * @throws IllegalArgumentException if given search budget is null
+	 */
+	public SearchAIEngine(final SearchBudget searchBudget, final boolean usingPrecomputedMoves,
+			final boolean breakingTiesRandomly) {
+		if (searchBudget == null) {
+			throw new IllegalArgumentException("Given search budget can not be null!");
+		}
+		this.searchBudget = searchBudget;
+		this.usingPrecomputedMoves = usingPrecomputedMoves;
+		this.breakingTiesRandomly = breakingTiesRandomly;
+	}
+
+	/**
+	 * Chooses the next cell a side wants to mark.
+	 *
+	 * Here, the engine picks a cell that wins the game right away if the threat
+	 * index has one, or else blocks the cell the opponent would win with on its
+	 * next move. Otherwise, if it uses precomputed moves, it takes the perfect
+	 * cell of the tablebase of the board if there is one and the position is
+	 * not lost, or the cell of the opening book if the book knows the position.
+	 * Otherwise it takes the cell cached for the position, or searches the
+	 * board with its search budget and picks the best cell found. An engine
+	 * breaking ties randomly always searches and picks one of the best cells
+	 * found with the given random.
+	 */
+	@Override
+	public int chooseCell(final Board board, final ThreatIndex threatIndex, final int side,
+			final SplittableRandom random) {
+		int cell = threatIndex.getCompletingCell(side);
+		if (cell >= 0) {
+			return cell;
+		}
+		cell = threatIndex.getCompletingCell(Board.getOpponent(side));
+		if (cell >= 0) {
+			return cell;
+		}
+		if (usingPrecomputedMoves) {
+			Tablebase tablebase = TABLEBASES.get(board.getLines());
+			if (tablebase != null) {
+				cell = tablebase.getBestCell(board, side);
+				if (cell != Tablebase.NO_MOVE) {
+					return cell;
+				}
+			}
+			OpeningBook book = openingBook;
+			if (book != null) {
+				cell = book.probe(board, side);
+				if (cell != OpeningBook.NO_MOVE) {
+					return cell;
+				}
+			}
+		}
+		if (breakingTiesRandomly) {
+			return search(board, side, random);
+		}
+		return MOVE_CACHE.chooseCell(board, side, searchBudget, () -> search(board, side, null));
+	}
+
+	/**
+	 * Searches the best cell of a side.
+	 *
+	 * @param board  the board to search on
+	 * @param side   the side to move
+	 * @param random the random breaking ties between equally scored cells or
+	 *               null to take the first of them
+	 * @return the index of the best cell found
+	 */
+	private int search(final Board board, final int side, final SplittableRandom random) {
+		SearchEngine searchEngine = new SearchEngine(getTable(board.getLines()));
+		SearchResult result = searchEngine.search(board, side, searchBudget, random);
+		return result.getCell();
+	}
+
+	/**
+	 * Gets the shared transposition table of a board size and win length.
+	 *
+	 * @param lines the lines of the board
+	 * @return the transposition table shared by all boards with the lines
+	 */
+	public static TranspositionTable getTable(final Lines lines) {
+		TranspositionTable table = TABLES.get(lines);
+		if (table == null) {
+			table = TABLES.computeIfAbsent(lines, SearchAIEngine::createTable);
+		}
+		return table;
+	}
+
+	/**
+	 * Creates the shared transposition table of a board size and win length.
+	 *
+	 * @param lines the lines of the board
+	 * @return the table backed by the file of the board in the table directory
+	 *         or a table in memory if there is no table directory or the file
+	 *         can not be opened
+	 */
+	private static TranspositionTable createTable(final Lines lines) {
+		File directory = tableDirectory;
+		if (directory != null) {
+			try {
+				return TranspositionTable.open(new File(directory, TranspositionTable.getFileName(lines)), lines,
+						TABLE_BITS);
+			} catch (IOException e) {
+				// The searched positions are only kept in memory
+			}
+		}
+		return new TranspositionTable(TABLE_BITS);
+	}
+
+	/**
+	 * Sets the table directory.
+	 *
+	 * Sets the directory of the files backing the shared transposition tables
+	 * created from now on, so it should be set before the first search.
+	 *
+	 * @param directory the existing table directory or null to keep the tables
+	 *                  in memory only
+	 */
+	public static void setTableDirectory(final File directory) {
+		tableDirectory = directory;
+	}
+
+	/**
+	 * Gets the table directory.
+	 *
+	 * @return the directory of the files backing the shared transposition
+	 *         tables or null if they are only kept in memory
+	 */
+	public static File getTableDirectory() {
+		return tableDirectory;
+	}
+
+	/**
+	 * Closes the shared transposition tables.
+	 *
+	 * Closes and removes all shared tables, so the files backing them are
+	 * marked as clean and restored by the next process. Searches running while
+	 * the tables are closed store nothing anymore, so this is meant to be done
+	 * on shutdown.
+	 *
+	 * @throws IOException if the file backing a table can not be written
+	 */
+	public static void closeTables() throws IOException {
+		IOException error = null;
+		for (Lines lines : TABLES.keySet()) {
+			TranspositionTable table = TABLES.remove(lines);
+			try {
+				if (table != null) {
+					table.close();
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Gets the move cache.
+	 *
+	 * @return the cache of the searched moves of all search AI engines
+	 */
+	public static MoveCache getMoveCache() {
+		return MOVE_CACHE;
+	}
+
+	/**
+	 * Gets the opening book.
+	 *
+	 * @return the opening book of all search AI engines or null if there is
+	 *         none
+	 */
+	public static OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+
+	/**
+	 * Sets the opening book.
+	 *
+	 * Sets the opening book the search AI engines using precomputed moves take
+	 * their moves from, which can be done at any time.
+	 *
+	 * @param book the opening book of all search AI engines or null for none
+	 */
+	public static void setOpeningBook(final OpeningBook book) {
+		openingBook = book;
+	}
+
+	/**
+	 * Gets the tablebase of a board size and win length.
+	 *
+	 * @param lines the lines of the board
+	 * @return the tablebase of all search AI engines for boards with the lines
+	 *         or null if there is none
+	 */
+	public static Tablebase getTablebase(final Lines lines) {
+		return TABLEBASES.get(lines);
+	}
+
+	/**
+	 * Adds a tablebase.
+	 *
+	 * Adds a tablebase the search AI engines using precomputed moves take
+	 * their moves from on the boards of the tablebase, replacing any tablebase
+	 * of these boards, which can be done at any time.
+	 *
+	 * @param tablebase the tablebase to add
+	 * @throws IllegalArgumentException if given tablebase is null
+	 */
+	public static void addTablebase(final Tablebase tablebase) {
+		if (tablebase == null) {
+			throw new IllegalArgumentException("Given tablebase can not be null!");
+		}
+		TABLEBASES.put(tablebase.getLines(), tablebase);
+	}
+
+	/**
+	 * Gets the amount of shared transposition tables.
+	 *
+	 * @return the amount of board sizes and win lengths searched so far
+	 */
+	public static int getTablesCount() {
+		return TABLES.size();
+	}
+
+	/**
+	 * Gets the search budget.
+	 *
+	 * @return the search budget of every move
+	 */
+	public /* @ pure @ */ SearchBudget getSearchBudget() {
+		return searchBudget;
+	}
+
+	/**
+	 * Gets whether this engine uses precomputed moves.
+	 *
+	 * @return true if this engine plays the moves of the opening book and the
+	 *         tablebases, otherwise false
+	 */
+	public /* @ pure @ */ boolean isUsingPrecomputedMoves() {
+		return usingPrecomputedMoves;
+	}
+
+	/**
+	 * Gets whether this engine breaks ties randomly.
+	 *
+	 * @return true if this engine picks one of the equally scored moves of its
+	 *         searches at random, otherwise false
+	 */
+	public /* @ pure @ */ boolean isBreakingTiesRandomly() {
+		return breakingTiesRandomly;
+	}
+
+}
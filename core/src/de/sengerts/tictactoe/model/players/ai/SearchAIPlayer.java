@@ -0,0 +1,51 @@
+package de.sengerts.tictactoe.model.players.ai;
+
+import de.sengerts.tictactoe.logic.GameLogic;
+import de.sengerts.tictactoe.model.players.AIPlayer;
+import de.sengerts.tictactoe.model.players.PlayerSign;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+
+/**
+ * Class representing an AI player that lets the search engine pick its moves.
+ * 
+ * The moves are searched by the shared engine of the player's AI difficulty
+ * ({@link AIEngines#get(AIDifficulty)}), so the player itself only stores its
+ * identity in the game.
+ * 
+ * @author Tobias Senger
+ */
+public class SearchAIPlayer extends AIPlayer {
+
+	/**
+	 * Instance variable that stores the AI difficulty of this player.
+	 */
+	private final AIDifficulty aiDifficulty;
+
+	/**
+	 * Another constructor for class SearchAIPlayer.
+	 * 
+	 * Creates a new SearchAIPlayer object extending the Player class with the
+	 * given game logic object, player sign object and AI difficulty whose search
+	 * budget is used for every move.
+	 * 
+	 * @param gameLogic    the game logic of the tic tac toe game this player is
+	 *                     associated with
+	 * @param playerSign   the sign of this AI player
+	 * @param aiDifficulty the AI difficulty of this player
+	 * @throws IllegalArgumentException if given AI difficulty is null
+	 */
+	public SearchAIPlayer(GameLogic gameLogic, PlayerSign playerSign, AIDifficulty aiDifficulty) {
+		super(gameLogic, playerSign, AIEngines.get(aiDifficulty));
+		this.aiDifficulty = aiDifficulty;
+	}
+
+	/**
+	 * Gets the AI difficulty.
+	 * 
+	 * @return the AI difficulty of this player
+	 */
+	public /* @ pure @ */ AIDifficulty getAiDifficulty() {
+		return aiDifficulty;
+	}
+
+}
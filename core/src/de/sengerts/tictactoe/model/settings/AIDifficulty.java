@@ -1,16 +1,106 @@
 package de.sengerts.tictactoe.model.settings;
 
+import de.sengerts.tictactoe.engine.SearchBudget;
+
 /**
  * Enumerations of the possible difficulties for
  * AI players of a tic tac toe game.
  * Its values are EASY, MEDIUM and HARD.
+ * 
+ * All difficulties are played by the same search engine and only
+ * differ in the search budget the engine may spend on every move.
+ * The budgets can be measured against each other with the
+ * difficulty calibration tool of the tools project. Only the
+ * hardest difficulty plays the precomputed moves of the opening
+ * book and the tablebases, the easier ones are meant to make the mistakes of their budgets.
+The easier ones also pick one of their equally good moves at random, so
+their games vary, while the hardest difficulty always plays the same move
+in the same position.
  * 
  * @author Tobias Senger
  */
 public enum AIDifficulty {
 	
-	EASY,
-	MEDIUM,
-	HARD;
+	/**
+	 * Only looks at its own next move.
+	 */
+	EASY(new SearchBudget(200, 1), false, true),
+	
+	/**
+	 * Looks a few moves ahead and sees direct threats.
+	 */
+	MEDIUM(new SearchBudget(5_000, 4), false, true),
+	
+	/**
+	 * Searches as deep as its budget allows.
+	 */
+	HARD(new SearchBudget(250_000, 64), true, false);
+	
+	/**
+	 * Instance variable that stores the search budget of this difficulty.
+	 */
+	private final SearchBudget searchBudget;
+	
+	/**
+	 * Instance variable that stores whether this difficulty plays the
+	 * precomputed moves of the opening book and the tablebases.
+	 */
+	private final boolean precomputedMoves;
+	
+	/**
+	 * Instance variable that stores whether this difficulty breaks
+	 * ties between equally good moves randomly.
+	 */
+	private final boolean breakingTiesRandomly;
+	
+	/**
+	 * Constructor for enum AIDifficulty.
+	 * 
+	 * @param searchBudget the search budget of the difficulty
+	 * @param precomputedMoves whether the difficulty plays the
+	 *                         precomputed moves of the opening book and
+	 *                         the tablebases
+	 * @param breakingTiesRandomly whether the difficulty breaks ties
+	 *                             between equally good moves randomly
+	 */
+	private AIDifficulty(final SearchBudget searchBudget, final boolean precomputedMoves,
+			final boolean breakingTiesRandomly) {
+		this.searchBudget = searchBudget;
+		this.precomputedMoves = precomputedMoves;
+		this.breakingTiesRandomly = breakingTiesRandomly;
+	}
+	
+	/**
+	 * Gets the search budget.
+	 * 
+	 * Returns the budget the search engine may spend on every
+	 * move of an AI player with this difficulty.
+	 * 
+	 * @return search budget of this difficulty
+	 */
+	public /* @ pure @ */ SearchBudget getSearchBudget() {
+		return searchBudget;
+	}
+	
+	/**
+	 * Gets whether this difficulty uses precomputed moves.
+	 * 
+	 * @return true if AI players with this difficulty play the moves of
+	 *         the opening book and the tablebases instead of searching
+	 *         them, otherwise false
+	 */
+	public /* @ pure @ */ boolean isUsingPrecomputedMoves() {
+		return precomputedMoves;
+	}
+	
+	/**
+	 * Gets whether this difficulty breaks ties randomly.
+	 * 
+	 * @return true if AI players with this difficulty pick one of
+	 *         their equally good moves at random, otherwise false
+	 */
+	public /* @ pure @ */ boolean isBreakingTiesRandomly() {
+		return breakingTiesRandomly;
+	}
 
 }
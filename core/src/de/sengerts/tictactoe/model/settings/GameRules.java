@@ -0,0 +1,157 @@
+package de.sengerts.tictactoe.model.settings;
+
+/**
+ * Immutable class representing the optional rules of a tic tac toe game.
+ * 
+ * By default a game is played with the classic rules on a square territory,
+ * where a player has to mark a complete row, column or main diag to win.
+ * With a win length set, the game is played with the m,n,k rules instead:
+ * the territory may be rectangular and a player wins by marking the win
+ * length of tiles in a row horizontally, vertically or diagonally anywhere.
+ * 
+ * @author Tobias Senger
+ */
+public final class GameRules {
+
+	/**
+	 * Class variable that stores the classic rules, with which a game is only
+	 * a draw once every tile is marked.
+	 */
+	public static final GameRules CLASSIC = new GameRules(false);
+
+	/**
+	 * Class variable that stores the win length value of the classic rules.
+	 */
+	public static final int CLASSIC_WIN_LENGTH = 0;
+
+	/**
+	 * Instance variable that stores whether a game ends with a draw as soon as
+	 * no row, column or diag can be completed by any player anymore.
+	 */
+	private final boolean earlyDrawDetection;
+
+	/**
+	 * Instance variable that stores the amount of tiles in a row needed to win
+	 * with the m,n,k rules or {@link #CLASSIC_WIN_LENGTH} for the classic rules.
+	 */
+	private final int winLength;
+
+	/**
+	 * Another constructor for class GameRules.
+	 * 
+	 * Creates a new object of type GameRules with the given optional rules
+	 * for a game with the classic winning lines.
+	 * 
+	 * @param earlyDrawDetection whether a game ends with a draw as soon as
+	 * no line can be won anymore
+	 */
+	public GameRules(final boolean earlyDrawDetection) {
+		this(earlyDrawDetection, CLASSIC_WIN_LENGTH);
+	}
+
+	/**
+	 * Another constructor for class GameRules.
+	 * 
+	 * Creates a new object of type GameRules with the given optional rules.
+	 * 
+	 * @param earlyDrawDetection whether a game ends with a draw as soon as
+	 * no line can be won anymore
+	 * @param winLength the amount of tiles in a row needed to win or
+	 * {@link #CLASSIC_WIN_LENGTH} for the classic rules
+	 * @throws IllegalArgumentException if given win length is negative
+	 */
+	public GameRules(final boolean earlyDrawDetection, final int winLength) {
+		super();
+		if (winLength < 0) {
+			throw new IllegalArgumentException("Given win length can not be negative!");
+		}
+		this.earlyDrawDetection = earlyDrawDetection;
+		this.winLength = winLength;
+	}
+
+	/**
+	 * Gets whether early draw detection is enabled.
+	 * 
+	 * Returns whether a game with these rules ends with a draw as soon as
+	 * every row, column and diag is marked by both players, instead of only
+	 * when every tile is marked.
+	 * 
+	 * @return true if early draw detection is enabled, otherwise false
+	 */
+	public /* @ pure @ */ boolean isEarlyDrawDetection() {
+		return earlyDrawDetection;
+	}
+
+	/**
+	 * Gets whether these are the classic rules.
+	 * 
+	 * @return true if a complete row, column or main diag is needed to win,
+	 * false for the m,n,k rules
+	 */
+	public /* @ pure @ */ boolean isClassic() {
+		return winLength == CLASSIC_WIN_LENGTH;
+	}
+
+	/**
+	 * Gets the win length.
+	 * 
+	 * Returns the amount of tiles in a row needed to win with the m,n,k
+	 * rules or {@link #CLASSIC_WIN_LENGTH} for the classic rules.
+	 * 
+	 * @return the win length of these rules
+	 */
+	public /* @ pure @ */ int getWinLength() {
+		return winLength;
+	}
+
+	/**
+	 * Gets the win length for a territory size.
+	 * 
+	 * Gets the amount of tiles in a row needed to win on a territory with
+	 * the given size. For the classic rules this is the rows count of the
+	 * square territory, as the classic rules are the m,n,k rules with k
+	 * equal to the size of the territory.
+	 * 
+	 * @param size the size of the territory
+	 * @return the amount of tiles in a row needed to win
+	 */
+	public int getWinLength(final Dimension size) {
+		if (size == null) {
+			throw new IllegalArgumentException("Given size can not be null!");
+		}
+		return isClassic() ? size.getRowsCount() : winLength;
+	}
+
+	/*
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+	@Override
+	public boolean equals(final Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof GameRules)) {
+			return false;
+		}
+		final GameRules objectRules = (GameRules) object;
+		return earlyDrawDetection == objectRules.isEarlyDrawDetection()
+				&& winLength == objectRules.getWinLength();
+	}
+
+	/*
+     * @see java.lang.Object#hashCode()
+     */
+	@Override
+	public int hashCode() {
+		return 31 * winLength + (earlyDrawDetection ? 1 : 0);
+	}
+	
+	/*
+     * @see java.lang.Object#toString()
+     */
+	@Override
+	public String toString() {
+		return "GameRules(earlyDrawDetection=" + earlyDrawDetection + ", winLength=" + winLength + ")";
+	}
+
+}
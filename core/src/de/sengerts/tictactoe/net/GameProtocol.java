@@ -0,0 +1,581 @@
+package de.sengerts.tictactoe.net;
+
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+import de.sengerts.tictactoe.model.settings.GameRules;
+
+/**
+ * Class encoding and decoding the messages between a game server and its
+ * clients.
+ * 
+ * Every message is a frame made of the varint encoded length of the rest of
+ * the frame, a one byte message type and the payload of the type. Varints use
+ * seven bits per byte, least significant group first, with the high bit set on
+ * all but the last byte, so cell indices of boards up to 11x11 take one byte.
+ * Other multi byte values are big endian.
+ * 
+ * Clients send {@link #NEW_GAME}, {@link #RESUME}, {@link #MOVE} and
+ * {@link #RESYNC} messages, the server answers with {@link #JOINED},
+ * {@link #STATE}, {@link #MOVED}, {@link #ENDED} and {@link #ERROR} messages. The full, bit-packed state of a game is only sent
+ * when a game starts or a client asks for it, afterwards only the moves are
+ * sent. Both carry the Zobrist hash of the position ({@link Board#getHash()}),
+ * so a client applying the moves to its own board detects a desync by
+ * comparing hashes and then asks for a resync.
+ * 
+ * All methods work directly on the given buffers without copying.
+ * 
+ * @author Tobias Senger
+ */
+public final class GameProtocol {
+
+	/**
+	 * Class variable that stores the type of a client's request to start a new
+	 * game against the AI, followed by the size, the AI difficulty, the win
+	 * length and the flags of the rules, one byte each.
+	 */
+	public static final int NEW_GAME = 0x01;
+
+	/**
+	 * Class variable that stores the type of a client's move, followed by the
+	 * varint cell index.
+	 */
+	public static final int MOVE = 0x02;
+
+	/**
+	 * Class variable that stores the type of a client's request for the full
+	 * state of its game, without payload.
+	 */
+	public static final int RESYNC = 0x03;
+
+	/**
+	 * Class variable that stores the type of a client's request to continue a
+	 * game it left, followed by the eight byte id of the game.
+	 */
+	public static final int RESUME = 0x04;
+
+	/**
+	 * Class variable that stores the type of the full state of a game, followed
+	 * by the state flags, the eight byte hash and the board (see
+	 * {@link #writeBoard(ByteBuffer, Board)}).
+	 */
+	public static final int STATE = 0x81;
+
+	/**
+	 * Class variable that stores the type of a move made in a game, followed by
+	 * the varint of the cell index shifted left by one with the side of the
+	 * player in the lowest bit and the eight byte hash after the move.
+	 */
+	public static final int MOVED = 0x82;
+
+	/**
+	 * Class variable that stores the type of the end of a game, followed by the
+	 * result ({@link #RESULT_DRAW} or the winning side plus one).
+	 */
+	public static final int ENDED = 0x83;
+
+	/**
+	 * Class variable that stores the type of an error, followed by the error
+	 * code.
+	 */
+	public static final int ERROR = 0x84;
+
+	/**
+	 * Class variable that stores the type of the id of a started or continued
+	 * game, followed by the eight byte id, with which the client can continue
+	 * the game after it left.
+	 */
+	public static final int JOINED = 0x85;
+
+	/**
+	 * Class variable that stores the result of a game ended with a draw.
+	 */
+	public static final int RESULT_DRAW = 0;
+
+	/**
+	 * Class variable that stores the error code of a malformed message.
+	 */
+	public static final int ERROR_BAD_MESSAGE = 1;
+
+	/**
+	 * Class variable that stores the error code of a move without a running
+	 * game or a request to continue an unknown game.
+	 */
+	public static final int ERROR_NO_GAME = 2;
+
+	/**
+	 * Class variable that stores the error code of a server that does not
+	 * accept more sessions.
+	 */
+	public static final int ERROR_SERVER_BUSY = 3;
+
+	/**
+	 * Class variable that stores the error code of a move on a marked cell or
+	 * while it is not the client's turn.
+	 */
+	public static final int ERROR_ILLEGAL_MOVE = 4;
+
+	/**
+	 * Class variable that stores the rules flag enabling early draw detection.
+	 */
+	public static final int FLAG_EARLY_DRAW_DETECTION = 1;
+
+	/**
+	 * Class variable that stores the state flag telling that it is the client's
+	 * turn.
+	 */
+	public static final int FLAG_CLIENTS_TURN = 1;
+
+	/**
+	 * Class variable that stores the smallest amount of rows or columns of a
+	 * board sent in a message.
+	 */
+	public static final int MIN_SIZE = 3;
+
+	/**
+	 * Class variable that stores the biggest amount of rows or columns of a
+	 * board sent in a message.
+	 */
+	public static final int MAX_SIZE = 21;
+
+	/**
+	 * Class variable that stores the smallest win length of a board sent in a
+	 * message.
+	 */
+	public static final int MIN_WIN_LENGTH = 3;
+
+	/**
+	 * Class variable that stores the biggest allowed length of a frame, which
+	 * fits into a two byte varint.
+	 */
+	private static final int MAX_FRAME_LENGTH = 0x3FFF;
+
+	/**
+	 * Class variable that stores the amount of bits per cell of a packed board.
+	 */
+	private static final int BITS_PER_CELL = 2;
+
+	/**
+	 * Class variable that stores the amount of cells per byte of a packed
+	 * board.
+	 */
+	private static final int CELLS_PER_BYTE = Byte.SIZE / BITS_PER_CELL;
+
+	/**
+	 * Private constructor for class GameProtocol, as it only has static methods.
+	 */
+	private GameProtocol() {
+	}
+
+
+	/**
+	 * Gets the next complete frame of a buffer.
+	 * 
+	 * Gets a view of the next frame in the given buffer, positioned at the
+	 * message type and limited to the end of the frame, and moves the buffer's
+	 * position behind the frame. If the buffer does not contain a complete frame
+	 * yet, its position is left unchanged. A malformed length is reported as a
+	 * checked protocol error, so a server reading it closes the connection of
+	 * the client that sent it, like any other failed connection.
+	 * 
+	 * @param in the buffer to read from, ready for reading
+	 * @return the next frame or null if no complete frame is available
+	 * @throws ProtocolException if the length of the frame is too big
+	 */
+	public static ByteBuffer nextFrame(final ByteBuffer in) throws ProtocolException {
+		int position = in.position();
+		int length = 0;
+		int shift = 0;
+		while (true) {
+			if (position == in.limit()) {
+				return null;
+			}
+			int value = in.get(position++);
+			length |= (value & 0x7F) << shift;
+			if ((value & 0x80) == 0) {
+				break;
+			}
+			shift += 7;
+			if (length > MAX_FRAME_LENGTH || shift > 14) {
+				throw new ProtocolException("Frame is too long!");
+			}
+		}
+		if (length > MAX_FRAME_LENGTH) {
+			throw new ProtocolException("Frame is too long!");
+		}
+		if (in.limit() - position < length) {
+			return null;
+		}
+		ByteBuffer frame = in.duplicate();
+		frame.position(position);
+		frame.limit(position + length);
+		in.position(frame.limit());
+		return frame;
+	}
+
+	/**
+	 * Reads the type of a frame.
+	 * 
+	 * @param frame the frame returned by {@link #nextFrame(ByteBuffer)}
+	 * @return the message type of the frame or -1 if the frame is empty
+	 */
+	public static int readType(final ByteBuffer frame) {
+		return frame.hasRemaining() ? frame.get() & 0xFF : -1;
+	}
+
+	/**
+	 * Reads an unsigned byte of a payload.
+	 * 
+	 * @param frame the frame to read from
+	 * @return the byte value from 0 to 255
+	 */
+	public static int readByte(final ByteBuffer frame) {
+		return frame.get() & 0xFF;
+	}
+
+	/**
+	 * Reads a varint of a payload.
+	 * 
+	 * @param frame the frame to read from
+	 * @return the non-negative value
+	 * @throws IllegalArgumentException if the varint is longer than an int or
+	 *                                  negative
+	 */
+	public static int readVarint(final ByteBuffer frame) {
+		int value = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+			int part = frame.get();
+			if (shift == 28 && (part & 0xF8) != 0) {
+				throw new IllegalArgumentException("Varint is negative or too long!");
+			}
+			value |= (part & 0x7F) << shift;
+			if ((part & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Varint is too long!");
+	}
+
+	/**
+	 * Reads a cell index of a payload.
+	 * 
+	 * @param frame the frame to read from
+	 * @return the cell index
+	 */
+	public static int readCell(final ByteBuffer frame) {
+		return readVarint(frame);
+	}
+
+	/**
+	 * Reads a Zobrist hash of a payload.
+	 * 
+	 * @param frame the frame to read from
+	 * @return the hash
+	 */
+	public static long readHash(final ByteBuffer frame) {
+		return frame.getLong();
+	}
+
+	/**
+	 * Reads a game id of a payload.
+	 * 
+	 * @param frame the frame to read from
+	 * @return the game id
+	 */
+	public static long readGameId(final ByteBuffer frame) {
+		return frame.getLong();
+	}
+
+	/**
+	 * Reads a board of a payload.
+	 * 
+	 * Reads the board written by {@link #writeBoard(ByteBuffer, Board)} into a
+	 * new board with the winning lines of the m,n,k rules it was written with.
+	 * The size and the win length are checked before the lines are built, as
+	 * the lines of every size and win length are cached for good.
+	 * 
+	 * @param frame the frame to read from
+	 * @return the new board
+	 * @throws IllegalArgumentException if the payload is not a valid board
+	 */
+	public static Board readBoard(final ByteBuffer frame) {
+		int rowsCount = readByte(frame);
+		int columnsCount = readByte(frame);
+		int winLength = readByte(frame);
+		if (!isValidSize(rowsCount) || !isValidSize(columnsCount) || winLength < MIN_WIN_LENGTH
+				|| winLength > Math.max(rowsCount, columnsCount)) {
+			throw new IllegalArgumentException("Given payload has an invalid size or win length!");
+		}
+		Board board = new Board(Lines.mnk(rowsCount, columnsCount, winLength));
+		int cellsCount = board.getCellsCount();
+		int packed = 0;
+		for (int cell = 0; cell < cellsCount; cell++) {
+			if (cell % CELLS_PER_BYTE == 0) {
+				packed = frame.get();
+			}
+			int value = (packed >>> (cell % CELLS_PER_BYTE * BITS_PER_CELL)) & 3;
+			if (value == 3) {
+				throw new IllegalArgumentException("Given payload has an invalid cell!");
+			}
+			if (value != 0) {
+				board.mark(cell, value - 1);
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Gets whether an amount of rows or columns can be sent.
+	 * 
+	 * @param size the amount of rows or columns
+	 * @return true if the amount is between {@link #MIN_SIZE} and
+	 *         {@link #MAX_SIZE}, otherwise false
+	 */
+	public static boolean isValidSize(final int size) {
+		return size >= MIN_SIZE && size <= MAX_SIZE;
+	}
+
+	/**
+	 * Gets the side of a move read from a {@link #MOVED} message.
+	 * 
+	 * @param move the varint read from the message
+	 * @return the side of the player who made the move
+	 */
+	public static int getMoveSide(final int move) {
+		return move & 1;
+	}
+
+	/**
+	 * Gets the cell of a move read from a {@link #MOVED} message.
+	 * 
+	 * @param move the varint read from the message
+	 * @return the index of the marked cell
+	 */
+	public static int getMoveCell(final int move) {
+		return move >>> 1;
+	}
+
+	/**
+	 * Writes a request to start a new game.
+	 * 
+	 * @param out the buffer to write to
+	 * @param size the amount of rows and columns of the territory
+	 * @param aiDifficulty the difficulty of the AI opponent
+	 * @param rules the rules of the game
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeNewGame(final ByteBuffer out, final int size, final AIDifficulty aiDifficulty,
+			final GameRules rules) {
+		int start = beginFrame(out, NEW_GAME);
+		out.put((byte) size);
+		out.put((byte) aiDifficulty.ordinal());
+		out.put((byte) rules.getWinLength());
+		out.put((byte) (rules.isEarlyDrawDetection() ? FLAG_EARLY_DRAW_DETECTION : 0));
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes a request to continue a game.
+	 * 
+	 * @param out the buffer to write to
+	 * @param gameId the id of the game to continue
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeResume(final ByteBuffer out, final long gameId) {
+		int start = beginFrame(out, RESUME);
+		out.putLong(gameId);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes a client's move.
+	 * 
+	 * @param out the buffer to write to
+	 * @param cell the index of the cell to mark
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeMove(final ByteBuffer out, final int cell) {
+		int start = beginFrame(out, MOVE);
+		writeVarint(out, cell);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes a client's request for the full state of its game.
+	 * 
+	 * @param out the buffer to write to
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeResync(final ByteBuffer out) {
+		endFrame(out, beginFrame(out, RESYNC));
+	}
+
+	/**
+	 * Writes the id of a started or continued game.
+	 * 
+	 * @param out the buffer to write to
+	 * @param gameId the id of the game
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeJoined(final ByteBuffer out, final long gameId) {
+		int start = beginFrame(out, JOINED);
+		out.putLong(gameId);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes the full state of a game.
+	 * 
+	 * @param out the buffer to write to
+	 * @param board the board of the game
+	 * @param clientsTurn whether it is the client's turn
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeState(final ByteBuffer out, final Board board, final boolean clientsTurn) {
+		int start = beginFrame(out, STATE);
+		out.put((byte) (clientsTurn ? FLAG_CLIENTS_TURN : 0));
+		out.putLong(board.getHash());
+		writeBoard(out, board);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes a move made in a game.
+	 * 
+	 * @param out the buffer to write to
+	 * @param side the side of the player who made the move
+	 * @param cell the index of the marked cell
+	 * @param hash the hash of the position after the move
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeMoved(final ByteBuffer out, final int side, final int cell, final long hash) {
+		int start = beginFrame(out, MOVED);
+		writeVarint(out, cell << 1 | side);
+		out.putLong(hash);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes the end of a game.
+	 * 
+	 * @param out the buffer to write to
+	 * @param result {@link #RESULT_DRAW} or the winning side plus one
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeEnded(final ByteBuffer out, final int result) {
+		int start = beginFrame(out, ENDED);
+		out.put((byte) result);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes an error.
+	 * 
+	 * @param out the buffer to write to
+	 * @param code the error code
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeError(final ByteBuffer out, final int code) {
+		int start = beginFrame(out, ERROR);
+		out.put((byte) code);
+		endFrame(out, start);
+	}
+
+	/**
+	 * Writes a board.
+	 * 
+	 * Writes the rows count, the columns count and the win length of the board,
+	 * one byte each, followed by two bits per cell (0 empty, 1 X, 2 O), four
+	 * cells per byte starting at the lowest bits.
+	 * 
+	 * @param out the buffer to write to
+	 * @param board the board to write
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeBoard(final ByteBuffer out, final Board board) {
+		Lines lines = board.getLines();
+		out.put((byte) lines.getRowsCount());
+		out.put((byte) lines.getColumnsCount());
+		out.put((byte) lines.getWinLength());
+		int cellsCount = board.getCellsCount();
+		int packed = 0;
+		for (int cell = 0; cell < cellsCount; cell++) {
+			packed |= (board.getSide(cell) + 1) << (cell % CELLS_PER_BYTE * BITS_PER_CELL);
+			if (cell % CELLS_PER_BYTE == CELLS_PER_BYTE - 1 || cell == cellsCount - 1) {
+				out.put((byte) packed);
+				packed = 0;
+			}
+		}
+	}
+
+	/**
+	 * Writes a varint.
+	 * 
+	 * @param out the buffer to write to
+	 * @param value the non-negative value to write
+	 * @throws IllegalArgumentException if given value is negative
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public static void writeVarint(final ByteBuffer out, final int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Given value can not be negative!");
+		}
+		int rest = value;
+		while ((rest & ~0x7F) != 0) {
+			out.put((byte) (rest & 0x7F | 0x80));
+			rest >>>= 7;
+		}
+		out.put((byte) rest);
+	}
+
+	/**
+	 * Begins a frame by reserving one byte for its length and writing its type.
+	 * 
+	 * @param out the buffer to write to
+	 * @param type the message type
+	 * @return the position of the frame in the buffer
+	 */
+	private static int beginFrame(final ByteBuffer out, final int type) {
+		int start = out.position();
+		out.put((byte) 0);
+		out.put((byte) type);
+		return start;
+	}
+
+	/**
+	 * Ends a frame by writing its length.
+	 * 
+	 * Writes the length into the reserved byte, or moves the frame one byte
+	 * further for the rare frames needing a two byte length.
+	 * 
+	 * @param out the buffer to write to
+	 * @param start the position of the frame in the buffer
+	 * @throws IllegalArgumentException if the frame is too long
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	private static void endFrame(final ByteBuffer out, final int start) {
+		int end = out.position();
+		int length = end - start - 1;
+		if (length < 0x80) {
+			out.put(start, (byte) length);
+			return;
+		}
+		if (length > MAX_FRAME_LENGTH) {
+			throw new IllegalArgumentException("Frame is too long!");
+		}
+		if (!out.hasRemaining()) {
+			throw new BufferOverflowException();
+		}
+		for (int position = end - 1; position > start; position--) {
+			out.put(position + 1, out.get(position));
+		}
+		out.put(start, (byte) (length & 0x7F | 0x80));
+		out.put(start + 1, (byte) (length >>> 7));
+		out.position(end + 1);
+	}
+
+}
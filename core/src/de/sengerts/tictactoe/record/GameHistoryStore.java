@@ -0,0 +1,684 @@
+package de.sengerts.tictactoe.record;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import de.sengerts.tictactoe.net.GameProtocol;
+
+/**
+ * Class representing an append-only store of the records of played games.
+ *
+ * The records ({@link GameRecord}) are appended to a log file that is written
+ * through memory mapped regions of {@link #DATA_REGION_BYTES}, so appending a
+ * record only copies a few bytes into memory and never waits for the disk.
+ * Every record is prefixed with its length as a varint, and a record that does
+ * not fit into the rest of a region starts the next one, the rest being marked
+ * by a zero length. Every appended game gets the next id, and the offset of its
+ * record is written to a sidecar index file at eight times its id, so any game
+ * is read by its id with one lookup. Sequential scans read the mapped regions
+ * directly.
+ *
+ * Both files are only forced to the disk by {@link #force()}, which is called
+ * after every {@code forceBatch} appended games and can be called by the owner
+ * of the store at any time. A store given a force executor runs the batched
+ * forces on it, and additionally forces every {@link #FORCE_INTERVAL_MILLIS},
+ * so appending never waits for the disk at all. The log is always forced
+ * before the index, so the index never points behind the
+ * forced log. When a store is opened, the games are counted up to the first
+ * missing or invalid index entry, and anything appended after it is
+ * overwritten.
+ *
+ * All methods of a store are thread safe.
+ *
+ * @author Tobias Senger
+ */
+public class GameHistoryStore implements Closeable {
+
+	/**
+	 * Class variable that stores the file name extension of the log file.
+	 */
+	public static final String LOG_EXTENSION = ".log";
+
+	/**
+	 * Class variable that stores the file name extension of the index file.
+	 */
+	public static final String INDEX_EXTENSION = ".idx";
+
+	/**
+	 * Class variable that stores the size of a mapped region of the log file.
+	 */
+	public static final int DATA_REGION_BYTES = 1 << 26;
+
+	/**
+	 * Class variable that stores the base two logarithm of the amount of index
+	 * entries per mapped region of the index file.
+	 */
+	private static final int INDEX_REGION_ENTRIES_BITS = 17;
+
+	/**
+	 * Class variable that stores the size of a mapped region of the index file.
+	 */
+	private static final int INDEX_REGION_BYTES = Long.BYTES << INDEX_REGION_ENTRIES_BITS;
+
+	/**
+	 * Class variable that stores the magic bytes the log file starts with.
+	 */
+	private static final byte[] MAGIC = { 'T', 'T', 'T', 'H' };
+
+	/**
+	 * Class variable that stores the version of the log file.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Class variable that stores the size of the header of the log file, the
+	 * magic bytes, the version and three reserved bytes.
+	 */
+	private static final int HEADER_BYTES = 8;
+
+	/**
+	 * Class variable that stores the most bytes of the varint length in front
+	 * of a record.
+	 */
+	private static final int MAX_LENGTH_BYTES = 5;
+
+	/**
+	 * Class variable that stores the default amount of appended games after
+	 * which the files are forced.
+	 */
+	public static final int DEFAULT_FORCE_BATCH = 1024;
+
+	/**
+	 * Class variable that stores the interval in milliseconds in which a store
+	 * with a force executor forces its files.
+	 */
+	public static final long FORCE_INTERVAL_MILLIS = 1000;
+
+	/**
+	 * Instance variable that stores the channel of the log file.
+	 */
+	private final FileChannel dataChannel;
+
+	/**
+	 * Instance variable that stores the channel of the index file.
+	 */
+	private final FileChannel indexChannel;
+
+	/**
+	 * Instance variable that stores the mapped regions of the log file, null for
+	 * the ones not mapped yet.
+	 */
+	private final List<MappedByteBuffer> dataRegions;
+
+	/**
+	 * Instance variable that stores the mapped regions of the index file, null
+	 * for the ones not mapped yet.
+	 */
+	private final List<MappedByteBuffer> indexRegions;
+
+	/**
+	 * Instance variable that stores the amount of appended games after which the
+	 * files are forced.
+	 */
+	private final int forceBatch;
+
+	/**
+	 * Instance variable that stores the executor the files are forced on, null
+	 * to force them on the appending thread.
+	 */
+	private final ScheduledExecutorService forceExecutor;
+
+	/**
+	 * Instance variable that stores the periodic force on the force executor,
+	 * null without one.
+	 */
+	private final ScheduledFuture<?> periodicForce;
+
+	/**
+	 * Instance variable that stores whether a batched force has been submitted
+	 * to the force executor and not started yet.
+	 */
+	private boolean forceSubmitted;
+
+	/**
+	 * Instance variable that stores the buffer a record is encoded into before
+	 * it is appended.
+	 */
+	private ByteBuffer recordBuffer;
+
+	/**
+	 * Instance variable that stores the amount of games, which is the id of the
+	 * next appended game.
+	 */
+	private long gamesCount;
+
+	/**
+	 * Instance variable that stores the offset behind the last record in the
+	 * log file.
+	 */
+	private long dataEnd;
+
+	/**
+	 * Instance variable that stores the amount of games whose records and index
+	 * entries have been forced.
+	 */
+	private long forcedGamesCount;
+
+	/**
+	 * Instance variable that stores the offset behind the last forced record.
+	 */
+	private long forcedDataEnd;
+
+	/**
+	 * Instance variable that stores the lock that lets only one thread force
+	 * the files at a time.
+	 */
+	private final Object forceLock;
+
+	/**
+	 * Instance variable that stores whether this store is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Another constructor for class GameHistoryStore.
+	 *
+	 * Opens the store with the given base name, forcing the files on the
+	 * appending thread after every {@link #DEFAULT_FORCE_BATCH} appended games.
+	 *
+	 * @param directory the directory of the files, which is created if missing
+	 * @param name the base name of the log and index files
+	 * @throws IOException if the files can not be opened or the log file is not
+	 *                     a game history
+	 * @throws IllegalArgumentException if given directory or name is null
+	 */
+	public GameHistoryStore(final File directory, final String name) throws IOException {
+		this(directory, name, DEFAULT_FORCE_BATCH, null);
+	}
+
+	/**
+	 * Another constructor for class GameHistoryStore.
+	 *
+	 * Opens the store with the given base name, creating its files if they do
+	 * not exist yet, and counts the games stored in them.
+	 *
+	 * @param directory the directory of the files, which is created if missing
+	 * @param name the base name of the log and index files
+	 * @param forceBatch the amount of appended games after which the files are
+	 *                   forced
+	 * @param forceExecutor the executor to force the files on, periodically and
+	 *                      after every batch, or null to force them on the
+	 *                      appending thread after every batch only
+	 * @throws IOException if the files can not be opened or the log file is not
+	 *                     a game history
+	 * @throws IllegalArgumentException if given directory or name is null or
+	 *                                  given batch is not positive
+	 */
+	public GameHistoryStore(final File directory, final String name, final int forceBatch,
+			final ScheduledExecutorService forceExecutor) throws IOException {
+		if (directory == null || name == null) {
+			throw new IllegalArgumentException("Given directory and name can not be null!");
+		}
+		if (forceBatch <= 0) {
+			throw new IllegalArgumentException("Given force batch must be positive!");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Directory " + directory + " can not be created!");
+		}
+		this.forceBatch = forceBatch;
+		this.forceExecutor = forceExecutor;
+		this.dataRegions = new ArrayList<MappedByteBuffer>();
+		this.indexRegions = new ArrayList<MappedByteBuffer>();
+		this.recordBuffer = ByteBuffer.allocate(256);
+		this.forceLock = new Object();
+		this.dataChannel = FileChannel.open(new File(directory, name + LOG_EXTENSION).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			this.indexChannel = FileChannel.open(new File(directory, name + INDEX_EXTENSION).toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			dataChannel.close();
+			throw e;
+		}
+		try {
+			open();
+		} catch (IOException | RuntimeException e) {
+			dataChannel.close();
+			indexChannel.close();
+			throw e;
+		}
+		this.periodicForce = forceExecutor == null ? null
+				: forceExecutor.scheduleWithFixedDelay(this::forceQuietly, FORCE_INTERVAL_MILLIS,
+						FORCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Opens the files.
+	 *
+	 * Writes the header of a new log file or checks the header of an existing
+	 * one, and then counts the games up to the first index entry that is missing
+	 * or does not point to a valid record behind the previous one.
+	 *
+	 * @throws IOException if the files can not be read or the log file is not a
+	 *                     game history
+	 */
+	private void open() throws IOException {
+		boolean newLog = dataChannel.size() == 0;
+		MappedByteBuffer header = getDataRegion(0);
+		if (newLog) {
+			header.put(0, MAGIC[0]).put(1, MAGIC[1]).put(2, MAGIC[2]).put(3, MAGIC[3]).put(4, (byte) VERSION);
+			header.force();
+		} else {
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (header.get(i) != MAGIC[i]) {
+					throw new IOException("Log file is not a game history!");
+				}
+			}
+			if (header.get(MAGIC.length) != VERSION) {
+				throw new IOException("Log file is a game history of an unknown version!");
+			}
+		}
+		this.dataEnd = HEADER_BYTES;
+		long maxGamesCount = indexChannel.size() / Long.BYTES;
+		while (gamesCount < maxGamesCount) {
+			long offset = getIndexEntry(gamesCount);
+			if (offset < dataEnd) {
+				break;
+			}
+			long end = getRecordEnd(offset);
+			if (end < 0) {
+				break;
+			}
+			this.dataEnd = end;
+			this.gamesCount++;
+		}
+		// Entries left behind by appends that were not forced are cleared, so
+		// they can never point into records appended later
+		for (long id = gamesCount; id < maxGamesCount && getIndexEntry(id) != 0; id++) {
+			setIndexEntry(id, 0);
+		}
+		this.forcedGamesCount = gamesCount;
+		this.forcedDataEnd = dataEnd;
+	}
+
+	/**
+	 * Gets the end of a stored record.
+	 *
+	 * @param offset the offset of the record in the log file
+	 * @return the offset behind the record or -1 if there is no valid record at
+	 *         the given offset
+	 * @throws IOException if the log file can not be mapped
+	 */
+	private long getRecordEnd(final long offset) throws IOException {
+		if (offset >= dataChannel.size()) {
+			return -1;
+		}
+		try {
+			ByteBuffer record = getRecord(offset);
+			GameRecord.read(record.duplicate());
+			return offset - offset % DATA_REGION_BYTES + record.limit();
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Appends the record of a game.
+	 *
+	 * Appends the given record to the log file, writes its offset to the index
+	 * and forces both files if {@code forceBatch} games have been appended
+	 * since they were forced last.
+	 *
+	 * @param record the record of the game
+	 * @return the id of the game
+	 * @throws IOException if the files can not be mapped or forced
+	 * @throws IllegalArgumentException if given record is null or too big
+	 * @throws IllegalStateException if this store is closed
+	 */
+	public long append(final GameRecord record) throws IOException {
+		if (record == null) {
+			throw new IllegalArgumentException("Given record can not be null!");
+		}
+		long id;
+		boolean forceNow = false;
+		synchronized (this) {
+			checkOpen();
+			int maxBytes = record.getMaxBytes();
+			if (MAX_LENGTH_BYTES + maxBytes > DATA_REGION_BYTES) {
+				throw new IllegalArgumentException("Given record does not fit into a region of the log!");
+			}
+			if (recordBuffer.capacity() < maxBytes) {
+				this.recordBuffer = ByteBuffer.allocate(Math.max(maxBytes, recordBuffer.capacity() * 2));
+			}
+			recordBuffer.clear();
+			record.write(recordBuffer);
+			recordBuffer.flip();
+
+			int regionOffset = (int) (dataEnd % DATA_REGION_BYTES);
+			if (regionOffset + MAX_LENGTH_BYTES + recordBuffer.remaining() > DATA_REGION_BYTES) {
+				// The rest of the region is left empty, marked by a zero length
+				getDataRegion(dataEnd / DATA_REGION_BYTES).put(regionOffset, (byte) 0);
+				this.dataEnd += DATA_REGION_BYTES - regionOffset;
+				regionOffset = 0;
+			}
+			ByteBuffer region = getDataRegion(dataEnd / DATA_REGION_BYTES).duplicate();
+			region.position(regionOffset);
+			GameProtocol.writeVarint(region, recordBuffer.remaining());
+			region.put(recordBuffer);
+
+			id = gamesCount;
+			setIndexEntry(id, dataEnd);
+			this.dataEnd += region.position() - regionOffset;
+			this.gamesCount++;
+			if (gamesCount - forcedGamesCount >= forceBatch) {
+				if (forceExecutor == null) {
+					forceNow = true;
+				} else if (!forceSubmitted) {
+					try {
+						forceExecutor.execute(this::forceQuietly);
+						this.forceSubmitted = true;
+					} catch (RejectedExecutionException e) {
+						// The executor has been shut down before this store
+						forceNow = true;
+					}
+				}
+			}
+		}
+		if (forceNow) {
+			force();
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the record of a game.
+	 *
+	 * @param id the id of the game
+	 * @return the record of the game
+	 * @throws IOException if the log file can not be mapped
+	 * @throws IllegalArgumentException if there is no game with the given id
+	 * @throws IllegalStateException if this store is closed
+	 */
+	public synchronized GameRecord get(final long id) throws IOException {
+		checkOpen();
+		if (id < 0 || id >= gamesCount) {
+			throw new IllegalArgumentException("Given id is not the id of a stored game!");
+		}
+		return GameRecord.read(getRecord(getIndexEntry(id)));
+	}
+
+	/**
+	 * Reads all stored games in the order they were appended.
+	 *
+	 * Passes the record of every game stored when the scan starts to the given
+	 * consumer, reading the mapped regions of the log file one after another.
+	 * Games appended during the scan are not passed, and the store is not locked
+	 * while the consumer runs.
+	 *
+	 * @param consumer the consumer of the records
+	 * @return the amount of scanned games
+	 * @throws IOException if the log file can not be mapped
+	 * @throws IllegalArgumentException if given consumer is null
+	 * @throws IllegalStateException if this store is closed
+	 */
+	public long scan(final Consumer<GameRecord> consumer) throws IOException {
+		if (consumer == null) {
+			throw new IllegalArgumentException("Given consumer can not be null!");
+		}
+		long end;
+		long count;
+		synchronized (this) {
+			checkOpen();
+			end = dataEnd;
+			count = gamesCount;
+		}
+		long offset = HEADER_BYTES;
+		ByteBuffer region = null;
+		long regionIndex = -1;
+		for (long scanned = 0; scanned < count; scanned++) {
+			if (region == null || regionIndex != offset / DATA_REGION_BYTES) {
+				regionIndex = offset / DATA_REGION_BYTES;
+				synchronized (this) {
+					region = getDataRegion(regionIndex).duplicate();
+				}
+			}
+			region.limit(DATA_REGION_BYTES);
+			region.position((int) (offset % DATA_REGION_BYTES));
+			int length = GameProtocol.readVarint(region);
+			if (length == 0) {
+				offset = (regionIndex + 1) * DATA_REGION_BYTES;
+				scanned--;
+				continue;
+			}
+			int start = region.position();
+			region.limit(start + length);
+			consumer.accept(GameRecord.read(region));
+			offset = regionIndex * DATA_REGION_BYTES + start + length;
+			if (offset > end) {
+				throw new IllegalStateException("Scan ran behind the end of the log!");
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Forces all appended games to the disk.
+	 *
+	 * Forces the regions of the log file written since the last force and then
+	 * the ones of the index file. Appending is only blocked while the regions to
+	 * force are collected, not while they are written to the disk.
+	 *
+	 * @throws IOException if the files can not be mapped
+	 */
+	public void force() throws IOException {
+		synchronized (forceLock) {
+			long toGamesCount;
+			long toDataEnd;
+			List<MappedByteBuffer> dirtyData = new ArrayList<MappedByteBuffer>();
+			List<MappedByteBuffer> dirtyIndex = new ArrayList<MappedByteBuffer>();
+			synchronized (this) {
+				this.forceSubmitted = false;
+				if (closed || gamesCount == forcedGamesCount) {
+					return;
+				}
+				toGamesCount = gamesCount;
+				toDataEnd = dataEnd;
+				for (long region = forcedDataEnd / DATA_REGION_BYTES; region <= (toDataEnd - 1)
+						/ DATA_REGION_BYTES; region++) {
+					dirtyData.add(getDataRegion(region));
+				}
+				for (long region = forcedGamesCount >> INDEX_REGION_ENTRIES_BITS; region <= (toGamesCount - 1)
+						>> INDEX_REGION_ENTRIES_BITS; region++) {
+					dirtyIndex.add(getIndexRegion(region));
+				}
+			}
+			for (MappedByteBuffer region : dirtyData) {
+				region.force();
+			}
+			for (MappedByteBuffer region : dirtyIndex) {
+				region.force();
+			}
+			synchronized (this) {
+				this.forcedGamesCount = toGamesCount;
+				this.forcedDataEnd = toDataEnd;
+			}
+		}
+	}
+
+	/**
+	 * Forces all appended games to the disk on the force executor.
+	 *
+	 * A failed force is retried by the next periodic or batched one.
+	 */
+	private void forceQuietly() {
+		try {
+			force();
+		} catch (IOException | RuntimeException e) {
+			// Forced again with the next period or batch
+		}
+	}
+
+	/**
+	 * Gets the encoded record at an offset.
+	 *
+	 * @param offset the offset of the record in the log file
+	 * @return a view of the mapped region positioned at the record and limited
+	 *         to its end
+	 * @throws IOException if the log file can not be mapped
+	 */
+	private ByteBuffer getRecord(final long offset) throws IOException {
+		ByteBuffer region = getDataRegion(offset / DATA_REGION_BYTES).duplicate();
+		region.position((int) (offset % DATA_REGION_BYTES));
+		int length = GameProtocol.readVarint(region);
+		if (length == 0) {
+			throw new IllegalArgumentException("Given offset is not the offset of a record!");
+		}
+		region.limit(region.position() + length);
+		return region;
+	}
+
+	/**
+	 * Gets an index entry.
+	 *
+	 * @param id the id of the game
+	 * @return the offset of the record of the game, zero if the entry is empty
+	 * @throws IOException if the index file can not be mapped
+	 */
+	private long getIndexEntry(final long id) throws IOException {
+		return getIndexRegion(id >> INDEX_REGION_ENTRIES_BITS)
+				.getLong((int) (id & ((1 << INDEX_REGION_ENTRIES_BITS) - 1)) * Long.BYTES);
+	}
+
+	/**
+	 * Sets an index entry.
+	 *
+	 * @param id the id of the game
+	 * @param offset the offset of the record of the game
+	 * @throws IOException if the index file can not be mapped
+	 */
+	private void setIndexEntry(final long id, final long offset) throws IOException {
+		getIndexRegion(id >> INDEX_REGION_ENTRIES_BITS)
+				.putLong((int) (id & ((1 << INDEX_REGION_ENTRIES_BITS) - 1)) * Long.BYTES, offset);
+	}
+
+	/**
+	 * Gets a mapped region of the log file.
+	 *
+	 * @param region the index of the region
+	 * @return the region, which is mapped and the file grown to it if needed
+	 * @throws IOException if the region can not be mapped
+	 */
+	private MappedByteBuffer getDataRegion(final long region) throws IOException {
+		return getRegion(dataChannel, dataRegions, region, DATA_REGION_BYTES);
+	}
+
+	/**
+	 * Gets a mapped region of the index file.
+	 *
+	 * @param region the index of the region
+	 * @return the region, which is mapped and the file grown to it if needed
+	 * @throws IOException if the region can not be mapped
+	 */
+	private MappedByteBuffer getIndexRegion(final long region) throws IOException {
+		return getRegion(indexChannel, indexRegions, region, INDEX_REGION_BYTES);
+	}
+
+	/**
+	 * Gets a mapped region of a file.
+	 *
+	 * @param channel the channel of the file
+	 * @param regions the mapped regions of the file
+	 * @param region the index of the region
+	 * @param regionBytes the size of a region of the file
+	 * @return the region, which is mapped and the file grown to it if needed
+	 * @throws IOException if the region can not be mapped
+	 */
+	private static MappedByteBuffer getRegion(final FileChannel channel, final List<MappedByteBuffer> regions,
+			final long region, final int regionBytes) throws IOException {
+		int index = Math.toIntExact(region);
+		while (regions.size() <= index) {
+			regions.add(null);
+		}
+		MappedByteBuffer mapped = regions.get(index);
+		if (mapped == null) {
+			mapped = channel.map(FileChannel.MapMode.READ_WRITE, region * regionBytes, regionBytes);
+			regions.set(index, mapped);
+		}
+		return mapped;
+	}
+
+	/**
+	 * Checks that this store is open.
+	 *
+	 * @throws IllegalStateException if this store is closed
+	 */
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Game history store is closed!");
+		}
+	}
+
+	/**
+	 * Gets the amount of games.
+	 *
+	 * @return the amount of stored games, which is the id of the next appended
+	 *         game
+	 */
+	public synchronized long getGamesCount() {
+		return gamesCount;
+	}
+
+	/**
+	 * Gets the size of the log.
+	 *
+	 * @return the amount of bytes of the log file used by the stored games
+	 */
+	public synchronized long getDataBytes() {
+		return dataEnd;
+	}
+
+	/**
+	 * Forces all appended games to the disk and closes the files.
+	 *
+	 * The mapped regions are released once they are garbage collected. Closing
+	 * a closed store has no effect.
+	 */
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (periodicForce != null) {
+			periodicForce.cancel(false);
+		}
+		synchronized (forceLock) {
+			force();
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				this.closed = true;
+				dataRegions.clear();
+				indexRegions.clear();
+			}
+			try {
+				dataChannel.close();
+			} finally {
+				indexChannel.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,449 @@
+package de.sengerts.tictactoe.record;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.model.GameState;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
+import de.sengerts.tictactoe.net.GameProtocol;
+
+/**
+ * Immutable class representing the record of a played tic tac toe game.
+ *
+ * A record holds everything needed to reproduce a game: the settings, whether
+ * the second player is an AI player, the seed of the game's random number
+ * generator, the side that made the first move, the result and all moves as
+ * cell indices in the order they were made. Records are encoded into a few
+ * bytes, a small header followed by the moves as varints, so a classic game
+ * takes about twenty bytes and a game on the biggest territory rarely more
+ * than a few hundred.
+ *
+ * @author Tobias Senger
+ */
+public final class GameRecord {
+
+	/**
+	 * Class variable that stores the flag of a game against an AI player.
+	 */
+	private static final int FLAG_AI_OPPONENT = 1;
+
+	/**
+	 * Class variable that stores the flag of a game with early draw detection.
+	 */
+	private static final int FLAG_EARLY_DRAW_DETECTION = 2;
+
+	/**
+	 * Class variable that stores the flag of a game whose first move was made
+	 * by the second side.
+	 */
+	private static final int FLAG_SECOND_SIDE_FIRST = 4;
+
+	/**
+	 * Class variable that stores the encoded AI difficulty of a game without
+	 * one.
+	 */
+	private static final int NO_AI_DIFFICULTY = 0xFF;
+
+	/**
+	 * Class variable that stores the encoded result of an unfinished game.
+	 */
+	private static final int RESULT_UNFINISHED = 0;
+
+	/**
+	 * Class variable that stores the encoded result of a draw, a won game is
+	 * encoded as the winner's side plus two.
+	 */
+	private static final int RESULT_DRAW = 1;
+
+	/**
+	 * Class variable that stores the amount of bytes before the moves: the
+	 * flags, the AI difficulty, the rows and columns counts, the win length, the
+	 * result and the seed.
+	 */
+	private static final int HEADER_BYTES = 6 + Long.BYTES;
+
+	/**
+	 * Class variable that stores the most bytes of a varint.
+	 */
+	private static final int MAX_VARINT_BYTES = 5;
+
+	/**
+	 * Instance variable that stores the size of the game.
+	 */
+	private final Dimension size;
+
+	/**
+	 * Instance variable that stores whether the opponent is an AI player.
+	 */
+	private final boolean aiOpponent;
+
+	/**
+	 * Instance variable that stores the AI difficulty of the game, which may be
+	 * null.
+	 */
+	private final AIDifficulty aiDifficulty;
+
+	/**
+	 * Instance variable that stores the rules of the game.
+	 */
+	private final GameRules rules;
+
+	/**
+	 * Instance variable that stores the seed of the random number generator of
+	 * the game.
+	 */
+	private final long seed;
+
+	/**
+	 * Instance variable that stores the side that made the first move.
+	 */
+	private final int firstSide;
+
+	/**
+	 * Instance variable that stores the state the game ended with.
+	 */
+	private final GameState gameState;
+
+	/**
+	 * Instance variable that stores the side that won the game or
+	 * {@link Board#NO_SIDE}.
+	 */
+	private final int winnerSide;
+
+	/**
+	 * Instance variable that stores the indices of the marked cells in the
+	 * order they were marked.
+	 */
+	private final int[] moves;
+
+	/**
+	 * Another constructor for class GameRecord.
+	 *
+	 * @param size the size of the game
+	 * @param aiOpponent whether the opponent is an AI player
+	 * @param aiDifficulty the AI difficulty of the game
+	 * @param rules the rules of the game
+	 * @param seed the seed of the random number generator of the game
+	 * @param firstSide the side that made the first move
+	 * @param gameState the state the game ended with, INGAME for an unfinished
+	 *                  game
+	 * @param winnerSide the side that won the game, {@link Board#NO_SIDE} unless
+	 *                   the game state is WON
+	 * @param moves the indices of the marked cells in the order they were
+	 *              marked, which are copied
+	 * @throws IllegalArgumentException if given size, rules, game state or moves
+	 *                                  are null, a side is not a side, the
+	 *                                  winner does not fit the game state or a
+	 *                                  move is outside of the territory or
+	 *                                  marks a cell twice
+	 */
+	public GameRecord(final Dimension size, final boolean aiOpponent, final AIDifficulty aiDifficulty,
+			final GameRules rules, final long seed, final int firstSide, final GameState gameState,
+			final int winnerSide, final int[] moves) {
+		if (size == null || rules == null || gameState == null || moves == null) {
+			throw new IllegalArgumentException("Given size, rules, game state and moves can not be null!");
+		}
+		if (firstSide < 0 || firstSide >= Board.SIDES) {
+			throw new IllegalArgumentException("Given first side is not a side!");
+		}
+		if ((gameState == GameState.WON) != (winnerSide >= 0 && winnerSide < Board.SIDES)
+				|| (gameState != GameState.WON && winnerSide != Board.NO_SIDE)) {
+			throw new IllegalArgumentException("Given winner side does not fit the given game state!");
+		}
+		int cellsCount = size.getRowsCount() * size.getColumnsCount();
+		boolean[] marked = new boolean[cellsCount];
+		for (int cell : moves) {
+			if (cell < 0 || cell >= cellsCount || marked[cell]) {
+				throw new IllegalArgumentException("Given moves must mark distinct cells of the territory!");
+			}
+			marked[cell] = true;
+		}
+		this.size = size;
+		this.aiOpponent = aiOpponent;
+		this.aiDifficulty = aiDifficulty;
+		this.rules = rules;
+		this.seed = seed;
+		this.firstSide = firstSide;
+		this.gameState = gameState;
+		this.winnerSide = winnerSide;
+		this.moves = moves.clone();
+	}
+
+	/**
+	 * Writes this record.
+	 *
+	 * @param out the buffer to write to
+	 * @throws BufferOverflowException if the buffer has not enough space left
+	 */
+	public void write(final ByteBuffer out) {
+		out.put((byte) ((aiOpponent ? FLAG_AI_OPPONENT : 0)
+				| (rules.isEarlyDrawDetection() ? FLAG_EARLY_DRAW_DETECTION : 0)
+				| (firstSide != 0 ? FLAG_SECOND_SIDE_FIRST : 0)));
+		out.put((byte) (aiDifficulty == null ? NO_AI_DIFFICULTY : aiDifficulty.ordinal()));
+		out.put((byte) size.getRowsCount());
+		out.put((byte) size.getColumnsCount());
+		out.put((byte) rules.getWinLength());
+		out.put((byte) encodeResult());
+		out.putLong(seed);
+		GameProtocol.writeVarint(out, moves.length);
+		for (int cell : moves) {
+			GameProtocol.writeVarint(out, cell);
+		}
+	}
+
+	/**
+	 * Reads a record.
+	 *
+	 * @param in the buffer to read from
+	 * @return the record written by {@link #write(ByteBuffer)}
+	 * @throws IllegalArgumentException if the buffer does not hold a valid
+	 *                                  record
+	 */
+	public static GameRecord read(final ByteBuffer in) {
+		try {
+			int flags = in.get() & 0xFF;
+			int difficulty = in.get() & 0xFF;
+			int rowsCount = in.get() & 0xFF;
+			int columnsCount = in.get() & 0xFF;
+			int winLength = in.get() & 0xFF;
+			int result = in.get() & 0xFF;
+			long seed = in.getLong();
+			int movesCount = GameProtocol.readVarint(in);
+			if (rowsCount == 0 || columnsCount == 0 || movesCount > rowsCount * columnsCount) {
+				throw new IllegalArgumentException("Given record has an invalid size!");
+			}
+			int[] moves = new int[movesCount];
+			for (int i = 0; i < movesCount; i++) {
+				moves[i] = GameProtocol.readVarint(in);
+			}
+			if (difficulty != NO_AI_DIFFICULTY && difficulty >= AIDifficulty.values().length) {
+				throw new IllegalArgumentException("Given record has an unknown AI difficulty!");
+			}
+			if (result > RESULT_DRAW + Board.SIDES) {
+				throw new IllegalArgumentException("Given record has an unknown result!");
+			}
+			return new GameRecord(new Dimension(rowsCount, columnsCount), (flags & FLAG_AI_OPPONENT) != 0,
+					difficulty == NO_AI_DIFFICULTY ? null : AIDifficulty.values()[difficulty],
+					new GameRules((flags & FLAG_EARLY_DRAW_DETECTION) != 0, winLength), seed,
+					(flags & FLAG_SECOND_SIDE_FIRST) != 0 ? 1 : 0, decodeGameState(result),
+					result > RESULT_DRAW ? result - RESULT_DRAW - 1 : Board.NO_SIDE, moves);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Given record is truncated!", e);
+		}
+	}
+
+	/**
+	 * Encodes the result of this record.
+	 *
+	 * @return the encoded game state and winner
+	 */
+	private int encodeResult() {
+		switch (gameState) {
+		case WON:
+			return RESULT_DRAW + 1 + winnerSide;
+		case DRAW:
+			return RESULT_DRAW;
+		default:
+			return RESULT_UNFINISHED;
+		}
+	}
+
+	/**
+	 * Decodes the game state of an encoded result.
+	 *
+	 * @param result the encoded result
+	 * @return the game state of the result
+	 */
+	private static GameState decodeGameState(final int result) {
+		if (result == RESULT_UNFINISHED) {
+			return GameState.INGAME;
+		}
+		return result == RESULT_DRAW ? GameState.DRAW : GameState.WON;
+	}
+
+	/**
+	 * Gets the most bytes this record is encoded into.
+	 *
+	 * @return the amount of bytes {@link #write(ByteBuffer)} needs at most
+	 */
+	public int getMaxBytes() {
+		return HEADER_BYTES + MAX_VARINT_BYTES * (moves.length + 1);
+	}
+
+	/**
+	 * Gets the board after some moves.
+	 *
+	 * Gets a new board with the winning lines of the game's rules on which the
+	 * given amount of moves of this record have been made.
+	 *
+	 * @param movesCount the amount of moves to make
+	 * @return the board after the given amount of moves
+	 * @throws IllegalArgumentException if given amount is negative or greater
+	 *                                  than the amount of moves
+	 */
+	public Board getBoard(final int movesCount) {
+		if (movesCount < 0 || movesCount > moves.length) {
+			throw new IllegalArgumentException("Given moves count is not between zero and the amount of moves!");
+		}
+		Board board = new Board(
+				Lines.mnk(size.getRowsCount(), size.getColumnsCount(), rules.getWinLength(size)));
+		for (int move = 0; move < movesCount; move++) {
+			board.mark(moves[move], getSide(move));
+		}
+		return board;
+	}
+
+	/**
+	 * Gets the side of a move.
+	 *
+	 * @param move the index of the move
+	 * @return the side that made the move
+	 */
+	public int getSide(final int move) {
+		return (firstSide + move) % Board.SIDES;
+	}
+
+	/**
+	 * Gets the size.
+	 *
+	 * @return the size of the game
+	 */
+	public /* @ pure @ */ Dimension getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets whether the opponent is an AI player.
+	 *
+	 * @return true if the opponent is an AI player, otherwise false
+	 */
+	public /* @ pure @ */ boolean isAiOpponent() {
+		return aiOpponent;
+	}
+
+	/**
+	 * Gets the AI difficulty.
+	 *
+	 * @return the AI difficulty of the game
+	 */
+	public /* @ pure @ */ AIDifficulty getAiDifficulty() {
+		return aiDifficulty;
+	}
+
+	/**
+	 * Gets the rules.
+	 *
+	 * @return the rules of the game
+	 */
+	public /* @ pure @ */ GameRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Gets the seed.
+	 *
+	 * @return the seed of the random number generator of the game
+	 */
+	public /* @ pure @ */ long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Gets the first side.
+	 *
+	 * @return the side that made the first move
+	 */
+	public /* @ pure @ */ int getFirstSide() {
+		return firstSide;
+	}
+
+	/**
+	 * Gets the game state.
+	 *
+	 * @return the state the game ended with, INGAME for an unfinished game
+	 */
+	public /* @ pure @ */ GameState getGameState() {
+		return gameState;
+	}
+
+	/**
+	 * Gets the winner side.
+	 *
+	 * @return the side that won the game or {@link Board#NO_SIDE}
+	 */
+	public /* @ pure @ */ int getWinnerSide() {
+		return winnerSide;
+	}
+
+	/**
+	 * Gets the amount of moves.
+	 *
+	 * @return the amount of marked cells
+	 */
+	public int getMovesCount() {
+		return moves.length;
+	}
+
+	/**
+	 * Gets a move.
+	 *
+	 * @param move the index of the move
+	 * @return the index of the cell marked by the move
+	 */
+	public int getMove(final int move) {
+		return moves[move];
+	}
+
+	/**
+	 * Gets the moves.
+	 *
+	 * @return a copy of the indices of the marked cells in the order they were
+	 *         marked
+	 */
+	public int[] getMoves() {
+		return moves.clone();
+	}
+
+	/*
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof GameRecord)) {
+			return false;
+		}
+		final GameRecord record = (GameRecord) object;
+		return size.equals(record.size) && aiOpponent == record.aiOpponent && aiDifficulty == record.aiDifficulty
+				&& rules.equals(record.rules) && seed == record.seed && firstSide == record.firstSide
+				&& gameState == record.gameState && winnerSide == record.winnerSide
+				&& Arrays.equals(moves, record.moves);
+	}
+
+	/*
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return Long.hashCode(seed) * 31 + Arrays.hashCode(moves);
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "GameRecord(size=" + size + ", aiOpponent=" + aiOpponent + ", aiDifficulty=" + aiDifficulty
+				+ ", rules=" + rules + ", seed=" + seed + ", firstSide=" + firstSide + ", gameState=" + gameState
+				+ ", winnerSide=" + winnerSide + ", moves=" + Arrays.toString(moves) + ")";
+	}
+
+}
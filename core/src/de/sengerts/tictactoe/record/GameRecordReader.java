@@ -0,0 +1,158 @@
+package de.sengerts.tictactoe.record;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Class reading game records from a stream.
+ *
+ * Reads the records written by a {@link GameRecordWriter} one after another,
+ * so a stream of millions of records can be processed while only one record
+ * is held in memory. Every record is read into a buffer that is reused for all
+ * records of a reader. A reader is not thread safe.
+ *
+ * @author Tobias Senger
+ */
+public class GameRecordReader implements Closeable {
+
+	/**
+	 * Class variable that stores the most bytes of one encoded record, enough
+	 * for a game filling the biggest encodable territory.
+	 */
+	private static final int MAX_RECORD_BYTES = 1 << 20;
+
+	/**
+	 * Class variable that stores the initial capacity of the record buffer.
+	 */
+	private static final int INITIAL_BUFFER_BYTES = 256;
+
+	/**
+	 * Instance variable that stores the stream the records are read from.
+	 */
+	private final InputStream in;
+
+	/**
+	 * Instance variable that stores the buffer a record is read into.
+	 */
+	private byte[] buffer;
+
+	/**
+	 * Instance variable that stores the amount of read records.
+	 */
+	private long recordsCount;
+
+	/**
+	 * Another constructor for class GameRecordReader.
+	 *
+	 * Creates a new reader by reading and checking the header of the given
+	 * stream.
+	 *
+	 * @param in the stream to read from, which is closed with this reader
+	 * @throws IOException if the header can not be read or the stream does not
+	 *                     hold game records of a known version
+	 * @throws IllegalArgumentException if given stream is null
+	 */
+	public GameRecordReader(final InputStream in) throws IOException {
+		if (in == null) {
+			throw new IllegalArgumentException("Given stream can not be null!");
+		}
+		this.in = new BufferedInputStream(in, GameRecordWriter.STREAM_BUFFER_BYTES);
+		this.buffer = new byte[INITIAL_BUFFER_BYTES];
+		for (byte magic : GameRecordWriter.MAGIC) {
+			if (this.in.read() != magic) {
+				throw new IOException("Stream does not hold game records!");
+			}
+		}
+		if (this.in.read() != GameRecordWriter.VERSION) {
+			throw new IOException("Stream holds game records of an unknown version!");
+		}
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @return the next record or null if the end of the stream has been reached
+	 * @throws EOFException if the stream ends within a record
+	 * @throws IOException if the stream can not be read or holds an invalid
+	 *                     record
+	 */
+	public GameRecord read() throws IOException {
+		int length = readLength();
+		if (length < 0) {
+			return null;
+		}
+		if (buffer.length < length) {
+			this.buffer = new byte[Math.max(length, buffer.length * 2)];
+		}
+		int read = 0;
+		while (read < length) {
+			int count = in.read(buffer, read, length - read);
+			if (count < 0) {
+				throw new EOFException("Stream ends within a game record!");
+			}
+			read += count;
+		}
+		GameRecord record;
+		try {
+			ByteBuffer recordBuffer = ByteBuffer.wrap(buffer, 0, length);
+			record = GameRecord.read(recordBuffer);
+			if (recordBuffer.hasRemaining()) {
+				throw new IllegalArgumentException("Given record is longer than its content!");
+			}
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Stream holds an invalid game record!", e);
+		}
+		recordsCount++;
+		return record;
+	}
+
+	/**
+	 * Reads the length of the next record.
+	 *
+	 * @return the length of the next record in bytes or -1 if the end of the
+	 *         stream has been reached
+	 * @throws IOException if the stream can not be read or the length is invalid
+	 */
+	private int readLength() throws IOException {
+		int length = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+			int part = in.read();
+			if (part < 0) {
+				if (shift == 0) {
+					return -1;
+				}
+				throw new EOFException("Stream ends within a game record!");
+			}
+			length |= (part & 0x7F) << shift;
+			if ((part & 0x80) == 0) {
+				if (length < 0 || length > MAX_RECORD_BYTES) {
+					throw new IOException("Stream holds a too long game record!");
+				}
+				return length;
+			}
+		}
+		throw new IOException("Stream holds an invalid game record length!");
+	}
+
+	/**
+	 * Gets the amount of read records.
+	 *
+	 * @return the amount of records read by this reader
+	 */
+	public /* @ pure @ */ long getRecordsCount() {
+		return recordsCount;
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,154 @@
+package de.sengerts.tictactoe.record;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Class writing game records to a stream.
+ *
+ * A stream of game records starts with a short header, the magic bytes and the
+ * version of the format, followed by the records, each prefixed with its
+ * length as a varint so a reader can process one record after another without
+ * holding more than one in memory. The records are encoded into a buffer that
+ * is reused for all records of a writer, so writing millions of records only
+ * allocates when a record is bigger than all before. A writer is not thread
+ * safe.
+ *
+ * @author Tobias Senger
+ */
+public class GameRecordWriter implements Closeable, Flushable {
+
+	/**
+	 * Class variable that stores the magic bytes a stream of game records
+	 * starts with.
+	 */
+	static final byte[] MAGIC = { 'T', 'T', 'T', 'R' };
+
+	/**
+	 * Class variable that stores the version of the format.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Class variable that stores the size of the stream buffer in bytes.
+	 */
+	static final int STREAM_BUFFER_BYTES = 1 << 16;
+
+	/**
+	 * Class variable that stores the initial capacity of the record buffer.
+	 */
+	private static final int INITIAL_BUFFER_BYTES = 256;
+
+	/**
+	 * Instance variable that stores the stream the records are written to.
+	 */
+	private final OutputStream out;
+
+	/**
+	 * Instance variable that stores the buffer a record is encoded into, with
+	 * room for its length in front.
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Instance variable that stores the amount of written records.
+	 */
+	private long recordsCount;
+
+	/**
+	 * Another constructor for class GameRecordWriter.
+	 *
+	 * Creates a new writer for a new stream of game records by writing the
+	 * header to the given stream.
+	 *
+	 * @param out the stream to write to, which is closed with this writer
+	 * @throws IOException if the header can not be written
+	 * @throws IllegalArgumentException if given stream is null
+	 */
+	public GameRecordWriter(final OutputStream out) throws IOException {
+		this(out, true);
+	}
+
+	/**
+	 * Another constructor for class GameRecordWriter.
+	 *
+	 * Creates a new writer that, if requested, writes the header to the given
+	 * stream first. A stream appending to an existing file of game records must
+	 * not get another header.
+	 *
+	 * @param out the stream to write to, which is closed with this writer
+	 * @param writeHeader whether the stream starts a new file and the header
+	 *                    has to be written
+	 * @throws IOException if the header can not be written
+	 * @throws IllegalArgumentException if given stream is null
+	 */
+	public GameRecordWriter(final OutputStream out, final boolean writeHeader) throws IOException {
+		if (out == null) {
+			throw new IllegalArgumentException("Given stream can not be null!");
+		}
+		this.out = new BufferedOutputStream(out, STREAM_BUFFER_BYTES);
+		this.buffer = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+		if (writeHeader) {
+			this.out.write(MAGIC);
+			this.out.write(VERSION);
+		}
+	}
+
+	/**
+	 * Writes a record.
+	 *
+	 * @param record the record to write
+	 * @throws IOException if the record can not be written
+	 * @throws IllegalArgumentException if given record is null
+	 */
+	public void write(final GameRecord record) throws IOException {
+		if (record == null) {
+			throw new IllegalArgumentException("Given record can not be null!");
+		}
+		int maxBytes = record.getMaxBytes();
+		if (buffer.capacity() < maxBytes) {
+			this.buffer = ByteBuffer.allocate(Math.max(maxBytes, buffer.capacity() * 2));
+		}
+		buffer.clear();
+		record.write(buffer);
+		int length = buffer.position();
+		int rest = length;
+		while ((rest & ~0x7F) != 0) {
+			out.write(rest & 0x7F | 0x80);
+			rest >>>= 7;
+		}
+		out.write(rest);
+		out.write(buffer.array(), 0, length);
+		recordsCount++;
+	}
+
+	/**
+	 * Gets the amount of written records.
+	 *
+	 * @return the amount of records written by this writer
+	 */
+	public /* @ pure @ */ long getRecordsCount() {
+		return recordsCount;
+	}
+
+	/*
+	 * @see java.io.Flushable#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
@@ -0,0 +1,171 @@
+package de.sengerts.tictactoe.record;
+
+import java.util.Arrays;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.logic.GameListener;
+import de.sengerts.tictactoe.logic.GameLogic;
+import de.sengerts.tictactoe.model.GameState;
+import de.sengerts.tictactoe.model.players.Player;
+
+/**
+ * Class recording the moves of a tic tac toe game.
+ *
+ * A recorder listens to a game from its start and collects the marked cells,
+ * so a record of the game ({@link GameRecord}) can be taken at any time,
+ * usually once the game has ended. A recorder can also go on from the record
+ * of the earlier moves of a continued game. Like every listener it is only called on
+ * the thread of the game's loop, and records must be taken on that thread as
+ * well.
+ *
+ * @author Tobias Senger
+ */
+public class GameRecorder implements GameListener {
+
+	/**
+	 * Class variable that stores the initial capacity of the moves array.
+	 */
+	private static final int INITIAL_MOVES_CAPACITY = 16;
+
+	/**
+	 * Instance variable that stores the recorded game.
+	 */
+	private final GameLogic gameLogic;
+
+	/**
+	 * Instance variable that stores the marked cells in the order they were
+	 * marked.
+	 */
+	private int[] moves;
+
+	/**
+	 * Instance variable that stores the amount of recorded moves.
+	 */
+	private int movesCount;
+
+	/**
+	 * Instance variable that stores the side that made the first move.
+	 */
+	private int firstSide;
+
+	/**
+	 * Instance variable that stores the seed the recorded game started with.
+	 */
+	private final long seed;
+
+	/**
+	 * Another constructor for class GameRecorder.
+	 *
+	 * Creates a new recorder and adds it as a listener to the given game, which
+	 * must not have any marked tiles yet.
+	 *
+	 * @param gameLogic the game to record
+	 * @throws IllegalArgumentException if given game is null or has already
+	 *                                  marked tiles
+	 */
+	public GameRecorder(final GameLogic gameLogic) {
+		if (gameLogic == null) {
+			throw new IllegalArgumentException("Given game logic can not be null!");
+		}
+		if (gameLogic.getTerritory().getBoard().getMarkedCount() > 0) {
+			throw new IllegalArgumentException("Given game logic has already marked tiles!");
+		}
+		this.gameLogic = gameLogic;
+		this.moves = new int[INITIAL_MOVES_CAPACITY];
+		this.seed = gameLogic.getSeed();
+		gameLogic.addListener(this);
+	}
+
+	/**
+	 * Another constructor for class GameRecorder.
+	 *
+	 * Creates a new recorder going on from the given record of the earlier
+	 * moves of the given continued game and adds it as a listener to the game.
+	 * The records taken by the recorder hold the earlier moves and the seed the
+	 * game originally started with.
+	 *
+	 * @param gameLogic the continued game to record
+	 * @param record the record of the moves made before the game was continued
+	 * @throws IllegalArgumentException if given game or record is null or the
+	 *                                  game has not as many marked tiles as
+	 *                                  the record has moves
+	 */
+	public GameRecorder(final GameLogic gameLogic, final GameRecord record) {
+		if (gameLogic == null || record == null) {
+			throw new IllegalArgumentException("Given game logic and record can not be null!");
+		}
+		if (gameLogic.getTerritory().getBoard().getMarkedCount() != record.getMovesCount()) {
+			throw new IllegalArgumentException("Given game logic does not continue the given record!");
+		}
+		this.gameLogic = gameLogic;
+		this.moves = Arrays.copyOf(record.getMoves(), Math.max(INITIAL_MOVES_CAPACITY, record.getMovesCount()));
+		this.movesCount = record.getMovesCount();
+		this.firstSide = record.getFirstSide();
+		this.seed = record.getSeed();
+		gameLogic.addListener(this);
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.logic.GameListener#moveMade(de.sengerts.tictactoe.logic.GameLogic, de.sengerts.tictactoe.model.players.Player, int)
+	 */
+	@Override
+	public void moveMade(final GameLogic gameLogic, final Player player, final int cell) {
+		if (movesCount == 0) {
+			this.firstSide = player.getPlayerSign().ordinal();
+		}
+		if (movesCount == moves.length) {
+			this.moves = Arrays.copyOf(moves, moves.length * 2);
+		}
+		moves[movesCount++] = cell;
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.logic.GameListener#moveRejected(de.sengerts.tictactoe.logic.GameLogic, int)
+	 */
+	@Override
+	public void moveRejected(final GameLogic gameLogic, final int cell) {
+		// Rejected moves are not part of the record
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.logic.GameListener#gameEnded(de.sengerts.tictactoe.logic.GameLogic)
+	 */
+	@Override
+	public void gameEnded(final GameLogic gameLogic) {
+		// The state of the ended game is read when a record is taken
+	}
+
+	/**
+	 * Takes a record of the game.
+	 *
+	 * @return the record of all moves made so far and the current state of the
+	 *         game
+	 */
+	public GameRecord toRecord() {
+		Player winner = gameLogic.getWinner();
+		GameState gameState = gameLogic.getGameState();
+		return new GameRecord(gameLogic.getSize(), gameLogic.isPlayingAgainstAI(), gameLogic.getAiDifficulty(),
+				gameLogic.getRules(), seed, firstSide, gameState,
+				gameState == GameState.WON ? winner.getPlayerSign().ordinal() : Board.NO_SIDE,
+				Arrays.copyOf(moves, movesCount));
+	}
+
+	/**
+	 * Stops recording.
+	 *
+	 * Removes this recorder from the listeners of the game.
+	 */
+	public void stop() {
+		gameLogic.removeListener(this);
+	}
+
+	/**
+	 * Gets the recorded game.
+	 *
+	 * @return the game recorded by this recorder
+	 */
+	public /* @ pure @ */ GameLogic getGameLogic() {
+		return gameLogic;
+	}
+
+}
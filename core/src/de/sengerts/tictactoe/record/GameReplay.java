@@ -0,0 +1,211 @@
+package de.sengerts.tictactoe.record;
+
+import de.sengerts.tictactoe.engine.Board;
+
+/**
+ * Class replaying a recorded tic tac toe game.
+ *
+ * A replay shows the position of a {@link GameRecord} after any amount of
+ * moves. The position is kept as one bit per cell and side, and every
+ * keyframe interval moves a copy of these bits is stored as a keyframe when
+ * the replay is created. Seeking to a move steps from the current position if
+ * it is at most one keyframe interval away, and otherwise restores the
+ * keyframe before the move and applies the remaining moves, so every seek
+ * costs at most one copy of the bits and one keyframe interval of moves, no
+ * matter how long the game is. A replay is not thread safe.
+ *
+ * @author Tobias Senger
+ */
+public class GameReplay {
+
+	/**
+	 * Class variable that stores the default amount of moves between two
+	 * keyframes.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 16;
+
+	/**
+	 * Instance variable that stores the replayed record.
+	 */
+	private final GameRecord record;
+
+	/**
+	 * Instance variable that stores the amount of moves between two keyframes.
+	 */
+	private final int keyframeInterval;
+
+	/**
+	 * Instance variable that stores the amount of words of the bits of one
+	 * side.
+	 */
+	private final int wordsCount;
+
+	/**
+	 * Instance variable that stores the bits of the position after every
+	 * keyframe interval moves, the first one being the empty position.
+	 */
+	private final long[][] keyframes;
+
+	/**
+	 * Instance variable that stores the bits of the current position, the
+	 * cells of the first side followed by the cells of the second side.
+	 */
+	private final long[] bits;
+
+	/**
+	 * Instance variable that stores the amount of moves made in the current
+	 * position.
+	 */
+	private int move;
+
+	/**
+	 * Another constructor for class GameReplay.
+	 *
+	 * Creates a new replay of the given record with the default keyframe
+	 * interval, showing the position before the first move.
+	 *
+	 * @param record the record to replay
+	 * @throws IllegalArgumentException if given record is null
+	 */
+	public GameReplay(final GameRecord record) {
+		this(record, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Another constructor for class GameReplay.
+	 *
+	 * Creates a new replay of the given record by applying all its moves once
+	 * to store the keyframes, showing the position before the first move.
+	 *
+	 * @param record the record to replay
+	 * @param keyframeInterval the amount of moves between two keyframes
+	 * @throws IllegalArgumentException if given record is null or given
+	 *                                  interval is not positive
+	 */
+	public GameReplay(final GameRecord record, final int keyframeInterval) {
+		if (record == null) {
+			throw new IllegalArgumentException("Given record can not be null!");
+		}
+		if (keyframeInterval <= 0) {
+			throw new IllegalArgumentException("Given keyframe interval must be positive!");
+		}
+		this.record = record;
+		this.keyframeInterval = keyframeInterval;
+		int cellsCount = record.getSize().getRowsCount() * record.getSize().getColumnsCount();
+		this.wordsCount = (cellsCount + 63) >>> 6;
+		this.bits = new long[Board.SIDES * wordsCount];
+		this.keyframes = new long[record.getMovesCount() / keyframeInterval + 1][];
+		for (int keyframe = 0; keyframe < keyframes.length; keyframe++) {
+			int keyframeMove = keyframe * keyframeInterval;
+			while (move < keyframeMove) {
+				apply(move++);
+			}
+			keyframes[keyframe] = bits.clone();
+		}
+		seek(0);
+	}
+
+	/**
+	 * Seeks to a move.
+	 *
+	 * Changes the current position to the position after the given amount of
+	 * moves.
+	 *
+	 * @param targetMove the amount of moves to show
+	 * @throws IllegalArgumentException if given amount is negative or greater
+	 *                                  than the amount of moves
+	 */
+	public void seek(final int targetMove) {
+		if (targetMove < 0 || targetMove > record.getMovesCount()) {
+			throw new IllegalArgumentException("Given move is not between zero and the amount of moves!");
+		}
+		if (Math.abs(targetMove - move) > keyframeInterval) {
+			int keyframe = targetMove / keyframeInterval;
+			System.arraycopy(keyframes[keyframe], 0, bits, 0, bits.length);
+			this.move = keyframe * keyframeInterval;
+		}
+		while (move < targetMove) {
+			apply(move++);
+		}
+		while (move > targetMove) {
+			apply(--move);
+		}
+	}
+
+	/**
+	 * Applies or takes back a move.
+	 *
+	 * Flips the bit of the cell of the given move for the side that made it,
+	 * which marks an empty cell and empties a cell marked by the move.
+	 *
+	 * @param recordMove the index of the move
+	 */
+	private void apply(final int recordMove) {
+		int bit = record.getSide(recordMove) * wordsCount * Long.SIZE + record.getMove(recordMove);
+		bits[bit >>> 6] ^= 1L << bit;
+	}
+
+	/**
+	 * Gets the side of a cell.
+	 *
+	 * @param cell the index of the cell
+	 * @return the side that has marked the given cell in the current position
+	 *         or {@link Board#NO_SIDE} if it is empty
+	 */
+	public int getSide(final int cell) {
+		for (int side = 0; side < Board.SIDES; side++) {
+			int bit = side * wordsCount * Long.SIZE + cell;
+			if ((bits[bit >>> 6] & 1L << bit) != 0) {
+				return side;
+			}
+		}
+		return Board.NO_SIDE;
+	}
+
+	/**
+	 * Gets the last marked cell.
+	 *
+	 * @return the index of the cell marked by the last move of the current
+	 *         position or -1 before the first move
+	 */
+	public int getLastCell() {
+		return move == 0 ? -1 : record.getMove(move - 1);
+	}
+
+	/**
+	 * Gets the current move.
+	 *
+	 * @return the amount of moves made in the current position
+	 */
+	public /* @ pure @ */ int getMove() {
+		return move;
+	}
+
+	/**
+	 * Gets the amount of moves.
+	 *
+	 * @return the amount of moves of the replayed record
+	 */
+	public int getMovesCount() {
+		return record.getMovesCount();
+	}
+
+	/**
+	 * Gets the keyframe interval.
+	 *
+	 * @return the amount of moves between two keyframes
+	 */
+	public /* @ pure @ */ int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * Gets the record.
+	 *
+	 * @return the replayed record
+	 */
+	public /* @ pure @ */ GameRecord getRecord() {
+		return record;
+	}
+
+}
@@ -0,0 +1,730 @@
+package de.sengerts.tictactoe.record;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.logic.GameLogic;
+import de.sengerts.tictactoe.logic.GameScheduler;
+import de.sengerts.tictactoe.logic.GameSnapshot;
+import de.sengerts.tictactoe.net.GameProtocol;
+
+/**
+ * Class representing a write-ahead log of running tic tac toe games.
+ *
+ * Every game that starts or continues is logged with its snapshot
+ * ({@link GameSnapshot}), every move applied to it with its cell and side, and
+ * a game that ends or leaves its owner is logged as left. The entries are
+ * collected in memory and written to the log file by a group commit every few
+ * milliseconds, with one force of the file for all entries of all games since
+ * the last commit, so logging a move never waits for the disk and a crash loses
+ * at most the moves of the last commit interval.
+ *
+ * The log keeps the state of every running game in memory, so once the log
+ * file has grown by the compaction size, it is replaced by a compacted one
+ * holding one snapshot per running game, written next to it and moved over it
+ * atomically. The time to recover from a log is so bounded by the compaction
+ * size and the amount of running games. Every entry is protected by a CRC32,
+ * and recovery stops at the first torn or corrupted entry. The games that were
+ * running when the log was written last are available from
+ * {@link #getRecoveredGames()} after opening it.
+ *
+ * All methods of a log are thread safe.
+ *
+ * @author Tobias Senger
+ */
+public class GameWriteAheadLog implements Closeable {
+
+	/**
+	 * Class variable that stores the default interval in milliseconds of the
+	 * group commits.
+	 */
+	public static final long DEFAULT_GROUP_COMMIT_MILLIS = 5;
+
+	/**
+	 * Class variable that stores the default amount of bytes the log file grows
+	 * by before it is compacted.
+	 */
+	public static final long DEFAULT_COMPACTION_BYTES = 64L << 20;
+
+	/**
+	 * Class variable that stores the magic bytes the log file starts with.
+	 */
+	private static final byte[] MAGIC = { 'T', 'T', 'T', 'W' };
+
+	/**
+	 * Class variable that stores the version of the log file.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Class variable that stores the size of the header of the log file, the
+	 * magic bytes, the version and three reserved bytes.
+	 */
+	private static final int HEADER_BYTES = 8;
+
+	/**
+	 * Class variable that stores the type of the entry of a started or
+	 * continued game.
+	 */
+	private static final int ENTRY_STARTED = 1;
+
+	/**
+	 * Class variable that stores the type of the entry of a move.
+	 */
+	private static final int ENTRY_MOVE = 2;
+
+	/**
+	 * Class variable that stores the type of the entry of an ended or left
+	 * game.
+	 */
+	private static final int ENTRY_LEFT = 3;
+
+	/**
+	 * Class variable that stores the amount of bytes of an entry around its
+	 * payload, the length in front of it and the checksum behind it.
+	 */
+	private static final int FRAME_BYTES = 2 * Integer.BYTES;
+
+	/**
+	 * Class variable that stores the most bytes of the payload of an entry.
+	 */
+	private static final int MAX_PAYLOAD_BYTES = 1 << 16;
+
+	/**
+	 * Class variable that stores the file name extension of a compacted log
+	 * file before it replaces the log file.
+	 */
+	private static final String COMPACTED_EXTENSION = ".compacted";
+
+	/**
+	 * Instance variable that stores the log file.
+	 */
+	private final File file;
+
+	/**
+	 * Instance variable that stores the amount of bytes the log file grows by
+	 * before it is compacted.
+	 */
+	private final long compactionBytes;
+
+	/**
+	 * Instance variable that stores the running games by their ids.
+	 */
+	private final Map<Long, LoggedGame> games;
+
+	/**
+	 * Instance variable that stores the games that were running when the log
+	 * was opened.
+	 */
+	private final Map<Long, GameSnapshot> recoveredGames;
+
+	/**
+	 * Instance variable that stores the executor of the group commits.
+	 */
+	private final ScheduledExecutorService commitExecutor;
+
+	/**
+	 * Instance variable that stores the periodic group commit.
+	 */
+	private final ScheduledFuture<?> periodicCommit;
+
+	/**
+	 * Instance variable that stores the lock that lets only one thread commit
+	 * at a time.
+	 */
+	private final Object commitLock;
+
+	/**
+	 * Instance variable that stores the checksum calculator of the appending
+	 * threads.
+	 */
+	private final CRC32 crc;
+
+	/**
+	 * Instance variable that stores the entries that have not been committed
+	 * yet.
+	 */
+	private ByteBuffer pending;
+
+	/**
+	 * Instance variable that stores the buffer of the entries being committed,
+	 * which is swapped with the pending one by every commit.
+	 */
+	private ByteBuffer committing;
+
+	/**
+	 * Instance variable that stores the channel of the log file.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Instance variable that stores the amount of bytes written to the log file
+	 * since it was compacted.
+	 */
+	private long grownBytes;
+
+	/**
+	 * Instance variable that stores the amount of group commits.
+	 */
+	private long commitsCount;
+
+	/**
+	 * Instance variable that stores the amount of compactions.
+	 */
+	private long compactionsCount;
+
+	/**
+	 * Instance variable that stores the failure of the last commit, null if it
+	 * succeeded.
+	 */
+	private volatile IOException commitFailure;
+
+	/**
+	 * Instance variable that stores whether this log is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Another constructor for class GameWriteAheadLog.
+	 *
+	 * Opens the log with the default group commit interval and compaction size.
+	 *
+	 * @param file the log file, which is created if it does not exist
+	 * @throws IOException if the log file can not be read or written or is not
+	 *                     a write-ahead log
+	 * @throws IllegalArgumentException if given file is null
+	 */
+	public GameWriteAheadLog(final File file) throws IOException {
+		this(file, DEFAULT_GROUP_COMMIT_MILLIS, DEFAULT_COMPACTION_BYTES);
+	}
+
+	/**
+	 * Another constructor for class GameWriteAheadLog.
+	 *
+	 * Opens the log by recovering the running games from the given log file, if
+	 * it exists, compacting it and starting the group commits on a thread of
+	 * its own.
+	 *
+	 * @param file the log file, which is created if it does not exist
+	 * @param groupCommitMillis the interval in milliseconds of the group
+	 *                          commits
+	 * @param compactionBytes the amount of bytes the log file grows by before it
+	 *                        is compacted
+	 * @throws IOException if the log file can not be read or written or is not
+	 *                     a write-ahead log
+	 * @throws IllegalArgumentException if given file is null or given interval
+	 *                                  or size is not positive
+	 */
+	public GameWriteAheadLog(final File file, final long groupCommitMillis, final long compactionBytes)
+			throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Given file can not be null!");
+		}
+		if (groupCommitMillis <= 0 || compactionBytes <= 0) {
+			throw new IllegalArgumentException("Given group commit interval and compaction size must be positive!");
+		}
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Directory " + directory + " can not be created!");
+		}
+		this.file = file;
+		this.compactionBytes = compactionBytes;
+		this.games = new HashMap<Long, LoggedGame>();
+		this.commitLock = new Object();
+		this.crc = new CRC32();
+		this.pending = ByteBuffer.allocate(1 << 12);
+		this.committing = ByteBuffer.allocate(1 << 12);
+		if (file.exists()) {
+			recover();
+		}
+		Map<Long, GameSnapshot> recovered = new LinkedHashMap<Long, GameSnapshot>();
+		Iterator<Map.Entry<Long, LoggedGame>> iterator = games.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Long, LoggedGame> game = iterator.next();
+			GameSnapshot snapshot = game.getValue().toContinuableSnapshot();
+			if (snapshot == null) {
+				// The game ended with the last moves before the crash
+				iterator.remove();
+			} else {
+				recovered.put(game.getKey(), snapshot);
+			}
+		}
+		this.recoveredGames = Collections.unmodifiableMap(recovered);
+		compact();
+		this.commitExecutor = GameScheduler.newExecutor("wal-commit", 1);
+		this.periodicCommit = commitExecutor.scheduleWithFixedDelay(this::commitQuietly, groupCommitMillis,
+				groupCommitMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Recovers the running games from the log file.
+	 *
+	 * Applies all entries of the log file up to the first torn or corrupted one,
+	 * which is where a crash interrupted the last commit.
+	 *
+	 * @throws IOException if the log file can not be read or is not a
+	 *                     write-ahead log
+	 */
+	private void recover() throws IOException {
+		ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		if (log.remaining() < HEADER_BYTES) {
+			return;
+		}
+		for (byte magic : MAGIC) {
+			if (log.get() != magic) {
+				throw new IOException("Log file is not a write-ahead log!");
+			}
+		}
+		if (log.get() != VERSION) {
+			throw new IOException("Log file is a write-ahead log of an unknown version!");
+		}
+		log.position(HEADER_BYTES);
+		while (log.remaining() >= FRAME_BYTES) {
+			int length = log.getInt(log.position());
+			if (length <= 0 || length > MAX_PAYLOAD_BYTES || log.remaining() < FRAME_BYTES + length) {
+				return;
+			}
+			ByteBuffer payload = log.duplicate();
+			payload.position(log.position() + Integer.BYTES);
+			payload.limit(payload.position() + length);
+			crc.reset();
+			crc.update(payload.duplicate());
+			if ((int) crc.getValue() != log.getInt(payload.limit())) {
+				return;
+			}
+			try {
+				apply(payload);
+			} catch (IllegalArgumentException | BufferUnderflowException e) {
+				return;
+			}
+			log.position(payload.limit() + Integer.BYTES);
+		}
+	}
+
+	/**
+	 * Applies an entry to the running games.
+	 *
+	 * @param payload the payload of the entry
+	 * @throws IllegalArgumentException if the entry is invalid
+	 */
+	private void apply(final ByteBuffer payload) {
+		int type = payload.get() & 0xFF;
+		long id = payload.getLong();
+		if (type == ENTRY_STARTED) {
+			games.put(id, new LoggedGame(GameSnapshot.read(payload)));
+		} else if (type == ENTRY_MOVE) {
+			LoggedGame game = games.get(id);
+			if (game != null) {
+				game.addMove(GameProtocol.readVarint(payload));
+			}
+		} else if (type == ENTRY_LEFT) {
+			games.remove(id);
+		} else {
+			throw new IllegalArgumentException("Given entry has an unknown type!");
+		}
+	}
+
+	/**
+	 * Logs a started or continued game.
+	 *
+	 * Logs the given snapshot of a game that starts or continues under the
+	 * given id, replacing any game logged under it before.
+	 *
+	 * @param id the id of the game
+	 * @param snapshot the snapshot of the game ({@link GameLogic#snapshot()})
+	 * @throws IllegalArgumentException if given snapshot is null
+	 */
+	public void gameStarted(final long id, final GameSnapshot snapshot) {
+		if (snapshot == null) {
+			throw new IllegalArgumentException("Given snapshot can not be null!");
+		}
+		byte[] bytes = snapshot.toBytes();
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			int start = beginEntry(ENTRY_STARTED, id, bytes.length);
+			pending.put(bytes);
+			endEntry(start);
+			games.put(id, new LoggedGame(snapshot));
+		}
+	}
+
+	/**
+	 * Logs a move.
+	 *
+	 * Logs a move applied to a running game, which is ignored if no game is
+	 * logged under the given id.
+	 *
+	 * @param id the id of the game
+	 * @param side the side that made the move
+	 * @param cell the index of the marked cell
+	 */
+	public synchronized void moveMade(final long id, final int side, final int cell) {
+		LoggedGame game = games.get(id);
+		if (closed || game == null) {
+			return;
+		}
+		int move = cell << 1 | side;
+		int start = beginEntry(ENTRY_MOVE, id, 5);
+		GameProtocol.writeVarint(pending, move);
+		endEntry(start);
+		game.addMove(move);
+	}
+
+	/**
+	 * Logs a game that ended or left its owner.
+	 *
+	 * Logs that the game with the given id is no longer running here, because
+	 * it ended, was abandoned or was parked elsewhere. Leaving a game that is not
+	 * logged has no effect.
+	 *
+	 * @param id the id of the game
+	 */
+	public synchronized void gameLeft(final long id) {
+		if (closed || games.remove(id) == null) {
+			return;
+		}
+		endEntry(beginEntry(ENTRY_LEFT, id, 0));
+	}
+
+	/**
+	 * Begins an entry in the pending buffer.
+	 *
+	 * @param type the type of the entry
+	 * @param id the id of the game
+	 * @param maxContentBytes the most bytes of the content of the entry
+	 * @return the position of the entry in the pending buffer
+	 */
+	private int beginEntry(final int type, final long id, final int maxContentBytes) {
+		int maxBytes = FRAME_BYTES + 1 + Long.BYTES + maxContentBytes;
+		if (pending.remaining() < maxBytes) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + maxBytes));
+			pending.flip();
+			grown.put(pending);
+			this.pending = grown;
+		}
+		int start = pending.position();
+		pending.putInt(0);
+		pending.put((byte) type);
+		pending.putLong(id);
+		return start;
+	}
+
+	/**
+	 * Ends an entry in the pending buffer by writing its length and checksum.
+	 *
+	 * @param start the position of the entry in the pending buffer
+	 */
+	private void endEntry(final int start) {
+		int end = pending.position();
+		int length = end - start - Integer.BYTES;
+		pending.putInt(start, length);
+		ByteBuffer payload = pending.duplicate();
+		payload.position(start + Integer.BYTES);
+		payload.limit(end);
+		crc.reset();
+		crc.update(payload);
+		pending.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * Commits all logged entries.
+	 *
+	 * Writes all entries logged so far to the log file and forces it, or
+	 * compacts the log file if it has grown by the compaction size, and returns
+	 * once they are on the disk.
+	 *
+	 * @throws IOException if the log file can not be written
+	 */
+	public void sync() throws IOException {
+		commit();
+	}
+
+	/**
+	 * Commits all logged entries on the commit thread.
+	 *
+	 * A failed commit is kept to be thrown by {@link #sync()}, and its entries
+	 * are lost, as the log is compacted by the next commit.
+	 */
+	private void commitQuietly() {
+		try {
+			commit();
+		} catch (IOException e) {
+			this.commitFailure = e;
+		}
+	}
+
+	/**
+	 * Commits all logged entries.
+	 *
+	 * @throws IOException if the log file can not be written
+	 */
+	private void commit() throws IOException {
+		synchronized (commitLock) {
+			ByteBuffer batch;
+			synchronized (this) {
+				if (closed || (pending.position() == 0 && commitFailure == null)) {
+					return;
+				}
+				if (grownBytes + pending.position() >= compactionBytes || commitFailure != null) {
+					batch = null;
+				} else {
+					batch = pending;
+					this.pending = committing;
+					this.committing = batch;
+				}
+			}
+			if (batch == null) {
+				compact();
+				return;
+			}
+			batch.flip();
+			int bytes = batch.remaining();
+			while (batch.hasRemaining()) {
+				channel.write(batch);
+			}
+			channel.force(false);
+			batch.clear();
+			synchronized (this) {
+				this.grownBytes += bytes;
+				this.commitsCount++;
+			}
+		}
+	}
+
+	/**
+	 * Compacts the log file.
+	 *
+	 * Writes one entry per running game holding its current snapshot to a new
+	 * log file, forces it and moves it over the log file, which also commits all
+	 * pending entries, as they are part of the current state of the games.
+	 *
+	 * @throws IOException if the compacted log file can not be written
+	 */
+	public void compact() throws IOException {
+		synchronized (commitLock) {
+			ByteBuffer snapshot;
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				pending.clear();
+				pending.put(MAGIC).put((byte) VERSION);
+				pending.position(HEADER_BYTES);
+				for (Map.Entry<Long, LoggedGame> game : games.entrySet()) {
+					byte[] bytes = game.getValue().toSnapshot().toBytes();
+					int start = beginEntry(ENTRY_STARTED, game.getKey(), bytes.length);
+					pending.put(bytes);
+					endEntry(start);
+				}
+				snapshot = pending;
+				this.pending = ByteBuffer.allocate(committing.capacity());
+			}
+			snapshot.flip();
+			File compacted = new File(file.getPath() + COMPACTED_EXTENSION);
+			try (FileChannel compactedChannel = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				while (snapshot.hasRemaining()) {
+					compactedChannel.write(snapshot);
+				}
+				compactedChannel.force(true);
+			}
+			if (channel != null) {
+				channel.close();
+			}
+			Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			this.commitFailure = null;
+			synchronized (this) {
+				this.grownBytes = 0;
+				this.compactionsCount++;
+			}
+		}
+	}
+
+	/**
+	 * Gets the games recovered when this log was opened.
+	 *
+	 * @return the snapshots of the games that were running when the log file
+	 *         was written last, by their ids
+	 */
+	public /* @ pure @ */ Map<Long, GameSnapshot> getRecoveredGames() {
+		return recoveredGames;
+	}
+
+	/**
+	 * Gets the amount of running games.
+	 *
+	 * @return the amount of games logged as running
+	 */
+	public synchronized int getGamesCount() {
+		return games.size();
+	}
+
+	/**
+	 * Gets the amount of group commits.
+	 *
+	 * @return the amount of group commits since this log was opened
+	 */
+	public synchronized long getCommitsCount() {
+		return commitsCount;
+	}
+
+	/**
+	 * Gets the amount of compactions.
+	 *
+	 * @return the amount of compactions since this log was opened, including
+	 *         the one when it was opened
+	 */
+	public synchronized long getCompactionsCount() {
+		return compactionsCount;
+	}
+
+	/**
+	 * Commits all logged entries and closes the log file.
+	 *
+	 * Closing a closed log has no effect.
+	 */
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		periodicCommit.cancel(false);
+		commitExecutor.shutdown();
+		synchronized (commitLock) {
+			try {
+				commit();
+			} finally {
+				synchronized (this) {
+					this.closed = true;
+				}
+				channel.close();
+			}
+		}
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "GameWriteAheadLog(games=" + games.size() + ", commits=" + commitsCount + ", compactions="
+				+ compactionsCount + ", grownBytes=" + grownBytes + ")";
+	}
+
+	/**
+	 * Class representing the logged state of a running game.
+	 */
+	private static final class LoggedGame {
+
+		/**
+		 * Instance variable that stores the snapshot the game was logged with.
+		 */
+		private final GameSnapshot start;
+
+		/**
+		 * Instance variable that stores the moves made since the snapshot, each
+		 * the cell shifted left by one bit or'ed with the side.
+		 */
+		private int[] moves;
+
+		/**
+		 * Instance variable that stores the amount of moves.
+		 */
+		private int movesCount;
+
+		/**
+		 * Another constructor for class LoggedGame.
+		 *
+		 * @param start the snapshot the game was logged with
+		 */
+		private LoggedGame(final GameSnapshot start) {
+			this.start = start;
+			this.moves = new int[8];
+		}
+
+		/**
+		 * Adds a move.
+		 *
+		 * @param move the cell shifted left by one bit or'ed with the side
+		 */
+		private void addMove(final int move) {
+			if (movesCount == moves.length) {
+				this.moves = Arrays.copyOf(moves, moves.length * 2);
+			}
+			moves[movesCount++] = move;
+		}
+
+		/**
+		 * Takes a snapshot of the current state of the game.
+		 *
+		 * @return the snapshot the game was logged with, with all moves made since
+		 *         then and the turn of the side after the last move
+		 * @throws IllegalArgumentException if a move is not inside the territory
+		 */
+		private GameSnapshot toSnapshot() {
+			if (movesCount == 0) {
+				return start;
+			}
+			Board board = start.getBoard();
+			for (int i = 0; i < movesCount; i++) {
+				int cell = moves[i] >>> 1;
+				if (cell >= board.getCellsCount() || !board.isEmpty(cell)) {
+					throw new IllegalArgumentException("Given move is not on an empty cell!");
+				}
+				board.mark(cell, moves[i] & 1);
+			}
+			return new GameSnapshot(start.getSize(), start.isAiOpponent(), start.getAiDifficulty(),
+					start.getRules(), board, Board.getOpponent(moves[movesCount - 1] & 1), start.getSeed());
+		}
+
+		/**
+		 * Takes a snapshot of the current state of the game if it can be
+		 * continued.
+		 *
+		 * @return the snapshot of the current state or null if the game has
+		 *         ended or its moves are invalid
+		 */
+		private GameSnapshot toContinuableSnapshot() {
+			GameSnapshot snapshot;
+			try {
+				snapshot = toSnapshot();
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+			Board board = snapshot.getBoard();
+			for (int side = 0; side < Board.SIDES; side++) {
+				if (board.hasWinningRun(side)) {
+					return null;
+				}
+			}
+			if (board.isFull() || (snapshot.getRules().isEarlyDrawDetection() && !board.hasWinnableLine())) {
+				return null;
+			}
+			return snapshot;
+		}
+
+	}
+
+}
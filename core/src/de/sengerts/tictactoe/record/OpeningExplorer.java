@@ -0,0 +1,338 @@
+package de.sengerts.tictactoe.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Zobrist;
+
+/**
+ * Class answering opening explorer queries from a {@link PositionIndex}.
+ *
+ * For a position and the side to move, the explorer looks up the position
+ * after every legal move in the index and returns how the games that went on
+ * with that move ended from the view of the side to move and how long they
+ * took. Symmetric moves reach the same canonical position, so they share
+ * their statistics. Positions no indexed game passes through are answered
+ * without looking up any move, as no game can have gone on from them.
+ *
+ * The answers of the most recently explored positions are kept in a bounded
+ * cache, so exploring the positions of a running game again, for example after
+ * a move is taken back or in another game with the same opening, costs no
+ * reads of the index. All methods of an explorer are thread safe.
+ *
+ * @author Tobias Senger
+ */
+public class OpeningExplorer implements Closeable {
+
+	/**
+	 * Class variable that stores the default amount of positions whose answers
+	 * are cached.
+	 */
+	public static final int DEFAULT_CACHE_CAPACITY = 4096;
+
+	/**
+	 * Instance variable that stores the explored index.
+	 */
+	private final PositionIndex index;
+
+	/**
+	 * Instance variable that stores the answers of the most recently explored
+	 * positions by the hash of the position and the side to move, in the order
+	 * of their last access.
+	 */
+	private final LinkedHashMap<Long, List<MoveStatistics>> cache;
+
+	/**
+	 * Instance variable that stores the amount of answered queries.
+	 */
+	private long queriesCount;
+
+	/**
+	 * Instance variable that stores the amount of queries answered from the
+	 * cache.
+	 */
+	private long cacheHitsCount;
+
+	/**
+	 * Another constructor for class OpeningExplorer.
+	 *
+	 * Creates a new explorer of the given index caching the answers of
+	 * {@link #DEFAULT_CACHE_CAPACITY} positions.
+	 *
+	 * @param index the index to explore
+	 * @throws IllegalArgumentException if given index is null
+	 */
+	public OpeningExplorer(final PositionIndex index) {
+		this(index, DEFAULT_CACHE_CAPACITY);
+	}
+
+	/**
+	 * Another constructor for class OpeningExplorer.
+	 *
+	 * @param index the index to explore
+	 * @param cacheCapacity the amount of positions whose answers are cached
+	 * @throws IllegalArgumentException if given index is null or given capacity
+	 *                                  is not positive
+	 */
+	public OpeningExplorer(final PositionIndex index, final int cacheCapacity) {
+		if (index == null) {
+			throw new IllegalArgumentException("Given index can not be null!");
+		}
+		if (cacheCapacity <= 0) {
+			throw new IllegalArgumentException("Given cache capacity must be positive!");
+		}
+		this.index = index;
+		this.cache = new LinkedHashMap<Long, List<MoveStatistics>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Long, List<MoveStatistics>> eldest) {
+				return size() > cacheCapacity;
+			}
+		};
+	}
+
+	/**
+	 * Explores a position.
+	 *
+	 * @param board the board of the position, which is not changed
+	 * @param side the side to move
+	 * @return the statistics of every legal move in the order of the cells,
+	 *         including moves no indexed game has made
+	 * @throws IOException if the index can not be read
+	 * @throws IllegalArgumentException if given board is null or given side is
+	 *                                  not a side
+	 */
+	public List<MoveStatistics> explore(final Board board, final int side) throws IOException {
+		if (board == null) {
+			throw new IllegalArgumentException("Given board can not be null!");
+		}
+		if (side < 0 || side >= Board.SIDES) {
+			throw new IllegalArgumentException("Given side is not a side!");
+		}
+		Long key = board.getHash() ^ Zobrist.getSideKey(side);
+		synchronized (cache) {
+			queriesCount++;
+			List<MoveStatistics> moves = cache.get(key);
+			if (moves != null) {
+				cacheHitsCount++;
+				return moves;
+			}
+		}
+		List<MoveStatistics> moves = lookUp(board.copy(), side);
+		synchronized (cache) {
+			cache.put(key, moves);
+		}
+		return moves;
+	}
+
+	/**
+	 * Looks up the statistics of every legal move of a position in the index.
+	 *
+	 * @param board a copy of the board of the position, which is marked and
+	 *              unmarked for every move
+	 * @param side the side to move
+	 * @return the statistics of every legal move in the order of the cells
+	 * @throws IOException if the index can not be read
+	 */
+	private List<MoveStatistics> lookUp(final Board board, final int side) throws IOException {
+		boolean played = index.get(board) != null;
+		List<MoveStatistics> moves = new ArrayList<MoveStatistics>();
+		for (int cell = 0; cell < board.getCellsCount(); cell++) {
+			if (!board.isEmpty(cell)) {
+				continue;
+			}
+			PositionIndex.Entry entry = null;
+			if (played) {
+				board.mark(cell, side);
+				entry = index.get(board);
+				board.unmark(cell, side);
+			}
+			moves.add(entry == null ? new MoveStatistics(cell, 0, 0, 0, 0, 0)
+					: new MoveStatistics(cell, entry.getGamesCount(), entry.getWinsCount(side),
+							entry.getDrawsCount(), entry.getWinsCount(Board.getOpponent(side)),
+							entry.getAverageMovesCount()));
+		}
+		return Collections.unmodifiableList(moves);
+	}
+
+	/**
+	 * Gets the amount of queries.
+	 *
+	 * @return the amount of positions explored so far
+	 */
+	public long getQueriesCount() {
+		synchronized (cache) {
+			return queriesCount;
+		}
+	}
+
+	/**
+	 * Gets the amount of cache hits.
+	 *
+	 * @return the amount of positions explored so far whose answers were
+	 *         cached
+	 */
+	public long getCacheHitsCount() {
+		synchronized (cache) {
+			return cacheHitsCount;
+		}
+	}
+
+	/**
+	 * Gets the index.
+	 *
+	 * @return the explored index
+	 */
+	public /* @ pure @ */ PositionIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Closes this explorer.
+	 *
+	 * Closes the explored index.
+	 */
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		index.close();
+	}
+
+	/**
+	 * Class representing the statistics of a move in an explored position.
+	 *
+	 * @author Tobias Senger
+	 */
+	public static final class MoveStatistics {
+
+		/**
+		 * Instance variable that stores the cell of the move.
+		 */
+		private final int cell;
+
+		/**
+		 * Instance variable that stores the amount of games that made the move.
+		 */
+		private final int gamesCount;
+
+		/**
+		 * Instance variable that stores the amount of these games the side to
+		 * move won.
+		 */
+		private final int winsCount;
+
+		/**
+		 * Instance variable that stores the amount of these games that ended in
+		 * a draw.
+		 */
+		private final int drawsCount;
+
+		/**
+		 * Instance variable that stores the amount of these games the side to
+		 * move lost.
+		 */
+		private final int lossesCount;
+
+		/**
+		 * Instance variable that stores the average amount of moves of these
+		 * games.
+		 */
+		private final double averageMovesCount;
+
+		/**
+		 * Another constructor for class MoveStatistics.
+		 *
+		 * @param cell the cell of the move
+		 * @param gamesCount the amount of games that made the move
+		 * @param winsCount the amount of these games the side to move won
+		 * @param drawsCount the amount of these games that ended in a draw
+		 * @param lossesCount the amount of these games the side to move lost
+		 * @param averageMovesCount the average amount of moves of these games
+		 */
+		MoveStatistics(final int cell, final int gamesCount, final int winsCount, final int drawsCount,
+				final int lossesCount, final double averageMovesCount) {
+			this.cell = cell;
+			this.gamesCount = gamesCount;
+			this.winsCount = winsCount;
+			this.drawsCount = drawsCount;
+			this.lossesCount = lossesCount;
+			this.averageMovesCount = averageMovesCount;
+		}
+
+		/**
+		 * Gets the cell.
+		 *
+		 * @return the cell of the move
+		 */
+		public /* @ pure @ */ int getCell() {
+			return cell;
+		}
+
+		/**
+		 * Gets the amount of games.
+		 *
+		 * @return the amount of games that made the move
+		 */
+		public /* @ pure @ */ int getGamesCount() {
+			return gamesCount;
+		}
+
+		/**
+		 * Gets the amount of wins.
+		 *
+		 * @return the amount of games that made the move and the side to move
+		 *         won
+		 */
+		public /* @ pure @ */ int getWinsCount() {
+			return winsCount;
+		}
+
+		/**
+		 * Gets the amount of draws.
+		 *
+		 * @return the amount of games that made the move and ended in a draw
+		 */
+		public /* @ pure @ */ int getDrawsCount() {
+			return drawsCount;
+		}
+
+		/**
+		 * Gets the amount of losses.
+		 *
+		 * @return the amount of games that made the move and the side to move
+		 *         lost
+		 */
+		public /* @ pure @ */ int getLossesCount() {
+			return lossesCount;
+		}
+
+		/**
+		 * Gets the average game length.
+		 *
+		 * @return the average amount of moves of the games that made the move
+		 */
+		public /* @ pure @ */ double getAverageMovesCount() {
+			return averageMovesCount;
+		}
+
+		/*
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "MoveStatistics(cell=" + cell + ", games=" + gamesCount + ", wins=" + winsCount + ", draws="
+					+ drawsCount + ", losses=" + lossesCount + ", averageMoves=" + averageMovesCount + ")";
+		}
+
+	}
+
+}
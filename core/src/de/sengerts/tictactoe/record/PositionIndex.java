@@ -0,0 +1,492 @@
+package de.sengerts.tictactoe.record;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Symmetries;
+
+/**
+ * Class representing an on-disk inverted index from positions to the games
+ * passing through them.
+ *
+ * An index is built by a {@link PositionIndexBuilder} from the records of a
+ * {@link GameHistoryStore} and maps the hash of every canonical position
+ * ({@link Symmetries#getCanonicalHash(Board)}) reached by any game to the ids
+ * of these games, the counts of their outcomes and their total length. Positions are keyed by
+ * their territory size and marks only, so games of different rules on the
+ * same territory share their positions.
+ *
+ * The index consists of three files: the keys file holds one fixed size entry
+ * per position sorted by the unsigned hash, the postings file holds the game
+ * ids of all positions one after another, and the fences file holds the hash
+ * of every {@link #FENCE_INTERVAL}th entry. The fences are read into memory
+ * when an index is opened, so looking up a position takes one binary search in
+ * memory, one read of a block of entries and one read of the game ids, no
+ * matter how many positions the index has.
+ *
+ * All methods of an index are thread safe.
+ *
+ * @author Tobias Senger
+ */
+public class PositionIndex implements Closeable {
+
+	/**
+	 * Class variable that stores the default base name of the index files.
+	 */
+	public static final String DEFAULT_NAME = "positions";
+
+	/**
+	 * Class variable that stores the file name extension of the keys file.
+	 */
+	public static final String KEYS_EXTENSION = ".keys";
+
+	/**
+	 * Class variable that stores the file name extension of the postings file.
+	 */
+	public static final String POSTINGS_EXTENSION = ".postings";
+
+	/**
+	 * Class variable that stores the file name extension of the fences file.
+	 */
+	public static final String FENCES_EXTENSION = ".fences";
+
+	/**
+	 * Class variable that stores the amount of entries per fence, which makes a
+	 * block of entries one page.
+	 */
+	static final int FENCE_INTERVAL = 128;
+
+	/**
+	 * Class variable that stores the magic bytes the keys file starts with.
+	 */
+	static final byte[] MAGIC = { 'T', 'T', 'T', 'P' };
+
+	/**
+	 * Class variable that stores the version of the keys file.
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * Class variable that stores the size of the header of the keys file, the
+	 * magic bytes, the version, three reserved bytes and the amount of entries.
+	 */
+	static final int HEADER_BYTES = 16;
+
+	/**
+	 * Class variable that stores the size of an entry of the keys file: the
+	 * hash, the index of the first game id in the postings file, the sum of
+	 * the amounts of moves of the games and the counts of games, draws and wins
+	 * of both sides.
+	 */
+	static final int ENTRY_BYTES = 3 * Long.BYTES + 4 * Integer.BYTES;
+
+	/**
+	 * Instance variable that stores the channel of the keys file.
+	 */
+	private final FileChannel keysChannel;
+
+	/**
+	 * Instance variable that stores the channel of the postings file.
+	 */
+	private final FileChannel postingsChannel;
+
+	/**
+	 * Instance variable that stores the hash of the first entry of every block
+	 * of entries.
+	 */
+	private final long[] fences;
+
+	/**
+	 * Instance variable that stores the amount of positions.
+	 */
+	private final long positionsCount;
+
+	/**
+	 * Instance variable that stores the amount of game ids in the postings
+	 * file.
+	 */
+	private final long postingsCount;
+
+	/**
+	 * Another constructor for class PositionIndex.
+	 *
+	 * Opens the index with the given name in the given directory and reads its
+	 * fences.
+	 *
+	 * @param directory the directory of the index files
+	 * @param name the base name of the index files
+	 * @throws IOException if the files can not be opened or do not hold an index
+	 *                     of a known version
+	 * @throws IllegalArgumentException if given directory or name is null
+	 */
+	public PositionIndex(final File directory, final String name) throws IOException {
+		if (directory == null || name == null) {
+			throw new IllegalArgumentException("Given directory and name can not be null!");
+		}
+		this.keysChannel = FileChannel.open(new File(directory, name + KEYS_EXTENSION).toPath(),
+				StandardOpenOption.READ);
+		try {
+			this.postingsChannel = FileChannel.open(new File(directory, name + POSTINGS_EXTENSION).toPath(),
+					StandardOpenOption.READ);
+		} catch (IOException e) {
+			keysChannel.close();
+			throw e;
+		}
+		try {
+			ByteBuffer header = read(keysChannel, 0, HEADER_BYTES);
+			for (byte magic : MAGIC) {
+				if (header.get() != magic) {
+					throw new IOException("File does not hold a position index!");
+				}
+			}
+			if (header.get() != VERSION) {
+				throw new IOException("File holds a position index of an unknown version!");
+			}
+			header.position(8);
+			this.positionsCount = header.getLong();
+			if (positionsCount < 0 || keysChannel.size() != HEADER_BYTES + positionsCount * ENTRY_BYTES) {
+				throw new IOException("Position index has an invalid size!");
+			}
+			this.postingsCount = postingsChannel.size() / Long.BYTES;
+			this.fences = readFences(new File(directory, name + FENCES_EXTENSION),
+					(int) ((positionsCount + FENCE_INTERVAL - 1) / FENCE_INTERVAL));
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the fences.
+	 *
+	 * @param file the fences file
+	 * @param fencesCount the amount of fences the keys file needs
+	 * @return the hash of the first entry of every block of entries
+	 * @throws IOException if the file can not be read or does not hold the
+	 *                     expected amount of fences
+	 */
+	private static long[] readFences(final File file, final int fencesCount) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() != (long) fencesCount * Long.BYTES) {
+				throw new IOException("Position index fences do not fit the keys!");
+			}
+			long[] fences = new long[fencesCount];
+			read(channel, 0, fencesCount * Long.BYTES).asLongBuffer().get(fences);
+			return fences;
+		}
+	}
+
+	/**
+	 * Reads bytes from a channel.
+	 *
+	 * @param channel the channel to read from
+	 * @param position the position of the first byte
+	 * @param length the amount of bytes to read
+	 * @return a buffer holding the read bytes
+	 * @throws IOException if the bytes can not be read or the channel ends
+	 *                     before them
+	 */
+	private static ByteBuffer read(final FileChannel channel, final long position, final int length)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Position index is truncated!");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Gets the hash of the canonical position of a position.
+	 *
+	 * @param board the board of the position
+	 * @return the hash the position is indexed by
+	 * @throws IllegalArgumentException if given board is null
+	 */
+	public static long getCanonicalHash(final Board board) {
+		if (board == null) {
+			throw new IllegalArgumentException("Given board can not be null!");
+		}
+		return Symmetries.get(board.getLines()).getCanonicalHash(board);
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @param board the board of the position
+	 * @return the entry of the canonical position of the given position or null
+	 *         if no indexed game passes through it
+	 * @throws IOException if the index can not be read
+	 * @throws IllegalArgumentException if given board is null
+	 */
+	public Entry get(final Board board) throws IOException {
+		return get(getCanonicalHash(board));
+	}
+
+	/**
+	 * Looks up a position by its hash.
+	 *
+	 * @param hash the hash of the canonical position
+	 * @return the entry of the position or null if no indexed game passes
+	 *         through it
+	 * @throws IOException if the index can not be read
+	 */
+	public Entry get(final long hash) throws IOException {
+		int low = 0;
+		int high = fences.length - 1;
+		int block = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (Long.compareUnsigned(fences[middle], hash) <= 0) {
+				block = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if (block < 0) {
+			return null;
+		}
+		long first = (long) block * FENCE_INTERVAL;
+		int count = (int) Math.min(FENCE_INTERVAL, positionsCount - first);
+		ByteBuffer entries = read(keysChannel, HEADER_BYTES + first * ENTRY_BYTES, count * ENTRY_BYTES);
+		low = 0;
+		high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = Long.compareUnsigned(entries.getLong(middle * ENTRY_BYTES), hash);
+			if (comparison == 0) {
+				entries.position(middle * ENTRY_BYTES);
+				return new Entry(entries.getLong(), entries.getLong(), entries.getLong(), entries.getInt(),
+						entries.getInt(), entries.getInt(), entries.getInt());
+			} else if (comparison < 0) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the ids of the games passing through a position.
+	 *
+	 * @param entry the entry of the position
+	 * @return the ids of all games passing through the position in ascending
+	 *         order
+	 * @throws IOException if the index can not be read
+	 * @throws IllegalArgumentException if given entry is null
+	 */
+	public long[] getGameIds(final Entry entry) throws IOException {
+		if (entry == null) {
+			throw new IllegalArgumentException("Given entry can not be null!");
+		}
+		return getGameIds(entry, 0, entry.getGamesCount());
+	}
+
+	/**
+	 * Gets some of the ids of the games passing through a position.
+	 *
+	 * @param entry the entry of the position
+	 * @param offset the amount of ids to skip
+	 * @param count the most ids to get
+	 * @return the ids of the games passing through the position in ascending
+	 *         order, starting after the given amount of ids
+	 * @throws IOException if the index can not be read
+	 * @throws IllegalArgumentException if given entry is null or given offset or
+	 *                                  count is negative
+	 */
+	public long[] getGameIds(final Entry entry, final int offset, final int count) throws IOException {
+		if (entry == null) {
+			throw new IllegalArgumentException("Given entry can not be null!");
+		}
+		if (offset < 0 || count < 0) {
+			throw new IllegalArgumentException("Given offset and count can not be negative!");
+		}
+		int idsCount = Math.max(0, Math.min(count, entry.getGamesCount() - offset));
+		long[] ids = new long[idsCount];
+		if (idsCount > 0) {
+			read(postingsChannel, (entry.postingsIndex + offset) * Long.BYTES, idsCount * Long.BYTES)
+					.asLongBuffer().get(ids);
+		}
+		return ids;
+	}
+
+	/**
+	 * Gets the amount of positions.
+	 *
+	 * @return the amount of distinct canonical positions in this index
+	 */
+	public /* @ pure @ */ long getPositionsCount() {
+		return positionsCount;
+	}
+
+	/**
+	 * Gets the amount of postings.
+	 *
+	 * @return the amount of game ids of all positions together
+	 */
+	public /* @ pure @ */ long getPostingsCount() {
+		return postingsCount;
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			keysChannel.close();
+		} finally {
+			if (postingsChannel != null) {
+				postingsChannel.close();
+			}
+		}
+	}
+
+	/**
+	 * Immutable class representing the entry of a position in an index.
+	 */
+	public static final class Entry {
+
+		/**
+		 * Instance variable that stores the hash of the canonical position.
+		 */
+		private final long hash;
+
+		/**
+		 * Instance variable that stores the index of the first game id of the
+		 * position in the postings file.
+		 */
+		private final long postingsIndex;
+
+		/**
+		 * Instance variable that stores the sum of the amounts of moves of the
+		 * games passing through the position.
+		 */
+		private final long movesCount;
+
+		/**
+		 * Instance variable that stores the amount of games passing through the
+		 * position.
+		 */
+		private final int gamesCount;
+
+		/**
+		 * Instance variable that stores the amount of these games that ended in a
+		 * draw.
+		 */
+		private final int drawsCount;
+
+		/**
+		 * Instance variable that stores the amount of these games the first side
+		 * won.
+		 */
+		private final int firstSideWinsCount;
+
+		/**
+		 * Instance variable that stores the amount of these games the second side
+		 * won.
+		 */
+		private final int secondSideWinsCount;
+
+		/**
+		 * Another constructor for class Entry.
+		 *
+		 * @param hash the hash of the canonical position
+		 * @param postingsIndex the index of the first game id of the position
+		 * @param movesCount the sum of the amounts of moves of the games
+		 * @param gamesCount the amount of games passing through the position
+		 * @param drawsCount the amount of these games that ended in a draw
+		 * @param firstSideWinsCount the amount of these games side X won
+		 * @param secondSideWinsCount the amount of these games side O won
+		 */
+		Entry(final long hash, final long postingsIndex, final long movesCount, final int gamesCount,
+				final int drawsCount, final int firstSideWinsCount, final int secondSideWinsCount) {
+			this.hash = hash;
+			this.postingsIndex = postingsIndex;
+			this.movesCount = movesCount;
+			this.gamesCount = gamesCount;
+			this.drawsCount = drawsCount;
+			this.firstSideWinsCount = firstSideWinsCount;
+			this.secondSideWinsCount = secondSideWinsCount;
+		}
+
+		/**
+		 * Gets the hash.
+		 *
+		 * @return the hash of the canonical position
+		 */
+		public /* @ pure @ */ long getHash() {
+			return hash;
+		}
+
+		/**
+		 * Gets the amount of games.
+		 *
+		 * @return the amount of games passing through the position
+		 */
+		public /* @ pure @ */ int getGamesCount() {
+			return gamesCount;
+		}
+
+		/**
+		 * Gets the average length of the games.
+		 *
+		 * @return the average amount of moves of the games passing through the
+		 *         position
+		 */
+		public double getAverageMovesCount() {
+			return gamesCount == 0 ? 0 : movesCount / (double) gamesCount;
+		}
+
+		/**
+		 * Gets the amount of draws.
+		 *
+		 * @return the amount of games passing through the position that ended in
+		 *         a draw
+		 */
+		public /* @ pure @ */ int getDrawsCount() {
+			return drawsCount;
+		}
+
+		/**
+		 * Gets the amount of wins of a side.
+		 *
+		 * @param side the side
+		 * @return the amount of games passing through the position the given
+		 *         side won
+		 */
+		public int getWinsCount(final int side) {
+			return side == 0 ? firstSideWinsCount : secondSideWinsCount;
+		}
+
+		/**
+		 * Gets the amount of unfinished games.
+		 *
+		 * @return the amount of games passing through the position that were
+		 *         recorded before they ended
+		 */
+		public int getUnfinishedCount() {
+			return gamesCount - drawsCount - firstSideWinsCount - secondSideWinsCount;
+		}
+
+		/*
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Entry(hash=" + Long.toHexString(hash) + ", games=" + gamesCount + ", draws=" + drawsCount
+					+ ", winsX=" + firstSideWinsCount + ", winsO=" + secondSideWinsCount + ", averageMoves=" + getAverageMovesCount() + ")";
+		}
+
+	}
+
+}
@@ -0,0 +1,875 @@
+package de.sengerts.tictactoe.record;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.engine.Symmetries;
+import de.sengerts.tictactoe.engine.Zobrist;
+import de.sengerts.tictactoe.logic.GameScheduler;
+import de.sengerts.tictactoe.model.GameState;
+
+/**
+ * Class building a {@link PositionIndex} from many game records in parallel.
+ *
+ * The records are handed to the builder in batches, and a pool of worker
+ * threads replays every game move by move, keeping the hash of the position
+ * under every symmetry up to date with one key per symmetry and move, so the
+ * canonical hash of every reached position costs a handful of operations. The
+ * workers collect one posting, the canonical hash together with the game id,
+ * length and outcome, per position and game in buffers of their own. A full buffer is
+ * radix sorted by hash and written to a run file. Once all records have been
+ * added, the runs are merged into the files of the index, so the memory of the
+ * builder is bounded by its buffers no matter how many games are indexed.
+ *
+ * Records must be added from one thread.
+ *
+ * @author Tobias Senger
+ */
+public class PositionIndexBuilder implements Closeable {
+
+	/**
+	 * Class variable that stores the default amount of postings a buffer holds
+	 * before it is written to a run.
+	 */
+	public static final int DEFAULT_RUN_POSTINGS = 1 << 20;
+
+	/**
+	 * Class variable that stores the amount of games handed to a worker at
+	 * once.
+	 */
+	private static final int BATCH_GAMES = 256;
+
+	/**
+	 * Class variable that stores the file name extension of the runs.
+	 */
+	private static final String RUN_EXTENSION = ".run";
+
+	/**
+	 * Class variable that stores the file name extension of the files written
+	 * before they replace the files of the index.
+	 */
+	private static final String TEMPORARY_EXTENSION = ".tmp";
+
+	/**
+	 * Class variable that stores the bits of a posting value holding the game
+	 * id.
+	 */
+	private static final long ID_MASK = (1L << 46) - 1;
+
+	/**
+	 * Class variable that stores the shift of the amount of moves of the game
+	 * in a posting value, which takes the sixteen bits between the game id and
+	 * the outcome.
+	 */
+	private static final int MOVES_SHIFT = 46;
+
+	/**
+	 * Class variable that stores the shift of the outcome of the game in a
+	 * posting value.
+	 */
+	private static final int OUTCOME_SHIFT = 62;
+
+	/**
+	 * Class variable that stores the encoded outcome of an unfinished game.
+	 */
+	private static final int OUTCOME_UNFINISHED = 0;
+
+	/**
+	 * Class variable that stores the encoded outcome of a draw, a win of a side
+	 * being encoded as one plus the side after it.
+	 */
+	private static final int OUTCOME_DRAW = 1;
+
+	/**
+	 * Class variable that stores the size of a stream buffer of a run.
+	 */
+	private static final int STREAM_BUFFER_BYTES = 1 << 16;
+
+	/**
+	 * Instance variable that stores the directory of the index.
+	 */
+	private final File directory;
+
+	/**
+	 * Instance variable that stores the base name of the index files.
+	 */
+	private final String name;
+
+	/**
+	 * Instance variable that stores the workers replaying the games.
+	 */
+	private final ExecutorService workers;
+
+	/**
+	 * Instance variable that stores the permits of the batches handed to the
+	 * workers but not replayed yet.
+	 */
+	private final Semaphore pendingBatches;
+
+	/**
+	 * Instance variable that stores the buffers not used by any worker.
+	 */
+	private final BlockingQueue<RunBuffer> freeBuffers;
+
+	/**
+	 * Instance variable that stores all buffers.
+	 */
+	private final List<RunBuffer> buffers;
+
+	/**
+	 * Instance variable that stores the written run files.
+	 */
+	private final List<File> runFiles;
+
+	/**
+	 * Instance variable that stores the amount of written runs, including the
+	 * runs already merged and deleted.
+	 */
+	private int runsCount;
+
+	/**
+	 * Instance variable that stores the ids of the current batch.
+	 */
+	private long[] batchIds;
+
+	/**
+	 * Instance variable that stores the records of the current batch.
+	 */
+	private GameRecord[] batchRecords;
+
+	/**
+	 * Instance variable that stores the amount of games in the current batch.
+	 */
+	private int batchCount;
+
+	/**
+	 * Instance variable that stores the amount of added games.
+	 */
+	private long gamesCount;
+
+	/**
+	 * Instance variable that stores the amount of written positions.
+	 */
+	private long positionsCount;
+
+	/**
+	 * Instance variable that stores the amount of written postings.
+	 */
+	private long postingsCount;
+
+	/**
+	 * Instance variable that stores the first failure of a worker, null while
+	 * all workers succeeded.
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Another constructor for class PositionIndexBuilder.
+	 *
+	 * Creates a new builder of the index with the given name in the given
+	 * directory with the default buffer size and one worker per processor.
+	 *
+	 * @param directory the directory of the index, which is created if needed
+	 * @param name the base name of the index files
+	 * @throws IOException if the directory can not be created
+	 * @throws IllegalArgumentException if given directory or name is null
+	 */
+	public PositionIndexBuilder(final File directory, final String name) throws IOException {
+		this(directory, name, Runtime.getRuntime().availableProcessors(), DEFAULT_RUN_POSTINGS);
+	}
+
+	/**
+	 * Another constructor for class PositionIndexBuilder.
+	 *
+	 * @param directory the directory of the index, which is created if needed
+	 * @param name the base name of the index files
+	 * @param threads the amount of worker threads
+	 * @param runPostings the amount of postings a buffer holds before it is
+	 *                    written to a run
+	 * @throws IOException if the directory can not be created
+	 * @throws IllegalArgumentException if given directory or name is null or
+	 *                                  given amounts are not positive
+	 */
+	public PositionIndexBuilder(final File directory, final String name, final int threads,
+			final int runPostings) throws IOException {
+		if (directory == null || name == null) {
+			throw new IllegalArgumentException("Given directory and name can not be null!");
+		}
+		if (threads <= 0 || runPostings <= 0) {
+			throw new IllegalArgumentException("Given threads and run postings must be positive!");
+		}
+		Files.createDirectories(directory.toPath());
+		this.directory = directory;
+		this.name = name;
+		this.workers = GameScheduler.newExecutor("position-index", threads);
+		this.pendingBatches = new Semaphore(2 * threads);
+		this.freeBuffers = new ArrayBlockingQueue<RunBuffer>(threads);
+		this.buffers = new ArrayList<RunBuffer>(threads);
+		for (int i = 0; i < threads; i++) {
+			RunBuffer buffer = new RunBuffer(runPostings);
+			buffers.add(buffer);
+			freeBuffers.add(buffer);
+		}
+		this.runFiles = new ArrayList<File>();
+		this.batchIds = new long[BATCH_GAMES];
+		this.batchRecords = new GameRecord[BATCH_GAMES];
+	}
+
+	/**
+	 * Adds a game.
+	 *
+	 * Adds the given game to the current batch, which is handed to the workers
+	 * once it is full. Waits while the workers are busy with enough batches.
+	 *
+	 * @param id the id of the game, which must be below 2^46
+	 * @param record the record of the game
+	 * @throws IOException if a worker failed to write a run
+	 * @throws IllegalArgumentException if given id is negative or too big or
+	 *                                  given record is null
+	 */
+	public void add(final long id, final GameRecord record) throws IOException {
+		if (id < 0 || id > ID_MASK) {
+			throw new IllegalArgumentException("Given id must be between zero and 2^46!");
+		}
+		if (record == null) {
+			throw new IllegalArgumentException("Given record can not be null!");
+		}
+		checkFailure();
+		batchIds[batchCount] = id;
+		batchRecords[batchCount] = record;
+		batchCount++;
+		gamesCount++;
+		if (batchCount == BATCH_GAMES) {
+			submitBatch();
+		}
+	}
+
+	/**
+	 * Hands the current batch to the workers.
+	 *
+	 * @throws IOException if the builder was interrupted
+	 */
+	private void submitBatch() throws IOException {
+		final long[] ids = batchIds;
+		final GameRecord[] records = batchRecords;
+		final int count = batchCount;
+		this.batchIds = new long[BATCH_GAMES];
+		this.batchRecords = new GameRecord[BATCH_GAMES];
+		this.batchCount = 0;
+		try {
+			pendingBatches.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Building the position index was interrupted!", e);
+		}
+		workers.execute(() -> {
+			try {
+				RunBuffer buffer = freeBuffers.take();
+				try {
+					for (int i = 0; i < count; i++) {
+						replay(ids[i], records[i], buffer);
+					}
+				} finally {
+					freeBuffers.add(buffer);
+				}
+			} catch (IOException e) {
+				if (failure == null) {
+					this.failure = e;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				pendingBatches.release();
+			}
+		});
+	}
+
+	/**
+	 * Replays a game.
+	 *
+	 * Adds one posting for every position the given game passes through, the
+	 * empty one included, to the given buffer.
+	 *
+	 * @param id the id of the game
+	 * @param record the record of the game
+	 * @param buffer the buffer of the worker
+	 * @throws IOException if a full buffer can not be written to a run
+	 */
+	private void replay(final long id, final GameRecord record, final RunBuffer buffer) throws IOException {
+		int rowsCount = record.getSize().getRowsCount();
+		int columnsCount = record.getSize().getColumnsCount();
+		Symmetries symmetries = Symmetries.get(
+				Lines.mnk(rowsCount, columnsCount, record.getRules().getWinLength(record.getSize())));
+		long sizeKey = Zobrist.getSizeKey(rowsCount, columnsCount);
+		long value = (long) encodeOutcome(record) << OUTCOME_SHIFT
+				| (long) record.getMovesCount() << MOVES_SHIFT | id;
+		long[] hashes = buffer.getHashes(symmetries.getCount());
+		buffer.add(sizeKey, value, this);
+		for (int move = 0; move < record.getMovesCount(); move++) {
+			int cell = record.getMove(move);
+			int side = record.getSide(move);
+			int canonicalSymmetry = 0;
+			for (int symmetry = 0; symmetry < hashes.length; symmetry++) {
+				hashes[symmetry] ^= Zobrist.getCellKey(symmetries.mapCell(symmetry, cell), side);
+				if (Long.compareUnsigned(hashes[symmetry], hashes[canonicalSymmetry]) < 0) {
+					canonicalSymmetry = symmetry;
+				}
+			}
+			buffer.add(sizeKey ^ hashes[canonicalSymmetry], value, this);
+		}
+	}
+
+	/**
+	 * Encodes the outcome of a game.
+	 *
+	 * @param record the record of the game
+	 * @return the encoded outcome of the game
+	 */
+	private static int encodeOutcome(final GameRecord record) {
+		if (record.getGameState() == GameState.WON) {
+			return OUTCOME_DRAW + 1 + record.getWinnerSide();
+		}
+		return record.getGameState() == GameState.DRAW ? OUTCOME_DRAW : OUTCOME_UNFINISHED;
+	}
+
+	/**
+	 * Writes the postings of a buffer to a new run.
+	 *
+	 * Sorts the postings of the given buffer by their unsigned hashes and
+	 * writes them to a new run file.
+	 *
+	 * @param buffer the buffer to write
+	 * @throws IOException if the run can not be written
+	 */
+	private void writeRun(final RunBuffer buffer) throws IOException {
+		if (buffer.count == 0) {
+			return;
+		}
+		buffer.sort();
+		File runFile;
+		synchronized (runFiles) {
+			runFile = new File(directory, name + RUN_EXTENSION + runsCount++);
+			runFiles.add(runFile);
+		}
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(runFile), STREAM_BUFFER_BYTES))) {
+			for (int i = 0; i < buffer.count; i++) {
+				out.writeLong(buffer.hashes[i]);
+				out.writeLong(buffer.values[i]);
+			}
+		}
+		buffer.count = 0;
+	}
+
+	/**
+	 * Finishes the index.
+	 *
+	 * Waits for the workers to replay all added games, writes the rest of the
+	 * buffers to runs and merges all runs into the files of the index, which
+	 * replace the files of an index built before. The runs are deleted
+	 * afterwards.
+	 *
+	 * @throws IOException if a run or the index can not be written
+	 */
+	public void finish() throws IOException {
+		if (batchCount > 0) {
+			submitBatch();
+		}
+		workers.shutdown();
+		try {
+			while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+				// Wait for the last batches
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Building the position index was interrupted!", e);
+		}
+		checkFailure();
+		for (RunBuffer buffer : buffers) {
+			writeRun(buffer);
+		}
+		buffers.clear();
+		freeBuffers.clear();
+		try {
+			merge();
+		} finally {
+			deleteRuns();
+		}
+	}
+
+	/**
+	 * Merges all runs into the files of the index.
+	 *
+	 * @throws IOException if a run can not be read or the index can not be
+	 *                     written
+	 */
+	private void merge() throws IOException {
+		File keysFile = getFile(PositionIndex.KEYS_EXTENSION + TEMPORARY_EXTENSION);
+		File postingsFile = getFile(PositionIndex.POSTINGS_EXTENSION + TEMPORARY_EXTENSION);
+		File fencesFile = getFile(PositionIndex.FENCES_EXTENSION + TEMPORARY_EXTENSION);
+		PriorityQueue<RunCursor> cursors = new PriorityQueue<RunCursor>(Math.max(1, runFiles.size()),
+				(first, second) -> Long.compareUnsigned(first.hash, second.hash));
+		try (DataOutputStream keys = openOutput(keysFile);
+				DataOutputStream postings = openOutput(postingsFile);
+				DataOutputStream fences = openOutput(fencesFile)) {
+			keys.write(PositionIndex.MAGIC);
+			keys.write(new byte[] { PositionIndex.VERSION, 0, 0, 0 });
+			keys.writeLong(0);
+			for (File runFile : runFiles) {
+				RunCursor cursor = new RunCursor(runFile);
+				if (cursor.next()) {
+					cursors.add(cursor);
+				} else {
+					cursor.close();
+				}
+			}
+			PositionWriter writer = new PositionWriter(keys, postings, fences);
+			while (!cursors.isEmpty()) {
+				RunCursor cursor = cursors.poll();
+				writer.add(cursor.hash, cursor.value);
+				if (cursor.next()) {
+					cursors.add(cursor);
+				} else {
+					cursor.close();
+				}
+			}
+			writer.finish();
+		} finally {
+			for (RunCursor cursor : cursors) {
+				cursor.close();
+			}
+		}
+		try (RandomAccessFile keys = new RandomAccessFile(keysFile, "rw")) {
+			keys.seek(8);
+			keys.writeLong(positionsCount);
+			keys.getFD().sync();
+		}
+		Files.move(postingsFile.toPath(), getFile(PositionIndex.POSTINGS_EXTENSION).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Files.move(fencesFile.toPath(), getFile(PositionIndex.FENCES_EXTENSION).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Files.move(keysFile.toPath(), getFile(PositionIndex.KEYS_EXTENSION).toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Opens a buffered output stream.
+	 *
+	 * @param file the file to write
+	 * @return the stream writing the given file
+	 * @throws IOException if the file can not be created
+	 */
+	private static DataOutputStream openOutput(final File file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), STREAM_BUFFER_BYTES));
+	}
+
+	/**
+	 * Gets a file of the index.
+	 *
+	 * @param extension the file name extension
+	 * @return the file with the given extension in the directory of the index
+	 */
+	private File getFile(final String extension) {
+		return new File(directory, name + extension);
+	}
+
+	/**
+	 * Deletes all runs.
+	 */
+	private void deleteRuns() {
+		synchronized (runFiles) {
+			for (File runFile : runFiles) {
+				runFile.delete();
+			}
+			runFiles.clear();
+		}
+	}
+
+	/**
+	 * Throws the failure of a worker if there was one.
+	 *
+	 * @throws IOException if a worker failed to write a run
+	 */
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw new IOException("Position index run could not be written!", failure);
+		}
+	}
+
+	/**
+	 * Gets the amount of added games.
+	 *
+	 * @return the amount of games added so far
+	 */
+	public /* @ pure @ */ long getGamesCount() {
+		return gamesCount;
+	}
+
+	/**
+	 * Gets the amount of positions.
+	 *
+	 * @return the amount of distinct positions written by {@link #finish()}
+	 */
+	public /* @ pure @ */ long getPositionsCount() {
+		return positionsCount;
+	}
+
+	/**
+	 * Gets the amount of postings.
+	 *
+	 * @return the amount of game ids written by {@link #finish()}
+	 */
+	public /* @ pure @ */ long getPostingsCount() {
+		return postingsCount;
+	}
+
+	/**
+	 * Gets the amount of runs.
+	 *
+	 * @return the amount of runs written so far
+	 */
+	public int getRunsCount() {
+		synchronized (runFiles) {
+			return runsCount;
+		}
+	}
+
+	/**
+	 * Closes this builder.
+	 *
+	 * Stops the workers and deletes all runs, so an unfinished index leaves
+	 * nothing behind.
+	 */
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		workers.shutdownNow();
+		try {
+			workers.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		deleteRuns();
+	}
+
+	/**
+	 * Class representing the buffer of postings of a worker.
+	 */
+	private static final class RunBuffer {
+
+		/**
+		 * Instance variable that stores the hashes of the postings.
+		 */
+		private final long[] hashes;
+
+		/**
+		 * Instance variable that stores the values of the postings, the game id
+		 * in the lowest bits, the amount of moves of the game and the outcome in
+		 * the two highest bits.
+		 */
+		private final long[] values;
+
+		/**
+		 * Instance variable that stores the amount of postings.
+		 */
+		private int count;
+
+		/**
+		 * Instance variable that stores the hash of the replayed position under
+		 * every symmetry.
+		 */
+		private long[] symmetryHashes;
+
+		/**
+		 * Another constructor for class RunBuffer.
+		 *
+		 * @param capacity the amount of postings the buffer holds
+		 */
+		private RunBuffer(final int capacity) {
+			this.hashes = new long[capacity];
+			this.values = new long[capacity];
+			this.symmetryHashes = new long[0];
+		}
+
+		/**
+		 * Gets the hashes of the empty position under all symmetries.
+		 *
+		 * @param symmetriesCount the amount of symmetries
+		 * @return the cleared hashes of the replayed position under every
+		 *         symmetry without the size key
+		 */
+		private long[] getHashes(final int symmetriesCount) {
+			if (symmetryHashes.length != symmetriesCount) {
+				this.symmetryHashes = new long[symmetriesCount];
+			}
+			Arrays.fill(symmetryHashes, 0);
+			return symmetryHashes;
+		}
+
+		/**
+		 * Adds a posting.
+		 *
+		 * @param hash the hash of the canonical position
+		 * @param value the game id, length and outcome
+		 * @param builder the builder writing the buffer to a run once it is
+		 *                full
+		 * @throws IOException if the full buffer can not be written
+		 */
+		private void add(final long hash, final long value, final PositionIndexBuilder builder)
+				throws IOException {
+			if (count == hashes.length) {
+				builder.writeRun(this);
+			}
+			hashes[count] = hash;
+			values[count] = value;
+			count++;
+		}
+
+		/**
+		 * Sorts the postings by their unsigned hashes.
+		 *
+		 * Sorts the postings with a least significant digit radix sort of four
+		 * passes of sixteen bits, which ends in the arrays of this buffer again.
+		 */
+		private void sort() {
+			long[] sourceHashes = hashes;
+			long[] sourceValues = values;
+			long[] targetHashes = new long[count];
+			long[] targetValues = new long[count];
+			int[] offsets = new int[1 << 16];
+			for (int shift = 0; shift < Long.SIZE; shift += 16) {
+				Arrays.fill(offsets, 0);
+				for (int i = 0; i < count; i++) {
+					offsets[(int) (sourceHashes[i] >>> shift) & 0xFFFF]++;
+				}
+				int offset = 0;
+				for (int digit = 0; digit < offsets.length; digit++) {
+					int digitCount = offsets[digit];
+					offsets[digit] = offset;
+					offset += digitCount;
+				}
+				for (int i = 0; i < count; i++) {
+					int target = offsets[(int) (sourceHashes[i] >>> shift) & 0xFFFF]++;
+					targetHashes[target] = sourceHashes[i];
+					targetValues[target] = sourceValues[i];
+				}
+				long[] swap = sourceHashes;
+				sourceHashes = targetHashes;
+				targetHashes = swap;
+				swap = sourceValues;
+				sourceValues = targetValues;
+				targetValues = swap;
+			}
+		}
+
+	}
+
+	/**
+	 * Class representing a cursor reading the postings of a run.
+	 */
+	private static final class RunCursor implements Closeable {
+
+		/**
+		 * Instance variable that stores the stream of the run.
+		 */
+		private final DataInputStream in;
+
+		/**
+		 * Instance variable that stores the hash of the current posting.
+		 */
+		private long hash;
+
+		/**
+		 * Instance variable that stores the value of the current posting.
+		 */
+		private long value;
+
+		/**
+		 * Another constructor for class RunCursor.
+		 *
+		 * @param runFile the run to read
+		 * @throws IOException if the run can not be opened
+		 */
+		private RunCursor(final File runFile) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), STREAM_BUFFER_BYTES));
+		}
+
+		/**
+		 * Reads the next posting.
+		 *
+		 * @return whether there was another posting
+		 * @throws IOException if the run can not be read
+		 */
+		private boolean next() throws IOException {
+			try {
+				this.hash = in.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			this.value = in.readLong();
+			return true;
+		}
+
+		/*
+		 * @see java.io.Closeable#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+	}
+
+	/**
+	 * Class writing the merged postings as positions of the index.
+	 */
+	private final class PositionWriter {
+
+		/**
+		 * Instance variable that stores the stream of the keys file.
+		 */
+		private final DataOutputStream keys;
+
+		/**
+		 * Instance variable that stores the stream of the postings file.
+		 */
+		private final DataOutputStream postings;
+
+		/**
+		 * Instance variable that stores the stream of the fences file.
+		 */
+		private final DataOutputStream fences;
+
+		/**
+		 * Instance variable that stores the game ids of the current position.
+		 */
+		private long[] ids;
+
+		/**
+		 * Instance variable that stores the counts of every outcome of the
+		 * current position.
+		 */
+		private final int[] outcomeCounts;
+
+		/**
+		 * Instance variable that stores the sum of the amounts of moves of the
+		 * games of the current position.
+		 */
+		private long movesCount;
+
+		/**
+		 * Instance variable that stores the hash of the current position.
+		 */
+		private long hash;
+
+		/**
+		 * Instance variable that stores the amount of games of the current
+		 * position.
+		 */
+		private int count;
+
+		/**
+		 * Another constructor for class PositionWriter.
+		 *
+		 * @param keys the stream of the keys file
+		 * @param postings the stream of the postings file
+		 * @param fences the stream of the fences file
+		 */
+		private PositionWriter(final DataOutputStream keys, final DataOutputStream postings,
+				final DataOutputStream fences) {
+			this.keys = keys;
+			this.postings = postings;
+			this.fences = fences;
+			this.ids = new long[BATCH_GAMES];
+			this.outcomeCounts = new int[OUTCOME_DRAW + 1 + Board.SIDES];
+		}
+
+		/**
+		 * Adds a posting in the order of the hashes.
+		 *
+		 * @param postingHash the hash of the posting
+		 * @param value the game id, length and outcome of the posting
+		 * @throws IOException if the previous position can not be written
+		 */
+		private void add(final long postingHash, final long value) throws IOException {
+			if (count > 0 && postingHash != hash) {
+				writePosition();
+			}
+			this.hash = postingHash;
+			if (count == ids.length) {
+				this.ids = Arrays.copyOf(ids, ids.length * 2);
+			}
+			ids[count++] = value & ID_MASK;
+			movesCount += (value >>> MOVES_SHIFT) & 0xFFFF;
+			outcomeCounts[(int) (value >>> OUTCOME_SHIFT)]++;
+		}
+
+		/**
+		 * Writes the last position.
+		 *
+		 * @throws IOException if the position can not be written
+		 */
+		private void finish() throws IOException {
+			if (count > 0) {
+				writePosition();
+			}
+		}
+
+		/**
+		 * Writes the current position.
+		 *
+		 * Writes the sorted game ids of the current position to the postings
+		 * file, its entry to the keys file and, at the start of a block, its
+		 * hash to the fences file.
+		 *
+		 * @throws IOException if the position can not be written
+		 */
+		private void writePosition() throws IOException {
+			Arrays.sort(ids, 0, count);
+			if (positionsCount % PositionIndex.FENCE_INTERVAL == 0) {
+				fences.writeLong(hash);
+			}
+			keys.writeLong(hash);
+			keys.writeLong(postingsCount);
+			keys.writeLong(movesCount);
+			keys.writeInt(count);
+			keys.writeInt(outcomeCounts[OUTCOME_DRAW]);
+			keys.writeInt(outcomeCounts[OUTCOME_DRAW + 1]);
+			keys.writeInt(outcomeCounts[OUTCOME_DRAW + 2]);
+			for (int i = 0; i < count; i++) {
+				postings.writeLong(ids[i]);
+			}
+			positionsCount++;
+			postingsCount += count;
+			this.count = 0;
+			this.movesCount = 0;
+			Arrays.fill(outcomeCounts, 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,136 @@
+package de.sengerts.tictactoe.record;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import de.sengerts.tictactoe.logic.GameLogic;
+import de.sengerts.tictactoe.logic.GameSnapshot;
+
+/**
+ * Immutable class representing a running tic tac toe game saved to continue
+ * it later.
+ *
+ * A saved game consists of the snapshot of the game ({@link GameSnapshot}),
+ * from which a new {@link GameLogic} continues the game without replaying a
+ * single move, and the record of the moves made so far ({@link GameRecord}),
+ * from which the recorder of the continued game goes on
+ * ({@link GameRecorder#GameRecorder(GameLogic, GameRecord)}). Both are
+ * encoded behind a short header into a few dozen bytes, which are written and
+ * read at once.
+ *
+ * @author Tobias Senger
+ */
+public final class SavedGame {
+
+	/**
+	 * Class variable that stores the bytes every saved game starts with.
+	 */
+	private static final byte[] MAGIC = { 'T', 'T', 'T', 'S' };
+
+	/**
+	 * Class variable that stores the version of the encoding.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Instance variable that stores the snapshot of the game.
+	 */
+	private final GameSnapshot snapshot;
+
+	/**
+	 * Instance variable that stores the record of the moves made so far.
+	 */
+	private final GameRecord record;
+
+	/**
+	 * Another constructor for class SavedGame.
+	 *
+	 * @param snapshot the snapshot of the game
+	 * @param record the record of the moves made so far, which must be
+	 *               unfinished and hold as many moves as the snapshot has
+	 *               marked cells
+	 * @throws IllegalArgumentException if given snapshot or record is null or
+	 *                                  they do not describe the same game
+	 */
+	public SavedGame(final GameSnapshot snapshot, final GameRecord record) {
+		if (snapshot == null || record == null) {
+			throw new IllegalArgumentException("Given snapshot and record can not be null!");
+		}
+		if (!record.getSize().equals(snapshot.getSize()) || !record.getRules().equals(snapshot.getRules())
+				|| record.getMovesCount() != snapshot.getBoard().getMarkedCount()) {
+			throw new IllegalArgumentException("Given snapshot and record do not describe the same game!");
+		}
+		this.snapshot = snapshot;
+		this.record = record;
+	}
+
+	/**
+	 * Encodes this saved game.
+	 *
+	 * @return the header followed by the encoded snapshot and record
+	 */
+	public byte[] toBytes() {
+		byte[] snapshotBytes = snapshot.toBytes();
+		ByteBuffer out = ByteBuffer.allocate(MAGIC.length + 1 + snapshotBytes.length + record.getMaxBytes());
+		out.put(MAGIC);
+		out.put((byte) VERSION);
+		out.put(snapshotBytes);
+		record.write(out);
+		byte[] bytes = new byte[out.position()];
+		out.flip();
+		out.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Decodes a saved game.
+	 *
+	 * @param bytes the bytes returned by {@link #toBytes()}
+	 * @return the decoded saved game
+	 * @throws IllegalArgumentException if the bytes are not a valid saved game
+	 *                                  of a known version
+	 */
+	public static SavedGame fromBytes(final byte[] bytes) {
+		if (bytes == null) {
+			throw new IllegalArgumentException("Given bytes can not be null!");
+		}
+		ByteBuffer in = ByteBuffer.wrap(bytes);
+		try {
+			for (byte magic : MAGIC) {
+				if (in.get() != magic) {
+					throw new IllegalArgumentException("Given bytes are not a saved game!");
+				}
+			}
+			if ((in.get() & 0xFF) != VERSION) {
+				throw new IllegalArgumentException("Given saved game has an unknown version!");
+			}
+			GameSnapshot snapshot = GameSnapshot.read(in);
+			GameRecord record = GameRecord.read(in);
+			if (in.hasRemaining()) {
+				throw new IllegalArgumentException("Given saved game is longer than its content!");
+			}
+			return new SavedGame(snapshot, record);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Given saved game is truncated!", e);
+		}
+	}
+
+	/**
+	 * Gets the snapshot.
+	 *
+	 * @return the snapshot of the game
+	 */
+	public /* @ pure @ */ GameSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Gets the record.
+	 *
+	 * @return the record of the moves made so far
+	 */
+	public /* @ pure @ */ GameRecord getRecord() {
+		return record;
+	}
+
+}
@@ -1,25 +1,45 @@
 package de.sengerts.tictactoe.ui;
 
+import java.io.File;
+import java.io.IOException;
+
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.Scaling;
 import com.badlogic.gdx.utils.ScreenUtils;
 import com.badlogic.gdx.utils.viewport.Viewport;
 
+import de.sengerts.tictactoe.engine.OpeningBook;
+import de.sengerts.tictactoe.engine.Tablebase;
 import de.sengerts.tictactoe.logic.GameLogic;
+import de.sengerts.tictactoe.logic.GameLoop;
+import de.sengerts.tictactoe.logic.GameScheduler;
+import de.sengerts.tictactoe.logic.GameSnapshot;
+import de.sengerts.tictactoe.model.players.ai.SearchAIEngine;
 import de.sengerts.tictactoe.model.settings.AIDifficulty;
 import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
+import de.sengerts.tictactoe.record.GameRecordWriter;
+import de.sengerts.tictactoe.record.GameRecorder;
+import de.sengerts.tictactoe.record.GameReplay;
+import de.sengerts.tictactoe.record.OpeningExplorer;
+import de.sengerts.tictactoe.record.PositionIndex;
+import de.sengerts.tictactoe.record.SavedGame;
 import de.sengerts.tictactoe.ui.screens.EndScreen;
 import de.sengerts.tictactoe.ui.screens.LoadingScreen;
 import de.sengerts.tictactoe.ui.screens.OptionsScreen;
 import de.sengerts.tictactoe.ui.screens.PlayScreen;
+import de.sengerts.tictactoe.ui.screens.ReplayScreen;
 import de.sengerts.tictactoe.ui.screens.TitleScreen;
 
 /**
@@ -37,6 +57,40 @@ public class TicTacToeGame extends Game {
 	 * Class variable that stores this game's UI's menu height in pixels.
 	 */
 	public static final int MENU_HEIGHT = 900;
+	/**
+	 * Class variable that stores the path of the local file all ended games
+	 * are recorded in.
+	 */
+	public static final String GAME_RECORDS_PATH = "records/games.tttr";
+	/**
+	 * Class variable that stores the path of the local file the running game
+	 * is saved to when this game is paused or exited.
+	 */
+	public static final String SAVED_GAME_PATH = "saves/game.tttg";
+
+	/**
+	 * Class variable that stores the local path of the game database whose
+	 * position index is explored while playing.
+	 */
+	public static final String DATABASE_PATH = "database";
+
+	/**
+	 * Class variable that stores the local path of the opening book of the
+	 * AI players.
+	 */
+	public static final String OPENING_BOOK_PATH = "books/opening.tttb";
+
+	/**
+	 * Class variable that stores the local path of the directory of the
+	 * tablebases of the AI players.
+	 */
+	public static final String TABLEBASES_PATH = "tablebases";
+
+	/**
+	 * Class variable that stores the local path of the directory whose
+	 * files back the transposition tables of the AI players, if it exists.
+	 */
+	public static final String TABLES_PATH = "tables";
 
 	/**
 	 * Instance variable that stores this game's territory size.
@@ -50,6 +104,10 @@ public class TicTacToeGame extends Game {
 	 * Instance variable that stores this game's AI difficulty.
 	 */
 	private AIDifficulty aiDifficulty;
+	/**
+	 * Instance variable that stores this game's optional rules.
+	 */
+	private GameRules rules;
 	
 	// Asset management and rendering
 	/**
@@ -69,14 +127,35 @@ public class TicTacToeGame extends Game {
 	 * Instance variable that stores the game logic of this game.
 	 */
 	private GameLogic gameLogic;
+	/**
+	 * Instance variable that stores the game loop executing all changes of this
+	 * game's game logic on the render thread.
+	 */
+	private GameLoop gameLoop;
+	/**
+	 * Instance variable that stores the recorder of the moves of this game's
+	 * game logic.
+	 */
+	private GameRecorder gameRecorder;
+	/**
+	 * Instance variable that stores the game saved when this game was last
+	 * exited, null if there is none or it has already been resumed.
+	 */
+	private SavedGame savedGame;
+	/**
+	 * Instance variable that stores the opening explorer of the local game
+	 * database or null if there is none.
+	 */
+	private OpeningExplorer openingExplorer;
 
 	/**
 	 * Creates this game.
 	 * 
 	 * Creates this game by first initiliazing the territory size,
-	 * the AI difficulty, asset manager and shape renderer and whether
-	 * this is a game against an AI player before setting the loading
-	 * screen.
+	 * the AI difficulty, the rules, game loop, asset manager and shape renderer and
+	 * whether this is a game against an AI player, reading the saved game,
+	 * opening the opening explorer and loading the opening book before
+	 * resuming the saved game or, if there is none, setting the loading screen.
 	 */
 	/*
 	 * (non-Javadoc)
@@ -87,10 +166,21 @@ public class TicTacToeGame extends Game {
 		this.territorySize = new Dimension(3, 3);
 		this.aiOpponent = true;
 		this.aiDifficulty = AIDifficulty.MEDIUM;
+		this.rules = GameRules.CLASSIC;
+		this.gameLoop = new GameLoop();
 		this.assetManager = new AssetManager();
 		this.shapeRenderer = new ShapeRenderer();
+		this.savedGame = readSavedGame();
+		this.openingExplorer = openOpeningExplorer();
+		loadOpeningBook();
+		loadTablebases();
+		if (Gdx.files.local(TABLES_PATH).isDirectory()) {
+			SearchAIEngine.setTableDirectory(Gdx.files.local(TABLES_PATH).file());
+		}
 		
-		setLoadingScreen();
+		if (!resumeSavedGame()) {
+			setLoadingScreen();
+		}
 	}
 
 	/**
@@ -168,30 +258,129 @@ public class TicTacToeGame extends Game {
 	/**
 	 * Sets the play screen.
 	 * 
-	 * Sets the play screen by setting the current screen of this
-	 * game to a new play screen.
+	 * Sets the play screen by disposing the previous game logic, creating
+	 * a new one and setting the current screen of this game to a new play screen.
 	 */
 	public void setPlayScreen() {
-		this.gameLogic = new GameLogic(getTerritorySize(), isAiOpponent(), getAiDifficulty());
+		if (gameLogic != null) {
+			gameLogic.dispose();
+		}
+		this.gameLogic = new GameLogic(getTerritorySize(), isAiOpponent(), getAiDifficulty(), getRules(), gameLoop);
+		this.gameRecorder = new GameRecorder(gameLogic);
 		
 		PlayScreen playScreen = new PlayScreen(this);
 		// new TransitionScreen(this, getScreen(), playScreen)
 		setScreen(playScreen);
 	}
 
+	/**
+	 * Resumes the saved game.
+	 * 
+	 * Resumes the game saved when this game was last exited by continuing
+	 * it from its snapshot, without replaying its moves, and setting the
+	 * current screen of this game to a new play screen right away. The
+	 * settings of this game are taken from the resumed game.
+	 * 
+	 * The loading screen is skipped: if the skin has not been loaded yet,
+	 * the play screen gets a skin of the texture atlas only, which holds
+	 * all regions it draws, and the fonts of the full skin are generated
+	 * by the loading screen once the resumed game has ended.
+	 * 
+	 * @return whether there was a saved game that has been resumed
+	 */
+	public boolean resumeSavedGame() {
+		if (savedGame == null) {
+			return false;
+		}
+		GameSnapshot snapshot = savedGame.getSnapshot();
+		GameLogic resumedGameLogic;
+		try {
+			resumedGameLogic = new GameLogic(snapshot, gameLoop, GameScheduler.getSharedExecutor());
+		} catch (IllegalArgumentException e) {
+			Gdx.app.error("TicTacToeGame", "Saved game could not be resumed!", e);
+			this.savedGame = null;
+			return false;
+		}
+		if (gameLogic != null) {
+			gameLogic.dispose();
+		}
+		this.gameLogic = resumedGameLogic;
+		this.gameRecorder = new GameRecorder(gameLogic, savedGame.getRecord());
+		this.savedGame = null;
+		this.territorySize = snapshot.getSize();
+		this.aiOpponent = snapshot.isAiOpponent();
+		if (snapshot.getAiDifficulty() != null) {
+			this.aiDifficulty = snapshot.getAiDifficulty();
+		}
+		this.rules = snapshot.getRules();
+		if (skin == null) {
+			this.skin = loadAtlasSkin();
+		}
+		
+		PlayScreen playScreen = new PlayScreen(this);
+		setScreen(playScreen);
+		return true;
+	}
+
 	/**
 	 * Sets the end screen.
 	 * 
-	 * Sets the end screen by setting the current screen of this
-	 * game to a new end screen.
+	 * Sets the end screen by taking a screenshot and a record of the
+	 * ended game and setting the current screen of this game to a new
+	 * end screen. If only the atlas of the skin has been loaded for a
+	 * resumed game, the loading screen loads the full skin first.
 	 */
 	public void setEndScreen() {
 		takeEndMapScreenshot();
+		writeGameRecord();
+		if (!assetManager.isLoaded("uiskin/uiskin.json")) {
+			setScreen(new LoadingScreen(this, this::showEndScreen));
+			return;
+		}
+		showEndScreen();
+	}
+
+	/**
+	 * Shows the end screen.
+	 * 
+	 * Shows the end screen by setting the current screen of this game
+	 * to a new end screen.
+	 */
+	private void showEndScreen() {
 		EndScreen endScreen = new EndScreen(this);
 		// new TransitionScreen(this, getScreen(), endScreen)
 		setScreen(endScreen);
 	}
 
+	/**
+	 * Pauses this game.
+	 * 
+	 * Pauses this game by pausing the current screen and saving the
+	 * running game, so it can be resumed on the next launch. The desktop
+	 * backend pauses this game before exiting as well.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Game#pause()
+	 */
+	@Override
+	public void pause() {
+		super.pause();
+		saveGame();
+	}
+
+	/**
+	 * Sets the replay screen.
+	 * 
+	 * Sets the replay screen by taking a record of the ended game and
+	 * setting the current screen of this game to a new replay screen
+	 * replaying the record.
+	 */
+	public void setReplayScreen() {
+		ReplayScreen replayScreen = new ReplayScreen(this, new GameReplay(gameRecorder.toRecord()));
+		setScreen(replayScreen);
+	}
+
 	/**
 	 * Exits this game.
 	 * 
@@ -225,11 +414,146 @@ public class TicTacToeGame extends Game {
 		pixmap.dispose();
 	}
 
+	/**
+	 * Writes the record of the game.
+	 * 
+	 * Writes the record of the ended game by appending it to the local
+	 * game records file, which gets the header of the format when it is
+	 * created.
+	 */
+	private void writeGameRecord() {
+		FileHandle recordsFile = Gdx.files.local(GAME_RECORDS_PATH);
+		boolean newFile = !recordsFile.exists() || recordsFile.length() == 0;
+		try (GameRecordWriter writer = new GameRecordWriter(recordsFile.write(true), newFile)) {
+			writer.write(gameRecorder.toRecord());
+		} catch (IOException e) {
+			Gdx.app.error("TicTacToeGame", "Game record could not be written!", e);
+		}
+	}
+
+	/**
+	 * Saves the running game.
+	 * 
+	 * Saves the snapshot and the record so far of the running game to the
+	 * local saved game file, which is deleted if no game is running.
+	 */
+	private void saveGame() {
+		FileHandle savedGameFile = Gdx.files.local(SAVED_GAME_PATH);
+		try {
+			if (getScreen() instanceof PlayScreen && gameLogic != null && !gameLogic.isEnded()) {
+				SavedGame runningGame = new SavedGame(gameLogic.snapshot(), gameRecorder.toRecord());
+				savedGameFile.writeBytes(runningGame.toBytes(), false);
+			} else if (savedGameFile.exists()) {
+				savedGameFile.delete();
+			}
+		} catch (GdxRuntimeException e) {
+			Gdx.app.error("TicTacToeGame", "Game could not be saved!", e);
+		}
+	}
+
+	/**
+	 * Reads the saved game.
+	 * 
+	 * Reads the game saved to the local saved game file and deletes the
+	 * file, so a game is only resumed once.
+	 * 
+	 * @return the saved game or null if there is none or it is invalid
+	 */
+	private SavedGame readSavedGame() {
+		FileHandle savedGameFile = Gdx.files.local(SAVED_GAME_PATH);
+		if (!savedGameFile.exists()) {
+			return null;
+		}
+		try {
+			return SavedGame.fromBytes(savedGameFile.readBytes());
+		} catch (GdxRuntimeException | IllegalArgumentException e) {
+			Gdx.app.error("TicTacToeGame", "Saved game could not be read!", e);
+			return null;
+		} finally {
+			savedGameFile.delete();
+		}
+	}
+
+	/**
+	 * Loads a skin of the texture atlas of the UI skin.
+	 * 
+	 * Loads the texture atlas of the UI skin with the asset manager and
+	 * creates a skin of its regions, which holds the tiles and player signs
+	 * drawn by the play screen, without generating any of the fonts the
+	 * full skin needs.
+	 * 
+	 * @return the skin of the regions of the texture atlas
+	 */
+	private Skin loadAtlasSkin() {
+		assetManager.load("uiskin/uiskin.atlas", TextureAtlas.class);
+		assetManager.finishLoadingAsset("uiskin/uiskin.atlas");
+		return new Skin(assetManager.get("uiskin/uiskin.atlas", TextureAtlas.class));
+	}
+
+	/**
+	 * Opens the opening explorer.
+	 * 
+	 * Opens the position index of the local game database, which is built
+	 * by importing games into it, for an opening explorer.
+	 * 
+	 * @return the opening explorer or null if there is no index or it is
+	 *         invalid
+	 */
+	private OpeningExplorer openOpeningExplorer() {
+		File databaseDirectory = Gdx.files.local(DATABASE_PATH).file();
+		if (!new File(databaseDirectory, PositionIndex.DEFAULT_NAME + PositionIndex.KEYS_EXTENSION).exists()) {
+			return null;
+		}
+		try {
+			return new OpeningExplorer(new PositionIndex(databaseDirectory, PositionIndex.DEFAULT_NAME));
+		} catch (IOException e) {
+			Gdx.app.error("TicTacToeGame", "Position index could not be opened!", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Loads the opening book.
+	 * 
+	 * Maps the local opening book, which is built by the opening book
+	 * generator of the tools project, and sets it for the search AI engines.
+	 * Without a valid book the AI players search every move.
+	 */
+	private void loadOpeningBook() {
+		FileHandle bookFile = Gdx.files.local(OPENING_BOOK_PATH);
+		if (!bookFile.exists()) {
+			return;
+		}
+		try {
+			SearchAIEngine.setOpeningBook(new OpeningBook(bookFile.file()));
+		} catch (IOException e) {
+			Gdx.app.error("TicTacToeGame", "Opening book could not be loaded!", e);
+		}
+	}
+
+	/**
+	 * Loads the tablebases.
+	 * 
+	 * Maps every local tablebase, which is solved by the tablebase
+	 * generator of the tools project, and adds it to the search AI engines.
+	 * On boards without a valid tablebase the AI players search every move.
+	 */
+	private void loadTablebases() {
+		for (FileHandle tablebaseFile : Gdx.files.local(TABLEBASES_PATH).list(Tablebase.EXTENSION)) {
+			try {
+				SearchAIEngine.addTablebase(new Tablebase(tablebaseFile.file()));
+			} catch (IOException e) {
+				Gdx.app.error("TicTacToeGame", "Tablebase " + tablebaseFile.name() + " could not be loaded!", e);
+			}
+		}
+	}
+
 	/**
 	 * Renders this game.
 	 * 
-	 * Renders this game by rendering this game's
-	 * current screen.
+	 * Renders this game by first executing all pending commands of
+	 * this game's game loop, so the game logic is only ever changed on
+	 * the render thread, and then rendering this game's current screen.
 	 */
 	/*
 	 * (non-Javadoc)
@@ -237,9 +561,39 @@ public class TicTacToeGame extends Game {
 	 */
 	@Override
 	public void render() {
+		gameLoop.drain();
 		super.render();
 	}
 
+	/**
+	 * Disposes this game.
+	 * 
+	 * Disposes this game by disposing the current screen and closing
+	 * the opening explorer and the transposition tables of the AI
+	 * players, which keeps their positions for the next launch if they
+	 * are backed by files.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Game#dispose()
+	 */
+	@Override
+	public void dispose() {
+		super.dispose();
+		if (openingExplorer != null) {
+			try {
+				openingExplorer.close();
+			} catch (IOException e) {
+				Gdx.app.error("TicTacToeGame", "Position index could not be closed!", e);
+			}
+		}
+		try {
+			SearchAIEngine.closeTables();
+		} catch (IOException e) {
+			Gdx.app.error("TicTacToeGame", "Transposition tables could not be closed!", e);
+		}
+	}
+
 	/**
 	 * Gets this game's game logic.
 	 * 
@@ -252,6 +606,19 @@ public class TicTacToeGame extends Game {
 		return gameLogic;
 	}
 
+	/**
+	 * Gets this game's opening explorer.
+	 * 
+	 * Gets this game's opening explorer by retrieving the value
+	 * from the instance variable openingExplorer.
+	 * 
+	 * @return this game's opening explorer or null if there is no
+	 *         game database
+	 */
+	public OpeningExplorer getOpeningExplorer() {
+		return openingExplorer;
+	}
+
 	/**
 	 * Gets this game's UI skin.
 	 * 
@@ -375,4 +742,28 @@ public class TicTacToeGame extends Game {
 		this.aiDifficulty = aiDifficulty;
 	}
 
+	/**
+	 * Gets the rules.
+	 * 
+	 * Gets and returns the current optional rules by retrieving the
+	 * value of the instance variable rules.
+	 * 
+	 * @return the current rules
+	 */
+	public GameRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Sets this game's rules.
+	 * 
+	 * Sets the optional rules by assigning the given rules
+	 * object to the the instance variable rules.
+	 * 
+	 * @param rules the new rules to set
+	 */
+	public void setRules(GameRules rules) {
+		this.rules = rules;
+	}
+
 }
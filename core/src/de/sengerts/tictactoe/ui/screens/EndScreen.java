@@ -197,7 +197,7 @@ public class EndScreen implements Screen {
 	 * Add the main table.
 	 * 
 	 * Adds the main table for this screen by initiliazing the main
-	 * table and adding a result label, home button and exit button
+	 * table and adding a result label, replay button, home button and exit button
 	 * to the main table before adding this table as an actor to this
 	 * screen's stage.
 	 */
@@ -205,6 +205,7 @@ public class EndScreen implements Screen {
 		initMainTable();
 
 		addResultLabel();
+		addReplayButton();
 		addHomeButton();
 		addExitButton();
 
@@ -302,6 +303,27 @@ public class EndScreen implements Screen {
 		return "[" + winnerSign.getColorName() + "] PLAYER " + winner.getName() + " WON!";
 	}
 
+	/**
+	 * Adds a replay button.
+	 * 
+	 * Adds a replay button by creating a new text button with the text
+	 * "Replay" on it, with a click listener that sets this screen's game
+	 * to replay screen as soon as the button is clicked, and adding it
+	 * to the main table of this screen before adding a new row to the 
+	 * main table.
+	 */
+	private void addReplayButton() {
+		TextButton replayButton = new TextButton("Replay", ticTacToeGame.getSkin());
+		replayButton.addListener(new ClickListener() {
+			@Override
+			public void clicked(InputEvent event, float x, float y) {
+				ticTacToeGame.setReplayScreen();
+			}
+		});
+		mainTable.add(replayButton).pad(10f, 0f, 0f, 0f);
+		mainTable.row();
+	}
+
 	/**
 	 * Adds a home button.
 	 * 
@@ -55,19 +55,41 @@ public class LoadingScreen implements Screen {
 	 * finished loading.
 	 */
 	private boolean alreadyFinished;
+	/**
+	 * Instance variable that stores the action run once the asset manager
+	 * has finished loading.
+	 */
+	private final Runnable loadedAction;
+
+	/**
+	 * Another constructor for class LoadingScreen.
+	 * 
+	 * Creates a new object of type LoadingScreen by calling the overloaded
+	 * constructor with setting the title screen of the given game as the
+	 * action run once the assets are loaded.
+	 * 
+	 * @param ticTacToeGame the tic tac toe game this screen is associated with
+	 */
+	public LoadingScreen(final TicTacToeGame ticTacToeGame) {
+		this(ticTacToeGame, ticTacToeGame::setTitleScreen);
+	}
 
 	/**
 	 * Another constructor for class LoadingScreen.
 	 * 
 	 * Creates a new object of type LoadingScreen by assigning the tic tac toe game
-	 * associated with this screen to the instance variable ticTacToeGame and
+	 * associated with this screen to the instance variable ticTacToeGame and the
+	 * given action to the instance variable loadedAction,
 	 * initializing the sprite batch, camera and viewport for this screen and setting
 	 * the value of the instance variable alreadyFinished to false.
 	 * 
 	 * @param ticTacToeGame the tic tac toe game this screen is associated with
+	 * @param loadedAction the action run once the assets are loaded, which sets
+	 *        the next screen
 	 */
-	public LoadingScreen(final TicTacToeGame ticTacToeGame) {
+	public LoadingScreen(final TicTacToeGame ticTacToeGame, final Runnable loadedAction) {
 		this.ticTacToeGame = ticTacToeGame;
+		this.loadedAction = loadedAction;
 		//this.shapeRenderer = ticTacToeGame.getShapeRenderer();
 
 		this.batch = new SpriteBatch();
@@ -158,14 +180,14 @@ public class LoadingScreen implements Screen {
 	 * Finishes the loading process by setting the value of the instance
 	 * variable alreadyFinished to true, getting the loaded skin and adding
 	 * the game's own colors to it before setting it as the skin for this screen's
-	 * tic tac toe game and setting this screen's game to title screen.
+	 * tic tac toe game and running the loaded action of this screen.
 	 */
 	private void finishLoading() {
 		this.alreadyFinished = true;
 		Skin skin = ticTacToeGame.getAssetManager().get("uiskin/uiskin.json", Skin.class);
 		addColors(skin);
 		ticTacToeGame.setSkin(skin);
-		ticTacToeGame.setTitleScreen();
+		loadedAction.run();
 	}
 
 	/**
@@ -19,6 +19,7 @@ import com.badlogic.gdx.utils.viewport.Viewport;
 
 import de.sengerts.tictactoe.model.settings.AIDifficulty;
 import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
 import de.sengerts.tictactoe.ui.TicTacToeGame;
 
 /**
@@ -58,6 +59,14 @@ public class OptionsScreen implements Screen {
 	 * Instance variable that stores the territory size label for this screen.
 	 */
 	private Label sliderLabel;
+	/**
+	 * Instance variable that stores the win length slider for this screen.
+	 */
+	private Slider winLengthSlider;
+	/**
+	 * Instance variable that stores the win length label for this screen.
+	 */
+	private Label winLengthLabel;
 	/**
 	 * Instance variable that stores the AI mode checkbox for this screen.
 	 */
@@ -66,6 +75,10 @@ public class OptionsScreen implements Screen {
 	 * Instance variable that stores the AI difficulty select box for this screen.
 	 */
 	private SelectBox<AIDifficulty> selectBox; 
+	/**
+	 * Instance variable that stores the early draw detection checkbox for this screen.
+	 */
+	private CheckBox earlyDrawCheckbox;
 
 	/**
 	 * Instance variable that stores the territory size of this screen's tic tac toe game.
@@ -79,14 +92,25 @@ public class OptionsScreen implements Screen {
 	 * Instance variable that stores the AI difficulty of this screen's tic tac toe game.
 	 */
 	private AIDifficulty aiDifficulty;
+	/**
+	 * Instance variable that stores whether this screen's tic tac toe game ends early
+	 * when no line can be won anymore.
+	 */
+	private boolean earlyDrawDetection;
+	/**
+	 * Instance variable that stores the amount of marks in a row needed to win this
+	 * screen's tic tac toe game or the classic rules' win length value.
+	 */
+	private int winLength;
 
 	/**
 	 * Another constructor for class OptionsScreen.
 	 * 
 	 * Creates a new object of type OptionsScreen by assigning the tic tac toe game
 	 * associated with this screen to the instance variable ticTacToeGame and the
-	 * games territory size, AI difficulty and whether the game is against AI to
-	 * its corresponding instance variables territorySize, aiOpponent and aiDifficulty.
+	 * games territory size, AI difficulty, whether the game is against AI and whether
+	 * early draw detection is enabled and the win length to its corresponding instance
+	 * variables territorySize, aiOpponent, aiDifficulty, earlyDrawDetection and winLength.
 	 * Then the sprite batch, camera, viewport and stage for this screen are 
 	 * initialized the main table, camera, viewport and stage of this screen.
 	 * 
@@ -97,6 +121,8 @@ public class OptionsScreen implements Screen {
 		this.territorySize = ticTacToeGame.getTerritorySize().getRowsCount();
 		this.aiOpponent = ticTacToeGame.isAiOpponent();
 		this.aiDifficulty = ticTacToeGame.getAiDifficulty();
+		this.earlyDrawDetection = ticTacToeGame.getRules().isEarlyDrawDetection();
+		this.winLength = ticTacToeGame.getRules().getWinLength();
 
 		this.batch = new SpriteBatch();
 		this.camera = new OrthographicCamera();
@@ -141,6 +167,11 @@ public class OptionsScreen implements Screen {
 		this.slider = new Slider(3, 21, 1, false, ticTacToeGame.getSkin());
 		slider.setValue(territorySize);
 
+		// Create Win Length Slider
+		this.winLengthLabel = new Label(getWinLengthText(), ticTacToeGame.getSkin(), "dec-font-32", "light");
+		this.winLengthSlider = new Slider(3, 21, 1, false, ticTacToeGame.getSkin());
+		winLengthSlider.setValue(winLength == GameRules.CLASSIC_WIN_LENGTH ? territorySize : winLength);
+
 		// Create Opponent Toggle
 		this.checkbox = new CheckBox("AI opponent", ticTacToeGame.getSkin());
 		checkbox.setChecked(aiOpponent);
@@ -151,6 +182,10 @@ public class OptionsScreen implements Screen {
 		selectBox.setItems(AIDifficulty.values());
 		selectBox.setSelected(aiDifficulty);
 
+		// Create Early Draw Toggle
+		this.earlyDrawCheckbox = new CheckBox("End early when no line can be won", ticTacToeGame.getSkin());
+		earlyDrawCheckbox.setChecked(earlyDrawDetection);
+
 		// Create Save Button
 		TextButton saveButton = new TextButton("Save", ticTacToeGame.getSkin());
 
@@ -161,6 +196,7 @@ public class OptionsScreen implements Screen {
 				ticTacToeGame.setTerritorySize(new Dimension(territorySize, territorySize));
 				ticTacToeGame.setAiOpponent(aiOpponent);
 				ticTacToeGame.setAiDifficulty(aiDifficulty);
+				ticTacToeGame.setRules(new GameRules(earlyDrawDetection, winLength));
 				ticTacToeGame.setTitleScreen();
 			}
 		});
@@ -172,11 +208,17 @@ public class OptionsScreen implements Screen {
 		mainTable.row();
 		mainTable.add(slider).padBottom(30f);
 		mainTable.row();
+		mainTable.add(winLengthLabel).padBottom(10f);
+		mainTable.row();
+		mainTable.add(winLengthSlider).padBottom(30f);
+		mainTable.row();
 		mainTable.add(checkbox).padBottom(30f);
 		mainTable.row();
 		mainTable.add(aiDifficultyLabel);
 		mainTable.row();
-		mainTable.add(selectBox);
+		mainTable.add(selectBox).padBottom(30f);
+		mainTable.row();
+		mainTable.add(earlyDrawCheckbox);
 		mainTable.row();
 		mainTable.add(saveButton).padTop(70f);
 
@@ -188,8 +230,8 @@ public class OptionsScreen implements Screen {
 	 * Renders this options screen.
 	 * 
 	 * Renders this options screen by clearing it with the "dark" game
-	 * color, updating the slider label, AI opponent mode and AI difficulty
-	 * values and letting this screen's stage act before drawing the stage.
+	 * color, updating the slider labels, AI opponent mode, AI difficulty and
+	 * early draw detection values and letting this screen's stage act before drawing the stage.
 	 */
 	/*
 	 * (non-Javadoc)
@@ -201,8 +243,10 @@ public class OptionsScreen implements Screen {
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
 		updateSliderLabel();
+		updateWinLength();
 		updateAIOpponent();
 		updateAIDifficulty();
+		updateEarlyDrawDetection();
 
 		stage.act();
 		stage.draw();
@@ -219,6 +263,31 @@ public class OptionsScreen implements Screen {
 		sliderLabel.setText("[TTT_LIGHT]Amount of rows / columns: " + territorySize);
 	}
 
+	/**
+	 * Updates the win length.
+	 * 
+	 * Updates the win length by assigning the value of the win length slider to
+	 * the instance variable winLength, using the classic rules whenever the value
+	 * is not smaller than the territory size, and updating the win length label.
+	 */
+	private void updateWinLength() {
+		int sliderValue = (int) winLengthSlider.getValue();
+		this.winLength = sliderValue >= territorySize ? GameRules.CLASSIC_WIN_LENGTH : sliderValue;
+		winLengthLabel.setText(getWinLengthText());
+	}
+
+	/**
+	 * Gets the text of the win length label.
+	 * 
+	 * @return the text of the win length label for the current win length
+	 */
+	private String getWinLengthText() {
+		if (winLength == GameRules.CLASSIC_WIN_LENGTH) {
+			return "[TTT_LIGHT]Marks in a row to win: " + territorySize + " (classic)";
+		}
+		return "[TTT_LIGHT]Marks in a row to win: " + winLength;
+	}
+
 	/**
 	 * Updates whether this screen's game is against AI.
 	 * 
@@ -239,6 +308,16 @@ public class OptionsScreen implements Screen {
 		this.aiDifficulty = selectBox.getSelected();
 	}
 
+	/**
+	 * Updates whether early draw detection is enabled.
+	 * 
+	 * Updates whether early draw detection is enabled by assigning the checked
+	 * value of the early draw checkbox to the instance variable earlyDrawDetection.
+	 */
+	private void updateEarlyDrawDetection() {
+		this.earlyDrawDetection = earlyDrawCheckbox.isChecked();
+	}
+
 	/**
 	 * Resizes this options screen.
 	 * 
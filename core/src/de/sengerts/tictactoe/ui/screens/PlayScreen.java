@@ -1,27 +1,44 @@
 package de.sengerts.tictactoe.ui.screens;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.InputAdapter;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.SpriteCache;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Scaling;
 
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.logic.GameScheduler;
+import de.sengerts.tictactoe.model.board.Location;
 import de.sengerts.tictactoe.model.board.Territory;
 import de.sengerts.tictactoe.model.board.Tile;
 import de.sengerts.tictactoe.model.players.PlayerSign;
 import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.record.OpeningExplorer;
+import de.sengerts.tictactoe.record.OpeningExplorer.MoveStatistics;
 import de.sengerts.tictactoe.ui.TicTacToeGame;
 
 /**
  * Class representing a play screen for a tic tac toe game.
  * 
+ * When the game has an opening explorer, the play screen overlays every
+ * tile with a bar showing how often the indexed games made the move on it
+ * and how they ended for the player to move. The explorer is queried on a
+ * worker thread once per move, so the frames never wait for the index.
+ * 
  * @author Tobias Senger
  */
 public class PlayScreen implements Screen {
@@ -47,6 +64,26 @@ public class PlayScreen implements Screen {
 	 * Instance variable that stores the player textures map for this screen.
 	 */
 	private final HashMap<PlayerSign, TextureRegion> playerTextureRegions;
+	/**
+	 * Instance variable that stores the opening explorer for this screen
+	 * or null if the game has none.
+	 */
+	private final OpeningExplorer openingExplorer;
+	/**
+	 * Instance variable that stores whether the opening explorer overlay
+	 * is shown.
+	 */
+	private boolean explorerVisible;
+	/**
+	 * Instance variable that stores the amount of marked tiles of the
+	 * position explored last.
+	 */
+	private int exploredMarkedCount;
+	/**
+	 * Instance variable that stores the move statistics of the position
+	 * explored last or null while it is explored.
+	 */
+	private volatile List<MoveStatistics> explorerMoves;
 
 	/**
 	 * Another constructor for class PlayScreen.
@@ -63,6 +100,9 @@ public class PlayScreen implements Screen {
 		
 		this.batch = new SpriteBatch();
 		this.playerTextureRegions = new HashMap<PlayerSign, TextureRegion>();
+		this.openingExplorer = ticTacToeGame.getOpeningExplorer();
+		this.explorerVisible = true;
+		this.exploredMarkedCount = -1;
 
 		Territory territory = ticTacToeGame.getGameLogic().getTerritory();
 		Dimension territorySize = territory.getSize();
@@ -126,8 +166,9 @@ public class PlayScreen implements Screen {
 	 * Shows this play screen.
 	 * 
 	 * When this play screen is shown, a new input processor is
-	 * created and assigned which makes a human player move whenever
-	 * the screen is touched.
+	 * created and assigned which submits a human player move on the
+	 * touched tile whenever the screen is touched and toggles the opening
+	 * explorer overlay with the E key.
 	 */
 	/*
 	 * (non-Javadoc)
@@ -138,18 +179,67 @@ public class PlayScreen implements Screen {
 		Gdx.input.setInputProcessor(new InputAdapter() {
 			@Override
 			public boolean touchUp(int x, int y, int pointer, int button) {
-				ticTacToeGame.getGameLogic().makeHumanPlayerMove();
+				Location tileLocation = getClickedTileLocation(x, y);
+				if (tileLocation != null) {
+					ticTacToeGame.getGameLogic().makeHumanPlayerMove(tileLocation);
+				}
 				return true;
 			}
+
+			@Override
+			public boolean keyDown(int keycode) {
+				if (keycode == Keys.E) {
+					explorerVisible = !explorerVisible;
+					return true;
+				}
+				return false;
+			}
 		});
 	}
 
+	/**
+	 * Gets a territory location from a touched screen position.
+	 * 
+	 * Gets a territory location from the touched screen position by 
+	 * calculating the difference between the touched position and
+	 * the viewport position and finally calculating which location has been touched.
+	 * Returns null if touched outside of the territory.
+	 * 
+	 * @param x the touched x coordinate in screen coordinates
+	 * @param y the touched y coordinate in screen coordinates
+	 * @return location at the touched position or null if outside of the territory
+	 */
+	private Location getClickedTileLocation(int x, int y) {
+		int width = Gdx.graphics.getWidth();
+		int height = Gdx.graphics.getHeight();
+		int tileWidth = height / ticTacToeGame.getGameLogic().getSize().getRowsCount();
+
+		Vector2 size = Scaling.fit.apply(800, 800, width, height);
+		int viewportX = (int) (width - size.x) / 2;
+
+		if (viewportX > x || y < 0) {
+			return null;
+		}
+
+		int tileRow = y / tileWidth;
+		int tileColumn = (x - viewportX) / tileWidth;
+
+		// TODO Fix column (is one too big if clicked in right half of a tile)
+		
+		Location location = new Location(tileRow, tileColumn);
+		if (!ticTacToeGame.getGameLogic().getTerritory().isLocationInTerritory(location)) {
+			return null;
+		}
+		return location;
+	}
+
 	/**
 	 * Renders this play screen.
 	 * 
 	 * Renders this play screen by clearing it, updating this screen's
-	 * camera, drawing the tiles from the sprite cache and drawing the marks
-	 * with the sprite batch of this screen. Finally, when the game is ended,
+	 * camera, drawing the tiles from the sprite cache, drawing the marks
+	 * with the sprite batch of this screen and drawing the opening explorer
+	 * overlay. Finally, when the game is ended,
 	 * this screen's game is set to end screen.
 	 */
 	/*
@@ -171,6 +261,11 @@ public class PlayScreen implements Screen {
 		drawMarks();
 		batch.end();
 
+		if (openingExplorer != null && explorerVisible) {
+			exploreCurrentPosition();
+			drawExplorerOverlay();
+		}
+
 		if (ticTacToeGame.getGameLogic().isEnded()) {
 			ticTacToeGame.setEndScreen();
 		}
@@ -215,6 +310,88 @@ public class PlayScreen implements Screen {
 		}
 	}
 
+	/**
+	 * Explores the current position.
+	 * 
+	 * Explores the current position on a thread of the shared scheduler
+	 * when a move has been made since the position explored last. The move
+	 * statistics are only kept if no further move has been made meanwhile.
+	 */
+	private void exploreCurrentPosition() {
+		Board board = ticTacToeGame.getGameLogic().getTerritory().getBoard();
+		final int markedCount = board.getMarkedCount();
+		if (markedCount == exploredMarkedCount || !ticTacToeGame.getGameLogic().isInGame()) {
+			return;
+		}
+		synchronized (this) {
+			this.exploredMarkedCount = markedCount;
+			this.explorerMoves = null;
+		}
+
+		final Board exploredBoard = board.copy();
+		final int side = ticTacToeGame.getGameLogic().getCurrentSide();
+		GameScheduler.getSharedExecutor().execute(() -> {
+			try {
+				List<MoveStatistics> moves = openingExplorer.explore(exploredBoard, side);
+				synchronized (PlayScreen.this) {
+					if (exploredMarkedCount == markedCount) {
+						explorerMoves = moves;
+					}
+				}
+			} catch (IOException e) {
+				Gdx.app.error("PlayScreen", "Position could not be explored!", e);
+			}
+		});
+	}
+
+	/**
+	 * Draws the opening explorer overlay.
+	 * 
+	 * Draws a bar along the bottom of every empty tile whose move has been
+	 * made by any indexed game with the shape renderer of this screen's game.
+	 * The length of the bar is relative to the most made move and it is split
+	 * into the shares of the games the player to move won, drew and lost.
+	 */
+	private void drawExplorerOverlay() {
+		List<MoveStatistics> moves = explorerMoves;
+		if (moves == null) {
+			return;
+		}
+		int maxGamesCount = 0;
+		for (MoveStatistics move : moves) {
+			maxGamesCount = Math.max(maxGamesCount, move.getGamesCount());
+		}
+		if (maxGamesCount == 0) {
+			return;
+		}
+
+		int columnsCount = ticTacToeGame.getGameLogic().getSize().getColumnsCount();
+		ShapeRenderer shapeRenderer = ticTacToeGame.getShapeRenderer();
+		shapeRenderer.setProjectionMatrix(camera.combined);
+		shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+		for (MoveStatistics move : moves) {
+			if (move.getGamesCount() == 0)
+				continue;
+
+			float barWidth = 16f * move.getGamesCount() / maxGamesCount;
+			float barX = (move.getCell() % columnsCount) * 16;
+			float barY = (move.getCell() / columnsCount) * 16 + 14;
+
+			shapeRenderer.setColor(Color.DARK_GRAY);
+			shapeRenderer.rect(barX, barY, barWidth, 2);
+			float winsWidth = barWidth * move.getWinsCount() / move.getGamesCount();
+			float drawsWidth = barWidth * move.getDrawsCount() / move.getGamesCount();
+			float lossesWidth = barWidth * move.getLossesCount() / move.getGamesCount();
+			shapeRenderer.setColor(Color.GREEN);
+			shapeRenderer.rect(barX, barY, winsWidth, 2);
+			shapeRenderer.setColor(Color.LIGHT_GRAY);
+			shapeRenderer.rect(barX + winsWidth, barY, drawsWidth, 2);
+			shapeRenderer.setColor(Color.RED);
+			shapeRenderer.rect(barX + winsWidth + drawsWidth, barY, lossesWidth, 2);
+		}
+		shapeRenderer.end();
+	}
+
 	/**
 	 * Resizes this play screen.
 	 * 
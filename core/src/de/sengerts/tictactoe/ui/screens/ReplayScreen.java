@@ -0,0 +1,373 @@
+package de.sengerts.tictactoe.ui.screens;
+
+import java.util.HashMap;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input.Keys;
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Scaling;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.model.players.PlayerSign;
+import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.record.GameReplay;
+import de.sengerts.tictactoe.ui.TicTacToeGame;
+
+/**
+ * Class representing a replay screen for a recorded tic tac toe game.
+ *
+ * The replay screen shows the position of a {@link GameReplay} and lets the
+ * user step through the moves with the arrow keys or scrub through the whole
+ * game by dragging across the screen, while a bar at the bottom shows how far
+ * the game has been replayed.
+ *
+ * @author Tobias Senger
+ */
+public class ReplayScreen implements Screen {
+
+	/**
+	 * Class variable that stores the height of the progress bar in tiles.
+	 */
+	private static final float PROGRESS_BAR_HEIGHT = 0.25f;
+
+	/**
+	 * Instance variable that stores the tic tac toe game this screen
+	 * is associated with.
+	 */
+	private final TicTacToeGame ticTacToeGame;
+	/**
+	 * Instance variable that stores the replayed game.
+	 */
+	private final GameReplay replay;
+	/**
+	 * Instance variable that stores the amount of columns of the replayed game.
+	 */
+	private final int columnsCount;
+	/**
+	 * Instance variable that stores the amount of rows of the replayed game.
+	 */
+	private final int rowsCount;
+	/**
+	 * Instance variable that stores the sprite batch for this screen.
+	 */
+	private final SpriteBatch batch;
+	/**
+	 * Instance variable that stores the sprite cache for this screen.
+	 */
+	private final SpriteCache cache;
+	/**
+	 * Instance variable that stores the camera for this screen.
+	 */
+	private final OrthographicCamera camera;
+	/**
+	 * Instance variable that stores the player textures by side for this screen.
+	 */
+	private final HashMap<Integer, TextureRegion> playerTextureRegions;
+
+	/**
+	 * Another constructor for class ReplayScreen.
+	 *
+	 * Creates a new object of type ReplayScreen by assigning the tic tac toe game
+	 * associated with this screen and the replayed game to instance variables and
+	 * initializing the player texture regions map, sprite batch and camera
+	 * for this screen before creating the tiles sprites and loading the player textures.
+	 *
+	 * @param ticTacToeGame the tic tac toe game this screen is associated with
+	 * @param replay the replayed game
+	 */
+	public ReplayScreen(final TicTacToeGame ticTacToeGame, final GameReplay replay) {
+		this.ticTacToeGame = ticTacToeGame;
+		this.replay = replay;
+
+		this.batch = new SpriteBatch();
+		this.playerTextureRegions = new HashMap<Integer, TextureRegion>();
+
+		Dimension size = replay.getRecord().getSize();
+		this.columnsCount = size.getColumnsCount();
+		this.rowsCount = size.getRowsCount();
+
+		float width = 16 * columnsCount;
+		float height = 16 * rowsCount;
+
+		this.camera = new OrthographicCamera();
+		this.camera.setToOrtho(true, width, height);
+		this.camera.position.set(width / 2, height / 2, 0);
+		this.cache = new SpriteCache(rowsCount * columnsCount, false);
+
+		createTiles();
+		loadPlayerTextures();
+	}
+
+	/**
+	 * Creates the tiles for the sprite cache.
+	 *
+	 * Creates the tiles for the sprite cache by creating sprites for all
+	 * cells of the replayed game and predefining their positions on the
+	 * screen before adding them to this screen's sprite cache.
+	 */
+	private void createTiles() {
+		Sprite tileSprite = ticTacToeGame.getSkin().getSprite("tile");
+
+		cache.beginCache();
+		for (int row = 0; row < rowsCount; row++) {
+			for (int column = 0; column < columnsCount; column++) {
+				tileSprite.setPosition(column * 16, row * 16);
+				cache.add(tileSprite);
+			}
+		}
+		cache.endCache();
+	}
+
+	/**
+	 * Loads the player textures.
+	 *
+	 * Loads the player textures by getting the values for all
+	 * possible player signs of a tic tac toe game from this screen's
+	 * game's skin and adding the textures to the map in the instance
+	 * variable playerTextureRegions under the side of the player sign.
+	 */
+	private void loadPlayerTextures() {
+		Skin skin = ticTacToeGame.getSkin();
+		for (PlayerSign playerSign : PlayerSign.values()) {
+			String textureRegionName = playerSign.name().toLowerCase();
+			TextureRegion playerTextureRegion = skin.getRegion(textureRegionName);
+
+			playerTextureRegions.put(playerSign.ordinal(), playerTextureRegion);
+		}
+	}
+
+	/**
+	 * Shows this replay screen.
+	 *
+	 * When this replay screen is shown, a new input processor is
+	 * created and assigned which steps through the moves with the
+	 * arrow keys, jumps to the start and end with the home and end keys,
+	 * scrubs to the move under the pointer while the screen is touched
+	 * and returns to the title screen with the escape key.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Screen#show()
+	 */
+	@Override
+	public void show() {
+		Gdx.input.setInputProcessor(new InputAdapter() {
+			@Override
+			public boolean keyDown(int keycode) {
+				switch (keycode) {
+				case Keys.LEFT:
+					seek(replay.getMove() - 1);
+					return true;
+				case Keys.RIGHT:
+					seek(replay.getMove() + 1);
+					return true;
+				case Keys.HOME:
+					seek(0);
+					return true;
+				case Keys.END:
+					seek(replay.getMovesCount());
+					return true;
+				case Keys.ESCAPE:
+				case Keys.BACK:
+					ticTacToeGame.setTitleScreen();
+					return true;
+				default:
+					return false;
+				}
+			}
+
+			@Override
+			public boolean touchDown(int x, int y, int pointer, int button) {
+				scrub(x);
+				return true;
+			}
+
+			@Override
+			public boolean touchDragged(int x, int y, int pointer) {
+				scrub(x);
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Seeks to a move.
+	 *
+	 * Seeks the replayed game to the given move after clamping it to
+	 * the moves of the game.
+	 *
+	 * @param move the amount of moves to show
+	 */
+	private void seek(int move) {
+		replay.seek(Math.max(0, Math.min(move, replay.getMovesCount())));
+	}
+
+	/**
+	 * Scrubs to the move under a touched screen position.
+	 *
+	 * Scrubs to the move under the touched screen position by calculating
+	 * how far the position is across the viewport and seeking to the move
+	 * that far into the game.
+	 *
+	 * @param x the touched x coordinate in screen coordinates
+	 */
+	private void scrub(int x) {
+		int width = Gdx.graphics.getWidth();
+		int height = Gdx.graphics.getHeight();
+		Vector2 size = Scaling.fit.apply(1, 1, width, height);
+		float viewportX = (width - size.x) / 2;
+
+		float progress = (x - viewportX) / size.x;
+		seek(Math.round(progress * replay.getMovesCount()));
+	}
+
+	/**
+	 * Renders this replay screen.
+	 *
+	 * Renders this replay screen by clearing it, updating this screen's
+	 * camera, drawing the tiles from the sprite cache, drawing the marks
+	 * of the current position with the sprite batch of this screen and
+	 * drawing the progress bar.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Screen#render(float)
+	 */
+	@Override
+	public void render(float delta) {
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+		camera.update();
+
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+		cache.setProjectionMatrix(camera.combined);
+		cache.begin();
+		cache.draw(0, 0, rowsCount * columnsCount);
+		cache.end();
+
+		batch.setProjectionMatrix(camera.combined);
+		batch.begin();
+		drawMarks();
+		batch.end();
+
+		drawProgressBar();
+	}
+
+	/**
+	 * Draws the marks.
+	 *
+	 * Draws the marks by looping over all cells of the replayed game and
+	 * drawing the player sign texture of the side who marked the current
+	 * cell in the current position, drawing the last marked cell slightly
+	 * transparent so it stands out while stepping through the moves.
+	 */
+	private void drawMarks() {
+		int lastCell = replay.getLastCell();
+		for (int cell = 0; cell < rowsCount * columnsCount; cell++) {
+			int side = replay.getSide(cell);
+			if (side == Board.NO_SIDE)
+				continue;
+
+			int spriteX = (cell % columnsCount) * 16;
+			int spriteY = (cell / columnsCount) * 16;
+
+			batch.setColor(1f, 1f, 1f, cell == lastCell ? 0.6f : 1f);
+			batch.draw(playerTextureRegions.get(side), spriteX, spriteY);
+		}
+		batch.setColor(Color.WHITE);
+	}
+
+	/**
+	 * Draws the progress bar.
+	 *
+	 * Draws the progress bar along the bottom of the territory with the
+	 * shape renderer of this screen's game, filled as far as the game has
+	 * been replayed.
+	 */
+	private void drawProgressBar() {
+		float width = 16 * columnsCount;
+		float barHeight = 16 * PROGRESS_BAR_HEIGHT;
+		float barY = 16 * rowsCount - barHeight;
+		float progress = replay.getMovesCount() == 0 ? 1f : replay.getMove() / (float) replay.getMovesCount();
+
+		ShapeRenderer shapeRenderer = ticTacToeGame.getShapeRenderer();
+		shapeRenderer.setProjectionMatrix(camera.combined);
+		shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+		shapeRenderer.setColor(Color.DARK_GRAY);
+		shapeRenderer.rect(0, barY, width, barHeight);
+		shapeRenderer.setColor(Color.WHITE);
+		shapeRenderer.rect(0, barY, width * progress, barHeight);
+		shapeRenderer.end();
+	}
+
+	/**
+	 * Resizes this replay screen.
+	 *
+	 * Resizes this replay screen by calling the screen's game's
+	 * adjustViewport method with the new window width and height.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Screen#resize(int, int)
+	 */
+	@Override
+	public void resize(int width, int height) {
+		ticTacToeGame.adjustViewport(width, height);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Screen#pause()
+	 */
+	@Override
+	public void pause() {
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Screen#resume()
+	 */
+	@Override
+	public void resume() {
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Screen#hide()
+	 */
+	@Override
+	public void hide() {
+
+	}
+
+	/**
+	 * Disposes this replay screen.
+	 *
+	 * Disposes this replay screen by disposing this screen's
+	 * sprite cache and sprite batch.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see com.badlogic.gdx.Screen#dispose()
+	 */
+	@Override
+	public void dispose() {
+		cache.dispose();
+		batch.dispose();
+	}
+
+}
@@ -0,0 +1,167 @@
+package de.sengerts.tictactoe.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of the bit-parallel win detection of {@link Board}.
+ *
+ * {@link Board#hasWinningRun(int)} is compared with a plain search of every
+ * cell and direction on random boards of square and rectangular territories,
+ * and the runs that would only exist if the bitboard wrapped around from one
+ * row into the next are checked explicitly.
+ *
+ * @author Tobias Senger
+ */
+public class BoardTest {
+
+	/**
+	 * Class variable that stores the compared territories as rows, columns and
+	 * win length.
+	 */
+	private static final int[][] TERRITORIES = { { 3, 3, 3 }, { 4, 4, 3 }, { 4, 4, 4 }, { 5, 7, 4 }, { 7, 5, 4 },
+			{ 1, 9, 3 }, { 9, 1, 3 }, { 9, 9, 5 }, { 8, 8, 8 }, { 10, 13, 6 }, { 15, 15, 5 }, { 21, 21, 5 },
+			{ 21, 21, 21 } };
+
+	/**
+	 * Class variable that stores the amount of random boards compared per
+	 * territory.
+	 */
+	private static final int BOARDS = 2000;
+
+	/**
+	 * Class variable that stores the row and column steps of the four
+	 * directions of a run.
+	 */
+	private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+	/**
+	 * Tests the win detection against the plain search on random boards.
+	 */
+	@Test
+	public void testHasWinningRunMatchesPlainSearch() {
+		Random random = new Random(29);
+		int wonCount = 0;
+		int notWonCount = 0;
+		for (int[] territory : TERRITORIES) {
+			Lines lines = Lines.mnk(territory[0], territory[1], territory[2]);
+			for (int i = 0; i < BOARDS; i++) {
+				Board board = new Board(lines);
+				int[] sides = new int[lines.getCellsCount()];
+				double density = random.nextDouble();
+				for (int cell = 0; cell < sides.length; cell++) {
+					sides[cell] = Board.NO_SIDE;
+					if (random.nextDouble() < density) {
+						sides[cell] = random.nextInt(Board.SIDES);
+						board.mark(cell, sides[cell]);
+					}
+				}
+				for (int side = 0; side < Board.SIDES; side++) {
+					boolean expected = hasRun(lines, sides, side);
+					assertEquals(territory[0] + "x" + territory[1] + "k" + territory[2] + " side " + side, expected,
+							board.hasWinningRun(side));
+					if (expected) {
+						wonCount++;
+					} else {
+						notWonCount++;
+					}
+				}
+			}
+		}
+		assertTrue(wonCount > BOARDS && notWonCount > BOARDS);
+	}
+
+	/**
+	 * Tests that marks at the end of one row and the start of the next one do
+	 * not form a run.
+	 */
+	@Test
+	public void testRunsDoNotWrapAcrossRows() {
+		Lines lines = Lines.mnk(5, 5, 3);
+		// Horizontally from the last columns of row 0 into row 1
+		assertFalse(mark(lines, 3, 4, 5).hasWinningRun(0));
+		// Down to the right over the last column of row 1 into row 3
+		assertFalse(mark(lines, 3, 9, 15).hasWinningRun(0));
+		// Down to the left over the first column of row 1 into its last one
+		assertFalse(mark(lines, 1, 5, 9).hasWinningRun(0));
+		assertTrue(mark(lines, 2, 3, 4).hasWinningRun(0));
+		assertTrue(mark(lines, 2, 6, 10).hasWinningRun(0));
+	}
+
+	/**
+	 * Tests runs whose cells lie in different words of the bitboard.
+	 */
+	@Test
+	public void testRunsAcrossWords() {
+		Lines lines = Lines.mnk(21, 21, 5);
+		// Column 0 of rows 0 to 4 takes the bits 0 to 88
+		assertTrue(mark(lines, 0, 21, 42, 63, 84).hasWinningRun(0));
+		assertFalse(mark(lines, 0, 21, 42, 63).hasWinningRun(0));
+		// Down to the right from row 1, column 18 over the last column
+		assertFalse(mark(lines, 39, 61, 83, 105, 127).hasWinningRun(0));
+		assertTrue(mark(lines, 37, 59, 81, 103, 125).hasWinningRun(0));
+	}
+
+	/**
+	 * Tests that unmarking a cell of the only run removes the win.
+	 */
+	@Test
+	public void testUnmarkRemovesRun() {
+		Board board = mark(Lines.mnk(4, 6, 4), 7, 8, 9, 10);
+		assertTrue(board.hasWinningRun(0));
+		assertFalse(board.hasWinningRun(1));
+		board.unmark(8, 0);
+		assertFalse(board.hasWinningRun(0));
+	}
+
+	/**
+	 * Creates a board on which the first side has marked some cells.
+	 *
+	 * @param lines the lines of the board
+	 * @param cells the cells to mark
+	 * @return the new board
+	 */
+	private static Board mark(final Lines lines, final int... cells) {
+		Board board = new Board(lines);
+		for (int cell : cells) {
+			board.mark(cell, 0);
+		}
+		return board;
+	}
+
+	/**
+	 * Searches every cell and direction for a run of a side.
+	 *
+	 * @param lines the lines of the board
+	 * @param sides the side that marked every cell or {@link Board#NO_SIDE}
+	 * @param side the side to search the runs of
+	 * @return true if the side has marked the win length of cells in a row
+	 */
+	private static boolean hasRun(final Lines lines, final int[] sides, final int side) {
+		int rowsCount = lines.getRowsCount();
+		int columnsCount = lines.getColumnsCount();
+		for (int cell = 0; cell < sides.length; cell++) {
+			for (int[] direction : DIRECTIONS) {
+				int length = 0;
+				int row = cell / columnsCount;
+				int column = cell % columnsCount;
+				while (length < lines.getWinLength() && row < rowsCount && column >= 0 && column < columnsCount
+						&& sides[row * columnsCount + column] == side) {
+					length++;
+					row += direction[0];
+					column += direction[1];
+				}
+				if (length == lines.getWinLength()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,247 @@
+package de.sengerts.tictactoe.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the memory-mapped {@link OpeningBook}.
+ *
+ * A book of random positions and moves is written and probed with the
+ * positions, with their symmetric variants and with positions it does not
+ * hold. As the keys are random hashes, about half of them have the highest bit
+ * set, so the binary search of the book has to compare them unsigned to find
+ * every entry.
+ *
+ * @author Tobias Senger
+ */
+public class OpeningBookTest {
+
+	/**
+	 * Class variable that stores the lines of the positions of the book.
+	 */
+	private static final Lines LINES = Lines.mnk(5, 5, 4);
+
+	/**
+	 * Class variable that stores the amount of random positions written to the
+	 * book.
+	 */
+	private static final int POSITIONS = 5000;
+
+	/**
+	 * Class variable that stores the most marked cells of a position of the
+	 * book.
+	 */
+	private static final int MAX_MARKED_COUNT = 6;
+
+	/**
+	 * Instance variable that stores the folder of the book files.
+	 */
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that every position of the book and every symmetric variant of it
+	 * is found.
+	 */
+	@Test
+	public void testPositionsFound() throws IOException {
+		Random random = new Random(48);
+		Symmetries symmetries = Symmetries.get(LINES);
+		Map<Long, Integer> canonicalCells = new HashMap<Long, Integer>();
+		List<Board> boards = new ArrayList<Board>();
+		List<Integer> sides = new ArrayList<Integer>();
+		List<Integer> cells = new ArrayList<Integer>();
+		while (boards.size() < POSITIONS) {
+			Board board = createBoard(random, random.nextInt(MAX_MARKED_COUNT + 1));
+			int side = random.nextInt(Board.SIDES);
+			int cell = getEmptyCell(random, board);
+			int symmetry = OpeningBook.getCanonicalSymmetry(board, symmetries);
+			long key = OpeningBook.getKey(board, side, symmetries, symmetry);
+			if (!canonicalCells.containsKey(key)) {
+				canonicalCells.put(key, symmetries.mapCell(symmetry, cell));
+				boards.add(board);
+				sides.add(side);
+				cells.add(cell);
+			}
+		}
+		OpeningBook book = writeBook(canonicalCells);
+		assertEquals(POSITIONS, book.getEntriesCount());
+		assertEquals(MAX_MARKED_COUNT, book.getMaxMarkedCount());
+		int negativeKeysCount = 0;
+		for (long key : canonicalCells.keySet()) {
+			if (key < 0) {
+				negativeKeysCount++;
+			}
+		}
+		assertTrue(negativeKeysCount > POSITIONS / 4 && negativeKeysCount < 3 * POSITIONS / 4);
+		for (int i = 0; i < POSITIONS; i++) {
+			Board board = boards.get(i);
+			int side = sides.get(i);
+			assertEquals(cells.get(i).intValue(), book.probe(board, side));
+			Board movedBoard = board.copy();
+			movedBoard.mark(cells.get(i), side);
+			long movedHash = symmetries.getCanonicalHash(movedBoard);
+			for (int symmetry = 0; symmetry < symmetries.getCount(); symmetry++) {
+				Board variant = new Board(LINES);
+				for (int cell = 0; cell < board.getCellsCount(); cell++) {
+					if (!board.isEmpty(cell)) {
+						variant.mark(symmetries.mapCell(symmetry, cell), board.getSide(cell));
+					}
+				}
+				// A symmetric position may get any of the symmetric moves
+				int cell = book.probe(variant, side);
+				assertTrue(variant.isEmpty(cell));
+				variant.mark(cell, side);
+				assertEquals(movedHash, symmetries.getCanonicalHash(variant));
+			}
+		}
+	}
+
+	/**
+	 * Tests that positions the book does not hold are not found.
+	 */
+	@Test
+	public void testOtherPositionsNotFound() throws IOException {
+		Random random = new Random(48);
+		Symmetries symmetries = Symmetries.get(LINES);
+		Map<Long, Integer> canonicalCells = new HashMap<Long, Integer>();
+		Board board = createBoard(random, MAX_MARKED_COUNT);
+		putEntry(canonicalCells, board, 0, getEmptyCell(random, board), symmetries);
+		// A position with one mark too many is not even looked up
+		Board deepBoard = createBoard(random, MAX_MARKED_COUNT + 1);
+		putEntry(canonicalCells, deepBoard, 0, getEmptyCell(random, deepBoard), symmetries);
+		OpeningBook book = writeBook(canonicalCells);
+		assertTrue(book.probe(board, 0) != OpeningBook.NO_MOVE);
+		assertEquals(OpeningBook.NO_MOVE, book.probe(board, 1));
+		assertEquals(OpeningBook.NO_MOVE, book.probe(deepBoard, 0));
+		assertEquals(OpeningBook.NO_MOVE, book.probe(new Board(LINES), 0));
+		assertEquals(OpeningBook.NO_MOVE, book.probe(new Board(Lines.mnk(5, 5, 5)), 0));
+	}
+
+	/**
+	 * Tests that an empty book holds no moves.
+	 */
+	@Test
+	public void testEmptyBook() throws IOException {
+		OpeningBook book = writeBook(new HashMap<Long, Integer>());
+		assertEquals(0, book.getEntriesCount());
+		assertEquals(OpeningBook.NO_MOVE, book.probe(new Board(LINES), 0));
+	}
+
+	/**
+	 * Tests that files of another format or size are rejected.
+	 */
+	@Test
+	public void testOtherFilesRejected() throws IOException {
+		File file = folder.newFile("other.book");
+		Files.write(file.toPath(), "Not an opening book".getBytes("UTF-8"));
+		assertRejected(file);
+		file = new File(folder.getRoot(), "truncated.book");
+		OpeningBook.write(file, MAX_MARKED_COUNT, new long[] { 1 }, new int[] { 0 }, new int[] { 0 }, 1);
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.setLength(out.length() - 1);
+		}
+		assertRejected(file);
+	}
+
+	/**
+	 * Adds the entry of a position to the entries of a book.
+	 *
+	 * @param canonicalCells the canonical cells of the entries by their keys
+	 * @param board the board of the position
+	 * @param side the side to move
+	 * @param cell the cell to mark
+	 * @param symmetries the symmetries of the board
+	 */
+	private static void putEntry(final Map<Long, Integer> canonicalCells, final Board board, final int side,
+			final int cell, final Symmetries symmetries) {
+		int symmetry = OpeningBook.getCanonicalSymmetry(board, symmetries);
+		canonicalCells.put(OpeningBook.getKey(board, side, symmetries, symmetry),
+				symmetries.mapCell(symmetry, cell));
+	}
+
+	/**
+	 * Writes and opens a book.
+	 *
+	 * @param canonicalCells the canonical cells of the entries by their keys
+	 * @return the opened book
+	 * @throws IOException if the book can not be written or read
+	 */
+	private OpeningBook writeBook(final Map<Long, Integer> canonicalCells) throws IOException {
+		long[] keys = new long[canonicalCells.size()];
+		int[] cells = new int[keys.length];
+		int count = 0;
+		for (Map.Entry<Long, Integer> entry : canonicalCells.entrySet()) {
+			keys[count] = entry.getKey();
+			cells[count] = entry.getValue();
+			count++;
+		}
+		File file = new File(folder.getRoot(), "opening.book");
+		OpeningBook.write(file, MAX_MARKED_COUNT, keys, cells, new int[count], count);
+		for (int i = 1; i < count; i++) {
+			assertTrue(Long.compareUnsigned(keys[i - 1], keys[i]) < 0);
+			assertEquals(canonicalCells.get(keys[i]).intValue(), cells[i]);
+		}
+		return new OpeningBook(file);
+	}
+
+	/**
+	 * Asserts that a file is not opened as a book.
+	 *
+	 * @param file the file
+	 */
+	private static void assertRejected(final File file) {
+		try {
+			new OpeningBook(file);
+			fail("Book was opened");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Creates a board with random marks of both sides.
+	 *
+	 * @param random the random number generator of the marks
+	 * @param markedCount the amount of marked cells
+	 * @return the new board
+	 */
+	private static Board createBoard(final Random random, final int markedCount) {
+		Board board = new Board(LINES);
+		for (int i = 0; i < markedCount; i++) {
+			board.mark(getEmptyCell(random, board), random.nextInt(Board.SIDES));
+		}
+		return board;
+	}
+
+	/**
+	 * Gets a random empty cell.
+	 *
+	 * @param random the random number generator of the cell
+	 * @param board the board, which is not full
+	 * @return an empty cell of the board
+	 */
+	private static int getEmptyCell(final Random random, final Board board) {
+		int cell;
+		do {
+			cell = random.nextInt(board.getCellsCount());
+		} while (!board.isEmpty(cell));
+		return cell;
+	}
+
+}
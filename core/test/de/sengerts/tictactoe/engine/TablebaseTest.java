@@ -0,0 +1,254 @@
+package de.sengerts.tictactoe.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the tablebases solved by {@link TablebaseSolver}.
+ *
+ * The tablebases of the 4x4 board with win lengths 3 and 4 are solved once,
+ * written and read back as files, and their values and best moves are compared
+ * with a plain negamax search of random positions, which shares no code with
+ * the retrograde analysis but the board.
+ *
+ * @author Tobias Senger
+ */
+public class TablebaseTest {
+
+	/**
+	 * Class variable that stores the amount of random games whose positions are
+	 * compared per tablebase.
+	 */
+	private static final int GAMES = 1000;
+
+	/**
+	 * Class variable that stores the least amount of moves of a compared
+	 * position, which keeps the negamax search of the positions short.
+	 */
+	private static final int MIN_MOVES = 5;
+
+	/**
+	 * Class variable that stores the value of a won position in the negamax
+	 * search.
+	 */
+	private static final int WON = 1;
+
+	/**
+	 * Class variable that stores the value of a drawn position in the negamax
+	 * search.
+	 */
+	private static final int DRAWN = 0;
+
+	/**
+	 * Class variable that stores the value of a lost position in the negamax
+	 * search.
+	 */
+	private static final int LOST = -1;
+
+	/**
+	 * Class variable that stores the folder of the written tablebases.
+	 */
+	@ClassRule
+	public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+	/**
+	 * Class variable that stores the tablebase of the 4x4 board with win length
+	 * 3.
+	 */
+	private static Tablebase threeInARow;
+
+	/**
+	 * Class variable that stores the tablebase of the 4x4 board with win length
+	 * 4.
+	 */
+	private static Tablebase fourInARow;
+
+	/**
+	 * Solves, writes and reads both tablebases.
+	 */
+	@BeforeClass
+	public static void solveTablebases() throws IOException, InterruptedException, ExecutionException {
+		int workersCount = Runtime.getRuntime().availableProcessors();
+		ExecutorService workers = Executors.newFixedThreadPool(workersCount);
+		try {
+			threeInARow = solve(Lines.mnk(4, 4, 3), workers, workersCount);
+			fourInARow = solve(Lines.mnk(4, 4, 4), workers, workersCount);
+		} finally {
+			workers.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that the first player wins the empty board with win length 3.
+	 */
+	@Test
+	public void testThreeInARowIsWon() {
+		Board board = new Board(threeInARow.getLines());
+		assertEquals(Tablebase.WIN, threeInARow.getValue(board, 0));
+		assertEquals(Tablebase.WIN, threeInARow.getValue(board, 1));
+	}
+
+	/**
+	 * Tests that the empty board with win length 4 is drawn.
+	 */
+	@Test
+	public void testFourInARowIsDrawn() {
+		Board board = new Board(fourInARow.getLines());
+		assertEquals(Tablebase.DRAW, fourInARow.getValue(board, 0));
+		assertEquals(Tablebase.DRAW, fourInARow.getValue(board, 1));
+	}
+
+	/**
+	 * Tests the tablebase of win length 3 against the negamax search.
+	 */
+	@Test
+	public void testThreeInARowMatchesNegamax() {
+		assertMatchesNegamax(threeInARow, 3);
+	}
+
+	/**
+	 * Tests the tablebase of win length 4 against the negamax search.
+	 */
+	@Test
+	public void testFourInARowMatchesNegamax() {
+		assertMatchesNegamax(fourInARow, 4);
+	}
+
+	/**
+	 * Solves a tablebase and reads it back from its file.
+	 *
+	 * @param lines the lines of the board
+	 * @param workers the workers solving the tablebase
+	 * @param workersCount the amount of the given workers
+	 * @return the written tablebase
+	 * @throws IOException if the tablebase can not be written or read
+	 * @throws InterruptedException if the test is interrupted
+	 * @throws ExecutionException if solving the tablebase fails
+	 */
+	private static Tablebase solve(final Lines lines, final ExecutorService workers, final int workersCount)
+			throws IOException, InterruptedException, ExecutionException {
+		TablebaseSolver solver = new TablebaseSolver(lines);
+		solver.solve(workers, workersCount);
+		File file = new File(FOLDER.getRoot(), Tablebase.getFileName(lines));
+		solver.write(file);
+		return new Tablebase(file);
+	}
+
+	/**
+	 * Asserts that the values and best moves of a tablebase match the negamax
+	 * search in the positions of random games that are not over yet after at
+	 * least {@link #MIN_MOVES} moves.
+	 *
+	 * @param tablebase the tablebase to check
+	 * @param seed the seed of the random games
+	 */
+	private static void assertMatchesNegamax(final Tablebase tablebase, final long seed) {
+		Map<Long, Integer> values = new HashMap<Long, Integer>();
+		Random random = new Random(seed);
+		int checked = 0;
+		for (int game = 0; game < GAMES; game++) {
+			Board board = new Board(tablebase.getLines());
+			int side = random.nextInt(Board.SIDES);
+			int movesCount = MIN_MOVES + random.nextInt(board.getCellsCount() - MIN_MOVES);
+			boolean over = false;
+			for (int move = 0; move < movesCount && !over; move++) {
+				int cell;
+				do {
+					cell = random.nextInt(board.getCellsCount());
+				} while (!board.isEmpty(cell));
+				board.mark(cell, side);
+				over = board.isWinningCell(cell, side) || board.isFull();
+				side = Board.getOpponent(side);
+			}
+			if (over) {
+				continue;
+			}
+			int expected = negamax(board, side, values);
+			assertEquals(board.getHash() + " side " + side, toTablebaseValue(expected),
+					tablebase.getValue(board, side));
+			int cell = tablebase.getBestCell(board, side);
+			if (expected == LOST) {
+				assertEquals(Tablebase.NO_MOVE, cell);
+			} else {
+				assertTrue(board.isEmpty(cell));
+				assertEquals(expected, getMoveValue(board, cell, side, values));
+			}
+			checked++;
+		}
+		assertTrue(checked > GAMES / 4);
+	}
+
+	/**
+	 * Searches the value of a position by negamax.
+	 *
+	 * @param board the board of the position, unchanged afterwards
+	 * @param side the side to move
+	 * @param values the values of the searched positions by their hash and side
+	 * @return {@link #WON}, {@link #DRAWN} or {@link #LOST} for the side
+	 */
+	private static int negamax(final Board board, final int side, final Map<Long, Integer> values) {
+		long key = board.getHash() * Board.SIDES + side;
+		Integer known = values.get(key);
+		if (known != null) {
+			return known;
+		}
+		int value = LOST;
+		for (int cell = 0; cell < board.getCellsCount() && value != WON; cell++) {
+			if (board.isEmpty(cell)) {
+				value = Math.max(value, getMoveValue(board, cell, side, values));
+			}
+		}
+		values.put(key, value);
+		return value;
+	}
+
+	/**
+	 * Searches the value of a move by negamax.
+	 *
+	 * @param board the board of the position, unchanged afterwards
+	 * @param cell the empty cell to mark
+	 * @param side the side to move
+	 * @param values the values of the searched positions by their hash and side
+	 * @return the value of the position after the move for the side
+	 */
+	private static int getMoveValue(final Board board, final int cell, final int side,
+			final Map<Long, Integer> values) {
+		board.mark(cell, side);
+		int value;
+		if (board.isWinningCell(cell, side)) {
+			value = WON;
+		} else if (board.isFull()) {
+			value = DRAWN;
+		} else {
+			value = -negamax(board, Board.getOpponent(side), values);
+		}
+		board.unmark(cell, side);
+		return value;
+	}
+
+	/**
+	 * Converts a negamax value to a tablebase value.
+	 *
+	 * @param value {@link #WON}, {@link #DRAWN} or {@link #LOST}
+	 * @return {@link Tablebase#WIN}, {@link Tablebase#DRAW} or
+	 *         {@link Tablebase#LOSS}
+	 */
+	private static int toTablebaseValue(final int value) {
+		return value == WON ? Tablebase.WIN : value == DRAWN ? Tablebase.DRAW : Tablebase.LOSS;
+	}
+
+}
@@ -0,0 +1,291 @@
+package de.sengerts.tictactoe.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the {@link TranspositionTable} persisted to a file.
+ *
+ * Random entries are stored, the table is closed and reopened, and the header
+ * written to the file is read back on its own, including the checksum of the
+ * entries. Files that were left dirty, whose entries were changed behind the
+ * checksum or that belong to another board must start empty.
+ *
+ * @author Tobias Senger
+ */
+public class TranspositionTableTest {
+
+	/**
+	 * Class variable that stores the lines of the board of the tables.
+	 */
+	private static final Lines LINES = Lines.mnk(7, 7, 4);
+
+	/**
+	 * Class variable that stores the base two logarithm of the amount of
+	 * entries of the tables.
+	 */
+	private static final int SIZE_BITS = 10;
+
+	/**
+	 * Class variable that stores the amount of stored entries.
+	 */
+	private static final int ENTRIES = 600;
+
+	/**
+	 * Class variable that stores the size of the header of a table file.
+	 */
+	private static final int HEADER_BYTES = 64;
+
+	/**
+	 * Class variable that stores the offset of the state in the header.
+	 */
+	private static final int STATE_OFFSET = 12;
+
+	/**
+	 * Class variable that stores the offset of the checksum in the header.
+	 */
+	private static final int CHECKSUM_OFFSET = 24;
+
+	/**
+	 * Instance variable that stores the folder of the table files.
+	 */
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Instance variable that stores the table file.
+	 */
+	private File file;
+
+	/**
+	 * Instance variable that stores the score, depth, flag and move of the
+	 * stored entries by their keys.
+	 */
+	private Map<Long, int[]> entries;
+
+	/**
+	 * Creates the table file name and random entries at distinct indexes.
+	 */
+	@Before
+	public void createEntries() {
+		this.file = new File(folder.getRoot(), TranspositionTable.getFileName(LINES));
+		this.entries = new HashMap<Long, int[]>();
+		Random random = new Random(50);
+		boolean[] used = new boolean[1 << SIZE_BITS];
+		while (entries.size() < ENTRIES) {
+			long key = random.nextLong();
+			int index = (int) key & (used.length - 1);
+			if (!used[index]) {
+				used[index] = true;
+				// Score, depth, flag and move, which is -1 now and then
+				entries.put(key, new int[] { random.nextInt(2001) - 1000, 1 + random.nextInt(40), random.nextInt(3),
+						random.nextInt(LINES.getCellsCount() + 1) - 1 });
+			}
+		}
+	}
+
+	/**
+	 * Tests that the entries of a closed table are restored.
+	 */
+	@Test
+	public void testEntriesRestored() throws IOException {
+		try (TranspositionTable table = TranspositionTable.open(file, LINES, SIZE_BITS)) {
+			assertTrue(table.isPersistent());
+			assertFalse(table.isRestored());
+			assertFalse(table.isShared());
+			storeEntries(table);
+		}
+		assertEquals(HEADER_BYTES + 2 * ((long) Long.BYTES << SIZE_BITS), file.length());
+		try (TranspositionTable table = TranspositionTable.open(file, LINES, SIZE_BITS)) {
+			assertTrue(table.isRestored());
+			assertFalse(table.isShared());
+			assertEntries(table);
+		}
+	}
+
+	/**
+	 * Tests the header written while a table is open and after it is closed.
+	 */
+	@Test
+	public void testHeaderWritten() throws IOException {
+		try (TranspositionTable table = TranspositionTable.open(file, LINES, SIZE_BITS)) {
+			storeEntries(table);
+			ByteBuffer header = readHeader();
+			assertEquals('T' | 'T' << 8 | 'T' << 16 | 'P' << 24, header.getInt(0));
+			assertEquals(1, header.getInt(4));
+			assertEquals(SIZE_BITS, header.getInt(8));
+			assertEquals(0, header.getInt(STATE_OFFSET));
+		}
+		ByteBuffer header = readHeader();
+		assertEquals(1, header.getInt(STATE_OFFSET));
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		CRC32 checksum = new CRC32();
+		checksum.update(bytes, HEADER_BYTES, bytes.length - HEADER_BYTES);
+		assertEquals(checksum.getValue(), header.getLong(CHECKSUM_OFFSET));
+	}
+
+	/**
+	 * Tests that a file left dirty by a crash starts empty.
+	 */
+	@Test
+	public void testDirtyFileCleared() throws IOException {
+		writeTable();
+		ByteBuffer header = readHeader();
+		header.putInt(STATE_OFFSET, 0);
+		writeHeader(header);
+		assertCleared(SIZE_BITS);
+	}
+
+	/**
+	 * Tests that a file whose entries do not match the checksum starts empty.
+	 */
+	@Test
+	public void testChangedEntriesCleared() throws IOException {
+		writeTable();
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		bytes[bytes.length - 1] ^= 1;
+		Files.write(file.toPath(), bytes);
+		assertCleared(SIZE_BITS);
+	}
+
+	/**
+	 * Tests that a file of another board or size starts empty.
+	 */
+	@Test
+	public void testOtherTablesCleared() throws IOException {
+		writeTable();
+		try (TranspositionTable table = TranspositionTable.open(file, Lines.mnk(7, 7, 5), SIZE_BITS)) {
+			assertFalse(table.isRestored());
+		}
+		writeTable();
+		assertCleared(SIZE_BITS + 1);
+	}
+
+	/**
+	 * Tests that a table opened while another one writes to the file shares
+	 * its entries without writing to it.
+	 */
+	@Test
+	public void testSecondTableShared() throws IOException {
+		try (TranspositionTable table = TranspositionTable.open(file, LINES, SIZE_BITS)) {
+			storeEntries(table);
+			try (TranspositionTable sharedTable = TranspositionTable.open(file, LINES, SIZE_BITS)) {
+				assertTrue(sharedTable.isShared());
+				assertTrue(sharedTable.isPersistent());
+				assertEntries(sharedTable);
+				long key = 1L << 40;
+				sharedTable.store(key, 1, 1, TranspositionTable.EXACT, 0);
+				assertTrue(sharedTable.probe(key) != TranspositionTable.MISS);
+				assertEquals(TranspositionTable.MISS, table.probe(key));
+			}
+			assertEntries(table);
+		}
+	}
+
+	/**
+	 * Tests that a closed table stores no more entries.
+	 */
+	@Test
+	public void testClosedTableIgnoresStores() throws IOException {
+		TranspositionTable table = TranspositionTable.open(file, LINES, SIZE_BITS);
+		table.close();
+		table.close();
+		table.store(1, 1, 1, TranspositionTable.EXACT, 0);
+		assertEquals(TranspositionTable.MISS, table.probe(1));
+	}
+
+	/**
+	 * Stores the random entries in a table.
+	 *
+	 * @param table the table to store the entries in
+	 */
+	private void storeEntries(final TranspositionTable table) {
+		for (Map.Entry<Long, int[]> entry : entries.entrySet()) {
+			int[] values = entry.getValue();
+			table.store(entry.getKey(), values[0], values[1], values[2], values[3]);
+		}
+	}
+
+	/**
+	 * Asserts that a table holds the stored entries.
+	 *
+	 * @param table the table to probe
+	 */
+	private void assertEntries(final TranspositionTable table) {
+		for (Map.Entry<Long, int[]> stored : entries.entrySet()) {
+			long entry = table.probe(stored.getKey());
+			int[] expected = stored.getValue();
+			assertEquals(expected[0], TranspositionTable.getScore(entry));
+			assertEquals(expected[1], TranspositionTable.getDepth(entry));
+			assertEquals(expected[2], TranspositionTable.getFlag(entry));
+			assertEquals(expected[3], TranspositionTable.getMove(entry));
+		}
+	}
+
+	/**
+	 * Asserts that a table opened on the file starts empty.
+	 *
+	 * @param sizeBits the base two logarithm of the amount of entries
+	 * @throws IOException if the file can not be read or written
+	 */
+	private void assertCleared(final int sizeBits) throws IOException {
+		try (TranspositionTable table = TranspositionTable.open(file, LINES, sizeBits)) {
+			assertFalse(table.isRestored());
+			for (long key : entries.keySet()) {
+				assertEquals(TranspositionTable.MISS, table.probe(key));
+			}
+		}
+	}
+
+	/**
+	 * Writes the random entries to the file.
+	 *
+	 * @throws IOException if the file can not be written
+	 */
+	private void writeTable() throws IOException {
+		try (TranspositionTable table = TranspositionTable.open(file, LINES, SIZE_BITS)) {
+			storeEntries(table);
+		}
+	}
+
+	/**
+	 * Reads the header of the file.
+	 *
+	 * @return the little endian header
+	 * @throws IOException if the file can not be read
+	 */
+	private ByteBuffer readHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file.toPath()), 0, HEADER_BYTES).slice();
+		return header.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Writes the header of the file.
+	 *
+	 * @param header the little endian header
+	 * @throws IOException if the file can not be read or written
+	 */
+	private void writeHeader(final ByteBuffer header) throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		header.rewind();
+		header.get(bytes, 0, HEADER_BYTES);
+		Files.write(file.toPath(), bytes);
+	}
+
+}
@@ -0,0 +1,120 @@
+package de.sengerts.tictactoe.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.sengerts.tictactoe.engine.generated.GeneratedWinCheckers;
+
+/**
+ * Tests of the win checkers generated at build time.
+ *
+ * The constant line masks of every generated checker are compared with masks
+ * built from the lines of {@link Lines} in the padded bit layout of
+ * {@link Board}, and the checkers are compared with the bit-parallel run check
+ * on random boards with nearly and fully completed lines.
+ *
+ * @author Tobias Senger
+ */
+public class WinCheckersTest {
+
+	/**
+	 * Class variable that stores the amount of random boards compared per
+	 * size.
+	 */
+	private static final int BOARDS = 500;
+
+	/**
+	 * Tests that the generated checker is picked for every generated size of
+	 * the classic rules.
+	 */
+	@Test
+	public void testGeneratedCheckersArePicked() {
+		for (int size = GeneratedWinCheckers.MIN_SIZE; size <= GeneratedWinCheckers.MAX_SIZE; size++) {
+			WinChecker checker = WinCheckers.get(size, size, size);
+			assertSame(GeneratedWinCheckers.get(size), checker);
+			assertFalse(checker instanceof RunWinChecker);
+		}
+	}
+
+	/**
+	 * Tests that other rules and sizes fall back to the run check.
+	 */
+	@Test
+	public void testOtherRulesFallBackToRuns() {
+		assertTrue(WinCheckers.get(7, 7, 4) instanceof RunWinChecker);
+		assertTrue(WinCheckers.get(4, 5, 5) instanceof RunWinChecker);
+		int size = GeneratedWinCheckers.MAX_SIZE + 1;
+		assertTrue(WinCheckers.get(size, size, size) instanceof RunWinChecker);
+	}
+
+	/**
+	 * Tests the masks of every generated checker against the lines.
+	 */
+	@Test
+	public void testMasksMatchLines() {
+		for (int size = GeneratedWinCheckers.MIN_SIZE; size <= GeneratedWinCheckers.MAX_SIZE; size++) {
+			Lines lines = Lines.mnk(size, size, size);
+			WinChecker checker = WinCheckers.get(size, size, size);
+			int wordsCount = new Board(lines).getWordsCount();
+			assertEquals(2 * size + 2, checker.getLinesCount());
+			assertEquals(lines.getLinesCount(), checker.getLinesCount());
+			assertEquals(wordsCount, checker.getWordsCount());
+			for (int line = 0; line < lines.getLinesCount(); line++) {
+				long[] expected = new long[wordsCount];
+				for (int cell : lines.getLineCells(line)) {
+					int bit = cell / size * (size + 1) + cell % size;
+					expected[bit >>> 6] |= 1L << (bit & 63);
+				}
+				for (int word = 0; word < wordsCount; word++) {
+					assertEquals("size " + size + " line " + line + " word " + word, expected[word],
+							checker.getLineMask(line, word));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests every generated checker against the run check on random boards.
+	 */
+	@Test
+	public void testCheckersMatchRuns() {
+		Random random = new Random(30);
+		for (int size = GeneratedWinCheckers.MIN_SIZE; size <= GeneratedWinCheckers.MAX_SIZE; size++) {
+			Lines lines = Lines.mnk(size, size, size);
+			WinChecker checker = WinCheckers.get(size, size, size);
+			int wonCount = 0;
+			for (int i = 0; i < BOARDS; i++) {
+				Board board = new Board(lines);
+				int side = random.nextInt(Board.SIDES);
+				int[] cells = lines.getLineCells(random.nextInt(lines.getLinesCount()));
+				// Half of the lines are left one cell short of complete
+				int skipped = random.nextBoolean() ? cells[random.nextInt(cells.length)] : -1;
+				for (int cell : cells) {
+					if (cell != skipped) {
+						board.mark(cell, side);
+					}
+				}
+				for (int cell = 0; cell < board.getCellsCount(); cell++) {
+					if (board.isEmpty(cell) && cell != skipped && random.nextInt(3) == 0) {
+						board.mark(cell, random.nextInt(Board.SIDES));
+					}
+				}
+				for (int checked = 0; checked < Board.SIDES; checked++) {
+					boolean expected = board.hasWinningRun(checked);
+					assertEquals("size " + size, expected, checker.hasWinningLine(board, checked));
+					if (expected) {
+						wonCount++;
+					}
+				}
+			}
+			assertTrue(wonCount > BOARDS / 4 && wonCount < 2 * BOARDS);
+		}
+	}
+
+}
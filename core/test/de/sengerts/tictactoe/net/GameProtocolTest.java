@@ -0,0 +1,342 @@
+package de.sengerts.tictactoe.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+import de.sengerts.tictactoe.model.settings.GameRules;
+
+/**
+ * Tests of the encoding and decoding of the messages of {@link GameProtocol}.
+ *
+ * Every message type is written into a buffer and read back frame by frame,
+ * and malformed input is checked to be rejected without reading past the
+ * frame.
+ *
+ * @author Tobias Senger
+ */
+public class GameProtocolTest {
+
+	/**
+	 * Class variable that stores the capacity of the buffers messages are
+	 * written into, enough for the state of the biggest board.
+	 */
+	private static final int CAPACITY = 1024;
+
+	/**
+	 * Tests that a request to start a new game is read back.
+	 */
+	@Test
+	public void testNewGameRoundTrip() throws ProtocolException {
+		ByteBuffer out = ByteBuffer.allocate(CAPACITY);
+		GameProtocol.writeNewGame(out, 7, AIDifficulty.HARD, new GameRules(true, 4));
+		ByteBuffer frame = readSingleFrame(out);
+		assertEquals(GameProtocol.NEW_GAME, GameProtocol.readType(frame));
+		assertEquals(7, GameProtocol.readByte(frame));
+		assertEquals(AIDifficulty.HARD.ordinal(), GameProtocol.readByte(frame));
+		assertEquals(4, GameProtocol.readByte(frame));
+		assertEquals(GameProtocol.FLAG_EARLY_DRAW_DETECTION, GameProtocol.readByte(frame));
+		assertFalse(frame.hasRemaining());
+	}
+
+	/**
+	 * Tests that the messages carrying a game id are read back.
+	 */
+	@Test
+	public void testGameIdRoundTrips() throws ProtocolException {
+		ByteBuffer out = ByteBuffer.allocate(CAPACITY);
+		GameProtocol.writeResume(out, 0x0123456789ABCDEFL);
+		GameProtocol.writeJoined(out, -2L);
+		out.flip();
+		ByteBuffer resume = GameProtocol.nextFrame(out);
+		assertEquals(GameProtocol.RESUME, GameProtocol.readType(resume));
+		assertEquals(0x0123456789ABCDEFL, GameProtocol.readGameId(resume));
+		ByteBuffer joined = GameProtocol.nextFrame(out);
+		assertEquals(GameProtocol.JOINED, GameProtocol.readType(joined));
+		assertEquals(-2L, GameProtocol.readGameId(joined));
+		assertNull(GameProtocol.nextFrame(out));
+	}
+
+	/**
+	 * Tests that the messages without a board are read back.
+	 */
+	@Test
+	public void testShortMessageRoundTrips() throws ProtocolException {
+		ByteBuffer out = ByteBuffer.allocate(CAPACITY);
+		GameProtocol.writeMove(out, 300);
+		GameProtocol.writeResync(out);
+		GameProtocol.writeEnded(out, GameProtocol.RESULT_DRAW);
+		GameProtocol.writeError(out, GameProtocol.ERROR_ILLEGAL_MOVE);
+		out.flip();
+		ByteBuffer move = GameProtocol.nextFrame(out);
+		assertEquals(GameProtocol.MOVE, GameProtocol.readType(move));
+		assertEquals(300, GameProtocol.readCell(move));
+		ByteBuffer resync = GameProtocol.nextFrame(out);
+		assertEquals(GameProtocol.RESYNC, GameProtocol.readType(resync));
+		assertFalse(resync.hasRemaining());
+		ByteBuffer ended = GameProtocol.nextFrame(out);
+		assertEquals(GameProtocol.ENDED, GameProtocol.readType(ended));
+		assertEquals(GameProtocol.RESULT_DRAW, GameProtocol.readByte(ended));
+		ByteBuffer error = GameProtocol.nextFrame(out);
+		assertEquals(GameProtocol.ERROR, GameProtocol.readType(error));
+		assertEquals(GameProtocol.ERROR_ILLEGAL_MOVE, GameProtocol.readByte(error));
+		assertNull(GameProtocol.nextFrame(out));
+	}
+
+	/**
+	 * Tests that a move made in a game is read back with its side, cell and
+	 * hash.
+	 */
+	@Test
+	public void testMovedRoundTrip() throws ProtocolException {
+		Board board = new Board(Lines.mnk(21, 21, 5));
+		board.mark(440, 1);
+		ByteBuffer out = ByteBuffer.allocate(CAPACITY);
+		GameProtocol.writeMoved(out, 1, 440, board.getHash());
+		ByteBuffer frame = readSingleFrame(out);
+		assertEquals(GameProtocol.MOVED, GameProtocol.readType(frame));
+		int move = GameProtocol.readVarint(frame);
+		assertEquals(1, GameProtocol.getMoveSide(move));
+		assertEquals(440, GameProtocol.getMoveCell(move));
+		assertEquals(board.getHash(), GameProtocol.readHash(frame));
+		assertFalse(frame.hasRemaining());
+	}
+
+	/**
+	 * Tests that the full state of a small game is read back.
+	 */
+	@Test
+	public void testStateRoundTrip() throws ProtocolException {
+		Board board = new Board(Lines.mnk(3, 3, 3));
+		board.mark(0, 0);
+		board.mark(4, 1);
+		board.mark(8, 0);
+		assertStateRoundTrip(board, true);
+	}
+
+	/**
+	 * Tests that the full state of the biggest board is read back.
+	 */
+	@Test
+	public void testBigStateRoundTrip() throws ProtocolException {
+		Board board = new Board(Lines.mnk(GameProtocol.MAX_SIZE, GameProtocol.MAX_SIZE, 5));
+		for (int cell = 0; cell < board.getCellsCount(); cell += 3) {
+			board.mark(cell, cell % 2);
+		}
+		assertStateRoundTrip(board, false);
+	}
+
+	/**
+	 * Tests that the edge values of varints are read back with their expected
+	 * lengths.
+	 */
+	@Test
+	public void testVarintEdgeValues() {
+		int[] values = { 0, 127, 128, 16383, 16384, Integer.MAX_VALUE };
+		int[] lengths = { 1, 1, 2, 2, 3, 5 };
+		for (int i = 0; i < values.length; i++) {
+			ByteBuffer buffer = ByteBuffer.allocate(8);
+			GameProtocol.writeVarint(buffer, values[i]);
+			assertEquals("length of " + values[i], lengths[i], buffer.position());
+			buffer.flip();
+			assertEquals(values[i], GameProtocol.readVarint(buffer));
+			assertFalse(buffer.hasRemaining());
+		}
+	}
+
+	/**
+	 * Tests that varints of negative values are neither written nor read.
+	 */
+	@Test
+	public void testNegativeVarintsRejected() {
+		try {
+			GameProtocol.writeVarint(ByteBuffer.allocate(8), -1);
+			fail("Negative value was written");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertVarintRejected(0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+		assertVarintRejected(0x80, 0x80, 0x80, 0x80, 0x08);
+		assertVarintRejected(0x80, 0x80, 0x80, 0x80, 0x80, 0x01);
+	}
+
+	/**
+	 * Tests that truncated frames are not returned and leave the buffer
+	 * unchanged until they are complete.
+	 */
+	@Test
+	public void testTruncatedFramesWaitForMoreBytes() throws ProtocolException {
+		ByteBuffer out = ByteBuffer.allocate(CAPACITY);
+		GameProtocol.writeState(out, new Board(Lines.mnk(GameProtocol.MAX_SIZE, GameProtocol.MAX_SIZE, 5)), true);
+		byte[] bytes = new byte[out.position()];
+		out.flip();
+		out.get(bytes);
+		for (int length = 0; length < bytes.length; length++) {
+			ByteBuffer in = ByteBuffer.wrap(bytes, 0, length);
+			assertNull("frame of " + length + " bytes", GameProtocol.nextFrame(in));
+			assertEquals(0, in.position());
+		}
+		assertNotNull(GameProtocol.nextFrame(ByteBuffer.wrap(bytes)));
+	}
+
+	/**
+	 * Tests that a frame with a two byte length is read whole.
+	 */
+	@Test
+	public void testTwoByteFrameLength() throws ProtocolException {
+		ByteBuffer in = ByteBuffer.allocate(2 + 300 + 1);
+		in.put((byte) 0xAC).put((byte) 0x02);
+		in.put((byte) GameProtocol.RESYNC);
+		in.position(2 + 300);
+		in.put((byte) 0);
+		in.flip();
+		ByteBuffer frame = GameProtocol.nextFrame(in);
+		assertEquals(300, frame.remaining());
+		assertEquals(GameProtocol.RESYNC, GameProtocol.readType(frame));
+		assertEquals(1, in.remaining());
+	}
+
+	/**
+	 * Tests that frame lengths above the limit are reported as protocol
+	 * errors.
+	 */
+	@Test
+	public void testOversizedFramesRejected() {
+		assertFrameRejected(0x80, 0x80, 0x01);
+		assertFrameRejected(0xFF, 0xFF, 0xFF, 0x01);
+		assertFrameRejected(0xFF, 0xFF, 0x7F);
+	}
+
+	/**
+	 * Tests that boards with sizes or win lengths no message can carry are
+	 * rejected before their lines are built.
+	 */
+	@Test
+	public void testInvalidBoardsRejected() {
+		assertBoardRejected(0, 3, 3);
+		assertBoardRejected(GameProtocol.MIN_SIZE - 1, 3, 3);
+		assertBoardRejected(GameProtocol.MAX_SIZE + 1, GameProtocol.MAX_SIZE + 1, 5);
+		assertBoardRejected(255, 255, 255);
+		assertBoardRejected(3, 3, 2);
+		assertBoardRejected(4, 4, 5);
+	}
+
+	/**
+	 * Writes the state of a board and asserts that it is read back.
+	 *
+	 * @param board the board of the state
+	 * @param clientsTurn whether it is the client's turn
+	 * @throws ProtocolException if the written frame is malformed
+	 */
+	private static void assertStateRoundTrip(final Board board, final boolean clientsTurn)
+			throws ProtocolException {
+		ByteBuffer out = ByteBuffer.allocate(CAPACITY);
+		GameProtocol.writeState(out, board, clientsTurn);
+		ByteBuffer frame = readSingleFrame(out);
+		assertEquals(GameProtocol.STATE, GameProtocol.readType(frame));
+		assertEquals(clientsTurn, (GameProtocol.readByte(frame) & GameProtocol.FLAG_CLIENTS_TURN) != 0);
+		assertEquals(board.getHash(), GameProtocol.readHash(frame));
+		Board read = GameProtocol.readBoard(frame);
+		assertFalse(frame.hasRemaining());
+		assertSame(board.getLines(), read.getLines());
+		assertEquals(board.getHash(), read.getHash());
+		int[] sides = new int[board.getCellsCount()];
+		int[] readSides = new int[read.getCellsCount()];
+		for (int cell = 0; cell < sides.length; cell++) {
+			sides[cell] = board.getSide(cell);
+			readSides[cell] = read.getSide(cell);
+		}
+		assertArrayEquals(sides, readSides);
+	}
+
+	/**
+	 * Reads the only frame of a written buffer.
+	 *
+	 * @param out the buffer the frame was written to
+	 * @return the frame, after which the buffer is empty
+	 * @throws ProtocolException if the written frame is malformed
+	 */
+	private static ByteBuffer readSingleFrame(final ByteBuffer out) throws ProtocolException {
+		out.flip();
+		ByteBuffer frame = GameProtocol.nextFrame(out);
+		assertNotNull(frame);
+		assertFalse(out.hasRemaining());
+		return frame;
+	}
+
+	/**
+	 * Asserts that a varint is rejected.
+	 *
+	 * @param bytes the bytes of the varint
+	 */
+	private static void assertVarintRejected(final int... bytes) {
+		try {
+			GameProtocol.readVarint(wrap(bytes));
+			fail("Varint was read");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Asserts that a frame length is rejected as a protocol error.
+	 *
+	 * @param bytes the bytes of the frame length
+	 */
+	private static void assertFrameRejected(final int... bytes) {
+		try {
+			GameProtocol.nextFrame(wrap(bytes));
+			fail("Frame was accepted");
+		} catch (ProtocolException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Asserts that a board payload is rejected.
+	 *
+	 * @param rowsCount the amount of rows of the payload
+	 * @param columnsCount the amount of columns of the payload
+	 * @param winLength the win length of the payload
+	 */
+	private static void assertBoardRejected(final int rowsCount, final int columnsCount, final int winLength) {
+		ByteBuffer payload = ByteBuffer.allocate(3 + 128);
+		payload.put((byte) rowsCount).put((byte) columnsCount).put((byte) winLength);
+		payload.position(0);
+		try {
+			GameProtocol.readBoard(payload);
+			fail("Board " + rowsCount + "x" + columnsCount + " k=" + winLength + " was read");
+		} catch (IllegalArgumentException e) {
+			assertTrue(payload.position() <= 3);
+		}
+	}
+
+	/**
+	 * Wraps unsigned bytes into a buffer.
+	 *
+	 * @param bytes the unsigned bytes
+	 * @return the buffer ready for reading
+	 */
+	private static ByteBuffer wrap(final int... bytes) {
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+		for (int value : bytes) {
+			buffer.put((byte) value);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+}
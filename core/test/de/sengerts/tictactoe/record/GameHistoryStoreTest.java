@@ -0,0 +1,252 @@
+package de.sengerts.tictactoe.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.model.GameState;
+import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
+
+/**
+ * Tests of the append-only {@link GameHistoryStore}.
+ *
+ * Records are appended until the log rolls over into its second mapped
+ * region and read back by id, by a scan and after reopening the store, and
+ * stores whose index or log was damaged are checked to recover every game in
+ * front of the damage and to append behind it.
+ *
+ * @author Tobias Senger
+ */
+public class GameHistoryStoreTest {
+
+	/**
+	 * Class variable that stores the base name of the files of the stores.
+	 */
+	private static final String NAME = "games";
+
+	/**
+	 * Class variable that stores the amount of games of the stores that are
+	 * damaged.
+	 */
+	private static final int GAMES = 100;
+
+	/**
+	 * Class variable that stores the id of the first damaged game.
+	 */
+	private static final int DAMAGED_ID = 60;
+
+	/**
+	 * Instance variable that stores the folder of the files of the stores.
+	 */
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that records are read back after the log rolled over into the next
+	 * region.
+	 */
+	@Test
+	public void testRecordsRollOverRegions() throws IOException {
+		long gamesCount;
+		try (GameHistoryStore store = new GameHistoryStore(folder.getRoot(), NAME)) {
+			while (store.getDataBytes() < GameHistoryStore.DATA_REGION_BYTES + (1 << 20)) {
+				long id = store.getGamesCount();
+				assertEquals(id, store.append(createLongRecord(id)));
+			}
+			gamesCount = store.getGamesCount();
+			for (long id = 0; id < gamesCount; id += 97) {
+				assertEquals(createLongRecord(id), store.get(id));
+			}
+			final List<GameRecord> mismatches = new ArrayList<GameRecord>();
+			final long[] nextId = new long[1];
+			assertEquals(gamesCount, store.scan(record -> {
+				if (!record.equals(createLongRecord(nextId[0]++))) {
+					mismatches.add(record);
+				}
+			}));
+			assertEquals(gamesCount, nextId[0]);
+			assertTrue(mismatches.isEmpty());
+		}
+		try (GameHistoryStore store = new GameHistoryStore(folder.getRoot(), NAME)) {
+			assertEquals(gamesCount, store.getGamesCount());
+			for (long id = gamesCount - 200; id < gamesCount; id++) {
+				assertEquals(createLongRecord(id), store.get(id));
+			}
+			assertEquals(gamesCount, store.append(createLongRecord(gamesCount)));
+			assertEquals(createLongRecord(gamesCount), store.get(gamesCount));
+		}
+	}
+
+	/**
+	 * Tests that a store whose index entry points behind the log recovers the
+	 * games in front of it and overwrites the rest.
+	 */
+	@Test
+	public void testRecoveryStopsAtInvalidIndexEntry() throws IOException {
+		appendShortRecords();
+		try (RandomAccessFile index = new RandomAccessFile(getFile(GameHistoryStore.INDEX_EXTENSION), "rw")) {
+			index.seek(DAMAGED_ID * Long.BYTES);
+			index.writeLong(Long.MAX_VALUE);
+		}
+		assertRecoveredUpToDamage();
+	}
+
+	/**
+	 * Tests that a store whose log holds no valid record at an index entry
+	 * recovers the games in front of it and overwrites the rest.
+	 */
+	@Test
+	public void testRecoveryStopsAtTornRecord() throws IOException {
+		appendShortRecords();
+		long offset;
+		try (RandomAccessFile index = new RandomAccessFile(getFile(GameHistoryStore.INDEX_EXTENSION), "r")) {
+			index.seek(DAMAGED_ID * Long.BYTES);
+			offset = index.readLong();
+		}
+		try (RandomAccessFile log = new RandomAccessFile(getFile(GameHistoryStore.LOG_EXTENSION), "rw")) {
+			// A zero length marks the unused rest of a region, not a record
+			log.seek(offset);
+			log.write(0);
+		}
+		assertRecoveredUpToDamage();
+	}
+
+	/**
+	 * Tests that a log file of another format is rejected.
+	 */
+	@Test
+	public void testOtherFilesRejected() throws IOException {
+		Files.write(getFile(GameHistoryStore.LOG_EXTENSION).toPath(), "Not a game history".getBytes("UTF-8"));
+		try {
+			new GameHistoryStore(folder.getRoot(), NAME).close();
+			fail("Store was opened");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that only the ids of stored games are read.
+	 */
+	@Test
+	public void testUnknownIdsRejected() throws IOException {
+		try (GameHistoryStore store = new GameHistoryStore(folder.getRoot(), NAME)) {
+			store.append(createShortRecord(0));
+			for (long id : new long[] { -1, 1 }) {
+				try {
+					store.get(id);
+					fail("Game " + id + " was read");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+	/**
+	 * Appends {@link #GAMES} short records to a new store and closes it.
+	 *
+	 * @throws IOException if the store can not be written
+	 */
+	private void appendShortRecords() throws IOException {
+		try (GameHistoryStore store = new GameHistoryStore(folder.getRoot(), NAME)) {
+			for (int id = 0; id < GAMES; id++) {
+				store.append(createShortRecord(id));
+			}
+		}
+	}
+
+	/**
+	 * Asserts that a damaged store holds the games in front of the first
+	 * damaged one and appends behind them, also after it is reopened.
+	 *
+	 * @throws IOException if the store can not be read or written
+	 */
+	private void assertRecoveredUpToDamage() throws IOException {
+		try (GameHistoryStore store = new GameHistoryStore(folder.getRoot(), NAME)) {
+			assertEquals(DAMAGED_ID, store.getGamesCount());
+			for (int id = 0; id < DAMAGED_ID; id++) {
+				assertEquals(createShortRecord(id), store.get(id));
+			}
+			assertEquals(DAMAGED_ID, store.append(createShortRecord(GAMES)));
+		}
+		try (GameHistoryStore store = new GameHistoryStore(folder.getRoot(), NAME)) {
+			assertEquals(DAMAGED_ID + 1, store.getGamesCount());
+			assertEquals(createShortRecord(GAMES), store.get(DAMAGED_ID));
+			assertEquals(DAMAGED_ID + 1, store.scan(record -> {
+			}));
+		}
+	}
+
+	/**
+	 * Gets a file of the store.
+	 *
+	 * @param extension the file name extension of the file
+	 * @return the file with the given extension
+	 */
+	private File getFile(final String extension) {
+		return new File(folder.getRoot(), NAME + extension);
+	}
+
+	/**
+	 * Creates the record of an unfinished game marking every cell of the
+	 * biggest board in a random order.
+	 *
+	 * @param id the id of the game, which seeds the order of the moves
+	 * @return the record of the game
+	 */
+	private static GameRecord createLongRecord(final long id) {
+		return createRecord(id, 21, 21 * 21);
+	}
+
+	/**
+	 * Creates the record of an unfinished game of a few random moves.
+	 *
+	 * @param id the id of the game, which seeds the moves
+	 * @return the record of the game
+	 */
+	private static GameRecord createShortRecord(final long id) {
+		return createRecord(id, 3, 1 + (int) (id % 8));
+	}
+
+	/**
+	 * Creates the record of an unfinished game of random moves.
+	 *
+	 * @param id the id of the game, which seeds the moves
+	 * @param size the amount of rows and columns of the board
+	 * @param movesCount the amount of moves
+	 * @return the record of the game
+	 */
+	private static GameRecord createRecord(final long id, final int size, final int movesCount) {
+		Random random = new Random(id);
+		int[] cells = new int[size * size];
+		for (int cell = 0; cell < cells.length; cell++) {
+			cells[cell] = cell;
+		}
+		for (int i = cells.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int cell = cells[i];
+			cells[i] = cells[j];
+			cells[j] = cell;
+		}
+		int[] moves = new int[movesCount];
+		System.arraycopy(cells, 0, moves, 0, movesCount);
+		return new GameRecord(new Dimension(size, size), false, null, GameRules.CLASSIC, id, (int) (id & 1),
+				GameState.INGAME, Board.NO_SIDE, moves);
+	}
+
+}
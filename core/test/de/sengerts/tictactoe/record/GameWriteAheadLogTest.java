@@ -0,0 +1,361 @@
+package de.sengerts.tictactoe.record;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.logic.GameSnapshot;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
+
+/**
+ * Tests of the {@link GameWriteAheadLog}.
+ *
+ * Random games are logged next to boards kept by the test, and the log file is
+ * copied while the log is open to stand in for a crash. The games recovered
+ * from the copies are compared with the boards of the test, also after the
+ * last entry of a copy was torn or corrupted.
+ *
+ * @author Tobias Senger
+ */
+public class GameWriteAheadLogTest {
+
+	/**
+	 * Class variable that stores the size of the logged games.
+	 */
+	private static final Dimension SIZE = new Dimension(5, 5);
+
+	/**
+	 * Class variable that stores the amount of logged games.
+	 */
+	private static final int GAMES = 20;
+
+	/**
+	 * Class variable that stores the amount of moves of a logged game, which is
+	 * too few for a side to complete a line of the board.
+	 */
+	private static final int MOVES = 8;
+
+	/**
+	 * Class variable that stores a group commit interval long enough for no
+	 * periodic commit to happen while a test runs.
+	 */
+	private static final long NO_PERIODIC_COMMIT = TimeUnit.HOURS.toMillis(1);
+
+	/**
+	 * Instance variable that stores the folder of the log files.
+	 */
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Instance variable that stores the boards of the running games by their
+	 * ids.
+	 */
+	private Map<Long, Board> boards;
+
+	/**
+	 * Instance variable that stores the side that moved last in the running
+	 * games by their ids.
+	 */
+	private Map<Long, Integer> lastSides;
+
+	/**
+	 * Instance variable that stores the random number generator of the moves.
+	 */
+	private Random random;
+
+	/**
+	 * Clears the running games.
+	 */
+	@Before
+	public void clearGames() {
+		this.boards = new HashMap<Long, Board>();
+		this.lastSides = new HashMap<Long, Integer>();
+		this.random = new Random(43);
+	}
+
+	/**
+	 * Tests that the running games are recovered after the log was closed, but
+	 * neither the left nor the ended games.
+	 */
+	@Test
+	public void testRunningGamesRecovered() throws IOException {
+		File file = folder.newFile("games.wal");
+		try (GameWriteAheadLog log = new GameWriteAheadLog(file)) {
+			assertEquals(0, log.getGamesCount());
+			assertTrue(log.getRecoveredGames().isEmpty());
+			logGames(log);
+			log.gameLeft(3);
+			boards.remove(3L);
+			// The first side completes the first row of the board
+			log.gameStarted(GAMES, createSnapshot(new Board(getLines()), 0, GAMES));
+			for (int column = 0; column < SIZE.getColumnsCount(); column++) {
+				log.moveMade(GAMES, 0, column);
+				if (column < SIZE.getColumnsCount() - 1) {
+					log.moveMade(GAMES, 1, SIZE.getColumnsCount() + column);
+				}
+			}
+			assertEquals(GAMES, log.getGamesCount());
+		}
+		try (GameWriteAheadLog log = new GameWriteAheadLog(file)) {
+			assertRecovered(log);
+			assertEquals(GAMES - 1, log.getGamesCount());
+		}
+	}
+
+	/**
+	 * Tests that one commit writes all entries logged since the last one and
+	 * that entries are recovered once they are committed.
+	 */
+	@Test
+	public void testEntriesGroupCommitted() throws IOException {
+		File file = folder.newFile("games.wal");
+		try (GameWriteAheadLog log = new GameWriteAheadLog(file, NO_PERIODIC_COMMIT,
+				GameWriteAheadLog.DEFAULT_COMPACTION_BYTES)) {
+			logGames(log);
+			assertEquals(0, log.getCommitsCount());
+			log.sync();
+			assertEquals(1, log.getCommitsCount());
+			log.sync();
+			assertEquals(1, log.getCommitsCount());
+			File crashed = copy(file);
+			log.moveMade(0, Board.getOpponent(lastSides.get(0L)), getEmptyCell(boards.get(0L)));
+			assertRecovered(crashed);
+		}
+	}
+
+	/**
+	 * Tests that the recovery stops at a torn last entry.
+	 */
+	@Test
+	public void testRecoveryStopsAtTornEntry() throws IOException {
+		File crashed = logGamesAndMove();
+		try (RandomAccessFile log = new RandomAccessFile(crashed, "rw")) {
+			log.setLength(log.length() - 1);
+		}
+		assertRecovered(crashed);
+	}
+
+	/**
+	 * Tests that the recovery stops at a last entry whose checksum does not
+	 * match.
+	 */
+	@Test
+	public void testRecoveryStopsAtCorruptedEntry() throws IOException {
+		File crashed = logGamesAndMove();
+		try (RandomAccessFile log = new RandomAccessFile(crashed, "rw")) {
+			// The last byte of the payload in front of the checksum
+			log.seek(log.length() - Integer.BYTES - 1);
+			int value = log.read();
+			log.seek(log.length() - Integer.BYTES - 1);
+			log.write(value ^ 1);
+		}
+		assertRecovered(crashed);
+	}
+
+	/**
+	 * Tests that the log file is compacted once it has grown by the compaction
+	 * size.
+	 */
+	@Test
+	public void testLogCompacted() throws IOException {
+		File file = folder.newFile("games.wal");
+		try (GameWriteAheadLog log = new GameWriteAheadLog(file, NO_PERIODIC_COMMIT, 1 << 10)) {
+			assertEquals(1, log.getCompactionsCount());
+			for (long id = 0; id < GAMES; id++) {
+				startGame(log, id);
+				log.sync();
+			}
+			long maxLength = 0;
+			for (int move = 0; move < MOVES; move++) {
+				for (long id = 0; id < GAMES; id++) {
+					makeMove(log, id);
+					log.sync();
+					maxLength = Math.max(maxLength, file.length());
+				}
+			}
+			assertTrue(log.getCompactionsCount() > 2);
+			assertTrue(maxLength < 4 << 10);
+			assertRecovered(copy(file));
+		}
+	}
+
+	/**
+	 * Tests that a log file of another format is rejected.
+	 */
+	@Test
+	public void testOtherFilesRejected() throws IOException {
+		File file = folder.newFile("games.wal");
+		Files.write(file.toPath(), "Not a write-ahead log".getBytes("UTF-8"));
+		try {
+			new GameWriteAheadLog(file).close();
+			fail("Log was opened");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Logs the random games, commits them and logs one more move.
+	 *
+	 * @return a copy of the log file holding the games but the last move
+	 * @throws IOException if the log file can not be written
+	 */
+	private File logGamesAndMove() throws IOException {
+		File file = folder.newFile("games.wal");
+		try (GameWriteAheadLog log = new GameWriteAheadLog(file, NO_PERIODIC_COMMIT,
+				GameWriteAheadLog.DEFAULT_COMPACTION_BYTES)) {
+			logGames(log);
+			log.sync();
+			log.moveMade(0, Board.getOpponent(lastSides.get(0L)), getEmptyCell(boards.get(0L)));
+			log.sync();
+			return copy(file);
+		}
+	}
+
+	/**
+	 * Starts {@link #GAMES} games and makes {@link #MOVES} random moves in each
+	 * of them, alternating between the games.
+	 *
+	 * @param log the log to log the games to
+	 */
+	private void logGames(final GameWriteAheadLog log) {
+		for (long id = 0; id < GAMES; id++) {
+			startGame(log, id);
+		}
+		for (int move = 0; move < MOVES; move++) {
+			for (long id = 0; id < GAMES; id++) {
+				makeMove(log, id);
+			}
+		}
+	}
+
+	/**
+	 * Starts a game on an empty board.
+	 *
+	 * @param log the log to log the game to
+	 * @param id the id of the game
+	 */
+	private void startGame(final GameWriteAheadLog log, final long id) {
+		Board board = new Board(getLines());
+		int side = random.nextInt(Board.SIDES);
+		log.gameStarted(id, createSnapshot(board, side, id));
+		boards.put(id, board);
+		lastSides.put(id, Board.getOpponent(side));
+	}
+
+	/**
+	 * Makes a random move in a running game.
+	 *
+	 * @param log the log to log the move to
+	 * @param id the id of the game
+	 */
+	private void makeMove(final GameWriteAheadLog log, final long id) {
+		Board board = boards.get(id);
+		int side = Board.getOpponent(lastSides.get(id));
+		int cell = getEmptyCell(board);
+		board.mark(cell, side);
+		lastSides.put(id, side);
+		log.moveMade(id, side, cell);
+	}
+
+	/**
+	 * Asserts that the games recovered from a log file are the running games.
+	 *
+	 * @param file the log file
+	 * @throws IOException if the log file can not be read
+	 */
+	private void assertRecovered(final File file) throws IOException {
+		try (GameWriteAheadLog log = new GameWriteAheadLog(file)) {
+			assertRecovered(log);
+		}
+	}
+
+	/**
+	 * Asserts that the games recovered by a log are the running games.
+	 *
+	 * @param log the opened log
+	 */
+	private void assertRecovered(final GameWriteAheadLog log) {
+		Map<Long, GameSnapshot> recovered = log.getRecoveredGames();
+		assertEquals(boards.keySet(), recovered.keySet());
+		for (Map.Entry<Long, Board> game : boards.entrySet()) {
+			long id = game.getKey();
+			GameSnapshot snapshot = recovered.get(id);
+			assertNotNull(snapshot);
+			GameSnapshot expected = createSnapshot(game.getValue(), Board.getOpponent(lastSides.get(id)), id);
+			assertArrayEquals("game " + id, expected.toBytes(), snapshot.toBytes());
+		}
+	}
+
+	/**
+	 * Copies a log file while it is open, which leaves the copy as a crash
+	 * would leave the log file.
+	 *
+	 * @param file the log file
+	 * @return the copy
+	 * @throws IOException if the log file can not be copied
+	 */
+	private File copy(final File file) throws IOException {
+		File copy = new File(folder.getRoot(), "crashed-" + file.getName());
+		Files.deleteIfExists(copy.toPath());
+		Files.copy(file.toPath(), copy.toPath());
+		return copy;
+	}
+
+	/**
+	 * Gets a random empty cell.
+	 *
+	 * @param board the board, which is not full
+	 * @return an empty cell of the board
+	 */
+	private int getEmptyCell(final Board board) {
+		int cell;
+		do {
+			cell = random.nextInt(board.getCellsCount());
+		} while (!board.isEmpty(cell));
+		return cell;
+	}
+
+	/**
+	 * Creates the snapshot of a logged game.
+	 *
+	 * @param board the board of the game
+	 * @param currentSide the side whose turn it is
+	 * @param id the id of the game, which is its seed
+	 * @return the snapshot of the game
+	 */
+	private static GameSnapshot createSnapshot(final Board board, final int currentSide, final long id) {
+		return new GameSnapshot(SIZE, true, AIDifficulty.MEDIUM, GameRules.CLASSIC, board, currentSide, id);
+	}
+
+	/**
+	 * Gets the lines of the logged games.
+	 *
+	 * @return the lines of the size with the classic rules
+	 */
+	private static Lines getLines() {
+		return Lines.mnk(SIZE.getRowsCount(), SIZE.getColumnsCount(), GameRules.CLASSIC.getWinLength(SIZE));
+	}
+
+}
@@ -0,0 +1,252 @@
+package de.sengerts.tictactoe.record;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.model.GameState;
+import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
+
+/**
+ * Tests of the {@link PositionIndexBuilder}.
+ *
+ * Random games of different sizes are indexed with buffers small enough for
+ * many runs to be merged, and every position of the games is looked up in the
+ * built index and compared with the games, outcomes and ids collected by the
+ * test from the boards of the records.
+ *
+ * @author Tobias Senger
+ */
+public class PositionIndexBuilderTest {
+
+	/**
+	 * Class variable that stores the base name of the index files.
+	 */
+	private static final String NAME = "positions";
+
+	/**
+	 * Class variable that stores the sizes of the indexed games.
+	 */
+	private static final Dimension[] SIZES = { new Dimension(3, 3), new Dimension(3, 4), new Dimension(4, 4) };
+
+	/**
+	 * Class variable that stores the amount of indexed games.
+	 */
+	private static final int GAMES = 3000;
+
+	/**
+	 * Class variable that stores the amount of worker threads of the builder.
+	 */
+	private static final int THREADS = 3;
+
+	/**
+	 * Class variable that stores the amount of postings of a run, which makes
+	 * the builder write dozens of runs.
+	 */
+	private static final int RUN_POSTINGS = 1000;
+
+	/**
+	 * Class variable that stores the id of the first indexed game, which leaves
+	 * bits above the lowest word of the ids set.
+	 */
+	private static final long FIRST_ID = 1L << 40;
+
+	/**
+	 * Instance variable that stores the folder of the index files.
+	 */
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that every position of the indexed games is found with its games.
+	 */
+	@Test
+	public void testPositionsIndexed() throws IOException {
+		Random random = new Random(46);
+		Map<Long, ExpectedEntry> expectedEntries = new HashMap<Long, ExpectedEntry>();
+		long postingsCount = 0;
+		try (PositionIndexBuilder builder = new PositionIndexBuilder(folder.getRoot(), NAME, THREADS,
+				RUN_POSTINGS)) {
+			for (int game = 0; game < GAMES; game++) {
+				long id = FIRST_ID + 3L * game;
+				GameRecord record = createRecord(random, SIZES[random.nextInt(SIZES.length)]);
+				builder.add(id, record);
+				for (int movesCount = 0; movesCount <= record.getMovesCount(); movesCount++) {
+					Board board = record.getBoard(movesCount);
+					long hash = PositionIndex.getCanonicalHash(board);
+					ExpectedEntry expected = expectedEntries.get(hash);
+					if (expected == null) {
+						expected = new ExpectedEntry(board);
+						expectedEntries.put(hash, expected);
+					}
+					expected.add(id, record);
+					postingsCount++;
+				}
+			}
+			assertEquals(GAMES, builder.getGamesCount());
+			builder.finish();
+			assertTrue(builder.getRunsCount() > THREADS);
+			assertEquals(expectedEntries.size(), builder.getPositionsCount());
+			assertEquals(postingsCount, builder.getPostingsCount());
+		}
+		try (PositionIndex index = new PositionIndex(folder.getRoot(), NAME)) {
+			assertEquals(expectedEntries.size(), index.getPositionsCount());
+			assertEquals(postingsCount, index.getPostingsCount());
+			for (ExpectedEntry expected : expectedEntries.values()) {
+				PositionIndex.Entry entry = index.get(expected.board);
+				assertNotNull(entry);
+				assertEquals(expected.gamesCount, entry.getGamesCount());
+				assertEquals(expected.drawsCount, entry.getDrawsCount());
+				assertEquals(expected.winsCounts[0], entry.getWinsCount(0));
+				assertEquals(expected.winsCounts[1], entry.getWinsCount(1));
+				assertEquals(expected.unfinishedCount, entry.getUnfinishedCount());
+				assertEquals(expected.movesCount / (double) expected.gamesCount, entry.getAverageMovesCount(), 1e-9);
+				assertArrayEquals(expected.getIds(), index.getGameIds(entry));
+			}
+			assertNull(index.get(new Board(Lines.mnk(5, 5, 5))));
+		}
+		assertEquals(3, folder.getRoot().list().length);
+	}
+
+	/**
+	 * Creates the record of a random game, which is left unfinished now and
+	 * then.
+	 *
+	 * @param random the random number generator of the game
+	 * @param size the size of the game
+	 * @return the record of the game
+	 */
+	private static GameRecord createRecord(final Random random, final Dimension size) {
+		Board board = new Board(Lines.mnk(size.getRowsCount(), size.getColumnsCount(),
+				GameRules.CLASSIC.getWinLength(size)));
+		int firstSide = random.nextInt(Board.SIDES);
+		int maxMovesCount = random.nextInt(4) == 0 ? random.nextInt(board.getCellsCount()) : board.getCellsCount();
+		int[] moves = new int[maxMovesCount];
+		int movesCount = 0;
+		GameState gameState = GameState.INGAME;
+		int winnerSide = Board.NO_SIDE;
+		int side = firstSide;
+		while (movesCount < maxMovesCount && gameState == GameState.INGAME) {
+			int cell;
+			do {
+				cell = random.nextInt(board.getCellsCount());
+			} while (!board.isEmpty(cell));
+			board.mark(cell, side);
+			moves[movesCount++] = cell;
+			if (board.isWinningCell(cell, side)) {
+				gameState = GameState.WON;
+				winnerSide = side;
+			} else if (board.isFull()) {
+				gameState = GameState.DRAW;
+			}
+			side = Board.getOpponent(side);
+		}
+		int[] playedMoves = new int[movesCount];
+		System.arraycopy(moves, 0, playedMoves, 0, movesCount);
+		return new GameRecord(size, false, null, GameRules.CLASSIC, random.nextLong(), firstSide, gameState,
+				winnerSide, playedMoves);
+	}
+
+	/**
+	 * Class representing the games passing through a position as collected by
+	 * the test.
+	 */
+	private static final class ExpectedEntry {
+
+		/**
+		 * Instance variable that stores the board of the position.
+		 */
+		private final Board board;
+
+		/**
+		 * Instance variable that stores the ids of the games in the order they
+		 * were added.
+		 */
+		private long[] ids;
+
+		/**
+		 * Instance variable that stores the amount of games.
+		 */
+		private int gamesCount;
+
+		/**
+		 * Instance variable that stores the amount of drawn games.
+		 */
+		private int drawsCount;
+
+		/**
+		 * Instance variable that stores the amount of won games per side.
+		 */
+		private final int[] winsCounts;
+
+		/**
+		 * Instance variable that stores the amount of unfinished games.
+		 */
+		private int unfinishedCount;
+
+		/**
+		 * Instance variable that stores the sum of the amounts of moves of the
+		 * games.
+		 */
+		private long movesCount;
+
+		/**
+		 * Another constructor for class ExpectedEntry.
+		 *
+		 * @param board the board of the position
+		 */
+		private ExpectedEntry(final Board board) {
+			this.board = board;
+			this.ids = new long[4];
+			this.winsCounts = new int[Board.SIDES];
+		}
+
+		/**
+		 * Adds a game passing through the position.
+		 *
+		 * @param id the id of the game
+		 * @param record the record of the game
+		 */
+		private void add(final long id, final GameRecord record) {
+			if (gamesCount == ids.length) {
+				this.ids = Arrays.copyOf(ids, ids.length * 2);
+			}
+			ids[gamesCount++] = id;
+			movesCount += record.getMovesCount();
+			if (record.getGameState() == GameState.WON) {
+				winsCounts[record.getWinnerSide()]++;
+			} else if (record.getGameState() == GameState.DRAW) {
+				drawsCount++;
+			} else {
+				unfinishedCount++;
+			}
+		}
+
+		/**
+		 * Gets the ids of the games.
+		 *
+		 * @return the ids of the games in ascending order
+		 */
+		private long[] getIds() {
+			return Arrays.copyOf(ids, gamesCount);
+		}
+
+	}
+
+}
@@ -0,0 +1,240 @@
+package de.sengerts.tictactoe.server.virtual;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Semaphore;
+
+import de.sengerts.tictactoe.logic.GameLoop;
+import de.sengerts.tictactoe.net.GameProtocol;
+import de.sengerts.tictactoe.server.GameServer;
+import de.sengerts.tictactoe.server.GameSession;
+
+/**
+ * Class representing the session of one client connected to the virtual
+ * thread game server.
+ *
+ * Every session runs on two virtual threads of its own: one blocks reading the
+ * messages of the client and submits them to the game loop of the session,
+ * which runs on the other one and also sends all messages to the client with
+ * blocking writes. So the game of a session is still only changed on one
+ * thread.
+ *
+ * The reading thread stops reading while {@link #MAX_PENDING_MESSAGES} messages
+ * wait for the game loop, so a game loop held up by a slow write pushes back on
+ * the client instead of queueing its messages without bound. A write that does
+ * not finish within {@link #WRITE_TIMEOUT_MILLIS} is cut off by the idle check
+ * of the server, which disconnects the session like the selector server
+ * disconnects a client that does not read its messages.
+ *
+ * @author Tobias Senger
+ */
+class BlockingSession extends GameSession implements Runnable {
+
+	/**
+	 * Class variable that stores the capacity of the input buffer, enough for
+	 * several client messages.
+	 */
+	private static final int IN_CAPACITY = 64;
+
+	/**
+	 * Class variable that stores the maximum amount of messages of a session
+	 * waiting for its game loop.
+	 */
+	static final int MAX_PENDING_MESSAGES = 16;
+
+	/**
+	 * Class variable that stores the time in milliseconds after which a write
+	 * that has not finished disconnects the session.
+	 */
+	static final long WRITE_TIMEOUT_MILLIS = 10 * 1000L;
+
+	/**
+	 * Instance variable that stores the server of this session.
+	 */
+	private final VirtualThreadGameServer server;
+
+	/**
+	 * Instance variable that stores the blocking connection of this session.
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * Instance variable that stores the game loop of this session.
+	 */
+	private final GameLoop gameLoop;
+
+	/**
+	 * Instance variable that stores the received bytes that have not been
+	 * handled yet.
+	 */
+	private final ByteBuffer in;
+
+	/**
+	 * Instance variable that stores the permits of the messages that may still
+	 * be submitted to the game loop.
+	 */
+	private final Semaphore pendingMessages;
+
+	/**
+	 * Instance variable that stores when the current write started in
+	 * milliseconds, zero while no write is running.
+	 */
+	private volatile long writeStartMillis;
+
+	/**
+	 * Instance variable that stores whether this session is closed, which is
+	 * only used on the thread of the game loop.
+	 */
+	private boolean closed;
+
+	/**
+	 * Another constructor for class BlockingSession.
+	 *
+	 * @param server the server of this session
+	 * @param channel the blocking connection of this session
+	 * @param gameLoop the game loop of this session
+	 */
+	BlockingSession(final VirtualThreadGameServer server, final SocketChannel channel, final GameLoop gameLoop) {
+		super(gameLoop, server.getAIExecutor(), server.getStore(), server.getHistory(),
+				server.getWriteAheadLog());
+		this.server = server;
+		this.channel = channel;
+		this.gameLoop = gameLoop;
+		this.in = ByteBuffer.allocate(IN_CAPACITY);
+		this.pendingMessages = new Semaphore(MAX_PENDING_MESSAGES);
+	}
+
+	/**
+	 * Runs this session on the calling thread.
+	 *
+	 * Starts the game loop on a new virtual thread of the server and reads the
+	 * messages of the client until the connection is closed. Every message is
+	 * copied and submitted to the game loop, waiting while the most messages
+	 * allowed are pending, and the game loop closes this session and stops
+	 * after the last one.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		server.getSessionExecutor().execute(gameLoop);
+		try {
+			while (channel.read(in) >= 0) {
+				noteActivity();
+				in.flip();
+				ByteBuffer frame;
+				while ((frame = GameProtocol.nextFrame(in)) != null) {
+					ByteBuffer message = ByteBuffer.allocate(frame.remaining()).put(frame).flip();
+					pendingMessages.acquire();
+					gameLoop.submit(() -> {
+						try {
+							handle(message);
+						} finally {
+							pendingMessages.release();
+						}
+					});
+				}
+				in.compact();
+				if (!in.hasRemaining()) {
+					// A frame bigger than any client message
+					break;
+				}
+			}
+		} catch (IOException e) {
+			// Connection closed by the client or the server or malformed frame
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			gameLoop.submit(() -> {
+				close();
+				gameLoop.stop();
+			});
+		}
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.server.GameSession#isOpen()
+	 */
+	@Override
+	protected boolean isOpen() {
+		return !closed && channel.isOpen();
+	}
+
+	/**
+	 * Reads a spilled game right away.
+	 *
+	 * Reads the spilled game on the virtual thread of the game loop, which may
+	 * wait for the disk without holding up other sessions, so the game can not
+	 * be lost in a game loop that stops before it is continued.
+	 *
+	 * @param id the id of the game
+	 */
+	@Override
+	protected void resumeSpilledGame(final long id) {
+		resumeGame(server.getStore().takeSpilled(id), id);
+	}
+
+	/**
+	 * Sends the whole output buffer.
+	 *
+	 * Blocks the virtual thread of the game loop until the connection accepted
+	 * all of the output buffer or the write was cut off because it took longer
+	 * than {@link #WRITE_TIMEOUT_MILLIS} ({@link #isWriteOverdue(long)}).
+	 *
+	 * @throws IOException if the connection failed or was closed
+	 */
+	@Override
+	protected void flush() throws IOException {
+		ByteBuffer out = getOut();
+		out.flip();
+		this.writeStartMillis = System.currentTimeMillis();
+		try {
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		} finally {
+			this.writeStartMillis = 0;
+			out.compact();
+		}
+	}
+
+	/**
+	 * Gets whether the current write is overdue.
+	 *
+	 * @param nowMillis the current time in milliseconds
+	 * @return true if a write is running for at least
+	 *         {@link #WRITE_TIMEOUT_MILLIS}, otherwise false
+	 */
+	boolean isWriteOverdue(final long nowMillis) {
+		long startMillis = writeStartMillis;
+		return startMillis != 0 && nowMillis - startMillis >= WRITE_TIMEOUT_MILLIS;
+	}
+
+	/**
+	 * Closes the connection of this session from any thread.
+	 *
+	 * Closes the connection, which ends the reading thread, which then lets the
+	 * game loop close this session, and cuts off a running write.
+	 */
+	void disconnect() {
+		GameServer.closeQuietly(channel);
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.server.GameSession#close()
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		this.closed = true;
+		parkGame();
+		GameServer.closeQuietly(channel);
+		server.sessionClosed(this);
+	}
+
+}
@@ -0,0 +1,432 @@
+package de.sengerts.tictactoe.server.virtual;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import de.sengerts.tictactoe.logic.GameLoop;
+import de.sengerts.tictactoe.logic.GameScheduler;
+import de.sengerts.tictactoe.net.GameProtocol;
+import de.sengerts.tictactoe.record.GameHistoryStore;
+import de.sengerts.tictactoe.record.GameWriteAheadLog;
+import de.sengerts.tictactoe.server.GameServer;
+import de.sengerts.tictactoe.server.GameStore;
+
+/**
+ * Class representing a headless server hosting many tic tac toe games with
+ * one virtual thread per session.
+ *
+ * Unlike the selector loop of {@link GameServer}, every connection is handled
+ * by plain blocking reads and writes on virtual threads of its own
+ * ({@link BlockingSession}), and every session has its own game loop. The AI
+ * players still choose their moves on a bounded pool of worker threads, and
+ * the messages are the same ones of {@link GameProtocol}, so both servers can
+ * be compared with the same clients. Idle sessions and parked games are
+ * handled like in the selector server, by a periodic check on the AI worker
+ * pool, ended games are appended to the same kind of history and the moves of
+ * running games are logged to the same kind of write-ahead log and the same
+ * opening book, tablebases and table directory are used. The server logs like
+ * the selector server.
+ *
+ * Usage: VirtualThreadGameServer [port] [AI worker threads] [max sessions]
+ * [spill directory] [history directory] [opening book file] [tablebase
+ * directory] [table directory]
+ *
+ * @author Tobias Senger
+ */
+public class VirtualThreadGameServer implements Runnable {
+
+	/**
+	 * Class variable that stores the default port, next to the one of the
+	 * selector server so both can run side by side.
+	 */
+	public static final int DEFAULT_PORT = GameServer.DEFAULT_PORT + 1;
+
+	/**
+	 * Class variable that stores the logger of the virtual thread game servers.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(VirtualThreadGameServer.class.getName());
+
+	/**
+	 * Class variable that stores the interval in milliseconds of the checks for
+	 * idle sessions and parked games.
+	 */
+	private static final long IDLE_CHECK_MILLIS = 1000;
+
+	/**
+	 * Class variable that stores how long stopping waits for the sessions to
+	 * park their games in milliseconds.
+	 */
+	private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * Instance variable that stores the address this server listens on.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * Instance variable that stores the maximum amount of sessions.
+	 */
+	private final int maxSessions;
+
+	/**
+	 * Instance variable that stores the blocking channel accepting new
+	 * connections.
+	 */
+	private final ServerSocketChannel serverChannel;
+
+	/**
+	 * Instance variable that stores the worker pool the AI players choose their
+	 * moves on.
+	 */
+	private final ScheduledExecutorService aiExecutor;
+
+	/**
+	 * Instance variable that stores the store of the games left by their
+	 * players.
+	 */
+	private final GameStore store;
+
+	/**
+	 * Instance variable that stores the history of ended games, null to not
+	 * keep ended games.
+	 */
+	private final GameHistoryStore history;
+
+	/**
+	 * Instance variable that stores the write-ahead log of running games, null
+	 * to not log running games.
+	 */
+	private final GameWriteAheadLog log;
+
+	/**
+	 * Instance variable that stores the time in milliseconds after which a
+	 * session without any message is closed.
+	 */
+	private final long sessionIdleMillis;
+
+	/**
+	 * Instance variable that stores the executor starting the virtual threads
+	 * of the sessions.
+	 */
+	private final ExecutorService sessionExecutor;
+
+	/**
+	 * Instance variable that stores the open sessions.
+	 */
+	private final Set<BlockingSession> sessions;
+
+	/**
+	 * Instance variable that stores whether this server is running.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Another constructor for class VirtualThreadGameServer.
+	 *
+	 * Creates a new game server bound to the given address, which is not
+	 * accepting connections before it is run, with the given store for left
+	 * games.
+	 *
+	 * @param address the address to listen on, port 0 picks a free port
+	 * @param aiWorkers the amount of worker threads of the AI players
+	 * @param maxSessions the maximum amount of open sessions
+	 * @param store the store of the games left by their players
+	 * @param sessionIdleMillis the time in milliseconds after which a session
+	 *                          without any message is closed
+	 * @throws IOException if the address can not be bound
+	 * @throws IllegalArgumentException if given address or store is null or
+	 *                                  given counts or time are not positive
+	 */
+	public VirtualThreadGameServer(final InetSocketAddress address, final int aiWorkers, final int maxSessions,
+			final GameStore store, final long sessionIdleMillis) throws IOException {
+		this(address, aiWorkers, maxSessions, store, null, null, sessionIdleMillis);
+	}
+
+	/**
+	 * Another constructor for class VirtualThreadGameServer.
+	 *
+	 * Creates a new game server bound to the given address, which is not
+	 * accepting connections before it is run, with the given store for left
+	 * games, the given history for ended games and the given write-ahead log
+	 * for running games. The history and the log are closed with the server.
+	 *
+	 * @param address the address to listen on, port 0 picks a free port
+	 * @param aiWorkers the amount of worker threads of the AI players
+	 * @param maxSessions the maximum amount of open sessions
+	 * @param store the store of the games left by their players
+	 * @param history the history of ended games, null to not keep ended games
+	 * @param log the write-ahead log of running games, null to not log running
+	 *            games
+	 * @param sessionIdleMillis the time in milliseconds after which a session
+	 *                          without any message is closed
+	 * @throws IOException if the address can not be bound
+	 * @throws IllegalArgumentException if given address or store is null or
+	 *                                  given counts or time are not positive
+	 */
+	public VirtualThreadGameServer(final InetSocketAddress address, final int aiWorkers, final int maxSessions,
+			final GameStore store, final GameHistoryStore history, final GameWriteAheadLog log,
+			final long sessionIdleMillis) throws IOException {
+		if (address == null) {
+			throw new IllegalArgumentException("Given address can not be null!");
+		}
+		if (store == null) {
+			throw new IllegalArgumentException("Given store can not be null!");
+		}
+		if (aiWorkers <= 0 || maxSessions <= 0 || sessionIdleMillis <= 0) {
+			throw new IllegalArgumentException("Given AI workers, max sessions and idle time must be positive!");
+		}
+		this.maxSessions = maxSessions;
+		this.store = store;
+		this.history = history;
+		this.log = log;
+		this.sessionIdleMillis = sessionIdleMillis;
+		this.serverChannel = ServerSocketChannel.open();
+		serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		serverChannel.bind(address, 1024);
+		this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+		this.aiExecutor = GameScheduler.newExecutor("ai-worker", aiWorkers);
+		this.sessionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+		this.sessions = ConcurrentHashMap.newKeySet();
+		this.running = true;
+		aiExecutor.scheduleWithFixedDelay(this::checkIdle, IDLE_CHECK_MILLIS, IDLE_CHECK_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs the game server.
+	 *
+	 * @param args the port, the amount of AI worker threads, the maximum amount
+	 *             of sessions, the spill directory, the history directory,
+	 *             the opening book file, the tablebase directory and the table
+	 *             directory, all optional
+	 * @throws IOException if the port can not be bound or the history, the
+	 *                     write-ahead log, the opening book or a tablebase can
+	 *                     not be opened
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int aiWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int maxSessions = args.length > 2 ? Integer.parseInt(args[2]) : GameServer.DEFAULT_MAX_SESSIONS;
+		File spillDirectory = new File(args.length > 3 ? args[3] : GameServer.DEFAULT_SPILL_DIRECTORY);
+		File historyDirectory = new File(args.length > 4 ? args[4] : GameServer.DEFAULT_HISTORY_DIRECTORY);
+		GameServer.loadOpeningBook(new File(args.length > 5 ? args[5] : GameServer.DEFAULT_OPENING_BOOK_FILE));
+		GameServer.loadTablebases(new File(args.length > 6 ? args[6] : GameServer.DEFAULT_TABLEBASE_DIRECTORY));
+		GameServer.persistTables(new File(args.length > 7 ? args[7] : GameServer.DEFAULT_TABLE_DIRECTORY));
+
+		GameStore store = GameServer.createDefaultStore(spillDirectory);
+		VirtualThreadGameServer server = new VirtualThreadGameServer(new InetSocketAddress(port), aiWorkers,
+				maxSessions, store, GameServer.openDefaultHistory(historyDirectory),
+				GameServer.openDefaultLog(spillDirectory, store), GameServer.DEFAULT_SESSION_IDLE_MILLIS);
+		GameServer.logStatsPeriodically(server.getAIExecutor());
+		LOGGER.info("Virtual thread game server listening on " + server.getAddress() + " with "
+				+ aiWorkers + " AI workers and up to " + maxSessions + " sessions");
+		server.run();
+	}
+
+	/**
+	 * Accepts connections on the calling thread until this server is stopped.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				SocketChannel channel;
+				try {
+					channel = serverChannel.accept();
+					channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				} catch (ClosedChannelException e) {
+					return;
+				} catch (IOException e) {
+					continue;
+				}
+				if (sessions.size() >= maxSessions) {
+					reject(channel);
+					continue;
+				}
+				BlockingSession session = new BlockingSession(this, channel, new GameLoop());
+				sessions.add(session);
+				sessionExecutor.execute(session);
+			}
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Disconnects idle sessions and spills idle parked games.
+	 *
+	 * Disconnects all sessions without any message for the session idle time
+	 * and all sessions whose client has not accepted a write for the write
+	 * timeout ({@link BlockingSession#isWriteOverdue(long)}), which then park
+	 * their games on their own game loops, spills the games
+	 * parked longer than the idle time of the store or beyond its maximum and
+	 * deletes the expired spilled games.
+	 */
+	private void checkIdle() {
+		long nowMillis = System.currentTimeMillis();
+		for (BlockingSession session : sessions) {
+			if (nowMillis - session.getLastActivityMillis() >= sessionIdleMillis
+					|| session.isWriteOverdue(nowMillis)) {
+				session.disconnect();
+			}
+		}
+		try {
+			store.spillIdle(nowMillis);
+		} catch (UncheckedIOException e) {
+			// Tried again with the next check
+		}
+	}
+
+	/**
+	 * Rejects a connection because this server is full.
+	 *
+	 * @param channel the connection to reject
+	 */
+	private void reject(final SocketChannel channel) {
+		ByteBuffer out = ByteBuffer.allocate(8);
+		GameProtocol.writeError(out, GameProtocol.ERROR_SERVER_BUSY);
+		out.flip();
+		try {
+			channel.write(out);
+		} catch (IOException e) {
+			// Closed below anyway
+		}
+		GameServer.closeQuietly(channel);
+	}
+
+	/**
+	 * Called by a session after it has been closed.
+	 *
+	 * @param session the closed session
+	 */
+	void sessionClosed(final BlockingSession session) {
+		sessions.remove(session);
+	}
+
+	/**
+	 * Stops this server.
+	 *
+	 * Stops accepting connections and disconnects all sessions. This method can
+	 * be called from any thread.
+	 */
+	public void stop() {
+		this.running = false;
+		GameServer.closeQuietly(serverChannel);
+	}
+
+	/**
+	 * Disconnects all sessions and shuts down the executors.
+	 *
+	 * Disconnects all sessions, waits for them to park their running games and
+	 * spills all parked games, so they can be continued after a restart, and
+	 * closes the history of ended games and the write-ahead log of running
+	 * games.
+	 */
+	private void close() {
+		GameServer.closeQuietly(serverChannel);
+		for (BlockingSession session : sessions) {
+			session.disconnect();
+		}
+		sessionExecutor.shutdown();
+		try {
+			sessionExecutor.awaitTermination(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		aiExecutor.shutdownNow();
+		try {
+			store.spillAll();
+		} catch (UncheckedIOException e) {
+			// The parked games are lost
+		}
+		if (history != null) {
+			GameServer.closeQuietly(history);
+		}
+		if (log != null) {
+			GameServer.closeQuietly(log);
+		}
+	}
+
+	/**
+	 * Gets the address.
+	 *
+	 * @return the address this server is listening on
+	 */
+	public /* @ pure @ */ InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * Gets the AI worker pool.
+	 *
+	 * @return the worker pool the AI players choose their moves on
+	 */
+	/* @ pure @ */ ScheduledExecutorService getAIExecutor() {
+		return aiExecutor;
+	}
+
+	/**
+	 * Gets the store.
+	 *
+	 * @return the store of the games left by their players
+	 */
+	public /* @ pure @ */ GameStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Gets the history.
+	 *
+	 * @return the history of ended games or null if ended games are not kept
+	 */
+	public /* @ pure @ */ GameHistoryStore getHistory() {
+		return history;
+	}
+
+	/**
+	 * Gets the write-ahead log.
+	 *
+	 * @return the write-ahead log of running games or null if running games are
+	 *         not logged
+	 */
+	public /* @ pure @ */ GameWriteAheadLog getWriteAheadLog() {
+		return log;
+	}
+
+	/**
+	 * Gets the session executor.
+	 *
+	 * @return the executor starting the virtual threads of the sessions
+	 */
+	/* @ pure @ */ ExecutorService getSessionExecutor() {
+		return sessionExecutor;
+	}
+
+	/**
+	 * Gets the amount of open sessions.
+	 *
+	 * @return the amount of open sessions
+	 */
+	public int getSessionsCount() {
+		return sessions.size();
+	}
+
+}
@@ -0,0 +1,728 @@
+package de.sengerts.tictactoe.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import de.sengerts.tictactoe.engine.OpeningBook;
+import de.sengerts.tictactoe.engine.Tablebase;
+import de.sengerts.tictactoe.logic.GameLoop;
+import de.sengerts.tictactoe.logic.GameScheduler;
+import de.sengerts.tictactoe.logic.GameSnapshot;
+import de.sengerts.tictactoe.model.players.ai.SearchAIEngine;
+import de.sengerts.tictactoe.net.GameProtocol;
+import de.sengerts.tictactoe.record.GameHistoryStore;
+import de.sengerts.tictactoe.record.GameWriteAheadLog;
+
+/**
+ * Class representing a headless server hosting many tic tac toe games.
+ *
+ * One thread runs a non-blocking selector loop over all client connections
+ * and at the same time drains the {@link GameLoop} of all hosted games, so
+ * every game is only ever changed on this one thread. AI players choose their
+ * moves on a bounded pool of worker threads and submit them to the game loop,
+ * which wakes up the selector. The messages are the ones of
+ * {@link GameProtocol}.
+ *
+ * Sessions without any message for the session idle time are closed, which
+ * parks their running games in the {@link GameStore} of the server, and the
+ * store spills games parked too long to its spill directory on the AI worker
+ * pool and deletes them once they have expired. Every ended game
+ * is appended to the {@link GameHistoryStore} of the server, if it has one.
+ * The moves of running games are logged to the {@link GameWriteAheadLog} of
+ * the server, if it has one, so the games running when the server crashed are
+ * parked in its store and can be continued after a restart. The AI players of
+ * the hardest difficulty take their opening moves from the opening book file,
+ * if there is one, and play perfectly on the boards of the tablebases in the
+ * tablebase directory. If the table directory exists, the transposition tables
+ * of the AI players are backed by its files, so their positions survive
+ * restarts and are shared with other servers on the same host.
+ *
+ * The server reports its startup and recovery on its {@link Logger} at level
+ * INFO and the metrics of the AI move cache every minute at level FINE, which
+ * the default logging configuration does not print.
+ *
+ * Usage: GameServer [port] [AI worker threads] [max sessions] [spill directory]
+ * [history directory] [opening book file] [tablebase directory] [table
+ * directory]
+ *
+ * @author Tobias Senger
+ */
+public class GameServer implements Runnable {
+
+	/**
+	 * Class variable that stores the default port.
+	 */
+	public static final int DEFAULT_PORT = 7777;
+
+	/**
+	 * Class variable that stores the logger of the game servers.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(GameServer.class.getName());
+
+	/**
+	 * Class variable that stores the default maximum amount of sessions.
+	 */
+	public static final int DEFAULT_MAX_SESSIONS = 10_000;
+
+	/**
+	 * Class variable that stores the default time in milliseconds after which a
+	 * session without any message is closed.
+	 */
+	public static final long DEFAULT_SESSION_IDLE_MILLIS = 5 * 60 * 1000L;
+
+	/**
+	 * Class variable that stores the default maximum amount of games parked in
+	 * memory.
+	 */
+	public static final int DEFAULT_MAX_PARKED_GAMES = 10_000;
+
+	/**
+	 * Class variable that stores the default time in milliseconds after which a
+	 * parked game is spilled.
+	 */
+	public static final long DEFAULT_PARKED_IDLE_MILLIS = 10 * 60 * 1000L;
+
+	/**
+	 * Class variable that stores the default time in milliseconds after which a
+	 * spilled game is deleted, a day.
+	 */
+	public static final long DEFAULT_SPILLED_EXPIRY_MILLIS = 144 * DEFAULT_PARKED_IDLE_MILLIS;
+
+	/**
+	 * Class variable that stores the default spill directory of parked games.
+	 */
+	public static final String DEFAULT_SPILL_DIRECTORY = "games";
+
+	/**
+	 * Class variable that stores the default directory of the history of ended
+	 * games.
+	 */
+	public static final String DEFAULT_HISTORY_DIRECTORY = "history";
+
+	/**
+	 * Class variable that stores the base name of the files of the history of
+	 * ended games.
+	 */
+	public static final String HISTORY_NAME = "games";
+
+	/**
+	 * Class variable that stores the name of the write-ahead log of running
+	 * games in the spill directory.
+	 */
+	public static final String WRITE_AHEAD_LOG_NAME = "sessions.wal";
+
+	/**
+	 * Class variable that stores the default opening book file of the AI
+	 * players.
+	 */
+	public static final String DEFAULT_OPENING_BOOK_FILE = "books/opening.tttb";
+
+	/**
+	 * Class variable that stores the default tablebase directory of the AI
+	 * players.
+	 */
+	public static final String DEFAULT_TABLEBASE_DIRECTORY = "tablebases";
+
+	/**
+	 * Class variable that stores the default directory of the files backing
+	 * the transposition tables of the AI players.
+	 */
+	public static final String DEFAULT_TABLE_DIRECTORY = "tables";
+
+	/**
+	 * Class variable that stores the interval in milliseconds of the checks for
+	 * idle sessions and parked games.
+	 */
+	private static final long IDLE_CHECK_MILLIS = 1000;
+
+	/**
+	 * Class variable that stores the interval in milliseconds in which the
+	 * metrics of the shared AI move cache are logged.
+	 */
+	public static final long STATS_INTERVAL_MILLIS = 60 * 1000L;
+
+	/**
+	 * Instance variable that stores the address this server listens on.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * Instance variable that stores the maximum amount of sessions.
+	 */
+	private final int maxSessions;
+
+	/**
+	 * Instance variable that stores the selector of all connections.
+	 */
+	private final Selector selector;
+
+	/**
+	 * Instance variable that stores the channel accepting new connections.
+	 */
+	private final ServerSocketChannel serverChannel;
+
+	/**
+	 * Instance variable that stores the game loop of all hosted games.
+	 */
+	private final GameLoop gameLoop;
+
+	/**
+	 * Instance variable that stores the worker pool the AI players choose their
+	 * moves on.
+	 */
+	private final ScheduledExecutorService aiExecutor;
+
+	/**
+	 * Instance variable that stores the store of the games left by their
+	 * players.
+	 */
+	private final GameStore store;
+
+	/**
+	 * Instance variable that stores the history of ended games, null to not
+	 * keep ended games.
+	 */
+	private final GameHistoryStore history;
+
+	/**
+	 * Instance variable that stores the write-ahead log of running games, null
+	 * to not log running games.
+	 */
+	private final GameWriteAheadLog log;
+
+	/**
+	 * Instance variable that stores the time in milliseconds after which a
+	 * session without any message is closed.
+	 */
+	private final long sessionIdleMillis;
+
+	/**
+	 * Instance variable that stores the amount of open sessions.
+	 */
+	private final AtomicInteger sessionsCount;
+
+	/**
+	 * Instance variable that stores whether this server is running.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Another constructor for class GameServer.
+	 *
+	 * Creates a new game server bound to the given address, which is not
+	 * accepting connections before it is run, with the given store for left
+	 * games.
+	 *
+	 * @param address the address to listen on, port 0 picks a free port
+	 * @param aiWorkers the amount of worker threads of the AI players
+	 * @param maxSessions the maximum amount of open sessions
+	 * @param store the store of the games left by their players
+	 * @param sessionIdleMillis the time in milliseconds after which a session
+	 *                          without any message is closed
+	 * @throws IOException if the address can not be bound
+	 * @throws IllegalArgumentException if given address or store is null or
+	 *                                  given counts or time are not positive
+	 */
+	public GameServer(final InetSocketAddress address, final int aiWorkers, final int maxSessions,
+			final GameStore store, final long sessionIdleMillis) throws IOException {
+		this(address, aiWorkers, maxSessions, store, null, null, sessionIdleMillis);
+	}
+
+	/**
+	 * Another constructor for class GameServer.
+	 *
+	 * Creates a new game server bound to the given address, which is not
+	 * accepting connections before it is run, with the given store for left
+	 * games, the given history for ended games and the given write-ahead log
+	 * for running games. The history and the log are closed with the server.
+	 *
+	 * @param address the address to listen on, port 0 picks a free port
+	 * @param aiWorkers the amount of worker threads of the AI players
+	 * @param maxSessions the maximum amount of open sessions
+	 * @param store the store of the games left by their players
+	 * @param history the history of ended games, null to not keep ended games
+	 * @param log the write-ahead log of running games, null to not log running
+	 *            games
+	 * @param sessionIdleMillis the time in milliseconds after which a session
+	 *                          without any message is closed
+	 * @throws IOException if the address can not be bound
+	 * @throws IllegalArgumentException if given address or store is null or
+	 *                                  given counts or time are not positive
+	 */
+	public GameServer(final InetSocketAddress address, final int aiWorkers, final int maxSessions,
+			final GameStore store, final GameHistoryStore history, final GameWriteAheadLog log,
+			final long sessionIdleMillis) throws IOException {
+		if (address == null) {
+			throw new IllegalArgumentException("Given address can not be null!");
+		}
+		if (store == null) {
+			throw new IllegalArgumentException("Given store can not be null!");
+		}
+		if (aiWorkers <= 0 || maxSessions <= 0 || sessionIdleMillis <= 0) {
+			throw new IllegalArgumentException("Given AI workers, max sessions and idle time must be positive!");
+		}
+		this.maxSessions = maxSessions;
+		this.store = store;
+		this.history = history;
+		this.log = log;
+		this.sessionIdleMillis = sessionIdleMillis;
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		serverChannel.bind(address, 1024);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+		this.gameLoop = new GameLoop(selector::wakeup);
+		this.aiExecutor = GameScheduler.newExecutor("ai-worker", aiWorkers);
+		this.sessionsCount = new AtomicInteger();
+		this.running = true;
+		aiExecutor.scheduleWithFixedDelay(this::spillIdleGames, IDLE_CHECK_MILLIS, IDLE_CHECK_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates the default store of left games.
+	 *
+	 * @param spillDirectory the spill directory of the store
+	 * @return the new store
+	 * @throws IOException if the spill directory can not be created
+	 */
+	public static GameStore createDefaultStore(final File spillDirectory) throws IOException {
+		return new GameStore(spillDirectory, DEFAULT_MAX_PARKED_GAMES, DEFAULT_PARKED_IDLE_MILLIS,
+				DEFAULT_SPILLED_EXPIRY_MILLIS);
+	}
+
+	/**
+	 * Opens the default history of ended games.
+	 *
+	 * Opens the history in the given directory, which forces its files on a
+	 * thread of its own, so the game loop never waits for the disk.
+	 *
+	 * @param historyDirectory the directory of the history
+	 * @return the opened history
+	 * @throws IOException if the history can not be opened
+	 */
+	public static GameHistoryStore openDefaultHistory(final File historyDirectory) throws IOException {
+		return new GameHistoryStore(historyDirectory, HISTORY_NAME, GameHistoryStore.DEFAULT_FORCE_BATCH,
+				GameScheduler.newExecutor("history-force", 1));
+	}
+
+	/**
+	 * Opens the default write-ahead log of running games.
+	 *
+	 * Opens the log in the given spill directory and parks the games recovered
+	 * from it in the given store, which spills them right away. From now on the
+	 * store logs its spilled games as left in the log.
+	 *
+	 * @param spillDirectory the spill directory of the store
+	 * @param store the store to park the recovered games in
+	 * @return the opened log
+	 * @throws IOException if the log can not be opened or the recovered games
+	 *                     can not be spilled
+	 */
+	public static GameWriteAheadLog openDefaultLog(final File spillDirectory, final GameStore store)
+			throws IOException {
+		GameWriteAheadLog log = new GameWriteAheadLog(new File(spillDirectory, WRITE_AHEAD_LOG_NAME));
+		store.setWriteAheadLog(log);
+		try {
+			for (Map.Entry<Long, GameSnapshot> game : log.getRecoveredGames().entrySet()) {
+				store.park(game.getKey(), game.getValue());
+			}
+			store.spillAll();
+		} catch (UncheckedIOException e) {
+			store.setWriteAheadLog(null);
+			closeQuietly(log);
+			throw e.getCause();
+		}
+		if (!log.getRecoveredGames().isEmpty()) {
+			LOGGER.info("Recovered " + log.getRecoveredGames().size() + " running games from " + log);
+		}
+		return log;
+	}
+
+	/**
+	 * Loads the opening book of the AI players.
+	 *
+	 * Maps the given book file, if it exists, and sets it for the search AI
+	 * engines ({@link SearchAIEngine#setOpeningBook(OpeningBook)}).
+	 *
+	 * @param bookFile the opening book file
+	 * @throws IOException if the book file exists but can not be loaded
+	 */
+	public static void loadOpeningBook(final File bookFile) throws IOException {
+		if (!bookFile.exists()) {
+			return;
+		}
+		OpeningBook book = new OpeningBook(bookFile);
+		SearchAIEngine.setOpeningBook(book);
+		LOGGER.info("Loaded " + book + " from " + bookFile);
+	}
+
+	/**
+	 * Loads the tablebases of the AI players.
+	 *
+	 * Maps every tablebase file in the given directory, if it exists, and adds
+	 * it to the search AI engines ({@link SearchAIEngine#addTablebase(Tablebase)}).
+	 *
+	 * @param directory the tablebase directory
+	 * @throws IOException if a tablebase file can not be loaded
+	 */
+	public static void loadTablebases(final File directory) throws IOException {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(Tablebase.EXTENSION));
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			Tablebase tablebase = new Tablebase(file);
+			SearchAIEngine.addTablebase(tablebase);
+			LOGGER.info("Loaded " + tablebase + " from " + file);
+		}
+	}
+
+	/**
+	 * Backs the transposition tables of the AI players by files.
+	 *
+	 * If the given directory exists, sets it as the table directory of the
+	 * search AI engines ({@link SearchAIEngine#setTableDirectory(File)}) and
+	 * closes the tables on shutdown, so the next server restores them.
+	 *
+	 * @param directory the table directory
+	 */
+	public static void persistTables(final File directory) {
+		if (!directory.isDirectory()) {
+			return;
+		}
+		SearchAIEngine.setTableDirectory(directory);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				SearchAIEngine.closeTables();
+			} catch (IOException e) {
+				// The searched positions are lost
+			}
+		}, "table-closer"));
+		LOGGER.info("Backing transposition tables by files in " + directory);
+	}
+
+	/**
+	 * Runs the game server.
+	 *
+	 * @param args the port, the amount of AI worker threads, the maximum amount
+	 *             of sessions, the spill directory, the history directory,
+	 *             the opening book file, the tablebase directory and the table
+	 *             directory, all optional
+	 * @throws IOException if the port can not be bound or the history, the
+	 *                     write-ahead log, the opening book or a tablebase can
+	 *                     not be opened
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int aiWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int maxSessions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_SESSIONS;
+		File spillDirectory = new File(args.length > 3 ? args[3] : DEFAULT_SPILL_DIRECTORY);
+		File historyDirectory = new File(args.length > 4 ? args[4] : DEFAULT_HISTORY_DIRECTORY);
+		loadOpeningBook(new File(args.length > 5 ? args[5] : DEFAULT_OPENING_BOOK_FILE));
+		loadTablebases(new File(args.length > 6 ? args[6] : DEFAULT_TABLEBASE_DIRECTORY));
+		persistTables(new File(args.length > 7 ? args[7] : DEFAULT_TABLE_DIRECTORY));
+
+		GameStore store = createDefaultStore(spillDirectory);
+		GameServer server = new GameServer(new InetSocketAddress(port), aiWorkers, maxSessions, store,
+				openDefaultHistory(historyDirectory), openDefaultLog(spillDirectory, store),
+				DEFAULT_SESSION_IDLE_MILLIS);
+		logStatsPeriodically(server.getAIExecutor());
+		LOGGER.info("Game server listening on " + server.getAddress() + " with " + aiWorkers
+				+ " AI workers and up to " + maxSessions + " sessions");
+		server.run();
+	}
+
+	/**
+	 * Logs the metrics of the shared AI move cache periodically.
+	 *
+	 * Logs the hit rate and saved search time of the move cache of the search
+	 * AI engines ({@link SearchAIEngine#getMoveCache()}) at level FINE every
+	 * {@link #STATS_INTERVAL_MILLIS} on the given executor. The metrics are
+	 * only formatted if the logger of the game servers logs that level.
+	 *
+	 * @param executor the executor to log the metrics on
+	 */
+	public static void logStatsPeriodically(final ScheduledExecutorService executor) {
+		executor.scheduleWithFixedDelay(() -> LOGGER.fine(() -> SearchAIEngine.getMoveCache().toString()),
+				STATS_INTERVAL_MILLIS, STATS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs the selector loop on the calling thread until this server is stopped.
+	 */
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		long nextIdleCheckMillis = System.currentTimeMillis() + IDLE_CHECK_MILLIS;
+		try {
+			while (running) {
+				selector.select(IDLE_CHECK_MILLIS);
+				gameLoop.drain();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					handleKey(key);
+				}
+				long nowMillis = System.currentTimeMillis();
+				if (nowMillis >= nextIdleCheckMillis) {
+					closeIdleSessions(nowMillis);
+					nextIdleCheckMillis = nowMillis + IDLE_CHECK_MILLIS;
+				}
+				gameLoop.drain();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Selector of the game server failed!", e);
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Handles a selected key.
+	 *
+	 * @param key the selected key
+	 */
+	private void handleKey(final SelectionKey key) {
+		if (!key.isValid()) {
+			return;
+		}
+		if (key.isAcceptable()) {
+			accept();
+			return;
+		}
+		Session session = (Session) key.attachment();
+		try {
+			if (key.isReadable()) {
+				session.read();
+			}
+			if (key.isValid() && key.isWritable()) {
+				session.flush();
+			}
+		} catch (IOException e) {
+			session.close();
+		}
+	}
+
+	/**
+	 * Closes all sessions without any message for the session idle time.
+	 *
+	 * @param nowMillis the current time in milliseconds
+	 */
+	private void closeIdleSessions(final long nowMillis) {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof Session) {
+				Session session = (Session) key.attachment();
+				if (nowMillis - session.getLastActivityMillis() >= sessionIdleMillis) {
+					session.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Spills the games parked longer than the idle time of the store.
+	 *
+	 * Runs periodically on the AI worker pool, so the selector loop never
+	 * waits for the disk, and also deletes the expired spilled games.
+	 */
+	private void spillIdleGames() {
+		try {
+			store.spillIdle(System.currentTimeMillis());
+		} catch (UncheckedIOException e) {
+			// Tried again with the next check
+		}
+	}
+
+	/**
+	 * Accepts all pending connections.
+	 */
+	private void accept() {
+		while (true) {
+			SocketChannel channel;
+			try {
+				channel = serverChannel.accept();
+				if (channel == null) {
+					return;
+				}
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			} catch (IOException e) {
+				return;
+			}
+			if (sessionsCount.get() >= maxSessions) {
+				reject(channel);
+				continue;
+			}
+			try {
+				SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+				key.attach(new Session(this, channel, key));
+				sessionsCount.incrementAndGet();
+			} catch (IOException e) {
+				closeQuietly(channel);
+			}
+		}
+	}
+
+	/**
+	 * Rejects a connection because this server is full.
+	 *
+	 * @param channel the connection to reject
+	 */
+	private void reject(final SocketChannel channel) {
+		ByteBuffer out = ByteBuffer.allocate(8);
+		GameProtocol.writeError(out, GameProtocol.ERROR_SERVER_BUSY);
+		out.flip();
+		try {
+			channel.write(out);
+		} catch (IOException e) {
+			// Closed below anyway
+		}
+		closeQuietly(channel);
+	}
+
+	/**
+	 * Called by a session after it has been closed.
+	 */
+	void sessionClosed() {
+		sessionsCount.decrementAndGet();
+	}
+
+	/**
+	 * Stops this server.
+	 *
+	 * Stops this server after the current iteration of its selector loop. This
+	 * method can be called from any thread.
+	 */
+	public void stop() {
+		this.running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Closes all connections, the selector and the AI worker pool.
+	 *
+	 * Closes all connections and spills all parked games, so they can be
+	 * continued after a restart, and closes the history of ended games and the
+	 * write-ahead log of running games.
+	 */
+	private void close() {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof Session) {
+				((Session) key.attachment()).close();
+			}
+		}
+		try {
+			store.spillAll();
+		} catch (UncheckedIOException e) {
+			// The parked games are lost
+		}
+		closeQuietly(serverChannel);
+		closeQuietly(selector);
+		aiExecutor.shutdownNow();
+		if (history != null) {
+			closeQuietly(history);
+		}
+		if (log != null) {
+			closeQuietly(log);
+		}
+	}
+
+	/**
+	 * Closes a resource and ignores any exception.
+	 *
+	 * @param closeable the resource to close
+	 */
+	public static void closeQuietly(final AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception e) {
+			// Nothing left to do
+		}
+	}
+
+	/**
+	 * Gets the address.
+	 *
+	 * @return the address this server is listening on
+	 */
+	public /* @ pure @ */ InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * Gets the game loop.
+	 *
+	 * @return the game loop of all hosted games
+	 */
+	/* @ pure @ */ GameLoop getGameLoop() {
+		return gameLoop;
+	}
+
+	/**
+	 * Gets the AI worker pool.
+	 *
+	 * @return the worker pool the AI players choose their moves on
+	 */
+	/* @ pure @ */ ScheduledExecutorService getAIExecutor() {
+		return aiExecutor;
+	}
+
+	/**
+	 * Gets the store.
+	 *
+	 * @return the store of the games left by their players
+	 */
+	public /* @ pure @ */ GameStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Gets the history.
+	 *
+	 * @return the history of ended games or null if ended games are not kept
+	 */
+	public /* @ pure @ */ GameHistoryStore getHistory() {
+		return history;
+	}
+
+	/**
+	 * Gets the write-ahead log.
+	 *
+	 * @return the write-ahead log of running games or null if running games are
+	 *         not logged
+	 */
+	public /* @ pure @ */ GameWriteAheadLog getWriteAheadLog() {
+		return log;
+	}
+
+	/**
+	 * Gets the amount of open sessions.
+	 *
+	 * @return the amount of open sessions
+	 */
+	public int getSessionsCount() {
+		return sessionsCount.get();
+	}
+
+}
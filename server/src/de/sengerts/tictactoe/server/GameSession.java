@@ -0,0 +1,538 @@
+package de.sengerts.tictactoe.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.logic.GameListener;
+import de.sengerts.tictactoe.logic.GameLogic;
+import de.sengerts.tictactoe.logic.GameLoop;
+import de.sengerts.tictactoe.logic.GameSnapshot;
+import de.sengerts.tictactoe.model.board.Location;
+import de.sengerts.tictactoe.model.players.Player;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
+import de.sengerts.tictactoe.net.GameProtocol;
+import de.sengerts.tictactoe.record.GameHistoryStore;
+import de.sengerts.tictactoe.record.GameRecorder;
+import de.sengerts.tictactoe.record.GameWriteAheadLog;
+
+/**
+ * Class representing the session of one client connected to a game server.
+ *
+ * A session owns at most one running game against an AI player and handles
+ * the messages of {@link GameProtocol} of its client. When a session is closed
+ * during a running game, the game is parked in the {@link GameStore} of the
+ * server, so the client can continue it from a new session. Games started in
+ * a session are recorded and, once ended, appended to the history of the
+ * server if it has one. While a game is running in a session, its moves are
+ * logged to the write-ahead log of the server if it has one, so the game can
+ * be recovered after a crash. All methods of a session
+ * have to be called on the thread running the game loop of its games, so the
+ * games are read and changed without any locks. How the messages are received
+ * and how the output buffer is sent is up to the subclasses.
+ *
+ * @author Tobias Senger
+ */
+public abstract class GameSession implements GameListener {
+
+	/**
+	 * Class variable that stores the smallest supported territory size.
+	 */
+	public static final int MIN_SIZE = GameProtocol.MIN_SIZE;
+
+	/**
+	 * Class variable that stores the biggest supported territory size.
+	 */
+	public static final int MAX_SIZE = GameProtocol.MAX_SIZE;
+
+	/**
+	 * Class variable that stores the amount of full state messages of the
+	 * biggest territory the output buffer can hold.
+	 */
+	private static final int OUT_STATES = 2;
+
+	/**
+	 * Instance variable that stores the game loop of the games of this session.
+	 */
+	private final GameLoop gameLoop;
+
+	/**
+	 * Instance variable that stores the worker pool the AI players choose their
+	 * moves on.
+	 */
+	private final ScheduledExecutorService aiExecutor;
+
+	/**
+	 * Instance variable that stores the store of the games left by their
+	 * players.
+	 */
+	private final GameStore store;
+
+	/**
+	 * Instance variable that stores the history the ended games are appended
+	 * to, null to not keep ended games.
+	 */
+	private final GameHistoryStore history;
+
+	/**
+	 * Instance variable that stores the write-ahead log of the running games,
+	 * null to not log running games.
+	 */
+	private final GameWriteAheadLog log;
+
+	/**
+	 * Instance variable that stores the recorder of the game of this session,
+	 * null if the game was continued and its earlier moves are unknown.
+	 */
+	private GameRecorder recorder;
+
+	/**
+	 * Instance variable that stores the bytes that have not been sent yet.
+	 */
+	private final ByteBuffer out;
+
+	/**
+	 * Instance variable that stores the game of this session, null before the
+	 * first game.
+	 */
+	private GameLogic game;
+
+	/**
+	 * Instance variable that stores the id of the game of this session.
+	 */
+	private long gameId;
+
+	/**
+	 * Instance variable that stores when the client was last active in
+	 * milliseconds.
+	 */
+	private volatile long lastActivityMillis;
+
+	/**
+	 * Another constructor for class GameSession.
+	 *
+	 * @param gameLoop the game loop of the games of this session
+	 * @param aiExecutor the worker pool the AI players choose their moves on
+	 * @param store the store of the games left by their players
+	 * @param history the history the ended games are appended to, null to not
+	 *                keep ended games
+	 * @param log the write-ahead log of the running games, null to not log
+	 *            running games
+	 * @throws IllegalArgumentException if given game loop, worker pool or store
+	 *                                  is null
+	 */
+	protected GameSession(final GameLoop gameLoop, final ScheduledExecutorService aiExecutor,
+			final GameStore store, final GameHistoryStore history, final GameWriteAheadLog log) {
+		if (gameLoop == null) {
+			throw new IllegalArgumentException("Given game loop can not be null!");
+		}
+		if (aiExecutor == null) {
+			throw new IllegalArgumentException("Given AI executor can not be null!");
+		}
+		if (store == null) {
+			throw new IllegalArgumentException("Given store can not be null!");
+		}
+		this.gameLoop = gameLoop;
+		this.aiExecutor = aiExecutor;
+		this.store = store;
+		this.history = history;
+		this.log = log;
+		this.lastActivityMillis = System.currentTimeMillis();
+		this.out = ByteBuffer.allocate(OUT_STATES * ((MAX_SIZE * MAX_SIZE + 3) / 4 + 16) + 64);
+	}
+
+	/**
+	 * Handles one message of the client.
+	 *
+	 * @param frame the frame of the message
+	 */
+	protected void handle(final ByteBuffer frame) {
+		noteActivity();
+		try {
+			int type = GameProtocol.readType(frame);
+			if (type == GameProtocol.NEW_GAME) {
+				startGame(frame);
+			} else if (type == GameProtocol.RESUME) {
+				resumeGame(GameProtocol.readGameId(frame));
+			} else if (type == GameProtocol.MOVE) {
+				makeMove(GameProtocol.readCell(frame));
+			} else if (type == GameProtocol.RESYNC) {
+				resync();
+			} else {
+				sendError(GameProtocol.ERROR_BAD_MESSAGE);
+			}
+		} catch (RuntimeException e) {
+			sendError(GameProtocol.ERROR_BAD_MESSAGE);
+		}
+	}
+
+	/**
+	 * Starts a new game of this session.
+	 *
+	 * The new game is created before the current game is disposed, so a
+	 * request for a game that can not be created leaves the current game
+	 * running.
+	 *
+	 * @param frame the payload of the new game message
+	 */
+	private void startGame(final ByteBuffer frame) {
+		int size = GameProtocol.readByte(frame);
+		int difficulty = GameProtocol.readByte(frame);
+		int winLength = GameProtocol.readByte(frame);
+		int flags = GameProtocol.readByte(frame);
+		if (size < MIN_SIZE || size > MAX_SIZE || difficulty >= AIDifficulty.values().length
+				|| !isValidWinLength(winLength, size)) {
+			sendError(GameProtocol.ERROR_BAD_MESSAGE);
+			return;
+		}
+		GameRules rules = new GameRules((flags & GameProtocol.FLAG_EARLY_DRAW_DETECTION) != 0, winLength);
+
+		GameLogic newGame = new GameLogic(new Dimension(size, size), true, AIDifficulty.values()[difficulty], rules,
+				gameLoop, aiExecutor, ThreadLocalRandom.current().nextLong());
+		disposeGame();
+		if (history != null) {
+			this.recorder = new GameRecorder(newGame);
+		}
+		join(newGame, store.newGameId());
+	}
+
+	/**
+	 * Continues a game parked by a previous session.
+	 *
+	 * A game parked in memory is continued right away, a spilled one once it
+	 * has been read ({@link #resumeSpilledGame(long)}).
+	 *
+	 * @param id the id of the game
+	 */
+	private void resumeGame(final long id) {
+		GameSnapshot snapshot = store.takeParked(id);
+		if (snapshot == null) {
+			resumeSpilledGame(id);
+			return;
+		}
+		resumeGame(snapshot, id);
+	}
+
+	/**
+	 * Continues a game spilled by the store.
+	 *
+	 * Reads the spilled game on the AI worker pool, so the thread of the game
+	 * loop, which may be the one of a selector loop, never waits for the disk,
+	 * and continues it on the game loop. Sessions whose game loop has a thread
+	 * of its own may read the game right away instead.
+	 *
+	 * @param id the id of the game
+	 */
+	protected void resumeSpilledGame(final long id) {
+		aiExecutor.execute(() -> {
+			GameSnapshot snapshot;
+			try {
+				snapshot = store.takeSpilled(id);
+			} catch (UncheckedIOException | IllegalArgumentException e) {
+				snapshot = null;
+			}
+			GameSnapshot spilledSnapshot = snapshot;
+			gameLoop.submit(() -> {
+				try {
+					resumeGame(spilledSnapshot, id);
+				} catch (RuntimeException e) {
+					sendError(GameProtocol.ERROR_BAD_MESSAGE);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Continues a game taken out of the store.
+	 *
+	 * Continues the given game unless this session has been closed meanwhile,
+	 * in which case the game is parked again. A game that can not be continued
+	 * is parked again as well, so it is not lost, and the current game of this
+	 * session keeps running.
+	 *
+	 * @param snapshot the snapshot of the game or null if there is no game with
+	 *                 the id
+	 * @param id the id of the game
+	 * @throws IllegalArgumentException if the game of the given snapshot can
+	 *                                  not be continued
+	 */
+	protected void resumeGame(final GameSnapshot snapshot, final long id) {
+		if (snapshot == null) {
+			sendError(GameProtocol.ERROR_NO_GAME);
+			return;
+		}
+		if (!isOpen()) {
+			store.park(id, snapshot);
+			return;
+		}
+		GameLogic resumedGame;
+		try {
+			resumedGame = new GameLogic(snapshot, gameLoop, aiExecutor);
+		} catch (RuntimeException e) {
+			store.park(id, snapshot);
+			throw e;
+		}
+		disposeGame();
+		join(resumedGame, id);
+	}
+
+	/**
+	 * Gets whether a requested win length fits a board size.
+	 *
+	 * @param winLength the requested win length
+	 * @param size the amount of rows and columns of the board
+	 * @return true if the win length is the classic one or at least
+	 *         {@link GameProtocol#MIN_WIN_LENGTH} and at most the size,
+	 *         otherwise false
+	 */
+	private static boolean isValidWinLength(final int winLength, final int size) {
+		return winLength == GameRules.CLASSIC_WIN_LENGTH
+				|| winLength >= GameProtocol.MIN_WIN_LENGTH && winLength <= size;
+	}
+
+	/**
+	 * Makes a game the game of this session.
+	 *
+	 * Makes the given game the game of this session and sends its id and its
+	 * full state to the client.
+	 *
+	 * @param newGame the started or continued game
+	 * @param id the id of the game
+	 */
+	private void join(final GameLogic newGame, final long id) {
+		this.game = newGame;
+		this.gameId = id;
+		game.setAiMoveDelayMillis(0);
+		game.addListener(this);
+		if (log != null) {
+			log.gameStarted(id, game.snapshot());
+		}
+		send(() -> GameProtocol.writeJoined(out, id));
+		sendState();
+	}
+
+	/**
+	 * Sends the full state of the game of this session again.
+	 */
+	private void resync() {
+		if (game == null) {
+			sendError(GameProtocol.ERROR_NO_GAME);
+			return;
+		}
+		sendState();
+	}
+
+	/**
+	 * Sends the full state of the game of this session.
+	 */
+	private void sendState() {
+		send(() -> GameProtocol.writeState(out, game.getTerritory().getBoard(), game.isHumanPlayersTurn()));
+	}
+
+	/**
+	 * Makes a move of the client in the game of this session.
+	 *
+	 * @param cell the index of the cell to mark
+	 */
+	private void makeMove(final int cell) {
+		if (game == null || game.isEnded()) {
+			sendError(GameProtocol.ERROR_NO_GAME);
+			return;
+		}
+		Board board = game.getTerritory().getBoard();
+		if (cell >= board.getCellsCount() || !board.isEmpty(cell) || !game.isHumanPlayersTurn()) {
+			sendError(GameProtocol.ERROR_ILLEGAL_MOVE);
+			return;
+		}
+		int columnsCount = game.getSize().getColumnsCount();
+		game.makeHumanPlayerMove(new Location(cell / columnsCount, cell % columnsCount));
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.logic.GameListener#moveMade(de.sengerts.tictactoe.logic.GameLogic, de.sengerts.tictactoe.model.players.Player, int)
+	 */
+	@Override
+	public void moveMade(final GameLogic gameLogic, final Player player, final int cell) {
+		if (log != null) {
+			log.moveMade(gameId, player.getPlayerSign().ordinal(), cell);
+		}
+		long hash = gameLogic.getTerritory().getBoard().getHash();
+		send(() -> GameProtocol.writeMoved(out, player.getPlayerSign().ordinal(), cell, hash));
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.logic.GameListener#moveRejected(de.sengerts.tictactoe.logic.GameLogic, int)
+	 */
+	@Override
+	public void moveRejected(final GameLogic gameLogic, final int cell) {
+		sendError(GameProtocol.ERROR_ILLEGAL_MOVE);
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.logic.GameListener#gameEnded(de.sengerts.tictactoe.logic.GameLogic)
+	 */
+	@Override
+	public void gameEnded(final GameLogic gameLogic) {
+		int result = gameLogic.isDraw() ? GameProtocol.RESULT_DRAW
+				: gameLogic.getWinner().getPlayerSign().ordinal() + 1;
+		send(() -> GameProtocol.writeEnded(out, result));
+		if (log != null) {
+			log.gameLeft(gameId);
+		}
+		if (recorder != null) {
+			try {
+				history.append(recorder.toRecord());
+			} catch (IOException | RuntimeException e) {
+				// The game is missing from the history
+			}
+			recorder.stop();
+			this.recorder = null;
+		}
+	}
+
+	/**
+	 * Sends an error to the client.
+	 *
+	 * @param code the error code
+	 */
+	private void sendError(final int code) {
+		send(() -> GameProtocol.writeError(out, code));
+	}
+
+	/**
+	 * Writes a message to the output buffer and sends as much as possible.
+	 *
+	 * A client that does not read its messages until the output buffer is full
+	 * is disconnected.
+	 *
+	 * @param message the writing of the message into the output buffer
+	 */
+	private void send(final Runnable message) {
+		if (!isOpen()) {
+			return;
+		}
+		int position = out.position();
+		try {
+			message.run();
+		} catch (BufferOverflowException e) {
+			out.position(position);
+			close();
+			return;
+		}
+		try {
+			flush();
+		} catch (IOException e) {
+			close();
+		}
+	}
+
+	/**
+	 * Parks the game of this session if it is still running.
+	 *
+	 * Parks the running game of this session in the store and disposes it. A
+	 * game that can not be spilled by the store is lost. The parked game stays
+	 * in the write-ahead log until the store has spilled it.
+	 */
+	protected void parkGame() {
+		if (game != null && game.isInGame()) {
+			try {
+				store.park(gameId, game.snapshot());
+			} catch (UncheckedIOException e) {
+				// The spill directory failed, the game can not be continued
+			}
+		}
+		disposeGame(false);
+	}
+
+	/**
+	 * Disposes the game of this session if there is one.
+	 *
+	 * A running game is abandoned and logged as left in the write-ahead log.
+	 */
+	protected void disposeGame() {
+		disposeGame(true);
+	}
+
+	/**
+	 * Disposes the game of this session if there is one.
+	 *
+	 * @param leave whether a running game is logged as left in the write-ahead
+	 *              log
+	 */
+	private void disposeGame(final boolean leave) {
+		if (recorder != null) {
+			recorder.stop();
+			this.recorder = null;
+		}
+		if (game != null) {
+			if (leave && log != null && game.isInGame()) {
+				log.gameLeft(gameId);
+			}
+			game.removeListener(this);
+			game.dispose();
+			this.game = null;
+		}
+	}
+
+	/**
+	 * Gets the output buffer.
+	 *
+	 * @return the buffer in write mode holding the bytes that have not been sent
+	 *         yet
+	 */
+	protected /* @ pure @ */ ByteBuffer getOut() {
+		return out;
+	}
+
+	/**
+	 * Notes an activity of the client.
+	 *
+	 * Called for every handled message and by sessions that receive messages
+	 * before they are handled, so a client is not taken for idle while its
+	 * messages wait in the game loop.
+	 */
+	protected void noteActivity() {
+		this.lastActivityMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Gets the time of the last activity.
+	 *
+	 * @return when the client was last active in milliseconds
+	 */
+	public long getLastActivityMillis() {
+		return lastActivityMillis;
+	}
+
+	/**
+	 * Gets whether the connection of this session is open.
+	 *
+	 * @return true if the connection is open, otherwise false
+	 */
+	protected abstract boolean isOpen();
+
+	/**
+	 * Sends the output buffer.
+	 *
+	 * Sends as much of the output buffer as the connection accepts and leaves
+	 * the rest of it in write mode.
+	 *
+	 * @throws IOException if the connection failed
+	 */
+	protected abstract void flush() throws IOException;
+
+	/**
+	 * Closes this session.
+	 *
+	 * Closes this session and its connection and parks its running game
+	 * ({@link #parkGame()}). Closing a closed session has no effect.
+	 */
+	public abstract void close();
+
+}
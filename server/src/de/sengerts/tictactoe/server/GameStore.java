@@ -0,0 +1,552 @@
+package de.sengerts.tictactoe.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.sengerts.tictactoe.logic.GameSnapshot;
+import de.sengerts.tictactoe.record.GameWriteAheadLog;
+
+/**
+ * Class representing the store of the games whose players left a game server.
+ *
+ * When a session ends during a running game, the game is parked here as its
+ * encoded {@link GameSnapshot} under the id its player got when the game
+ * started, and the player can continue it later from any connection. Parked
+ * games are kept in memory in the order they were parked. Once more than the
+ * maximum amount of games are parked or a game was parked longer than the
+ * idle time, the least recently parked games are spilled to one small file
+ * each in the spill directory by the next periodic spill
+ * ({@link #spillIdle(long)}), from which they are read again when their player
+ * returns ({@link #takeSpilled(long)}). So the memory of a long running server
+ * is bounded no matter how many players abandon their games, and spilled games
+ * whose players never return are deleted after the expiry time. Games parked
+ * in memory stay in the write-ahead log of the server, if it has one, and are
+ * logged as left once they are spilled, so they survive a crash as well.
+ *
+ * Creating game ids and parking and taking games parked in memory never
+ * touches the disk, as the ids of the spilled games are kept in memory too, so
+ * they can be called on the thread of a selector loop, while spilling, reading
+ * spilled games and deleting expired ones belong on a worker thread. All
+ * methods of a store are thread safe, and the disk operations of different
+ * threads are done one after another.
+ *
+ * @author Tobias Senger
+ */
+public class GameStore {
+
+	/**
+	 * Class variable that stores the file name extension of spilled games.
+	 */
+	private static final String SPILL_EXTENSION = ".game";
+
+	/**
+	 * Class variable that stores the id that is never given to a game, which
+	 * marks files in the spill directory that are not spilled games.
+	 */
+	private static final long NO_ID = 0;
+
+	/**
+	 * Instance variable that stores the directory of spilled games.
+	 */
+	private final File spillDirectory;
+
+	/**
+	 * Instance variable that stores the maximum amount of games parked in
+	 * memory.
+	 */
+	private final int maxParkedGames;
+
+	/**
+	 * Instance variable that stores the time in milliseconds after which a
+	 * parked game is spilled.
+	 */
+	private final long idleMillis;
+
+	/**
+	 * Instance variable that stores the time in milliseconds after which a
+	 * spilled game is deleted.
+	 */
+	private final long expiryMillis;
+
+	/**
+	 * Instance variable that stores the games parked in memory by their ids, in
+	 * the order they were parked.
+	 */
+	private final LinkedHashMap<Long, ParkedGame> parkedGames;
+
+	/**
+	 * Instance variable that stores the games being spilled by their ids, which
+	 * can still be taken from memory until their files are written.
+	 */
+	private final Map<Long, ParkedGame> spillingGames;
+
+	/**
+	 * Instance variable that stores the ids of the games in the spill
+	 * directory.
+	 */
+	private final Set<Long> spilledIds;
+
+	/**
+	 * Instance variable that stores the lock held during every disk operation
+	 * on the spill directory.
+	 */
+	private final Object spillLock;
+
+	/**
+	 * Instance variable that stores when the spill directory is checked for
+	 * expired games next in milliseconds, guarded by the spill lock.
+	 */
+	private long nextExpiryCheckMillis;
+
+	/**
+	 * Instance variable that stores the generator of the game ids, which must
+	 * not be guessable as they let anyone continue a game.
+	 */
+	private final SecureRandom idRandom;
+
+	/**
+	 * Instance variable that stores the amount of games spilled so far.
+	 */
+	private long spilledCount;
+
+	/**
+	 * Instance variable that stores the amount of games read from the spill
+	 * directory so far.
+	 */
+	private long rehydratedCount;
+
+	/**
+	 * Instance variable that stores the amount of spilled games deleted after
+	 * the expiry time so far.
+	 */
+	private long expiredCount;
+
+	/**
+	 * Instance variable that stores the write-ahead log the spilled games are
+	 * logged as left in, null if games are not logged.
+	 */
+	private GameWriteAheadLog log;
+
+	/**
+	 * Another constructor for class GameStore.
+	 *
+	 * Creates a new store whose spilled games never expire.
+	 *
+	 * @param spillDirectory the directory of spilled games, which is created if
+	 *                       needed
+	 * @param maxParkedGames the maximum amount of games parked in memory
+	 * @param idleMillis the time in milliseconds after which a parked game is
+	 *                   spilled
+	 * @throws IOException if the spill directory can not be created or read
+	 * @throws IllegalArgumentException if given directory is null or given
+	 *                                  amount or time is negative
+	 */
+	public GameStore(final File spillDirectory, final int maxParkedGames, final long idleMillis)
+			throws IOException {
+		this(spillDirectory, maxParkedGames, idleMillis, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Another constructor for class GameStore.
+	 *
+	 * Creates a new store continuing the games already spilled to the given
+	 * directory.
+	 *
+	 * @param spillDirectory the directory of spilled games, which is created if
+	 *                       needed
+	 * @param maxParkedGames the maximum amount of games parked in memory
+	 * @param idleMillis the time in milliseconds after which a parked game is
+	 *                   spilled
+	 * @param expiryMillis the time in milliseconds after which a spilled game
+	 *                     is deleted
+	 * @throws IOException if the spill directory can not be created or read
+	 * @throws IllegalArgumentException if given directory is null or given
+	 *                                  amount or times are negative
+	 */
+	public GameStore(final File spillDirectory, final int maxParkedGames, final long idleMillis,
+			final long expiryMillis) throws IOException {
+		if (spillDirectory == null) {
+			throw new IllegalArgumentException("Given spill directory can not be null!");
+		}
+		if (maxParkedGames < 0 || idleMillis < 0 || expiryMillis < 0) {
+			throw new IllegalArgumentException(
+					"Given max parked games, idle time and expiry time can not be negative!");
+		}
+		Files.createDirectories(spillDirectory.toPath());
+		this.spillDirectory = spillDirectory;
+		this.maxParkedGames = maxParkedGames;
+		this.idleMillis = idleMillis;
+		this.expiryMillis = expiryMillis;
+		this.parkedGames = new LinkedHashMap<Long, ParkedGame>();
+		this.spillingGames = new HashMap<Long, ParkedGame>();
+		this.spilledIds = new HashSet<Long>();
+		this.spillLock = new Object();
+		this.idRandom = new SecureRandom();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory.toPath(), "*" + SPILL_EXTENSION)) {
+			for (Path file : files) {
+				long id = getSpilledId(file);
+				if (id != NO_ID) {
+					spilledIds.add(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the id of a new game.
+	 *
+	 * @return a random id that is not used by any parked or spilled game
+	 */
+	public synchronized long newGameId() {
+		long id;
+		do {
+			id = idRandom.nextLong();
+		} while (id == NO_ID || parkedGames.containsKey(id) || spillingGames.containsKey(id)
+				|| spilledIds.contains(id));
+		return id;
+	}
+
+	/**
+	 * Parks a game.
+	 *
+	 * Parks the given game in memory. If there are too many games parked now,
+	 * the least recently parked ones are spilled by the next periodic spill.
+	 *
+	 * @param id the id of the game
+	 * @param snapshot the snapshot of the game
+	 * @throws IllegalArgumentException if given snapshot is null
+	 */
+	public synchronized void park(final long id, final GameSnapshot snapshot) {
+		if (snapshot == null) {
+			throw new IllegalArgumentException("Given snapshot can not be null!");
+		}
+		parkedGames.remove(id);
+		parkedGames.put(id, new ParkedGame(snapshot.toBytes(), System.currentTimeMillis()));
+	}
+
+	/**
+	 * Takes a game parked in memory.
+	 *
+	 * Takes the game with the given id out of this store if it is parked in
+	 * memory or still being spilled, without touching the disk. A game whose
+	 * snapshot can not be decoded stays in this store.
+	 *
+	 * @param id the id of the game
+	 * @return the snapshot of the game or null if no game with the id is parked
+	 *         in memory
+	 * @throws IllegalArgumentException if the snapshot of the game can not be
+	 *                                  decoded
+	 */
+	public synchronized GameSnapshot takeParked(final long id) {
+		ParkedGame parkedGame = parkedGames.get(id);
+		Map<Long, ParkedGame> games = parkedGames;
+		if (parkedGame == null) {
+			parkedGame = spillingGames.get(id);
+			games = spillingGames;
+		}
+		if (parkedGame == null) {
+			return null;
+		}
+		GameSnapshot snapshot = GameSnapshot.fromBytes(parkedGame.bytes);
+		games.remove(id);
+		return snapshot;
+	}
+
+	/**
+	 * Takes a spilled game.
+	 *
+	 * Takes the game with the given id out of this store by reading and
+	 * deleting its file in the spill directory. Of several callers taking the
+	 * same game only one gets it. Ids of games that are not spilled are
+	 * answered without touching the disk, and a game that can not be read or
+	 * decoded stays in the spill directory.
+	 *
+	 * @param id the id of the game
+	 * @return the snapshot of the game or null if no game with the id is
+	 *         spilled
+	 * @throws UncheckedIOException if the spilled game can not be read
+	 * @throws IllegalArgumentException if the snapshot of the spilled game can
+	 *                                  not be decoded
+	 */
+	public GameSnapshot takeSpilled(final long id) {
+		Path path = getSpillFile(id).toPath();
+		synchronized (spillLock) {
+			synchronized (this) {
+				if (!spilledIds.contains(id)) {
+					return null;
+				}
+			}
+			try {
+				GameSnapshot snapshot = GameSnapshot.fromBytes(Files.readAllBytes(path));
+				Files.delete(path);
+				synchronized (this) {
+					spilledIds.remove(id);
+					rehydratedCount++;
+				}
+				return snapshot;
+			} catch (NoSuchFileException e) {
+				synchronized (this) {
+					spilledIds.remove(id);
+				}
+				return null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Spills all games parked too long or too many and deletes expired ones.
+	 *
+	 * Spills the least recently parked games while more than the maximum
+	 * amount of games are parked or the least recently parked game was parked
+	 * longer than the idle time. Afterwards deletes the spilled games older
+	 * than the expiry time, checking the spill directory at most once per idle
+	 * time. This method writes to the disk, so it must not be called on the
+	 * thread of a selector loop.
+	 *
+	 * @param nowMillis the current time in milliseconds
+	 * @return the amount of spilled games
+	 * @throws UncheckedIOException if a game can not be spilled
+	 */
+	public int spillIdle(final long nowMillis) {
+		int spilled = 0;
+		synchronized (spillLock) {
+			Map.Entry<Long, ParkedGame> eldest;
+			while ((eldest = nextSpilledGame(nowMillis)) != null) {
+				spill(eldest.getKey(), eldest.getValue());
+				spilled++;
+			}
+			if (nowMillis >= nextExpiryCheckMillis) {
+				nextExpiryCheckMillis = nowMillis + idleMillis;
+				deleteExpired(nowMillis);
+			}
+		}
+		return spilled;
+	}
+
+	/**
+	 * Spills all games parked in memory.
+	 *
+	 * Spills all games, for example before the server stops, so they can still
+	 * be continued after a restart with the same spill directory.
+	 *
+	 * @throws UncheckedIOException if a game can not be spilled
+	 */
+	public void spillAll() {
+		synchronized (spillLock) {
+			Map.Entry<Long, ParkedGame> eldest;
+			while ((eldest = nextSpilledGame(Long.MAX_VALUE)) != null) {
+				spill(eldest.getKey(), eldest.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Moves the least recently parked game to the games being spilled if it
+	 * has to be spilled.
+	 *
+	 * @param nowMillis the current time in milliseconds
+	 * @return the id and the game to spill or null if no game has to be
+	 *         spilled
+	 */
+	private synchronized Map.Entry<Long, ParkedGame> nextSpilledGame(final long nowMillis) {
+		if (parkedGames.isEmpty()) {
+			return null;
+		}
+		Iterator<Map.Entry<Long, ParkedGame>> iterator = parkedGames.entrySet().iterator();
+		Map.Entry<Long, ParkedGame> eldest = iterator.next();
+		if (parkedGames.size() <= maxParkedGames && nowMillis - eldest.getValue().parkedMillis < idleMillis) {
+			return null;
+		}
+		iterator.remove();
+		spillingGames.put(eldest.getKey(), eldest.getValue());
+		return eldest;
+	}
+
+	/**
+	 * Spills a game being spilled.
+	 *
+	 * Writes the file of the game without holding the lock of this store, so
+	 * games can be parked and taken from memory meanwhile. A game taken while
+	 * its file was written is not spilled, and a game whose file can not be
+	 * written is parked again. Must only be called holding the spill lock.
+	 *
+	 * @param id the id of the game
+	 * @param parkedGame the game
+	 * @throws UncheckedIOException if the game can not be written
+	 */
+	private void spill(final long id, final ParkedGame parkedGame) {
+		Path path = getSpillFile(id).toPath();
+		try {
+			Files.write(path, parkedGame.bytes);
+		} catch (IOException e) {
+			synchronized (this) {
+				if (spillingGames.remove(id) != null) {
+					parkedGames.put(id, parkedGame);
+				}
+			}
+			throw new UncheckedIOException(e);
+		}
+		boolean taken;
+		GameWriteAheadLog spilledLog;
+		synchronized (this) {
+			taken = spillingGames.remove(id) == null;
+			if (!taken) {
+				spilledIds.add(id);
+				spilledCount++;
+			}
+			spilledLog = log;
+		}
+		if (taken) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				// Deleted once the spilled game has expired
+			}
+		} else if (spilledLog != null) {
+			spilledLog.gameLeft(id);
+		}
+	}
+
+	/**
+	 * Deletes the spilled games older than the expiry time.
+	 *
+	 * Must only be called holding the spill lock.
+	 *
+	 * @param nowMillis the current time in milliseconds
+	 */
+	private void deleteExpired(final long nowMillis) {
+		Path directory = spillDirectory.toPath();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SPILL_EXTENSION)) {
+			for (Path file : files) {
+				try {
+					if (nowMillis - Files.getLastModifiedTime(file).toMillis() >= expiryMillis) {
+						Files.delete(file);
+						synchronized (this) {
+							spilledIds.remove(getSpilledId(file));
+							expiredCount++;
+						}
+					}
+				} catch (IOException e) {
+					// Taken meanwhile or tried again with the next check
+				}
+			}
+		} catch (IOException e) {
+			// Tried again with the next check
+		}
+	}
+
+	/**
+	 * Gets the spill file of a game.
+	 *
+	 * @param id the id of the game
+	 * @return the file the game is spilled to
+	 */
+	private File getSpillFile(final long id) {
+		return new File(spillDirectory, Long.toHexString(id) + SPILL_EXTENSION);
+	}
+
+	/**
+	 * Gets the id of a spilled game.
+	 *
+	 * @param file the file in the spill directory
+	 * @return the id of the game spilled to the file or {@link #NO_ID} if the
+	 *         file is not named like a spilled game
+	 */
+	private static long getSpilledId(final Path file) {
+		String name = file.getFileName().toString();
+		try {
+			return Long.parseUnsignedLong(name.substring(0, name.length() - SPILL_EXTENSION.length()), 16);
+		} catch (NumberFormatException e) {
+			return NO_ID;
+		}
+	}
+
+	/**
+	 * Sets the write-ahead log.
+	 *
+	 * @param log the write-ahead log the spilled games are logged as left in,
+	 *            null to not log spilled games
+	 */
+	public synchronized void setWriteAheadLog(final GameWriteAheadLog log) {
+		this.log = log;
+	}
+
+	/**
+	 * Gets the amount of games parked in memory.
+	 *
+	 * @return the amount of games parked in memory
+	 */
+	public synchronized int getParkedCount() {
+		return parkedGames.size();
+	}
+
+	/**
+	 * Gets the amount of spilled games.
+	 *
+	 * @return the amount of games spilled so far
+	 */
+	public synchronized long getSpilledCount() {
+		return spilledCount;
+	}
+
+	/**
+	 * Gets the amount of rehydrated games.
+	 *
+	 * @return the amount of games read from the spill directory so far
+	 */
+	public synchronized long getRehydratedCount() {
+		return rehydratedCount;
+	}
+
+	/**
+	 * Gets the amount of expired games.
+	 *
+	 * @return the amount of spilled games deleted after the expiry time so far
+	 */
+	public synchronized long getExpiredCount() {
+		return expiredCount;
+	}
+
+	/**
+	 * Class representing a game parked in memory.
+	 */
+	private static final class ParkedGame {
+
+		/**
+		 * Instance variable that stores the encoded snapshot of the game.
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * Instance variable that stores when the game was parked in milliseconds.
+		 */
+		private final long parkedMillis;
+
+		/**
+		 * Another constructor for class ParkedGame.
+		 *
+		 * @param bytes the encoded snapshot of the game
+		 * @param parkedMillis when the game was parked in milliseconds
+		 */
+		private ParkedGame(final byte[] bytes, final long parkedMillis) {
+			this.bytes = bytes;
+			this.parkedMillis = parkedMillis;
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+package de.sengerts.tictactoe.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import de.sengerts.tictactoe.net.GameProtocol;
+
+/**
+ * Class representing the session of one client connected to the non-blocking
+ * game server.
+ *
+ * A session is only used on the selector thread of its server, which is also
+ * the thread running the game loop, so it reads its game directly without any
+ * locks.
+ *
+ * @author Tobias Senger
+ */
+class Session extends GameSession {
+
+	/**
+	 * Class variable that stores the capacity of the input buffer, enough for
+	 * several client messages.
+	 */
+	private static final int IN_CAPACITY = 64;
+
+	/**
+	 * Instance variable that stores the server of this session.
+	 */
+	private final GameServer server;
+
+	/**
+	 * Instance variable that stores the connection of this session.
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * Instance variable that stores the selection key of the connection.
+	 */
+	private final SelectionKey key;
+
+	/**
+	 * Instance variable that stores the received bytes that have not been
+	 * handled yet.
+	 */
+	private final ByteBuffer in;
+
+	/**
+	 * Another constructor for class Session.
+	 *
+	 * @param server the server of this session
+	 * @param channel the connection of this session
+	 * @param key the selection key of the connection
+	 */
+	Session(final GameServer server, final SocketChannel channel, final SelectionKey key) {
+		super(server.getGameLoop(), server.getAIExecutor(), server.getStore(), server.getHistory(),
+				server.getWriteAheadLog());
+		this.server = server;
+		this.channel = channel;
+		this.key = key;
+		this.in = ByteBuffer.allocate(IN_CAPACITY);
+	}
+
+	/**
+	 * Reads and handles all available messages of the client.
+	 *
+	 * @throws IOException if the connection failed or the client sent a
+	 *                     malformed frame, after which only this session is
+	 *                     closed
+	 */
+	void read() throws IOException {
+		int read = channel.read(in);
+		if (read < 0) {
+			close();
+			return;
+		}
+		in.flip();
+		ByteBuffer frame;
+		while (channel.isOpen() && (frame = GameProtocol.nextFrame(in)) != null) {
+			handle(frame);
+		}
+		in.compact();
+		if (!in.hasRemaining()) {
+			// A frame bigger than any client message
+			close();
+		}
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.server.GameSession#isOpen()
+	 */
+	@Override
+	protected boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	/**
+	 * Sends as much of the output buffer as the connection accepts.
+	 *
+	 * Sends the output buffer and registers interest in writing if some of it
+	 * is left.
+	 *
+	 * @throws IOException if the connection failed
+	 */
+	@Override
+	protected void flush() throws IOException {
+		ByteBuffer out = getOut();
+		out.flip();
+		channel.write(out);
+		out.compact();
+		int interestOps = out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+		if (key.isValid() && key.interestOps() != interestOps) {
+			key.interestOps(interestOps);
+		}
+	}
+
+	/*
+	 * @see de.sengerts.tictactoe.server.GameSession#close()
+	 */
+	@Override
+	public void close() {
+		if (!channel.isOpen()) {
+			return;
+		}
+		parkGame();
+		key.cancel();
+		GameServer.closeQuietly(channel);
+		server.sessionClosed();
+	}
+
+}
@@ -0,0 +1,374 @@
+package de.sengerts.tictactoe.tools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.engine.SearchBudget;
+import de.sengerts.tictactoe.engine.SearchEngine;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+
+/**
+ * Tool measuring the strength and the CPU cost of every AI difficulty.
+ *
+ * For every board size, every AI difficulty and a uniformly random player play
+ * a round robin tournament against each other. The results are fitted to Elo
+ * ratings anchored at the random player (Elo 0) and printed as CSV together
+ * with the CPU time the search engine used per move and per game, so the
+ * cheapest budget reaching a wanted strength can be picked.
+ *
+ * Usage: DifficultyCalibration [games per pairing] [sizes, e.g. 3,4,5] [seed]
+ *
+ * @author Tobias Senger
+ */
+public class DifficultyCalibration {
+
+	/**
+	 * Class variable that stores the default amount of games per pairing.
+	 */
+	private static final int DEFAULT_GAMES = 40;
+
+	/**
+	 * Class variable that stores the default board sizes.
+	 */
+	private static final String DEFAULT_SIZES = "3,4,5,7";
+
+	/**
+	 * Class variable that stores the default random seed.
+	 */
+	private static final long DEFAULT_SEED = 1L;
+
+	/**
+	 * Class variable that stores the amount of fitting iterations of the Elo
+	 * ratings.
+	 */
+	private static final int RATING_ITERATIONS = 500;
+
+	/**
+	 * Class variable that stores the thread MX bean used to measure CPU time.
+	 */
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Instance variable that stores the amount of games per pairing.
+	 */
+	private final int games;
+
+	/**
+	 * Instance variable that stores the random number generator of the openings
+	 * and of the random player.
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * Instance variable that stores all contestants of a tournament.
+	 */
+	private final List<Contestant> contestants;
+
+	/**
+	 * Another constructor for class DifficultyCalibration.
+	 *
+	 * @param games the amount of games per pairing
+	 * @param seed  the seed of the openings and of the random player
+	 */
+	public DifficultyCalibration(final int games, final long seed) {
+		this.games = games;
+		this.random = new SplittableRandom(seed);
+		this.contestants = new ArrayList<Contestant>();
+		contestants.add(new Contestant("RANDOM", null));
+		for (AIDifficulty aiDifficulty : AIDifficulty.values()) {
+			contestants.add(new Contestant(aiDifficulty.name(), aiDifficulty.getSearchBudget()));
+		}
+	}
+
+	/**
+	 * Runs the calibration.
+	 *
+	 * @param args the amount of games per pairing, the comma separated board
+	 *             sizes and the seed, all optional
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+		String sizes = args.length > 1 ? args[1] : DEFAULT_SIZES;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+		DifficultyCalibration calibration = new DifficultyCalibration(games, seed);
+		System.out.println("size,level,max_nodes,max_depth,elo,cpu_us_per_move,cpu_us_per_game,games");
+		for (String size : sizes.split(",")) {
+			calibration.calibrate(Integer.parseInt(size.trim()));
+		}
+	}
+
+	/**
+	 * Calibrates all contestants for one board size.
+	 *
+	 * Lets every pair of contestants play the configured amount of games with
+	 * alternating sides, fits the Elo ratings and prints one CSV line per
+	 * contestant.
+	 *
+	 * @param size the amount of rows and columns of the board
+	 */
+	public void calibrate(final int size) {
+		int count = contestants.size();
+		double[][] scores = new double[count][count];
+		for (Contestant contestant : contestants) {
+			contestant.reset();
+		}
+
+		for (int first = 0; first < count; first++) {
+			for (int second = first + 1; second < count; second++) {
+				for (int game = 0; game < games; game++) {
+					boolean firstStarts = game % 2 == 0;
+					double result = playGame(size, contestants.get(first), contestants.get(second), firstStarts);
+					scores[first][second] += result;
+					scores[second][first] += 1 - result;
+				}
+			}
+		}
+
+		double[] ratings = fitRatings(scores);
+		for (int i = 0; i < count; i++) {
+			Contestant contestant = contestants.get(i);
+			SearchBudget budget = contestant.getBudget();
+			System.out.println(String.format(Locale.ROOT, "%d,%s,%d,%d,%.0f,%.1f,%.1f,%d", size,
+					contestant.getName(), budget == null ? 0 : budget.getMaxNodes(),
+					budget == null ? 0 : budget.getMaxDepth(), ratings[i], contestant.getCpuMicrosPerMove(),
+					contestant.getCpuMicrosPerGame(), contestant.getGames()));
+		}
+	}
+
+	/**
+	 * Plays one game between two contestants.
+	 *
+	 * The game starts with one random move on 3x3 and two random moves on larger
+	 * boards, so the deterministic engines do not replay the same game.
+	 *
+	 * @param size        the amount of rows and columns of the board
+	 * @param first       the first contestant
+	 * @param second      the second contestant
+	 * @param firstStarts whether the first contestant makes the first move after
+	 *                    the opening
+	 * @return the score of the first contestant, 1 for a win, 0.5 for a draw and
+	 *         0 for a loss
+	 */
+	private double playGame(final int size, final Contestant first, final Contestant second,
+			final boolean firstStarts) {
+		Board board = new Board(Lines.classic(size));
+		Contestant[] players = firstStarts ? new Contestant[] { first, second } : new Contestant[] { second, first };
+		SearchEngine[] engines = { new SearchEngine(), new SearchEngine() };
+		int openingMoves = size == 3 ? 1 : 2;
+		int side = 0;
+
+		while (true) {
+			int cell;
+			if (board.getMarkedCount() < openingMoves) {
+				cell = getRandomEmptyCell(board);
+			} else {
+				cell = players[side].chooseMove(board, side, engines[side], random);
+			}
+			board.mark(cell, side);
+			if (board.isWinningCell(cell, side)) {
+				players[side].countGame();
+				players[Board.getOpponent(side)].countGame();
+				return players[side] == first ? 1 : 0;
+			}
+			if (board.isFull()) {
+				first.countGame();
+				second.countGame();
+				return 0.5;
+			}
+			side = Board.getOpponent(side);
+		}
+	}
+
+	/**
+	 * Fits Elo ratings to the results of a round robin tournament.
+	 *
+	 * Uses the minorization-maximization algorithm for the Bradley-Terry model.
+	 * Every pairing gets a virtual draw added, so contestants that won or lost all
+	 * their games still get a finite rating.
+	 *
+	 * @param scores the score of every contestant against every other contestant
+	 * @return the Elo rating of every contestant, the first one rated 0
+	 */
+	private double[] fitRatings(final double[][] scores) {
+		int count = scores.length;
+		double[] strengths = new double[count];
+		Arrays.fill(strengths, 1.0);
+		for (int iteration = 0; iteration < RATING_ITERATIONS; iteration++) {
+			for (int i = 0; i < count; i++) {
+				double wins = 0;
+				double denominator = 0;
+				for (int j = 0; j < count; j++) {
+					if (i == j) {
+						continue;
+					}
+					wins += scores[i][j] + 0.5;
+					denominator += (games + 1) / (strengths[i] + strengths[j]);
+				}
+				strengths[i] = wins / denominator;
+			}
+			double anchor = strengths[0];
+			for (int i = 0; i < count; i++) {
+				strengths[i] /= anchor;
+			}
+		}
+		double[] ratings = new double[count];
+		for (int i = 0; i < count; i++) {
+			ratings[i] = 400 * Math.log10(strengths[i]);
+		}
+		return ratings;
+	}
+
+	/**
+	 * Gets a uniformly random empty cell.
+	 *
+	 * @param board the board to get an empty cell of
+	 * @return a random empty cell
+	 */
+	private int getRandomEmptyCell(final Board board) {
+		int cell;
+		do {
+			cell = random.nextInt(board.getCellsCount());
+		} while (!board.isEmpty(cell));
+		return cell;
+	}
+
+	/**
+	 * Class representing one contestant of the calibration tournament together
+	 * with its measured CPU time.
+	 */
+	private static final class Contestant {
+
+		/**
+		 * Instance variable that stores the name of this contestant.
+		 */
+		private final String name;
+
+		/**
+		 * Instance variable that stores the search budget of this contestant, null
+		 * for the random player.
+		 */
+		private final SearchBudget budget;
+
+		/**
+		 * Instance variable that stores the CPU time of all moves in nanoseconds.
+		 */
+		private long cpuNanos;
+
+		/**
+		 * Instance variable that stores the amount of searched moves.
+		 */
+		private long moves;
+
+		/**
+		 * Instance variable that stores the amount of played games.
+		 */
+		private int games;
+
+		/**
+		 * Another constructor for class Contestant.
+		 *
+		 * @param name   the name of the contestant
+		 * @param budget the search budget of the contestant, null for random moves
+		 */
+		private Contestant(final String name, final SearchBudget budget) {
+			this.name = name;
+			this.budget = budget;
+		}
+
+		/**
+		 * Chooses the next move of this contestant and measures its CPU time.
+		 *
+		 * @param board  the board to move on
+		 * @param side   the side to move
+		 * @param engine the search engine of this contestant in the current game
+		 * @param random the random number generator of the random player
+		 * @return the chosen cell
+		 */
+		private int chooseMove(final Board board, final int side, final SearchEngine engine,
+				final SplittableRandom random) {
+			long start = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+			int cell;
+			if (budget == null) {
+				do {
+					cell = random.nextInt(board.getCellsCount());
+				} while (!board.isEmpty(cell));
+			} else {
+				cell = engine.search(board, side, budget).getCell();
+			}
+			cpuNanos += THREAD_MX_BEAN.getCurrentThreadCpuTime() - start;
+			moves++;
+			return cell;
+		}
+
+		/**
+		 * Counts one more played game.
+		 */
+		private void countGame() {
+			games++;
+		}
+
+		/**
+		 * Resets the measurements before the next board size.
+		 */
+		private void reset() {
+			cpuNanos = 0;
+			moves = 0;
+			games = 0;
+		}
+
+		/**
+		 * Gets the name.
+		 *
+		 * @return the name of this contestant
+		 */
+		private String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets the search budget.
+		 *
+		 * @return the search budget of this contestant, null for the random player
+		 */
+		private SearchBudget getBudget() {
+			return budget;
+		}
+
+		/**
+		 * Gets the amount of played games.
+		 *
+		 * @return the amount of played games
+		 */
+		private int getGames() {
+			return games;
+		}
+
+		/**
+		 * Gets the average CPU time per move.
+		 *
+		 * @return the average CPU time per move in microseconds
+		 */
+		private double getCpuMicrosPerMove() {
+			return moves == 0 ? 0 : cpuNanos / 1000.0 / moves;
+		}
+
+		/**
+		 * Gets the average CPU time per game.
+		 *
+		 * @return the average CPU time per game in microseconds
+		 */
+		private double getCpuMicrosPerGame() {
+			return games == 0 ? 0 : cpuNanos / 1000.0 / games;
+		}
+
+	}
+
+}
@@ -0,0 +1,232 @@
+package de.sengerts.tictactoe.tools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.sengerts.tictactoe.exceptions.TileAreadyMarkedException;
+import de.sengerts.tictactoe.logic.GameLogic;
+import de.sengerts.tictactoe.logic.GameLoop;
+import de.sengerts.tictactoe.logic.GameScheduler;
+import de.sengerts.tictactoe.model.board.Territory;
+import de.sengerts.tictactoe.model.players.Player;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+import de.sengerts.tictactoe.model.settings.Dimension;
+import de.sengerts.tictactoe.model.settings.GameRules;
+
+/**
+ * Tool measuring the heap memory of one running game.
+ *
+ * For every board size many games are created and kept alive, once with an
+ * empty territory and once with about half of the tiles marked, and the
+ * retained heap after a full garbage collection is divided by the amount of
+ * games. Games between two human players show the footprint of the game state
+ * alone, games against an AI player additionally include what the AI player
+ * keeps per game. The results are printed as CSV, together with the amount of
+ * games fitting into one gigabyte of heap, which is what a game server has to
+ * be sized by.
+ *
+ * Usage: GameFootprint [sizes, e.g. 3,21] [human games] [AI games] [seed]
+ *
+ * @author Tobias Senger
+ */
+public class GameFootprint {
+
+	/**
+	 * Class variable that stores the default board sizes.
+	 */
+	private static final String DEFAULT_SIZES = "3,21";
+
+	/**
+	 * Class variable that stores the default amount of games between two human
+	 * players per measurement.
+	 */
+	private static final int DEFAULT_HUMAN_GAMES = 10_000;
+
+	/**
+	 * Class variable that stores the default amount of games against an AI
+	 * player per measurement.
+	 */
+	private static final int DEFAULT_AI_GAMES = 10_000;
+
+	/**
+	 * Class variable that stores the default random seed.
+	 */
+	private static final long DEFAULT_SEED = 1L;
+
+	/**
+	 * Class variable that stores how often the garbage collector is run before
+	 * reading the used heap.
+	 */
+	private static final int GC_RUNS = 4;
+
+	/**
+	 * Class variable that stores the AI move delay of the measured games, long
+	 * enough that no AI player starts searching while the heap is measured.
+	 */
+	private static final long PARKED_AI_DELAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	/**
+	 * Class variable that stores the amount of bytes in one gigabyte.
+	 */
+	private static final long GIGABYTE = 1L << 30;
+
+	/**
+	 * Instance variable that stores the random number generator of the marked
+	 * tiles.
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * Instance variable that stores the game loop of all measured games, which
+	 * is only drained on the calling thread.
+	 */
+	private final GameLoop gameLoop;
+
+	/**
+	 * Instance variable that stores the executor all measured games get their
+	 * scheduler slots on.
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Instance variable that stores the heap memory bean.
+	 */
+	private final MemoryMXBean memoryBean;
+
+	/**
+	 * Another constructor for class GameFootprint.
+	 *
+	 * @param seed the seed of the marked tiles
+	 */
+	public GameFootprint(final long seed) {
+		this.random = new SplittableRandom(seed);
+		this.gameLoop = new GameLoop();
+		this.executor = GameScheduler.newExecutor("footprint", 1);
+		this.memoryBean = ManagementFactory.getMemoryMXBean();
+	}
+
+	/**
+	 * Runs the measurements.
+	 *
+	 * @param args the comma separated board sizes, the amount of games between
+	 *             two human players, the amount of games against an AI player
+	 *             and the seed, all optional
+	 */
+	public static void main(String[] args) {
+		String sizes = args.length > 0 ? args[0] : DEFAULT_SIZES;
+		int humanGames = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HUMAN_GAMES;
+		int aiGames = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_AI_GAMES;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+
+		GameFootprint footprint = new GameFootprint(seed);
+		System.out.println("size,opponent,marked_tiles,games,bytes_per_game,games_per_gb");
+		for (String size : sizes.split(",")) {
+			int sizeValue = Integer.parseInt(size.trim());
+			footprint.run(sizeValue, false, humanGames);
+			footprint.run(sizeValue, true, aiGames);
+		}
+		footprint.executor.shutdownNow();
+	}
+
+	/**
+	 * Measures games of one size and opponent with empty and half marked
+	 * territories.
+	 *
+	 * @param size the amount of rows and columns of the territory
+	 * @param aiOpponent whether the games are against an AI player
+	 * @param gamesCount the amount of games to keep alive
+	 */
+	public void run(final int size, final boolean aiOpponent, final int gamesCount) {
+		if (gamesCount <= 0) {
+			return;
+		}
+		int cellsCount = size * size;
+		print(size, aiOpponent, 0, gamesCount, measure(size, aiOpponent, gamesCount, 0));
+		print(size, aiOpponent, cellsCount / 2, gamesCount, measure(size, aiOpponent, gamesCount, cellsCount / 2));
+	}
+
+	/**
+	 * Measures the retained heap of one game.
+	 *
+	 * @param size the amount of rows and columns of the territory
+	 * @param aiOpponent whether the games are against an AI player
+	 * @param gamesCount the amount of games to keep alive
+	 * @param markedCount the amount of random tiles to mark in every game
+	 * @return the retained heap per game in bytes
+	 */
+	private long measure(final int size, final boolean aiOpponent, final int gamesCount, final int markedCount) {
+		GameLogic[] games = new GameLogic[gamesCount];
+		long before = getUsedHeap();
+		for (int i = 0; i < gamesCount; i++) {
+			games[i] = new GameLogic(new Dimension(size, size), aiOpponent, AIDifficulty.EASY, GameRules.CLASSIC,
+					gameLoop, executor, random.nextLong());
+			games[i].setAiMoveDelayMillis(PARKED_AI_DELAY_MILLIS);
+			markRandomTiles(games[i], markedCount);
+		}
+		gameLoop.drain();
+		long after = getUsedHeap();
+		for (GameLogic game : games) {
+			game.dispose();
+		}
+		gameLoop.drain();
+		return (after - before) / gamesCount;
+	}
+
+	/**
+	 * Marks random tiles of a game.
+	 *
+	 * Marks the given amount of random empty tiles, alternately for both
+	 * players, directly in the territory of the game without any game logic.
+	 *
+	 * @param game the game to mark the tiles of
+	 * @param markedCount the amount of tiles to mark
+	 */
+	private void markRandomTiles(final GameLogic game, final int markedCount) {
+		Territory territory = game.getTerritory();
+		List<Player> players = game.getPlayers();
+		int marked = 0;
+		while (marked < markedCount) {
+			int cell = random.nextInt(territory.getTilesAmount());
+			try {
+				territory.markTile(territory.getTiles().get(cell), players.get(marked % players.size()));
+				marked++;
+			} catch (TileAreadyMarkedException e) {
+				// Another cell is picked
+			}
+		}
+	}
+
+	/**
+	 * Gets the used heap after a full garbage collection.
+	 *
+	 * @return the used heap in bytes
+	 */
+	private long getUsedHeap() {
+		for (int i = 0; i < GC_RUNS; i++) {
+			System.gc();
+		}
+		return memoryBean.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Prints one result as a CSV line.
+	 *
+	 * @param size the amount of rows and columns of the territory
+	 * @param aiOpponent whether the games are against an AI player
+	 * @param markedCount the amount of marked tiles per game
+	 * @param gamesCount the amount of measured games
+	 * @param bytesPerGame the retained heap per game in bytes
+	 */
+	private static void print(final int size, final boolean aiOpponent, final int markedCount, final int gamesCount,
+			final long bytesPerGame) {
+		long gamesPerGigabyte = bytesPerGame > 0 ? GIGABYTE / bytesPerGame : 0;
+		System.out.println(String.format(Locale.ROOT, "%dx%d,%s,%d,%d,%d,%d", size, size,
+				aiOpponent ? "ai" : "human", markedCount, gamesCount, bytesPerGame, gamesPerGigabyte));
+	}
+
+}
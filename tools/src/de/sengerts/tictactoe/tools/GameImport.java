@@ -0,0 +1,189 @@
+package de.sengerts.tictactoe.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.record.GameHistoryStore;
+import de.sengerts.tictactoe.record.GameRecord;
+import de.sengerts.tictactoe.record.GameRecordReader;
+import de.sengerts.tictactoe.record.PositionIndex;
+import de.sengerts.tictactoe.record.PositionIndexBuilder;
+
+/**
+ * Tool importing recorded games into a game database.
+ *
+ * A game database is a directory holding a {@link GameHistoryStore} of games
+ * and a {@link PositionIndex} of all positions these games pass through. The
+ * records of the given record files ({@link GameRecordReader}) are appended to
+ * the history of the database, and afterwards the index is rebuilt from all
+ * games of the history with one worker thread per processor
+ * ({@link PositionIndexBuilder}). Without any record files, only the index is
+ * rebuilt, so the history of a game server can be indexed in place. Finally
+ * every position of the first game is looked up in the new index to show how
+ * fast positions are queried.
+ *
+ * Usage: GameImport [database directory] [records files...]
+ *
+ * @author Tobias Senger
+ */
+public class GameImport {
+
+	/**
+	 * Class variable that stores the default database directory.
+	 */
+	private static final String DEFAULT_DATABASE_DIRECTORY = "database";
+
+	/**
+	 * Class variable that stores the base name of the files of the history of
+	 * a database.
+	 */
+	public static final String HISTORY_NAME = "games";
+
+	/**
+	 * Class variable that stores the amount of appended games after which the
+	 * history is forced while importing.
+	 */
+	private static final int IMPORT_FORCE_BATCH = 1 << 16;
+
+	/**
+	 * Class variable that stores how often every position of the first game is
+	 * looked up to measure the query time.
+	 */
+	private static final int QUERY_ROUNDS = 100;
+
+	/**
+	 * Private constructor for class GameImport, as it only has static methods.
+	 */
+	private GameImport() {
+	}
+
+	/**
+	 * Runs the import.
+	 *
+	 * @param args the database directory and the records files to import, all
+	 *             optional
+	 * @throws IOException if a records file can not be read or the database can
+	 *                     not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		File directory = new File(args.length > 0 ? args[0] : DEFAULT_DATABASE_DIRECTORY);
+
+		try (GameHistoryStore history = new GameHistoryStore(directory, HISTORY_NAME, IMPORT_FORCE_BATCH,
+				null)) {
+			long startNanos = System.nanoTime();
+			long importedCount = 0;
+			for (int i = 1; i < args.length; i++) {
+				importedCount += importRecords(new File(args[i]), history);
+			}
+			history.force();
+			if (importedCount > 0) {
+				printRate("Imported", importedCount, "games", startNanos);
+			}
+			buildIndex(directory, history);
+		}
+		measureQueries(directory);
+	}
+
+	/**
+	 * Imports the records of a file.
+	 *
+	 * @param file the records file
+	 * @param history the history to append the records to
+	 * @return the amount of imported records
+	 * @throws IOException if the file can not be read or the history can not be
+	 *                     written
+	 */
+	private static long importRecords(final File file, final GameHistoryStore history) throws IOException {
+		try (GameRecordReader reader = new GameRecordReader(new FileInputStream(file))) {
+			GameRecord record;
+			while ((record = reader.read()) != null) {
+				history.append(record);
+			}
+			return reader.getRecordsCount();
+		}
+	}
+
+	/**
+	 * Rebuilds the index of a database.
+	 *
+	 * @param directory the database directory
+	 * @param history the history of the database
+	 * @throws IOException if the history can not be read or the index can not be
+	 *                     written
+	 */
+	private static void buildIndex(final File directory, final GameHistoryStore history) throws IOException {
+		long startNanos = System.nanoTime();
+		try (PositionIndexBuilder builder = new PositionIndexBuilder(directory, PositionIndex.DEFAULT_NAME)) {
+			try {
+				history.scan(record -> {
+					try {
+						builder.add(builder.getGamesCount(), record);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			builder.finish();
+			printRate("Indexed", builder.getGamesCount(), "games", startNanos);
+			System.out.println(builder.getPositionsCount() + " positions, " + builder.getPostingsCount()
+					+ " postings, " + builder.getRunsCount() + " runs");
+		}
+	}
+
+	/**
+	 * Measures the queries of a database.
+	 *
+	 * Looks up every position of the first game of the database and prints the
+	 * average time of a lookup including the read of its game ids.
+	 *
+	 * @param directory the database directory
+	 * @throws IOException if the database can not be read
+	 */
+	private static void measureQueries(final File directory) throws IOException {
+		GameRecord first;
+		try (GameHistoryStore history = new GameHistoryStore(directory, HISTORY_NAME)) {
+			if (history.getGamesCount() == 0) {
+				return;
+			}
+			first = history.get(0);
+		}
+		try (PositionIndex index = new PositionIndex(directory, PositionIndex.DEFAULT_NAME)) {
+			long lookups = 0;
+			long ids = 0;
+			long startNanos = System.nanoTime();
+			for (int round = 0; round < QUERY_ROUNDS; round++) {
+				for (int move = 0; move <= first.getMovesCount(); move++) {
+					Board board = first.getBoard(move);
+					PositionIndex.Entry entry = index.get(board);
+					ids += index.getGameIds(entry).length;
+					lookups++;
+				}
+			}
+			double micros = (System.nanoTime() - startNanos) / 1000.0 / lookups;
+			System.out.println(String.format(Locale.ROOT, "%.1f us per position lookup, %.0f games per position",
+					micros, ids / (double) lookups));
+		}
+	}
+
+	/**
+	 * Prints a rate.
+	 *
+	 * @param action the action that was done
+	 * @param count the amount of processed things
+	 * @param unit the name of the processed things
+	 * @param startNanos the time the action started at
+	 */
+	private static void printRate(final String action, final long count, final String unit,
+			final long startNanos) {
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		System.out.println(String.format(Locale.ROOT, "%s %d %s in %.2f s (%.0f %s/s)", action, count, unit,
+				seconds, count / seconds, unit));
+	}
+
+}
@@ -0,0 +1,169 @@
+package de.sengerts.tictactoe.tools;
+
+/**
+ * Class representing a histogram of latencies with a bounded relative error.
+ *
+ * Like an HDR histogram the values are counted in buckets whose width doubles
+ * with every power of two, each split into the same amount of sub-buckets, so
+ * every recorded value is known to better than 2 percent from one nanosecond up
+ * to the largest long value while the histogram only takes a few kilobytes.
+ * A histogram is not thread safe, every thread has to record into its own one
+ * and the histograms can be added up afterwards.
+ *
+ * @author Tobias Senger
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Class variable that stores the base two logarithm of the amount of
+	 * sub-buckets of the first bucket.
+	 */
+	private static final int SUB_BUCKET_BITS = 7;
+
+	/**
+	 * Class variable that stores the amount of sub-buckets of every further
+	 * bucket, which only use the upper half of the sub-bucket range.
+	 */
+	private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+
+	/**
+	 * Class variable that stores the amount of counts needed for all long
+	 * values.
+	 */
+	private static final int COUNTS_LENGTH = (Long.SIZE - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+	/**
+	 * Instance variable that stores the count of every sub-bucket.
+	 */
+	private final long[] counts;
+
+	/**
+	 * Instance variable that stores the amount of recorded values.
+	 */
+	private long count;
+
+	/**
+	 * Instance variable that stores the sum of all recorded values.
+	 */
+	private long sum;
+
+	/**
+	 * Instance variable that stores the largest recorded value.
+	 */
+	private long max;
+
+	/**
+	 * Constructor for class LatencyHistogram.
+	 *
+	 * Creates a new empty histogram.
+	 */
+	public LatencyHistogram() {
+		this.counts = new long[COUNTS_LENGTH];
+	}
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value the value to record, negative values are recorded as zero
+	 */
+	public void record(final long value) {
+		long recorded = Math.max(0, value);
+		counts[getIndex(recorded)]++;
+		count++;
+		sum += recorded;
+		max = Math.max(max, recorded);
+	}
+
+	/**
+	 * Adds all values of another histogram to this histogram.
+	 *
+	 * @param histogram the histogram to add
+	 * @throws IllegalArgumentException if given histogram is null
+	 */
+	public void add(final LatencyHistogram histogram) {
+		if (histogram == null) {
+			throw new IllegalArgumentException("Given histogram can not be null!");
+		}
+		for (int index = 0; index < counts.length; index++) {
+			counts[index] += histogram.counts[index];
+		}
+		count += histogram.count;
+		sum += histogram.sum;
+		max = Math.max(max, histogram.max);
+	}
+
+	/**
+	 * Gets the value at a percentile.
+	 *
+	 * @param percentile the percentile between 0 and 100
+	 * @return the highest value equivalent to the value at or below which the
+	 *         given percentage of all values are, or zero if no value was
+	 *         recorded
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+		long seen = 0;
+		for (int index = 0; index < counts.length; index++) {
+			seen += counts[index];
+			if (seen >= rank) {
+				return Math.min(max, getHighestValue(index));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the index of the sub-bucket of a value.
+	 *
+	 * @param value the value, which is not negative
+	 * @return the index of the count of the value
+	 */
+	private static int getIndex(final long value) {
+		int shift = Math.max(0, Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		int subBucket = (int) (value >>> shift);
+		return shift * HALF_SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the highest value of a sub-bucket.
+	 *
+	 * @param index the index of the count of the sub-bucket
+	 * @return the highest value counted in the sub-bucket
+	 */
+	private static long getHighestValue(final int index) {
+		int shift = index < 2 * HALF_SUB_BUCKETS ? 0 : index / HALF_SUB_BUCKETS - 1;
+		long subBucket = index - (long) shift * HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Gets the amount of recorded values.
+	 *
+	 * @return the amount of recorded values
+	 */
+	public /* @ pure @ */ long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the mean.
+	 *
+	 * @return the mean of all recorded values or zero if no value was recorded
+	 */
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Gets the maximum.
+	 *
+	 * @return the largest recorded value
+	 */
+	public /* @ pure @ */ long getMax() {
+		return max;
+	}
+
+}
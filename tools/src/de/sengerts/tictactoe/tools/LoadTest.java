@@ -0,0 +1,733 @@
+package de.sengerts.tictactoe.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.net.GameProtocol;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+import de.sengerts.tictactoe.model.settings.GameRules;
+
+/**
+ * Tool putting a game server under the load of many simulated clients.
+ *
+ * All clients are driven by one selector thread, so thousands of them can be
+ * simulated without a thread each. Every client starts a game against the AI
+ * of the server ({@link GameProtocol}) and, whenever it is its turn, makes a
+ * move after an optional think time, either on a random empty cell or, when
+ * scripted, on the first empty cell in the order the search engine tries them,
+ * so all scripted clients play the same games. Ended games are followed by new
+ * ones until the test is over.
+ *
+ * For every move the time until the server confirms it and the time until the
+ * AI has answered it are recorded in latency histograms. At the end the
+ * percentiles, the sustained amount of moves per second and all errors are
+ * printed and written as a JSON report, so runs against the selector server
+ * and the virtual thread server can be compared.
+ *
+ * Usage: LoadTest [host:port] [clients] [seconds] [size] [difficulty]
+ * [random|scripted] [think millis] [report file]
+ *
+ * @author Tobias Senger
+ */
+public class LoadTest {
+
+	/**
+	 * Class variable that stores the default address of the server.
+	 */
+	private static final String DEFAULT_ADDRESS = "127.0.0.1:7777";
+
+	/**
+	 * Class variable that stores the default amount of clients.
+	 */
+	private static final int DEFAULT_CLIENTS = 100;
+
+	/**
+	 * Class variable that stores the default duration in seconds.
+	 */
+	private static final int DEFAULT_SECONDS = 30;
+
+	/**
+	 * Class variable that stores the default size of the territories.
+	 */
+	private static final int DEFAULT_SIZE = 3;
+
+	/**
+	 * Class variable that stores the default name of the report file.
+	 */
+	private static final String DEFAULT_REPORT_FILE = "load-test.json";
+
+	/**
+	 * Class variable that stores the percentiles of the report.
+	 */
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	/**
+	 * Class variable that stores the longest time in milliseconds the selector
+	 * waits for a message.
+	 */
+	private static final long SELECT_MILLIS = 100;
+
+	/**
+	 * Class variable that stores the capacity of the input buffer of a client,
+	 * enough for the state of the biggest territory.
+	 */
+	private static final int IN_CAPACITY = 4096;
+
+	/**
+	 * Class variable that stores the capacity of the output buffer of a client.
+	 */
+	private static final int OUT_CAPACITY = 256;
+
+	/**
+	 * Class variable that stores the side of the clients, who are the human
+	 * players of their games.
+	 */
+	private static final int CLIENT_SIDE = 0;
+
+	/**
+	 * Instance variable that stores the address of the server.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * Instance variable that stores the amount of clients.
+	 */
+	private final int clientsCount;
+
+	/**
+	 * Instance variable that stores the duration in nanoseconds.
+	 */
+	private final long durationNanos;
+
+	/**
+	 * Instance variable that stores the size of the territories.
+	 */
+	private final int size;
+
+	/**
+	 * Instance variable that stores the difficulty of the AI opponents.
+	 */
+	private final AIDifficulty aiDifficulty;
+
+	/**
+	 * Instance variable that stores whether the clients play scripted moves
+	 * instead of random ones.
+	 */
+	private final boolean scripted;
+
+	/**
+	 * Instance variable that stores the think time of the clients in
+	 * nanoseconds.
+	 */
+	private final long thinkNanos;
+
+	/**
+	 * Instance variable that stores the random number generator all clients
+	 * split theirs off.
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * Instance variable that stores the time from sending a move until the
+	 * server confirmed it in nanoseconds.
+	 */
+	private final LatencyHistogram ackLatency;
+
+	/**
+	 * Instance variable that stores the time from sending a move until the AI
+	 * answered it in nanoseconds.
+	 */
+	private final LatencyHistogram replyLatency;
+
+	/**
+	 * Instance variable that stores the clients waiting for their think time to
+	 * pass, ordered by when they move.
+	 */
+	private final PriorityQueue<Client> thinkingClients;
+
+	/**
+	 * Instance variable that stores the amount of connected clients.
+	 */
+	private int connectedCount;
+
+	/**
+	 * Instance variable that stores the amount of clients whose connection
+	 * failed or was closed by the server.
+	 */
+	private int disconnectedCount;
+
+	/**
+	 * Instance variable that stores the amount of confirmed moves of the
+	 * clients.
+	 */
+	private long movesCount;
+
+	/**
+	 * Instance variable that stores the amount of games won by the clients, won
+	 * by the AI and ended with a draw.
+	 */
+	private final long[] resultsCounts;
+
+	/**
+	 * Instance variable that stores the amount of received errors by error code.
+	 */
+	private final long[] errorsCounts;
+
+	/**
+	 * Instance variable that stores the measured time in nanoseconds.
+	 */
+	private long elapsedNanos;
+
+	/**
+	 * Another constructor for class LoadTest.
+	 *
+	 * @param address the address of the server
+	 * @param clientsCount the amount of clients
+	 * @param seconds the duration in seconds
+	 * @param size the size of the territories
+	 * @param aiDifficulty the difficulty of the AI opponents
+	 * @param scripted whether the clients play scripted moves instead of random
+	 *                 ones
+	 * @param thinkMillis the think time of the clients in milliseconds
+	 * @param seed the seed of the random moves
+	 * @throws IllegalArgumentException if given address or difficulty is null or
+	 *                                  given counts are not positive
+	 */
+	public LoadTest(final InetSocketAddress address, final int clientsCount, final int seconds, final int size,
+			final AIDifficulty aiDifficulty, final boolean scripted, final long thinkMillis, final long seed) {
+		if (address == null || aiDifficulty == null) {
+			throw new IllegalArgumentException("Given address and AI difficulty can not be null!");
+		}
+		if (clientsCount <= 0 || seconds <= 0 || size <= 0 || thinkMillis < 0) {
+			throw new IllegalArgumentException("Given clients, seconds and size must be positive!");
+		}
+		this.address = address;
+		this.clientsCount = clientsCount;
+		this.durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+		this.size = size;
+		this.aiDifficulty = aiDifficulty;
+		this.scripted = scripted;
+		this.thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkMillis);
+		this.random = new SplittableRandom(seed);
+		this.ackLatency = new LatencyHistogram();
+		this.replyLatency = new LatencyHistogram();
+		this.thinkingClients = new PriorityQueue<Client>((a, b) -> Long.compare(a.moveNanos, b.moveNanos));
+		this.resultsCounts = new long[3];
+		this.errorsCounts = new long[256];
+	}
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param args the address, the amount of clients, the duration in seconds,
+	 *             the size of the territories, the AI difficulty, random or
+	 *             scripted moves, the think time in milliseconds and the report
+	 *             file, all optional
+	 * @throws IOException if the report can not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		String[] hostAndPort = (args.length > 0 ? args[0] : DEFAULT_ADDRESS).split(":");
+		InetSocketAddress address = new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1]));
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLIENTS;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+		int size = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_SIZE;
+		AIDifficulty aiDifficulty = args.length > 4 ? AIDifficulty.valueOf(args[4].toUpperCase(Locale.ROOT))
+				: AIDifficulty.MEDIUM;
+		boolean scripted = args.length > 5 && args[5].equalsIgnoreCase("scripted");
+		long thinkMillis = args.length > 6 ? Long.parseLong(args[6]) : 0;
+		File reportFile = new File(args.length > 7 ? args[7] : DEFAULT_REPORT_FILE);
+
+		LoadTest loadTest = new LoadTest(address, clients, seconds, size, aiDifficulty, scripted, thinkMillis,
+				System.nanoTime());
+		loadTest.run();
+		loadTest.printSummary();
+		loadTest.writeReport(reportFile);
+		System.out.println("Report written to " + reportFile.getAbsolutePath());
+	}
+
+	/**
+	 * Runs all clients on the calling thread for the duration of the test.
+	 *
+	 * @throws IOException if the selector can not be opened
+	 */
+	public void run() throws IOException {
+		List<Client> clients = new ArrayList<Client>(clientsCount);
+		try (Selector selector = Selector.open()) {
+			for (int i = 0; i < clientsCount; i++) {
+				Client client = new Client(random.split());
+				clients.add(client);
+				client.connect(selector);
+			}
+			long startNanos = System.nanoTime();
+			long endNanos = startNanos + durationNanos;
+			long nowNanos = startNanos;
+			while (nowNanos < endNanos) {
+				selector.select(getSelectMillis(nowNanos, endNanos));
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					((Client) key.attachment()).handle(key);
+				}
+				nowNanos = System.nanoTime();
+				while (!thinkingClients.isEmpty() && thinkingClients.peek().moveNanos <= nowNanos) {
+					thinkingClients.poll().move();
+				}
+			}
+			this.elapsedNanos = nowNanos - startNanos;
+		} finally {
+			for (Client client : clients) {
+				client.close();
+			}
+		}
+	}
+
+	/**
+	 * Gets how long the selector may wait for a message.
+	 *
+	 * @param nowNanos the current time in nanoseconds
+	 * @param endNanos the end of the test in nanoseconds
+	 * @return the time to wait in milliseconds, at least one
+	 */
+	private long getSelectMillis(final long nowNanos, final long endNanos) {
+		long untilNanos = endNanos;
+		if (!thinkingClients.isEmpty()) {
+			untilNanos = Math.min(untilNanos, thinkingClients.peek().moveNanos);
+		}
+		return Math.max(1, Math.min(SELECT_MILLIS, TimeUnit.NANOSECONDS.toMillis(untilNanos - nowNanos)));
+	}
+
+	/**
+	 * Prints a summary of the results.
+	 */
+	public void printSummary() {
+		System.out.println(String.format(Locale.ROOT,
+				"%d/%d clients connected, %d games, %d moves, %.1f moves/s, %d disconnected", connectedCount,
+				clientsCount, getGamesCount(), movesCount, getMovesPerSecond(), disconnectedCount));
+		printLatency("ack", ackLatency);
+		printLatency("reply", replyLatency);
+	}
+
+	/**
+	 * Prints the percentiles of a histogram in microseconds.
+	 *
+	 * @param name the name of the histogram
+	 * @param histogram the histogram of latencies in nanoseconds
+	 */
+	private static void printLatency(final String name, final LatencyHistogram histogram) {
+		StringBuilder line = new StringBuilder(name).append(" latency (us):");
+		for (double percentile : PERCENTILES) {
+			line.append(String.format(Locale.ROOT, " p%s=%.1f", formatPercentile(percentile),
+					histogram.getValueAtPercentile(percentile) / 1000.0));
+		}
+		line.append(String.format(Locale.ROOT, " max=%.1f", histogram.getMax() / 1000.0));
+		System.out.println(line);
+	}
+
+	/**
+	 * Writes the results as a JSON report.
+	 *
+	 * @param file the file to write the report to
+	 * @throws IOException if the file can not be written
+	 */
+	public void writeReport(final File file) throws IOException {
+		try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+			writer.println("{");
+			writer.println("  \"address\": \"" + address.getHostString() + ":" + address.getPort() + "\",");
+			writer.println("  \"clients\": " + clientsCount + ",");
+			writer.println("  \"durationSeconds\": " + format(elapsedNanos / 1e9) + ",");
+			writer.println("  \"size\": " + size + ",");
+			writer.println("  \"difficulty\": \"" + aiDifficulty + "\",");
+			writer.println("  \"moves\": \"" + (scripted ? "scripted" : "random") + "\",");
+			writer.println("  \"thinkMillis\": " + TimeUnit.NANOSECONDS.toMillis(thinkNanos) + ",");
+			writer.println("  \"connected\": " + connectedCount + ",");
+			writer.println("  \"disconnected\": " + disconnectedCount + ",");
+			writer.println("  \"games\": " + getGamesCount() + ",");
+			writer.println("  \"results\": { \"clientWins\": " + resultsCounts[CLIENT_SIDE + 1] + ", \"aiWins\": "
+					+ resultsCounts[2 - CLIENT_SIDE] + ", \"draws\": " + resultsCounts[GameProtocol.RESULT_DRAW]
+					+ " },");
+			writer.println("  \"clientMoves\": " + movesCount + ",");
+			writer.println("  \"movesPerSecond\": " + format(getMovesPerSecond()) + ",");
+			writer.println("  \"errors\": { \"badMessage\": " + errorsCounts[GameProtocol.ERROR_BAD_MESSAGE]
+					+ ", \"noGame\": " + errorsCounts[GameProtocol.ERROR_NO_GAME] + ", \"serverBusy\": "
+					+ errorsCounts[GameProtocol.ERROR_SERVER_BUSY] + ", \"illegalMove\": "
+					+ errorsCounts[GameProtocol.ERROR_ILLEGAL_MOVE] + " },");
+			writer.println("  \"latencyMicros\": {");
+			writer.println("    \"ack\": " + toJson(ackLatency) + ",");
+			writer.println("    \"reply\": " + toJson(replyLatency));
+			writer.println("  }");
+			writer.println("}");
+		}
+	}
+
+	/**
+	 * Converts a histogram to a JSON object in microseconds.
+	 *
+	 * @param histogram the histogram of latencies in nanoseconds
+	 * @return the JSON object of the count, mean, percentiles and maximum
+	 */
+	private static String toJson(final LatencyHistogram histogram) {
+		StringBuilder json = new StringBuilder("{ \"count\": ").append(histogram.getCount());
+		json.append(", \"mean\": ").append(format(histogram.getMean() / 1000));
+		for (double percentile : PERCENTILES) {
+			json.append(", \"p").append(formatPercentile(percentile).replace(".", "")).append("\": ")
+					.append(format(histogram.getValueAtPercentile(percentile) / 1000.0));
+		}
+		return json.append(", \"max\": ").append(format(histogram.getMax() / 1000.0)).append(" }").toString();
+	}
+
+	/**
+	 * Formats a number for the report.
+	 *
+	 * @param value the number
+	 * @return the number with one decimal
+	 */
+	private static String format(final double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	/**
+	 * Formats a percentile without a needless decimal.
+	 *
+	 * @param percentile the percentile
+	 * @return the percentile like 50 or 99.9
+	 */
+	private static String formatPercentile(final double percentile) {
+		return percentile == Math.rint(percentile) ? Integer.toString((int) percentile) : Double.toString(percentile);
+	}
+
+	/**
+	 * Gets the amount of ended games.
+	 *
+	 * @return the amount of games ended during the test
+	 */
+	public long getGamesCount() {
+		return resultsCounts[0] + resultsCounts[1] + resultsCounts[2];
+	}
+
+	/**
+	 * Gets the sustained amount of moves per second.
+	 *
+	 * @return the confirmed moves of all clients per second of the test
+	 */
+	public double getMovesPerSecond() {
+		return elapsedNanos == 0 ? 0 : movesCount / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Gets the confirmation latencies.
+	 *
+	 * @return the histogram of the times from sending a move until the server
+	 *         confirmed it in nanoseconds
+	 */
+	public /* @ pure @ */ LatencyHistogram getAckLatency() {
+		return ackLatency;
+	}
+
+	/**
+	 * Gets the reply latencies.
+	 *
+	 * @return the histogram of the times from sending a move until the AI
+	 *         answered it in nanoseconds
+	 */
+	public /* @ pure @ */ LatencyHistogram getReplyLatency() {
+		return replyLatency;
+	}
+
+	/**
+	 * Class representing one simulated client.
+	 */
+	private final class Client {
+
+		/**
+		 * Instance variable that stores the random number generator of the
+		 * random moves of this client.
+		 */
+		private final SplittableRandom moveRandom;
+
+		/**
+		 * Instance variable that stores the received bytes that have not been
+		 * handled yet.
+		 */
+		private final ByteBuffer in;
+
+		/**
+		 * Instance variable that stores the bytes that have not been sent yet.
+		 */
+		private final ByteBuffer out;
+
+		/**
+		 * Instance variable that stores the connection of this client.
+		 */
+		private SocketChannel channel;
+
+		/**
+		 * Instance variable that stores the selection key of the connection.
+		 */
+		private SelectionKey key;
+
+		/**
+		 * Instance variable that stores the copy of the board of the current
+		 * game.
+		 */
+		private Board board;
+
+		/**
+		 * Instance variable that stores when the last move was sent in
+		 * nanoseconds, or zero if no move is waiting for its confirmation and
+		 * answer.
+		 */
+		private long sentNanos;
+
+		/**
+		 * Instance variable that stores when this client makes its next move in
+		 * nanoseconds.
+		 */
+		private long moveNanos;
+
+		/**
+		 * Another constructor for class Client.
+		 *
+		 * @param moveRandom the random number generator of the random moves
+		 */
+		private Client(final SplittableRandom moveRandom) {
+			this.moveRandom = moveRandom;
+			this.in = ByteBuffer.allocate(IN_CAPACITY);
+			this.out = ByteBuffer.allocate(OUT_CAPACITY);
+		}
+
+		/**
+		 * Starts connecting this client to the server.
+		 *
+		 * @param selector the selector of all clients
+		 */
+		private void connect(final Selector selector) {
+			try {
+				this.channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				channel.connect(address);
+				this.key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+			} catch (IOException e) {
+				disconnect();
+			}
+		}
+
+		/**
+		 * Handles a selected key of this client.
+		 *
+		 * @param selectedKey the selected key
+		 */
+		private void handle(final SelectionKey selectedKey) {
+			try {
+				if (selectedKey.isConnectable()) {
+					channel.finishConnect();
+					key.interestOps(SelectionKey.OP_READ);
+					connectedCount++;
+					startGame();
+				}
+				if (selectedKey.isValid() && selectedKey.isWritable()) {
+					flush();
+				}
+				if (selectedKey.isValid() && selectedKey.isReadable()) {
+					read();
+				}
+			} catch (IOException e) {
+				disconnect();
+			}
+		}
+
+		/**
+		 * Reads and handles all available messages of the server.
+		 *
+		 * A move is only made after all available messages have been handled
+		 * and if the last move of the AI neither won nor filled the board, so no
+		 * move is sent into a game that has already ended.
+		 *
+		 * @throws IOException if the connection failed
+		 */
+		private void read() throws IOException {
+			if (channel.read(in) < 0) {
+				disconnect();
+				return;
+			}
+			in.flip();
+			boolean clientsTurn = false;
+			boolean ended = false;
+			ByteBuffer frame;
+			while ((frame = GameProtocol.nextFrame(in)) != null) {
+				int type = GameProtocol.readType(frame);
+				if (type == GameProtocol.STATE) {
+					clientsTurn = (GameProtocol.readByte(frame) & GameProtocol.FLAG_CLIENTS_TURN) != 0;
+					GameProtocol.readHash(frame);
+					this.board = GameProtocol.readBoard(frame);
+					ended = false;
+				} else if (type == GameProtocol.MOVED) {
+					int move = GameProtocol.readVarint(frame);
+					int side = GameProtocol.getMoveSide(move);
+					board.mark(GameProtocol.getMoveCell(move), side);
+					clientsTurn = side != CLIENT_SIDE && !board.hasWinningRun(side) && !board.isFull();
+					moveMade(side);
+				} else if (type == GameProtocol.ENDED) {
+					resultsCounts[GameProtocol.readByte(frame)]++;
+					this.sentNanos = 0;
+					ended = true;
+				} else if (type == GameProtocol.ERROR) {
+					errorsCounts[GameProtocol.readByte(frame)]++;
+					this.sentNanos = 0;
+				}
+			}
+			in.compact();
+			if (ended) {
+				startGame();
+			} else if (clientsTurn) {
+				scheduleMove();
+			}
+		}
+
+		/**
+		 * Records the latencies of a confirmed or answered move.
+		 *
+		 * @param side the side that made the move
+		 */
+		private void moveMade(final int side) {
+			if (sentNanos == 0) {
+				return;
+			}
+			long latency = System.nanoTime() - sentNanos;
+			if (side == CLIENT_SIDE) {
+				movesCount++;
+				ackLatency.record(latency);
+			} else {
+				replyLatency.record(latency);
+				this.sentNanos = 0;
+			}
+		}
+
+		/**
+		 * Makes the next move of this client right away or after its think
+		 * time.
+		 */
+		private void scheduleMove() {
+			if (thinkNanos == 0) {
+				move();
+				return;
+			}
+			this.moveNanos = System.nanoTime() + thinkNanos;
+			thinkingClients.add(this);
+		}
+
+		/**
+		 * Sends the next move of this client.
+		 */
+		private void move() {
+			if (board == null || board.isFull() || !channel.isOpen()) {
+				return;
+			}
+			int cell = scripted ? getFirstEmptyCell() : getRandomEmptyCell();
+			GameProtocol.writeMove(out, cell);
+			this.sentNanos = System.nanoTime();
+			try {
+				flush();
+			} catch (IOException e) {
+				disconnect();
+			}
+		}
+
+		/**
+		 * Gets the first empty cell in the order the search engine tries them.
+		 *
+		 * @return the index of the first empty cell
+		 */
+		private int getFirstEmptyCell() {
+			for (int cell : board.getLines().getCellOrder()) {
+				if (board.isEmpty(cell)) {
+					return cell;
+				}
+			}
+			throw new IllegalStateException("Board has no empty cell left!");
+		}
+
+		/**
+		 * Gets a random empty cell.
+		 *
+		 * @return the index of a random empty cell
+		 */
+		private int getRandomEmptyCell() {
+			int cell;
+			do {
+				cell = moveRandom.nextInt(board.getCellsCount());
+			} while (!board.isEmpty(cell));
+			return cell;
+		}
+
+		/**
+		 * Starts a new game of this client.
+		 *
+		 * @throws IOException if the connection failed
+		 */
+		private void startGame() throws IOException {
+			this.board = null;
+			GameProtocol.writeNewGame(out, size, aiDifficulty, GameRules.CLASSIC);
+			flush();
+		}
+
+		/**
+		 * Sends as much of the output buffer as the connection accepts and
+		 * registers interest in writing if some of it is left.
+		 *
+		 * @throws IOException if the connection failed
+		 */
+		private void flush() throws IOException {
+			out.flip();
+			channel.write(out);
+			out.compact();
+			int interestOps = out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+			if (key.interestOps() != interestOps) {
+				key.interestOps(interestOps);
+			}
+		}
+
+		/**
+		 * Closes the connection of this client after it failed.
+		 */
+		private void disconnect() {
+			if (channel != null && channel.isOpen()) {
+				disconnectedCount++;
+			}
+			close();
+		}
+
+		/**
+		 * Closes the connection of this client.
+		 */
+		private void close() {
+			if (channel == null) {
+				return;
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Nothing left to clean up
+			}
+		}
+
+	}
+
+}
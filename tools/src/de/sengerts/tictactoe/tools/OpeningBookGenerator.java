@@ -0,0 +1,376 @@
+package de.sengerts.tictactoe.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.engine.OpeningBook;
+import de.sengerts.tictactoe.engine.SearchBudget;
+import de.sengerts.tictactoe.engine.SearchEngine;
+import de.sengerts.tictactoe.engine.SearchResult;
+import de.sengerts.tictactoe.engine.Symmetries;
+import de.sengerts.tictactoe.engine.TranspositionTable;
+import de.sengerts.tictactoe.logic.GameScheduler;
+import de.sengerts.tictactoe.model.settings.AIDifficulty;
+
+/**
+ * Tool generating the opening book of the AI players.
+ *
+ * For every board size and win length, the book covers the first plies of
+ * every game an AI player can play, whether it moves first or second and
+ * whichever side starts: in a position where the AI player is to move, the
+ * best move is searched with a budget far beyond the one of the hardest
+ * difficulty and only that move is followed, in a position where its opponent
+ * is to move, every move is followed. Equivalent positions ({@link Symmetries})
+ * are searched once. The positions of one ply are searched in parallel on one
+ * worker per processor sharing one transposition table per board.
+ *
+ * The generated book ({@link OpeningBook}) is written to the given file and
+ * then probed for every position of the book to measure the time and the heap
+ * allocated per probe.
+ *
+ * Usage: OpeningBookGenerator [book file] [sizes with optional win lengths,
+ * e.g. 3,4,7:4] [plies] [max nodes per search]
+ *
+ * @author Tobias Senger
+ */
+public class OpeningBookGenerator {
+
+	/**
+	 * Class variable that stores the default book file.
+	 */
+	private static final String DEFAULT_BOOK_FILE = "books/opening.tttb";
+
+	/**
+	 * Class variable that stores the default board sizes and win lengths.
+	 */
+	private static final String DEFAULT_SIZES = "3,4,5,6,7";
+
+	/**
+	 * Class variable that stores the default amount of plies covered by the
+	 * book.
+	 */
+	private static final int DEFAULT_PLIES = 4;
+
+	/**
+	 * Class variable that stores the default amount of visited positions per
+	 * searched move, sixteen times the budget of the hardest difficulty.
+	 */
+	private static final long DEFAULT_MAX_NODES = 16 * AIDifficulty.HARD.getSearchBudget().getMaxNodes();
+
+	/**
+	 * Class variable that stores the base two logarithm of the amount of
+	 * entries of the transposition table of a board.
+	 */
+	private static final int TABLE_BITS = 22;
+
+	/**
+	 * Class variable that stores how often every position of the book is
+	 * probed to measure the probes.
+	 */
+	private static final int PROBE_ROUNDS = 100;
+
+	/**
+	 * Instance variable that stores the budget of every searched move.
+	 */
+	private final SearchBudget searchBudget;
+
+	/**
+	 * Instance variable that stores the amount of plies covered by the book.
+	 */
+	private final int plies;
+
+	/**
+	 * Instance variable that stores the workers searching the moves.
+	 */
+	private final ExecutorService workers;
+
+	/**
+	 * Instance variable that stores the positions of the book.
+	 */
+	private final List<Position> bookPositions;
+
+	/**
+	 * Instance variable that stores the keys of the book entries.
+	 */
+	private long[] keys;
+
+	/**
+	 * Instance variable that stores the canonical cells of the book entries.
+	 */
+	private int[] cells;
+
+	/**
+	 * Instance variable that stores the scores of the book entries.
+	 */
+	private int[] scores;
+
+	/**
+	 * Instance variable that stores the amount of book entries.
+	 */
+	private int entriesCount;
+
+	/**
+	 * Instance variable that stores the most marks of a position of the book.
+	 */
+	private int maxMarkedCount;
+
+	/**
+	 * Another constructor for class OpeningBookGenerator.
+	 *
+	 * @param plies the amount of plies covered by the book
+	 * @param maxNodes the amount of visited positions per searched move
+	 */
+	public OpeningBookGenerator(final int plies, final long maxNodes) {
+		this.searchBudget = new SearchBudget(maxNodes, AIDifficulty.HARD.getSearchBudget().getMaxDepth());
+		this.plies = plies;
+		this.workers = GameScheduler.newExecutor("opening-book", Runtime.getRuntime().availableProcessors());
+		this.bookPositions = new ArrayList<Position>();
+		this.keys = new long[1024];
+		this.cells = new int[1024];
+		this.scores = new int[1024];
+	}
+
+	/**
+	 * Runs the generator.
+	 *
+	 * @param args the book file, the comma separated board sizes with optional
+	 *             win lengths, the amount of plies and the amount of visited
+	 *             positions per searched move, all optional
+	 * @throws IOException if the book can not be written or read
+	 * @throws InterruptedException if the generator is interrupted
+	 * @throws ExecutionException if a search fails
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		File bookFile = new File(args.length > 0 ? args[0] : DEFAULT_BOOK_FILE);
+		String sizes = args.length > 1 ? args[1] : DEFAULT_SIZES;
+		int plies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PLIES;
+		long maxNodes = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_MAX_NODES;
+
+		OpeningBookGenerator generator = new OpeningBookGenerator(plies, maxNodes);
+		for (String size : sizes.split(",")) {
+			String[] parts = size.trim().split(":");
+			int rowsCount = Integer.parseInt(parts[0]);
+			int winLength = parts.length > 1 ? Integer.parseInt(parts[1]) : rowsCount;
+			generator.generate(Lines.mnk(rowsCount, rowsCount, winLength));
+		}
+		generator.workers.shutdown();
+
+		File directory = bookFile.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Directory " + directory + " could not be created!");
+		}
+		generator.write(bookFile);
+		generator.measureProbes(new OpeningBook(bookFile));
+	}
+
+	/**
+	 * Generates the book entries of one board.
+	 *
+	 * @param lines the lines of the board
+	 * @throws InterruptedException if the generator is interrupted
+	 * @throws ExecutionException if a search fails
+	 */
+	public void generate(final Lines lines) throws InterruptedException, ExecutionException {
+		long startNanos = System.nanoTime();
+		int startEntriesCount = entriesCount;
+		long nodes = 0;
+		TranspositionTable table = new TranspositionTable(TABLE_BITS);
+		Symmetries symmetries = Symmetries.get(lines);
+
+		List<Position> frontier = new ArrayList<Position>();
+		for (int firstSide = 0; firstSide < Board.SIDES; firstSide++) {
+			for (int aiSide = 0; aiSide < Board.SIDES; aiSide++) {
+				frontier.add(new Position(new Board(lines), firstSide, aiSide));
+			}
+		}
+		for (int ply = 0; ply < plies && !frontier.isEmpty(); ply++) {
+			List<Future<SearchResult>> searches = new ArrayList<Future<SearchResult>>();
+			for (Position position : frontier) {
+				if (position.isAiToMove()) {
+					final Board board = position.board.copy();
+					final int side = position.side;
+					searches.add(workers.submit(() -> new SearchEngine(table).search(board, side, searchBudget)));
+				}
+			}
+
+			List<Position> next = new ArrayList<Position>();
+			Set<Long> seen = new HashSet<Long>();
+			int search = 0;
+			for (Position position : frontier) {
+				if (position.isAiToMove()) {
+					SearchResult result = searches.get(search++).get();
+					nodes += result.getNodes();
+					addEntry(position, symmetries, result);
+					position.addChild(result.getCell(), symmetries, seen, next);
+				} else {
+					for (int cell = 0; cell < lines.getCellsCount(); cell++) {
+						if (position.board.isEmpty(cell)) {
+							position.addChild(cell, symmetries, seen, next);
+						}
+					}
+				}
+			}
+			frontier = next;
+		}
+
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		System.out.println(String.format(Locale.ROOT, "%dx%d, win length %d: %d positions in %.1f s, %d nodes",
+				lines.getRowsCount(), lines.getColumnsCount(), lines.getWinLength(),
+				entriesCount - startEntriesCount, seconds, nodes));
+	}
+
+	/**
+	 * Adds a book entry.
+	 *
+	 * @param position the searched position
+	 * @param symmetries the symmetries of the board
+	 * @param result the result of the search
+	 */
+	private void addEntry(final Position position, final Symmetries symmetries, final SearchResult result) {
+		if (entriesCount == keys.length) {
+			this.keys = Arrays.copyOf(keys, keys.length * 2);
+			this.cells = Arrays.copyOf(cells, cells.length * 2);
+			this.scores = Arrays.copyOf(scores, scores.length * 2);
+		}
+		int symmetry = OpeningBook.getCanonicalSymmetry(position.board, symmetries);
+		keys[entriesCount] = OpeningBook.getKey(position.board, position.side, symmetries, symmetry);
+		cells[entriesCount] = symmetries.mapCell(symmetry, result.getCell());
+		scores[entriesCount] = result.getScore();
+		entriesCount++;
+		bookPositions.add(position);
+		this.maxMarkedCount = Math.max(maxMarkedCount, position.board.getMarkedCount());
+	}
+
+	/**
+	 * Writes the book.
+	 *
+	 * @param bookFile the book file
+	 * @throws IOException if the book can not be written
+	 */
+	public void write(final File bookFile) throws IOException {
+		OpeningBook.write(bookFile, maxMarkedCount, keys, cells, scores, entriesCount);
+		System.out.println("Wrote " + entriesCount + " positions to " + bookFile + " ("
+				+ bookFile.length() / 1024 + " KiB)");
+	}
+
+	/**
+	 * Measures the probes of a book.
+	 *
+	 * Probes every position of the book and prints the average time and heap
+	 * allocated per probe.
+	 *
+	 * @param book the book to probe
+	 */
+	public void measureProbes(final OpeningBook book) {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocationMXBean = threadMXBean instanceof com.sun.management.ThreadMXBean
+				? (com.sun.management.ThreadMXBean) threadMXBean : null;
+		long threadId = Thread.currentThread().getId();
+
+		int missesCount = 0;
+		for (int round = -1; round < PROBE_ROUNDS; round++) {
+			if (round == 0) {
+				missesCount = 0;
+			}
+			long startBytes = allocationMXBean == null ? 0 : allocationMXBean.getThreadAllocatedBytes(threadId);
+			long startNanos = System.nanoTime();
+			for (Position position : bookPositions) {
+				if (book.probe(position.board, position.side) == OpeningBook.NO_MOVE) {
+					missesCount++;
+				}
+			}
+			if (round == PROBE_ROUNDS - 1 && !bookPositions.isEmpty()) {
+				long probes = bookPositions.size();
+				double nanos = (System.nanoTime() - startNanos) / (double) probes;
+				String bytes = allocationMXBean == null ? "unknown"
+						: String.valueOf((allocationMXBean.getThreadAllocatedBytes(threadId) - startBytes) / probes);
+				System.out.println(String.format(Locale.ROOT, "%.0f ns and %s bytes allocated per probe, %d misses",
+						nanos, bytes, missesCount / PROBE_ROUNDS));
+			}
+		}
+	}
+
+	/**
+	 * Class representing a position of the generated book.
+	 *
+	 * @author Tobias Senger
+	 */
+	private static final class Position {
+
+		/**
+		 * Instance variable that stores the board of the position.
+		 */
+		private final Board board;
+
+		/**
+		 * Instance variable that stores the side to move.
+		 */
+		private final int side;
+
+		/**
+		 * Instance variable that stores the side of the AI player.
+		 */
+		private final int aiSide;
+
+		/**
+		 * Another constructor for class Position.
+		 *
+		 * @param board the board of the position
+		 * @param side the side to move
+		 * @param aiSide the side of the AI player
+		 */
+		private Position(final Board board, final int side, final int aiSide) {
+			this.board = board;
+			this.side = side;
+			this.aiSide = aiSide;
+		}
+
+		/**
+		 * Gets whether the AI player is to move.
+		 *
+		 * @return true if the side to move is the side of the AI player,
+		 *         otherwise false
+		 */
+		private boolean isAiToMove() {
+			return side == aiSide;
+		}
+
+		/**
+		 * Adds the position after a move unless the game is over or an
+		 * equivalent position has been added.
+		 *
+		 * @param cell the cell of the move
+		 * @param symmetries the symmetries of the board
+		 * @param seen the keys of the added positions and their AI sides
+		 * @param next the added positions
+		 */
+		private void addChild(final int cell, final Symmetries symmetries, final Set<Long> seen,
+				final List<Position> next) {
+			Board child = board.copy();
+			child.mark(cell, side);
+			if (child.isWinningCell(cell, side) || child.isFull() || !child.hasWinnableLine()) {
+				return;
+			}
+			int childSide = Board.getOpponent(side);
+			long key = OpeningBook.getKey(child, childSide, symmetries,
+					OpeningBook.getCanonicalSymmetry(child, symmetries));
+			if (seen.add(key * 2 + aiSide)) {
+				next.add(new Position(child, childSide, aiSide));
+			}
+		}
+
+	}
+
+}
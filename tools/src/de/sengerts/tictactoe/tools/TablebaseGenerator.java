@@ -0,0 +1,190 @@
+package de.sengerts.tictactoe.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.engine.Tablebase;
+import de.sengerts.tictactoe.engine.TablebaseSolver;
+import de.sengerts.tictactoe.logic.GameScheduler;
+
+/**
+ * Tool generating the tablebases of the AI players.
+ *
+ * For every given win length, the tablebase ({@link Tablebase}) of the 4x4
+ * board is solved by retrograde analysis with one worker per processor
+ * ({@link TablebaseSolver}) and written to the given directory, named after the
+ * board ({@link Tablebase#getFileName(Lines)}). Afterwards the written
+ * tablebase is probed for the positions of random games to measure the time
+ * and the heap allocated per probe.
+ *
+ * Usage: TablebaseGenerator [tablebase directory] [win lengths, e.g. 3,4]
+ *
+ * @author Tobias Senger
+ */
+public class TablebaseGenerator {
+
+	/**
+	 * Class variable that stores the default tablebase directory.
+	 */
+	private static final String DEFAULT_DIRECTORY = "tablebases";
+
+	/**
+	 * Class variable that stores the default win lengths.
+	 */
+	private static final String DEFAULT_WIN_LENGTHS = "3,4";
+
+	/**
+	 * Class variable that stores the amount of rows and columns of the board.
+	 */
+	private static final int SIZE = 4;
+
+	/**
+	 * Class variable that stores the amount of random games whose positions are
+	 * probed to measure the probes.
+	 */
+	private static final int PROBED_GAMES = 1000;
+
+	/**
+	 * Class variable that stores how often every probed position is probed.
+	 */
+	private static final int PROBE_ROUNDS = 100;
+
+	/**
+	 * Private constructor for class TablebaseGenerator, as it only has static
+	 * methods.
+	 */
+	private TablebaseGenerator() {
+	}
+
+	/**
+	 * Runs the generator.
+	 *
+	 * @param args the tablebase directory and the comma separated win lengths,
+	 *             all optional
+	 * @throws IOException if a tablebase can not be written or read
+	 * @throws InterruptedException if the generator is interrupted
+	 * @throws ExecutionException if solving a tablebase fails
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		File directory = new File(args.length > 0 ? args[0] : DEFAULT_DIRECTORY);
+		String winLengths = args.length > 1 ? args[1] : DEFAULT_WIN_LENGTHS;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Directory " + directory + " could not be created!");
+		}
+
+		int workersCount = Runtime.getRuntime().availableProcessors();
+		ExecutorService workers = GameScheduler.newExecutor("tablebase", workersCount);
+		try {
+			for (String winLength : winLengths.split(",")) {
+				Lines lines = Lines.mnk(SIZE, SIZE, Integer.parseInt(winLength.trim()));
+				File file = new File(directory, Tablebase.getFileName(lines));
+				solve(lines, file, workers, workersCount);
+				measureProbes(new Tablebase(file));
+			}
+		} finally {
+			workers.shutdown();
+		}
+	}
+
+	/**
+	 * Solves and writes the tablebase of a board.
+	 *
+	 * @param lines the lines of the board
+	 * @param file the tablebase file
+	 * @param workers the workers solving the tablebase
+	 * @param workersCount the amount of the given workers
+	 * @throws IOException if the tablebase can not be written
+	 * @throws InterruptedException if the generator is interrupted
+	 * @throws ExecutionException if solving the tablebase fails
+	 */
+	private static void solve(final Lines lines, final File file, final ExecutorService workers,
+			final int workersCount) throws IOException, InterruptedException, ExecutionException {
+		long startNanos = System.nanoTime();
+		TablebaseSolver solver = new TablebaseSolver(lines);
+		solver.solve(workers, workersCount);
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		System.out.println(String.format(Locale.ROOT,
+				"Solved %d positions of %dx%d k=%d in %.2f s, searched %d on %d workers", solver.getPositionsCount(),
+				lines.getRowsCount(), lines.getColumnsCount(), lines.getWinLength(), seconds,
+				solver.getSearchedCount(), workersCount));
+		System.out.println(solver.getValueCount(Tablebase.WIN) + " won, " + solver.getValueCount(Tablebase.DRAW)
+				+ " drawn, " + solver.getValueCount(Tablebase.LOSS) + " lost, "
+				+ solver.getValueCount(Tablebase.INVALID) + " unreachable");
+		solver.write(file);
+		System.out.println("Wrote " + file + " (" + file.length() / 1024 + " KiB)");
+	}
+
+	/**
+	 * Measures the probes of a tablebase.
+	 *
+	 * Gets a perfect move in every position of random games and prints the
+	 * value of the empty board and the average time and heap allocated per
+	 * probe.
+	 *
+	 * @param tablebase the tablebase to probe
+	 */
+	private static void measureProbes(final Tablebase tablebase) {
+		List<Board> boards = new ArrayList<Board>();
+		List<Integer> sides = new ArrayList<Integer>();
+		Random random = new Random(tablebase.getLines().getWinLength());
+		for (int game = 0; game < PROBED_GAMES; game++) {
+			Board board = new Board(tablebase.getLines());
+			int side = random.nextInt(Board.SIDES);
+			while (true) {
+				boards.add(board.copy());
+				sides.add(side);
+				int cell;
+				do {
+					cell = random.nextInt(board.getCellsCount());
+				} while (!board.isEmpty(cell));
+				board.mark(cell, side);
+				if (board.isWinningCell(cell, side) || board.isFull()) {
+					break;
+				}
+				side = Board.getOpponent(side);
+			}
+		}
+		Board[] probedBoards = boards.toArray(new Board[boards.size()]);
+		int[] probedSides = sides.stream().mapToInt(Integer::intValue).toArray();
+
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocationMXBean = threadMXBean instanceof com.sun.management.ThreadMXBean
+				? (com.sun.management.ThreadMXBean) threadMXBean : null;
+		long threadId = Thread.currentThread().getId();
+
+		int movesCount = 0;
+		for (int round = -1; round < PROBE_ROUNDS; round++) {
+			if (round == 0) {
+				movesCount = 0;
+			}
+			long startBytes = allocationMXBean == null ? 0 : allocationMXBean.getThreadAllocatedBytes(threadId);
+			long startNanos = System.nanoTime();
+			for (int i = 0; i < probedBoards.length; i++) {
+				if (tablebase.getBestCell(probedBoards[i], probedSides[i]) != Tablebase.NO_MOVE) {
+					movesCount++;
+				}
+			}
+			if (round == PROBE_ROUNDS - 1) {
+				long probes = probedBoards.length;
+				double nanos = (System.nanoTime() - startNanos) / (double) probes;
+				String bytes = allocationMXBean == null ? "unknown"
+						: String.valueOf((allocationMXBean.getThreadAllocatedBytes(threadId) - startBytes) / probes);
+				String[] valueNames = { "unreachable", "won", "drawn", "lost" };
+				System.out.println(String.format(Locale.ROOT,
+						"Empty board is %s, %.0f ns and %s bytes allocated per probe, %.0f%% of %d positions not lost",
+						valueNames[tablebase.getValue(new Board(tablebase.getLines()), 0)], nanos, bytes,
+						100.0 * movesCount / PROBE_ROUNDS / probes, probes));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,292 @@
+package de.sengerts.tictactoe.tools;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import de.sengerts.tictactoe.engine.Board;
+import de.sengerts.tictactoe.engine.Lines;
+import de.sengerts.tictactoe.engine.RunWinChecker;
+import de.sengerts.tictactoe.engine.WinChecker;
+import de.sengerts.tictactoe.engine.generated.GeneratedWinCheckers;
+
+/**
+ * Tool comparing the size specialized win checkers with the generic ones.
+ *
+ * For every board size a set of random positions is checked by the generated
+ * checker of the size, by the generic bit-parallel checker
+ * ({@link RunWinChecker}) and by a plain loop over the cells of every line, as
+ * the territory did it before. All checkers have to agree on every position.
+ * The best time of several rounds is printed as CSV in nanoseconds per check.
+ *
+ * Usage: WinCheckBenchmark [sizes, e.g. 3,4,5] [positions] [seed]
+ *
+ * @author Tobias Senger
+ */
+public class WinCheckBenchmark {
+
+	/**
+	 * Class variable that stores the default amount of positions per size.
+	 */
+	private static final int DEFAULT_POSITIONS = 1024;
+
+	/**
+	 * Class variable that stores the default random seed.
+	 */
+	private static final long DEFAULT_SEED = 1L;
+
+	/**
+	 * Class variable that stores the amount of measured rounds per checker.
+	 */
+	private static final int ROUNDS = 7;
+
+	/**
+	 * Class variable that stores the minimum duration of a round in nanoseconds.
+	 */
+	private static final long ROUND_NANOS = 100_000_000L;
+
+	/**
+	 * Instance variable that stores the random number generator of the
+	 * positions.
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * Instance variable that stores the amount of positions per size.
+	 */
+	private final int positions;
+
+	/**
+	 * Instance variable that prevents the JIT from removing the checks.
+	 */
+	private volatile long sink;
+
+	/**
+	 * Another constructor for class WinCheckBenchmark.
+	 *
+	 * @param positions the amount of positions per size
+	 * @param seed      the seed of the positions
+	 */
+	public WinCheckBenchmark(final int positions, final long seed) {
+		this.positions = positions;
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the comma separated board sizes, the amount of positions per
+	 *             size and the seed, all optional
+	 */
+	public static void main(String[] args) {
+		String sizes = args.length > 0 ? args[0] : GeneratedWinCheckers.MIN_SIZE + "-" + GeneratedWinCheckers.MAX_SIZE;
+		int positions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_POSITIONS;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+		WinCheckBenchmark benchmark = new WinCheckBenchmark(positions, seed);
+		System.out.println("size,checker,ns_per_check,wins");
+		for (int size : parseSizes(sizes)) {
+			benchmark.run(size);
+		}
+	}
+
+	/**
+	 * Parses the sizes argument.
+	 *
+	 * @param sizes comma separated sizes or a range like 3-21
+	 * @return the sizes to benchmark
+	 */
+	private static int[] parseSizes(final String sizes) {
+		if (sizes.contains("-")) {
+			String[] bounds = sizes.split("-");
+			int min = Integer.parseInt(bounds[0].trim());
+			int max = Integer.parseInt(bounds[1].trim());
+			int[] result = new int[max - min + 1];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = min + i;
+			}
+			return result;
+		}
+		String[] parts = sizes.split(",");
+		int[] result = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			result[i] = Integer.parseInt(parts[i].trim());
+		}
+		return result;
+	}
+
+	/**
+	 * Benchmarks all checkers for one board size.
+	 *
+	 * @param size the amount of rows and columns of the board
+	 * @throws IllegalStateException if no checker was generated for the size or
+	 *                               the checkers disagree on a position
+	 */
+	public void run(final int size) {
+		WinChecker generated = GeneratedWinCheckers.get(size);
+		if (generated == null) {
+			throw new IllegalStateException("No win checker was generated for size " + size + "!");
+		}
+		Lines lines = Lines.classic(size);
+		WinChecker runs = new RunWinChecker(lines);
+		WinChecker loop = new LineLoopWinChecker(lines);
+		Board[] boards = createBoards(lines);
+
+		int wins = countWins(generated, boards);
+		if (countWins(runs, boards) != wins || countWins(loop, boards) != wins) {
+			throw new IllegalStateException("Win checkers disagree for size " + size + "!");
+		}
+		print(size, "generated", measure(generated, boards), wins);
+		print(size, "bit_parallel_runs", measure(runs, boards), wins);
+		print(size, "line_loop", measure(loop, boards), wins);
+	}
+
+	/**
+	 * Creates random positions of one size.
+	 *
+	 * Every position has random marks of the first side with about half of the
+	 * cells marked, and every fourth position additionally gets one random line
+	 * completed, so about a quarter of the checks find a win.
+	 *
+	 * @param lines the lines of the boards
+	 * @return the random positions
+	 */
+	private Board[] createBoards(final Lines lines) {
+		Board[] boards = new Board[positions];
+		for (int i = 0; i < positions; i++) {
+			Board board = new Board(lines);
+			for (int cell = 0; cell < lines.getCellsCount(); cell++) {
+				if (random.nextInt(2) == 0) {
+					board.mark(cell, 0);
+				}
+			}
+			if (i % 4 == 0) {
+				for (int cell : lines.getLineCells(random.nextInt(lines.getLinesCount()))) {
+					if (board.isEmpty(cell)) {
+						board.mark(cell, 0);
+					}
+				}
+			}
+			boards[i] = board;
+		}
+		return boards;
+	}
+
+	/**
+	 * Counts the positions in which the first side has won.
+	 *
+	 * @param checker the checker to use
+	 * @param boards  the positions to check
+	 * @return the amount of won positions
+	 */
+	private static int countWins(final WinChecker checker, final Board[] boards) {
+		int wins = 0;
+		for (Board board : boards) {
+			if (checker.hasWinningLine(board, 0)) {
+				wins++;
+			}
+		}
+		return wins;
+	}
+
+	/**
+	 * Measures the time of a checker per check.
+	 *
+	 * @param checker the checker to measure
+	 * @param boards  the positions to check
+	 * @return the best time of all rounds in nanoseconds per check
+	 */
+	private double measure(final WinChecker checker, final Board[] boards) {
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long checks = 0;
+			long start = System.nanoTime();
+			long elapsed;
+			do {
+				sink += countWins(checker, boards);
+				checks += boards.length;
+				elapsed = System.nanoTime() - start;
+			} while (elapsed < ROUND_NANOS);
+			best = Math.min(best, (double) elapsed / checks);
+		}
+		return best;
+	}
+
+	/**
+	 * Prints one CSV line.
+	 *
+	 * @param size    the amount of rows and columns of the board
+	 * @param checker the name of the checker
+	 * @param nanos   the time per check in nanoseconds
+	 * @param wins    the amount of won positions
+	 */
+	private void print(final int size, final String checker, final double nanos, final int wins) {
+		System.out.println(String.format(Locale.ROOT, "%d,%s,%.2f,%d", size, checker, nanos, wins));
+	}
+
+	/**
+	 * Class representing a win checker that loops over the cells of every line,
+	 * like the generic checks of the territory did.
+	 */
+	private static final class LineLoopWinChecker implements WinChecker {
+
+		/**
+		 * Instance variable that stores the lines to check.
+		 */
+		private final Lines lines;
+
+		/**
+		 * Another constructor for class LineLoopWinChecker.
+		 *
+		 * @param lines the lines to check
+		 */
+		private LineLoopWinChecker(final Lines lines) {
+			this.lines = lines;
+		}
+
+		/*
+		 * @see de.sengerts.tictactoe.engine.WinChecker#hasWinningLine(de.sengerts.tictactoe.engine.Board, int)
+		 */
+		@Override
+		public boolean hasWinningLine(final Board board, final int side) {
+			for (int line = 0; line < lines.getLinesCount(); line++) {
+				boolean complete = true;
+				for (int cell : lines.getLineCells(line)) {
+					if (board.getSide(cell) != side) {
+						complete = false;
+						break;
+					}
+				}
+				if (complete) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * @see de.sengerts.tictactoe.engine.WinChecker#getLinesCount()
+		 */
+		@Override
+		public int getLinesCount() {
+			return lines.getLinesCount();
+		}
+
+		/*
+		 * @see de.sengerts.tictactoe.engine.WinChecker#getWordsCount()
+		 */
+		@Override
+		public int getWordsCount() {
+			throw new UnsupportedOperationException("Line loop checker has no line masks!");
+		}
+
+		/*
+		 * @see de.sengerts.tictactoe.engine.WinChecker#getLineMask(int, int)
+		 */
+		@Override
+		public long getLineMask(final int line, final int word) {
+			throw new UnsupportedOperationException("Line loop checker has no line masks!");
+		}
+
+	}
+
+}